@@ -1,12 +1,15 @@
 package mil.nga.geopackage;
 
+import java.io.File;
 import java.sql.ResultSet;
 
 import mil.nga.geopackage.attributes.AttributesDao;
 import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageSnapshot;
 import mil.nga.geopackage.features.columns.GeometryColumns;
 import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.io.GeoPackageProgress;
 import mil.nga.geopackage.tiles.matrixset.TileMatrixSet;
 import mil.nga.geopackage.tiles.user.TileDao;
 import mil.nga.geopackage.user.custom.UserCustomDao;
@@ -167,4 +170,46 @@ public interface GeoPackage extends GeoPackageCore {
 	 */
 	public ResultSet quickCheck();
 
+	/**
+	 * Get the asynchronous facade of the GeoPackage. The default
+	 * implementation creates a new facade on each call, owned by the caller,
+	 * which must close it to stop its read and write threads. GeoPackages
+	 * opened through the GeoPackage manager instead return a single facade
+	 * created on first use and closed with the GeoPackage.
+	 *
+	 * @return asynchronous GeoPackage
+	 * @since 3.4.1
+	 */
+	public default GeoPackageAsync async() {
+		return new GeoPackageAsync(this);
+	}
+
+	/**
+	 * Snapshot the GeoPackage to a file while it remains open for reads and
+	 * writes. In-memory GeoPackages are copied from memory.
+	 *
+	 * @param file
+	 *            snapshot file, must not exist
+	 * @return true if created
+	 * @since 3.4.1
+	 */
+	public default boolean snapshotTo(File file) {
+		return snapshotTo(file, null);
+	}
+
+	/**
+	 * Snapshot the GeoPackage to a file while it remains open for reads and
+	 * writes, reporting progress in pages
+	 *
+	 * @param file
+	 *            snapshot file, must not exist
+	 * @param progress
+	 *            progress tracker, canceled when no longer active
+	 * @return true if created, false if canceled
+	 * @since 3.4.1
+	 */
+	public default boolean snapshotTo(File file, GeoPackageProgress progress) {
+		return GeoPackageSnapshot.snapshot(getConnection(), file, progress);
+	}
+
 }
@@ -0,0 +1,583 @@
+package mil.nga.geopackage;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.features.index.FeatureIndexFeatureResults;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.ManualFeatureQuery;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+
+/**
+ * Asynchronous facade of a GeoPackage returning {@link CompletableFuture}
+ * results. Reads run on a bounded executor sized to the reader connection
+ * pool. Without a pool, or when a read thread would fall back to the writer
+ * connection during a transaction, reads run on the writer thread so the
+ * writer connection is never used concurrently. Writes are serialized on a
+ * single writer thread. Results are fully read on the
+ * executor so no result set or connection escapes to the caller. Submissions
+ * beyond the queue capacity complete exceptionally with a
+ * {@link RejectedExecutionException}. Bounding box queries use a feature
+ * index manager per table, created with its indexed type resolved on the
+ * writer thread, so only reader connection queries run on the read threads.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageAsync implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageAsync.class.getName());
+
+	/**
+	 * Default max number of queued tasks per executor
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Seconds to wait for queued tasks when closing
+	 */
+	private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+	/**
+	 * GeoPackage
+	 */
+	private final GeoPackage geoPackage;
+
+	/**
+	 * Read executor
+	 */
+	private final ExecutorService readExecutor;
+
+	/**
+	 * Single thread write executor
+	 */
+	private final ExecutorService writeExecutor;
+
+	/**
+	 * Feature DAOs by table
+	 */
+	private final Map<String, FeatureDao> featureDaos = new ConcurrentHashMap<>();
+
+	/**
+	 * Tile DAOs by table
+	 */
+	private final Map<String, TileDao> tileDaos = new ConcurrentHashMap<>();
+
+	/**
+	 * Feature indexes by table
+	 */
+	private final Map<String, FeatureIndex> featureIndexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor, with a read thread per pooled reader connection
+	 *
+	 * @param geoPackage
+	 *            GeoPackage
+	 */
+	public GeoPackageAsync(GeoPackage geoPackage) {
+		this(geoPackage, readThreads(geoPackage), DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param geoPackage
+	 *            GeoPackage
+	 * @param readThreads
+	 *            number of read threads
+	 * @param queueCapacity
+	 *            max number of queued tasks per executor
+	 */
+	public GeoPackageAsync(GeoPackage geoPackage, int readThreads,
+			int queueCapacity) {
+		if (readThreads < 1) {
+			throw new GeoPackageException(
+					"Read threads must be at least 1, threads: "
+							+ readThreads);
+		}
+		this.geoPackage = geoPackage;
+		String name = geoPackage.getName();
+		readExecutor = newExecutor(readThreads, queueCapacity,
+				"geopackage-async-read-" + name + "-");
+		writeExecutor = newExecutor(1, queueCapacity,
+				"geopackage-async-write-" + name + "-");
+	}
+
+	/**
+	 * Get the GeoPackage
+	 *
+	 * @return GeoPackage
+	 */
+	public GeoPackage getGeoPackage() {
+		return geoPackage;
+	}
+
+	/**
+	 * Run a read on the read executor, or on the writer thread when the read
+	 * would use the writer connection
+	 *
+	 * @param read
+	 *            read function
+	 * @param <T>
+	 *            result type
+	 * @return future result
+	 */
+	public <T> CompletableFuture<T> read(Function<GeoPackage, T> read) {
+		CompletableFuture<T> future;
+		if (geoPackage.getConnection().getReaderPool() == null) {
+			future = submit(writeExecutor, read);
+		} else {
+			future = submit(readExecutor, geoPackage -> {
+				CompletableFuture<T> result;
+				if (geoPackage.getConnection().useReaderPool()) {
+					result = CompletableFuture
+							.completedFuture(read.apply(geoPackage));
+				} else {
+					result = submit(writeExecutor, read);
+				}
+				return result;
+			}).thenCompose(Function.identity());
+		}
+		return future;
+	}
+
+	/**
+	 * Run a write on the single writer thread
+	 *
+	 * @param write
+	 *            write function
+	 * @param <T>
+	 *            result type
+	 * @return future result
+	 */
+	public <T> CompletableFuture<T> write(Function<GeoPackage, T> write) {
+		return submit(writeExecutor, write);
+	}
+
+	/**
+	 * Query for a tile
+	 *
+	 * @param tileTable
+	 *            tile table name
+	 * @param column
+	 *            tile column
+	 * @param row
+	 *            tile row
+	 * @param zoomLevel
+	 *            zoom level
+	 * @return future tile row, null if not found
+	 */
+	public CompletableFuture<TileRow> queryForTile(String tileTable,
+			long column, long row, long zoomLevel) {
+		return read(geoPackage -> getTileDao(tileTable).queryForTile(column,
+				row, zoomLevel));
+	}
+
+	/**
+	 * Count the rows in a table
+	 *
+	 * @param table
+	 *            table name
+	 * @return future count
+	 */
+	public CompletableFuture<Integer> count(String table) {
+		return read(geoPackage -> geoPackage.getConnection().count(table,
+				null, null));
+	}
+
+	/**
+	 * Query for features
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @return future feature rows
+	 */
+	public CompletableFuture<List<FeatureRow>> queryFeatures(
+			String featureTable, String where, String[] whereArgs) {
+		return read(geoPackage -> {
+			List<FeatureRow> rows = new ArrayList<>();
+			FeatureResultSet resultSet = getFeatureDao(featureTable)
+					.query(where, whereArgs);
+			try {
+				while (resultSet.moveToNext()) {
+					rows.add(resultSet.getRow());
+				}
+			} finally {
+				resultSet.close();
+			}
+			return rows;
+		});
+	}
+
+	/**
+	 * Query for features intersecting the bounding box in the feature
+	 * projection, using the feature index when indexed
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @param boundingBox
+	 *            bounding box
+	 * @return future feature rows
+	 */
+	public CompletableFuture<List<FeatureRow>> queryFeatures(
+			String featureTable, BoundingBox boundingBox) {
+		return featureIndex(featureTable).thenCompose(index -> read(
+				geoPackage -> {
+					List<FeatureRow> rows = new ArrayList<>();
+					FeatureIndexResults results = index.query(boundingBox);
+					try {
+						for (FeatureRow row : results) {
+							rows.add(row);
+						}
+					} finally {
+						results.close();
+					}
+					return rows;
+				}));
+	}
+
+	/**
+	 * Count the features intersecting the bounding box in the feature
+	 * projection, using the feature index when indexed
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @param boundingBox
+	 *            bounding box
+	 * @return future count
+	 */
+	public CompletableFuture<Long> countFeatures(String featureTable,
+			BoundingBox boundingBox) {
+		return featureIndex(featureTable).thenCompose(
+				index -> read(geoPackage -> index.count(boundingBox)));
+	}
+
+	/**
+	 * Insert a feature row on the writer thread
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @param row
+	 *            feature row
+	 * @return future row id
+	 */
+	public CompletableFuture<Long> insert(String featureTable,
+			FeatureRow row) {
+		return write(
+				geoPackage -> getFeatureDao(featureTable).insert(row));
+	}
+
+	/**
+	 * Batch insert feature rows on the writer thread
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @param rows
+	 *            feature rows
+	 * @return future inserted count
+	 */
+	public CompletableFuture<Integer> insertBatch(String featureTable,
+			Collection<FeatureRow> rows) {
+		return write(
+				geoPackage -> getFeatureDao(featureTable).insertBatch(rows));
+	}
+
+	/**
+	 * Get a cached feature DAO
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @return feature DAO
+	 */
+	public FeatureDao getFeatureDao(String featureTable) {
+		return featureDaos.computeIfAbsent(featureTable,
+				geoPackage::getFeatureDao);
+	}
+
+	/**
+	 * Get a cached tile DAO
+	 *
+	 * @param tileTable
+	 *            tile table name
+	 * @return tile DAO
+	 */
+	public TileDao getTileDao(String tileTable) {
+		return tileDaos.computeIfAbsent(tileTable, geoPackage::getTileDao);
+	}
+
+	/**
+	 * Get the feature index of the table, created on the writer thread on
+	 * first use
+	 *
+	 * @param featureTable
+	 *            feature table name
+	 * @return future feature index
+	 */
+	private CompletableFuture<FeatureIndex> featureIndex(
+			String featureTable) {
+		FeatureIndex index = featureIndexes.get(featureTable);
+		CompletableFuture<FeatureIndex> future;
+		if (index != null) {
+			future = CompletableFuture.completedFuture(index);
+		} else {
+			future = write(geoPackage -> featureIndexes.computeIfAbsent(
+					featureTable, table -> new FeatureIndex(geoPackage,
+							getFeatureDao(table))));
+		}
+		return future;
+	}
+
+	/**
+	 * Clear the feature indexes so the indexed type of each table is resolved
+	 * again on the next bounding box query, such as after indexing a table
+	 *
+	 * @return future completion
+	 */
+	public CompletableFuture<Void> clearFeatureIndexes() {
+		return write(geoPackage -> {
+			closeFeatureIndexes();
+			return null;
+		});
+	}
+
+	/**
+	 * Determine if the executors are shut down
+	 *
+	 * @return true if closed
+	 */
+	public boolean isClosed() {
+		return readExecutor.isShutdown();
+	}
+
+	/**
+	 * Stop accepting tasks and wait for queued tasks to complete
+	 */
+	@Override
+	public void close() {
+		readExecutor.shutdown();
+		writeExecutor.shutdown();
+		awaitTermination(readExecutor);
+		awaitTermination(writeExecutor);
+		closeFeatureIndexes();
+	}
+
+	/**
+	 * Close and remove the feature indexes
+	 */
+	private void closeFeatureIndexes() {
+		for (String featureTable : featureIndexes.keySet()) {
+			FeatureIndex index = featureIndexes.remove(featureTable);
+			if (index != null) {
+				index.close();
+			}
+		}
+	}
+
+	/**
+	 * Submit the function to the executor
+	 *
+	 * @param executor
+	 *            executor
+	 * @param function
+	 *            function
+	 * @return future result
+	 */
+	private <T> CompletableFuture<T> submit(ExecutorService executor,
+			Function<GeoPackage, T> function) {
+		CompletableFuture<T> future;
+		try {
+			future = CompletableFuture
+					.supplyAsync(() -> function.apply(geoPackage), executor);
+		} catch (RejectedExecutionException e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Wait for the executor to terminate, interrupting running tasks on
+	 * timeout
+	 *
+	 * @param executor
+	 *            executor
+	 */
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS,
+					TimeUnit.SECONDS)) {
+				log.log(Level.WARNING,
+						"Timed out waiting for asynchronous GeoPackage tasks: "
+								+ geoPackage.getName());
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Get the default number of read threads, one per pooled reader
+	 * connection or one without a pool
+	 *
+	 * @param geoPackage
+	 *            GeoPackage
+	 * @return read threads
+	 */
+	private static int readThreads(GeoPackage geoPackage) {
+		GeoPackageConnectionPool readerPool = geoPackage.getConnection()
+				.getReaderPool();
+		return readerPool != null ? readerPool.getMaxConnections() : 1;
+	}
+
+	/**
+	 * Create a bounded executor of daemon threads
+	 *
+	 * @param threads
+	 *            number of threads
+	 * @param queueCapacity
+	 *            max number of queued tasks
+	 * @param prefix
+	 *            thread name prefix
+	 * @return executor
+	 */
+	private static ExecutorService newExecutor(int threads, int queueCapacity,
+			String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable,
+					prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory);
+	}
+
+	/**
+	 * Feature index manager of a table with its indexed type resolved once,
+	 * querying through the reader connections of the feature DAO
+	 */
+	private static class FeatureIndex {
+
+		/**
+		 * Feature index manager
+		 */
+		private final FeatureIndexManager indexManager;
+
+		/**
+		 * Manual feature query of unindexed tables
+		 */
+		private final ManualFeatureQuery manualFeatureQuery;
+
+		/**
+		 * Indexed type
+		 */
+		private final FeatureIndexType indexedType;
+
+		/**
+		 * Constructor, looking up the index extensions
+		 *
+		 * @param geoPackage
+		 *            GeoPackage
+		 * @param featureDao
+		 *            feature DAO
+		 */
+		private FeatureIndex(GeoPackage geoPackage, FeatureDao featureDao) {
+			indexManager = new FeatureIndexManager(geoPackage, featureDao);
+			manualFeatureQuery = new ManualFeatureQuery(featureDao);
+			indexedType = indexManager.getIndexedType();
+		}
+
+		/**
+		 * Query for features intersecting the bounding box
+		 *
+		 * @param boundingBox
+		 *            bounding box
+		 * @return feature index results, close when done
+		 */
+		private FeatureIndexResults query(BoundingBox boundingBox) {
+			FeatureIndexResults results;
+			switch (indexedType) {
+			case RTREE:
+				results = new FeatureIndexFeatureResults(
+						indexManager.getRTreeIndexTableDao()
+								.queryFeatures(boundingBox.buildEnvelope()));
+				break;
+			case GEOPACKAGE:
+				results = new FeatureIndexFeatureResults(
+						indexManager.getFeatureTableIndex()
+								.queryFeatures(boundingBox.buildEnvelope()));
+				break;
+			default:
+				results = manualFeatureQuery.query(boundingBox);
+			}
+			return results;
+		}
+
+		/**
+		 * Count the features intersecting the bounding box
+		 *
+		 * @param boundingBox
+		 *            bounding box
+		 * @return count
+		 */
+		private long count(BoundingBox boundingBox) {
+			long count;
+			switch (indexedType) {
+			case RTREE:
+				count = indexManager.getRTreeIndexTableDao()
+						.count(boundingBox.buildEnvelope());
+				break;
+			case GEOPACKAGE:
+				count = indexManager.getFeatureTableIndex()
+						.countFeatures(boundingBox.buildEnvelope());
+				break;
+			default:
+				count = manualFeatureQuery.count(boundingBox);
+			}
+			return count;
+		}
+
+		/**
+		 * Close the feature index manager
+		 */
+		private void close() {
+			indexManager.close();
+		}
+
+	}
+
+}
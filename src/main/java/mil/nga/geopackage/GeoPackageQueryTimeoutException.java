@@ -0,0 +1,47 @@
+package mil.nga.geopackage;
+
+/**
+ * GeoPackage exception thrown when an in-flight SQL statement is interrupted
+ * because its query deadline passed or its progress was canceled
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageQueryTimeoutException extends GeoPackageException {
+
+	/**
+	 * Serial version id
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * True when interrupted by a canceled progress rather than a deadline
+	 */
+	private final boolean canceled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param message
+	 *            message
+	 * @param throwable
+	 *            cause
+	 * @param canceled
+	 *            true when interrupted by a canceled progress
+	 */
+	public GeoPackageQueryTimeoutException(String message, Throwable throwable,
+			boolean canceled) {
+		super(message, throwable);
+		this.canceled = canceled;
+	}
+
+	/**
+	 * Determine if interrupted by a canceled progress rather than a deadline
+	 *
+	 * @return true if canceled
+	 */
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+}
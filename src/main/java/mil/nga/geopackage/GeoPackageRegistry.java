@@ -0,0 +1,734 @@
+package mil.nga.geopackage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mil.nga.geopackage.db.GeoPackageOpenOptions;
+import mil.nga.geopackage.manager.GeoPackageManager;
+
+/**
+ * Thread safe registry sharing open GeoPackages by canonical file path with
+ * reference counting. Acquired handles must be closed to release the
+ * GeoPackage, which remains open for reuse. GeoPackages without references
+ * are closed after an idle timeout, and the least recently used are closed
+ * when the max number of open GeoPackages is exceeded. The max open is a soft
+ * cap applied only to GeoPackages without references. When referenced
+ * GeoPackages keep the registry over the max open, the overflow is logged and
+ * counted. Acquiring an open
+ * GeoPackage does not touch the file system. Handles return a shared
+ * GeoPackage that can not be closed directly.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageRegistry implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageRegistry.class.getName());
+
+	/**
+	 * Default max number of open GeoPackages
+	 */
+	public static final int DEFAULT_MAX_OPEN = 256;
+
+	/**
+	 * Default milliseconds a GeoPackage without references stays open
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+	/**
+	 * Process wide registry, created on first use
+	 */
+	private static GeoPackageRegistry instance = null;
+
+	/**
+	 * Idle eviction thread number
+	 */
+	private static final AtomicLong threadNumber = new AtomicLong();
+
+	/**
+	 * Get the process wide registry, created on first use with the default
+	 * max open and idle timeout
+	 *
+	 * @return registry
+	 */
+	public static synchronized GeoPackageRegistry getInstance() {
+		if (instance == null || instance.isClosed()) {
+			instance = new GeoPackageRegistry();
+		}
+		return instance;
+	}
+
+	/**
+	 * Max number of open GeoPackages, a soft cap evicting only GeoPackages
+	 * without references
+	 */
+	private final int maxOpen;
+
+	/**
+	 * Milliseconds a GeoPackage without references stays open, 0 to not
+	 * close idle GeoPackages
+	 */
+	private final long idleTimeout;
+
+	/**
+	 * Open options, null for defaults
+	 */
+	private final GeoPackageOpenOptions options;
+
+	/**
+	 * Entries by canonical path
+	 */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Canonical paths by requested path of the open GeoPackages
+	 */
+	private final Map<String, String> canonicalPaths = new ConcurrentHashMap<>();
+
+	/**
+	 * Idle eviction executor, null when not closing idle GeoPackages
+	 */
+	private final ScheduledExecutorService evictor;
+
+	/**
+	 * Closed flag
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Number of acquires of an open GeoPackage
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * Number of opened GeoPackages
+	 */
+	private final AtomicLong opens = new AtomicLong();
+
+	/**
+	 * Number of closed GeoPackages
+	 */
+	private final AtomicLong closes = new AtomicLong();
+
+	/**
+	 * Number of times referenced GeoPackages kept the registry over the max
+	 * open
+	 */
+	private final AtomicLong overflows = new AtomicLong();
+
+	/**
+	 * Constructor with the default max open and idle timeout
+	 */
+	public GeoPackageRegistry() {
+		this(DEFAULT_MAX_OPEN, DEFAULT_IDLE_TIMEOUT, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxOpen
+	 *            max number of open GeoPackages, exceeded while the least
+	 *            recently used GeoPackages still have references
+	 * @param idleTimeout
+	 *            milliseconds a GeoPackage without references stays open, 0
+	 *            to not close idle GeoPackages
+	 * @param options
+	 *            open options, null for defaults
+	 */
+	public GeoPackageRegistry(int maxOpen, long idleTimeout,
+			GeoPackageOpenOptions options) {
+		if (maxOpen < 1) {
+			throw new GeoPackageException(
+					"Max open must be at least 1, max open: " + maxOpen);
+		}
+		this.maxOpen = maxOpen;
+		this.idleTimeout = idleTimeout;
+		this.options = options;
+		if (idleTimeout > 0) {
+			evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable,
+						"geopackage-registry-evict-"
+								+ threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			long period = Math.max(idleTimeout / 2, 1);
+			evictor.scheduleWithFixedDelay(this::evictIdleQuietly, period,
+					period, TimeUnit.MILLISECONDS);
+		} else {
+			evictor = null;
+		}
+	}
+
+	/**
+	 * Get the max number of open GeoPackages, a soft cap evicting only
+	 * GeoPackages without references
+	 *
+	 * @return max open
+	 */
+	public int getMaxOpen() {
+		return maxOpen;
+	}
+
+	/**
+	 * Get the milliseconds a GeoPackage without references stays open
+	 *
+	 * @return idle timeout, 0 when idle GeoPackages are not closed
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Get the number of acquires of an already open GeoPackage
+	 *
+	 * @return hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of opened GeoPackages
+	 *
+	 * @return opens
+	 */
+	public long getOpens() {
+		return opens.get();
+	}
+
+	/**
+	 * Get the number of closed GeoPackages
+	 *
+	 * @return closes
+	 */
+	public long getCloses() {
+		return closes.get();
+	}
+
+	/**
+	 * Get the number of times referenced GeoPackages kept the registry over
+	 * the max open
+	 *
+	 * @return overflows
+	 */
+	public long getOverflows() {
+		return overflows.get();
+	}
+
+	/**
+	 * Get the number of open GeoPackages
+	 *
+	 * @return open count
+	 */
+	public int getOpenCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the number of cached canonical paths by requested path
+	 *
+	 * @return cached path count
+	 */
+	public int getCachedPathCount() {
+		return canonicalPaths.size();
+	}
+
+	/**
+	 * Get the reference count of an open GeoPackage
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @return reference count, 0 when not referenced or not open
+	 */
+	public int getReferences(File file) {
+		int references = 0;
+		Entry entry = entries.get(lookupPath(file));
+		if (entry != null) {
+			references = Math.max(entry.references.get(), 0);
+		}
+		return references;
+	}
+
+	/**
+	 * Determine if the GeoPackage file is open in the registry
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @return true if open
+	 */
+	public boolean isOpen(File file) {
+		return entries.containsKey(lookupPath(file));
+	}
+
+	/**
+	 * Determine if the registry is closed
+	 *
+	 * @return true if closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Acquire a handle to the GeoPackage, opening the file when not open. The
+	 * handle must be closed to release the reference.
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @return GeoPackage handle
+	 */
+	public Handle acquire(File file) {
+
+		if (closed) {
+			throw new GeoPackageException("GeoPackage registry is closed");
+		}
+
+		String path = canonicalPath(file);
+
+		while (true) {
+			Entry entry = entries.computeIfAbsent(path, Entry::new);
+			if (!entry.retain()) {
+				// Closed by eviction, replace the entry
+				entries.remove(path, entry);
+				continue;
+			}
+			Boolean opened;
+			try {
+				opened = entry.open(file);
+			} catch (RuntimeException e) {
+				entry.references.set(-1);
+				removeEntry(entry);
+				throw e;
+			}
+			if (opened == null) {
+				// Failed to open by another thread, replace the entry
+				entries.remove(path, entry);
+				continue;
+			}
+			if (opened) {
+				opens.incrementAndGet();
+				evictLeastRecentlyUsed();
+			} else {
+				hits.incrementAndGet();
+			}
+			return new Handle(entry);
+		}
+	}
+
+	/**
+	 * Close the GeoPackages without references idle longer than the idle
+	 * timeout
+	 *
+	 * @return number closed
+	 */
+	public int evictIdle() {
+		int evicted = 0;
+		long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		long now = System.nanoTime();
+		for (Entry entry : entries.values()) {
+			if (now - entry.lastAccess >= idleNanos && evict(entry)) {
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Close all GeoPackages, including those with references, and stop
+	 * closing idle GeoPackages
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+		for (Entry entry : entries.values()) {
+			int references = entry.references.getAndSet(-1);
+			if (references >= 0) {
+				if (references > 0) {
+					log.log(Level.WARNING,
+							"Closing referenced GeoPackage: " + entry.path
+									+ ", references: " + references);
+				}
+				closeEntry(entry);
+			}
+		}
+	}
+
+	/**
+	 * Close the least recently used GeoPackages without references while
+	 * over the max open, logging and counting when referenced GeoPackages
+	 * keep the registry over the max open
+	 */
+	private void evictLeastRecentlyUsed() {
+		if (entries.size() > maxOpen) {
+			List<Entry> idle = new ArrayList<>();
+			for (Entry entry : entries.values()) {
+				if (entry.references.get() == 0) {
+					idle.add(entry);
+				}
+			}
+			idle.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+			for (Entry entry : idle) {
+				if (entries.size() <= maxOpen) {
+					break;
+				}
+				evict(entry);
+			}
+			int open = entries.size();
+			if (open > maxOpen) {
+				overflows.incrementAndGet();
+				log.log(Level.WARNING,
+						"Referenced GeoPackages exceed the max open, open: "
+								+ open + ", max open: " + maxOpen);
+			}
+		}
+	}
+
+	/**
+	 * Close the GeoPackage if it has no references
+	 *
+	 * @param entry
+	 *            entry
+	 * @return true if closed
+	 */
+	private boolean evict(Entry entry) {
+		boolean evicted = entry.references.compareAndSet(0, -1);
+		if (evicted) {
+			closeEntry(entry);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Remove the closed entry and close its GeoPackage
+	 *
+	 * @param entry
+	 *            closed entry
+	 */
+	private void closeEntry(Entry entry) {
+		removeEntry(entry);
+		GeoPackage geoPackage = entry.geoPackage;
+		if (geoPackage != null) {
+			try {
+				geoPackage.close();
+			} catch (RuntimeException e) {
+				log.log(Level.WARNING,
+						"Failed to close GeoPackage: " + entry.path, e);
+			}
+			closes.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Remove the closed entry and its cached canonical paths
+	 *
+	 * @param entry
+	 *            closed entry
+	 */
+	private void removeEntry(Entry entry) {
+		if (entries.remove(entry.path, entry)) {
+			canonicalPaths.values().removeIf(entry.path::equals);
+		}
+	}
+
+	/**
+	 * Close idle GeoPackages from the eviction thread, logging failures
+	 */
+	private void evictIdleQuietly() {
+		try {
+			evictIdle();
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Failed to close idle GeoPackages", e);
+		}
+	}
+
+	/**
+	 * Get the canonical path of the file, cached by requested path
+	 *
+	 * @param file
+	 *            file
+	 * @return canonical path
+	 */
+	private String canonicalPath(File file) {
+		return canonicalPaths.computeIfAbsent(file.getPath(),
+				path -> resolvePath(file));
+	}
+
+	/**
+	 * Get the canonical path of the file without caching it
+	 *
+	 * @param file
+	 *            file
+	 * @return canonical path
+	 */
+	private String lookupPath(File file) {
+		String path = canonicalPaths.get(file.getPath());
+		if (path == null) {
+			path = resolvePath(file);
+		}
+		return path;
+	}
+
+	/**
+	 * Resolve the canonical path of the file
+	 *
+	 * @param file
+	 *            file
+	 * @return canonical path, or absolute path when not resolvable
+	 */
+	private static String resolvePath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Open the GeoPackage
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @return GeoPackage
+	 */
+	private GeoPackage openGeoPackage(File file) {
+		GeoPackageOpenOptions openOptions = options != null ? options
+				: new GeoPackageOpenOptions();
+		return GeoPackageManager.open(file.getName(), file, openOptions);
+	}
+
+	/**
+	 * Registry entry of a GeoPackage and its references
+	 */
+	private class Entry {
+
+		/**
+		 * Canonical path
+		 */
+		private final String path;
+
+		/**
+		 * Reference count, -1 once closed
+		 */
+		private final AtomicInteger references = new AtomicInteger();
+
+		/**
+		 * GeoPackage, null until opened
+		 */
+		private volatile GeoPackage geoPackage;
+
+		/**
+		 * Shared GeoPackage handed out by handles, null until opened
+		 */
+		private volatile GeoPackage shared;
+
+		/**
+		 * Last access time in nanoseconds
+		 */
+		private volatile long lastAccess = System.nanoTime();
+
+		/**
+		 * Constructor
+		 *
+		 * @param path
+		 *            canonical path
+		 */
+		private Entry(String path) {
+			this.path = path;
+		}
+
+		/**
+		 * Add a reference unless closed
+		 *
+		 * @return true if retained
+		 */
+		private boolean retain() {
+			int count;
+			do {
+				count = references.get();
+				if (count < 0) {
+					return false;
+				}
+			} while (!references.compareAndSet(count, count + 1));
+			return true;
+		}
+
+		/**
+		 * Remove a reference
+		 */
+		private void release() {
+			lastAccess = System.nanoTime();
+			references.decrementAndGet();
+		}
+
+		/**
+		 * Open the GeoPackage if not yet open
+		 *
+		 * @param file
+		 *            GeoPackage file
+		 * @return true if opened, false if already open, null if closed
+		 */
+		private Boolean open(File file) {
+			Boolean opened = false;
+			if (geoPackage == null) {
+				synchronized (this) {
+					if (references.get() < 0) {
+						return null;
+					}
+					if (geoPackage == null) {
+						GeoPackage opening = openGeoPackage(file);
+						shared = SharedGeoPackage.create(opening);
+						geoPackage = opening;
+						opened = true;
+					}
+				}
+			}
+			lastAccess = System.nanoTime();
+			return opened;
+		}
+
+	}
+
+	/**
+	 * Acquired reference to a shared GeoPackage, closed to release the
+	 * reference
+	 */
+	public static class Handle implements Closeable {
+
+		/**
+		 * Registry entry
+		 */
+		private final Entry entry;
+
+		/**
+		 * Released flag
+		 */
+		private volatile boolean released = false;
+
+		/**
+		 * Constructor
+		 *
+		 * @param entry
+		 *            registry entry
+		 */
+		private Handle(Entry entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * Get the shared GeoPackage. The GeoPackage can not be closed
+		 * directly, close the handle to release it.
+		 *
+		 * @return GeoPackage
+		 */
+		public GeoPackage getGeoPackage() {
+			if (released) {
+				throw new GeoPackageException(
+						"GeoPackage handle is released: " + entry.path);
+			}
+			return entry.shared;
+		}
+
+		/**
+		 * Get the canonical path of the GeoPackage file
+		 *
+		 * @return path
+		 */
+		public String getPath() {
+			return entry.path;
+		}
+
+		/**
+		 * Release the reference, leaving the GeoPackage open for reuse
+		 */
+		@Override
+		public synchronized void close() {
+			if (!released) {
+				released = true;
+				entry.release();
+			}
+		}
+
+	}
+
+	/**
+	 * Shared GeoPackage delegating to the registry opened GeoPackage,
+	 * rejecting direct closes
+	 */
+	private static class SharedGeoPackage implements InvocationHandler {
+
+		/**
+		 * Create a shared GeoPackage
+		 *
+		 * @param geoPackage
+		 *            registry opened GeoPackage
+		 * @return shared GeoPackage
+		 */
+		private static GeoPackage create(GeoPackage geoPackage) {
+			return (GeoPackage) Proxy.newProxyInstance(
+					GeoPackage.class.getClassLoader(),
+					new Class<?>[] { GeoPackage.class },
+					new SharedGeoPackage(geoPackage));
+		}
+
+		/**
+		 * Registry opened GeoPackage
+		 */
+		private final GeoPackage geoPackage;
+
+		/**
+		 * Constructor
+		 *
+		 * @param geoPackage
+		 *            registry opened GeoPackage
+		 */
+		private SharedGeoPackage(GeoPackage geoPackage) {
+			this.geoPackage = geoPackage;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			if (method.getName().equals("close")
+					&& method.getParameterCount() == 0) {
+				throw new GeoPackageException(
+						"Shared GeoPackage can not be closed, close the registry handle instead: "
+								+ geoPackage.getName());
+			}
+			try {
+				return method.invoke(geoPackage, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+package mil.nga.geopackage.db;
+
+/**
+ * Aggregate function of a column, computed with other aggregates in a single
+ * pass aggregate query
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class Aggregate {
+
+	/**
+	 * Aggregate function
+	 */
+	private final AggregateFunction function;
+
+	/**
+	 * Column name, null to count rows
+	 */
+	private final String column;
+
+	/**
+	 * Create a count of rows
+	 *
+	 * @return aggregate
+	 */
+	public static Aggregate count() {
+		return new Aggregate(AggregateFunction.COUNT, null);
+	}
+
+	/**
+	 * Create a count of non null column values
+	 *
+	 * @param column
+	 *            column name
+	 * @return aggregate
+	 */
+	public static Aggregate count(String column) {
+		return new Aggregate(AggregateFunction.COUNT, column);
+	}
+
+	/**
+	 * Create a minimum column value
+	 *
+	 * @param column
+	 *            column name
+	 * @return aggregate
+	 */
+	public static Aggregate min(String column) {
+		return new Aggregate(AggregateFunction.MIN, column);
+	}
+
+	/**
+	 * Create a maximum column value
+	 *
+	 * @param column
+	 *            column name
+	 * @return aggregate
+	 */
+	public static Aggregate max(String column) {
+		return new Aggregate(AggregateFunction.MAX, column);
+	}
+
+	/**
+	 * Create a sum of the column values
+	 *
+	 * @param column
+	 *            column name
+	 * @return aggregate
+	 */
+	public static Aggregate sum(String column) {
+		return new Aggregate(AggregateFunction.SUM, column);
+	}
+
+	/**
+	 * Create an average of the column values
+	 *
+	 * @param column
+	 *            column name
+	 * @return aggregate
+	 */
+	public static Aggregate avg(String column) {
+		return new Aggregate(AggregateFunction.AVG, column);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param function
+	 *            aggregate function
+	 * @param column
+	 *            column name, null only to count rows
+	 */
+	public Aggregate(AggregateFunction function, String column) {
+		if (column == null && function != AggregateFunction.COUNT) {
+			throw new IllegalArgumentException(
+					"Column is required for aggregate function: " + function);
+		}
+		this.function = function;
+		this.column = column;
+	}
+
+	/**
+	 * Get the aggregate function
+	 *
+	 * @return function
+	 */
+	public AggregateFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * Get the column name
+	 *
+	 * @return column name, null when counting rows
+	 */
+	public String getColumn() {
+		return column;
+	}
+
+	/**
+	 * Get the result data type, null when the type of the column value
+	 *
+	 * @return data type or null
+	 */
+	public GeoPackageDataType getDataType() {
+		GeoPackageDataType dataType = null;
+		switch (function) {
+		case COUNT:
+			dataType = GeoPackageDataType.INTEGER;
+			break;
+		case AVG:
+			dataType = GeoPackageDataType.DOUBLE;
+			break;
+		default:
+		}
+		return dataType;
+	}
+
+	/**
+	 * Build the aggregate SQL expression
+	 *
+	 * @return SQL expression
+	 */
+	public String buildSql() {
+		StringBuilder sql = new StringBuilder();
+		sql.append(function.name().toLowerCase()).append("(");
+		if (column != null) {
+			sql.append(CoreSQLUtils.quoteWrap(column));
+		} else {
+			sql.append("*");
+		}
+		sql.append(")");
+		return sql.toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((column == null) ? 0 : column.hashCode());
+		result = prime * result + function.hashCode();
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		Aggregate other = (Aggregate) obj;
+		return function == other.function && (column == null
+				? other.column == null : column.equals(other.column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return buildSql();
+	}
+
+}
@@ -0,0 +1,36 @@
+package mil.nga.geopackage.db;
+
+/**
+ * SQL aggregate functions computed by a single pass aggregate query
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public enum AggregateFunction {
+
+	/**
+	 * Count of rows, or of non null column values
+	 */
+	COUNT,
+
+	/**
+	 * Minimum column value
+	 */
+	MIN,
+
+	/**
+	 * Maximum column value
+	 */
+	MAX,
+
+	/**
+	 * Sum of the column values
+	 */
+	SUM,
+
+	/**
+	 * Average of the column values
+	 */
+	AVG;
+
+}
@@ -0,0 +1,147 @@
+package mil.nga.geopackage.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a single pass aggregate query, in the order of the aggregates.
+ * Counts are longs, averages are doubles and min, max and sum values have the
+ * type of the column values. Aggregates other than counts are null when no
+ * rows or non null values matched.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class AggregateResult {
+
+	/**
+	 * Aggregates
+	 */
+	private final List<Aggregate> aggregates;
+
+	/**
+	 * Values in the aggregate order
+	 */
+	private final List<Object> values;
+
+	/**
+	 * Constructor
+	 *
+	 * @param aggregates
+	 *            aggregates
+	 * @param values
+	 *            values in the aggregate order
+	 */
+	public AggregateResult(Aggregate[] aggregates, List<Object> values) {
+		this.aggregates = Collections.unmodifiableList(Arrays
+				.asList(aggregates));
+		this.values = Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * Get the aggregates
+	 *
+	 * @return aggregates
+	 */
+	public List<Aggregate> getAggregates() {
+		return aggregates;
+	}
+
+	/**
+	 * Get the values in the aggregate order
+	 *
+	 * @return values
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * Get the value at the aggregate index
+	 *
+	 * @param index
+	 *            aggregate index
+	 * @return value or null
+	 */
+	public Object getValue(int index) {
+		return values.get(index);
+	}
+
+	/**
+	 * Get the value of the aggregate
+	 *
+	 * @param aggregate
+	 *            aggregate
+	 * @return value or null
+	 */
+	public Object getValue(Aggregate aggregate) {
+		int index = aggregates.indexOf(aggregate);
+		if (index == -1) {
+			throw new IllegalArgumentException(
+					"Aggregate not in the result: " + aggregate);
+		}
+		return values.get(index);
+	}
+
+	/**
+	 * Get the value of the aggregate as a long
+	 *
+	 * @param aggregate
+	 *            aggregate
+	 * @return long value or null
+	 */
+	public Long getLong(Aggregate aggregate) {
+		Number number = (Number) getValue(aggregate);
+		return number != null ? number.longValue() : null;
+	}
+
+	/**
+	 * Get the value of the aggregate as an integer
+	 *
+	 * @param aggregate
+	 *            aggregate
+	 * @return integer value or null
+	 */
+	public Integer getInteger(Aggregate aggregate) {
+		Number number = (Number) getValue(aggregate);
+		return number != null ? number.intValue() : null;
+	}
+
+	/**
+	 * Get the value of the aggregate as a double
+	 *
+	 * @param aggregate
+	 *            aggregate
+	 * @return double value or null
+	 */
+	public Double getDouble(Aggregate aggregate) {
+		Number number = (Number) getValue(aggregate);
+		return number != null ? number.doubleValue() : null;
+	}
+
+	/**
+	 * Get the row count when counted
+	 *
+	 * @return row count
+	 */
+	public long getCount() {
+		return getLong(Aggregate.count());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder();
+		for (int i = 0; i < aggregates.size(); i++) {
+			if (i > 0) {
+				string.append(", ");
+			}
+			string.append(aggregates.get(i)).append("=").append(values.get(i));
+		}
+		return string.toString();
+	}
+
+}
@@ -40,6 +40,37 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	private Boolean autoCommit = null;
 
+	/**
+	 * Optional pool of read only connections
+	 */
+	private GeoPackageConnectionPool readerPool = null;
+
+	/**
+	 * Prepared statement cache for writer connection inserts, updates and
+	 * deletes
+	 */
+	private final PreparedStatementCache statementCache;
+
+	/**
+	 * Query metrics, null when disabled
+	 */
+	private QueryMetrics metrics = null;
+
+	/**
+	 * Slow query log, null when disabled
+	 */
+	private volatile SlowQueryLog slowQueryLog = null;
+
+	/**
+	 * Read only flag, rejecting writes
+	 */
+	private volatile boolean readOnly = false;
+
+	/**
+	 * In-memory replica, null when not an in-memory replica
+	 */
+	private volatile GeoPackageMemoryReplica replica = null;
+
 	/**
 	 * Constructor
 	 *
@@ -55,6 +86,7 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 		super(connectionSource);
 		this.file = file;
 		this.connection = connection;
+		this.statementCache = new PreparedStatementCache(connection);
 	}
 
 	/**
@@ -66,6 +98,328 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 		return connection;
 	}
 
+	/**
+	 * Get the GeoPackage file
+	 *
+	 * @return file
+	 * @since 3.4.1
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the in-memory replica
+	 *
+	 * @return replica or null when not an in-memory replica
+	 * @since 3.4.1
+	 */
+	public GeoPackageMemoryReplica getReplica() {
+		return replica;
+	}
+
+	/**
+	 * Set the in-memory replica, closed with the connection
+	 *
+	 * @param replica
+	 *            replica
+	 * @since 3.4.1
+	 */
+	public void setReplica(GeoPackageMemoryReplica replica) {
+		this.replica = replica;
+	}
+
+	/**
+	 * Get the writer connection prepared statement cache
+	 *
+	 * @return statement cache
+	 * @since 3.4.1
+	 */
+	public PreparedStatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	/**
+	 * Get the read only connection pool
+	 *
+	 * @return reader pool or null
+	 * @since 3.4.1
+	 */
+	public GeoPackageConnectionPool getReaderPool() {
+		return readerPool;
+	}
+
+	/**
+	 * Set the read only connection pool used for reads performed outside of
+	 * a write transaction
+	 *
+	 * @param readerPool
+	 *            reader pool
+	 * @since 3.4.1
+	 */
+	public synchronized void setReaderPool(GeoPackageConnectionPool readerPool) {
+		this.readerPool = readerPool;
+		if (readerPool != null && metrics != null) {
+			readerPool.setMetrics(metrics);
+		}
+		if (readerPool != null) {
+			readerPool.setQueryTimeout(getQueryTimeout());
+		}
+	}
+
+	/**
+	 * Get the query metrics
+	 *
+	 * @return query metrics or null when disabled
+	 * @since 3.4.1
+	 */
+	public synchronized QueryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Is query metrics recording enabled
+	 *
+	 * @return true if enabled
+	 * @since 3.4.1
+	 */
+	public synchronized boolean isMetricsEnabled() {
+		return metrics != null;
+	}
+
+	/**
+	 * Enable per statement query metrics on the writer and pooled read
+	 * connections, named by the GeoPackage file name and published as an
+	 * MBean
+	 *
+	 * @return query metrics
+	 * @since 3.4.1
+	 */
+	public QueryMetrics enableMetrics() {
+		String name = file != null ? file.getName() : connection.toString();
+		return enableMetrics(name);
+	}
+
+	/**
+	 * Enable per statement query metrics on the writer and pooled read
+	 * connections, published as an MBean
+	 *
+	 * @param name
+	 *            GeoPackage name
+	 * @return query metrics
+	 * @since 3.4.1
+	 */
+	public synchronized QueryMetrics enableMetrics(String name) {
+		if (metrics == null) {
+			metrics = new QueryMetrics(name);
+			metrics.register(connection);
+			if (readerPool != null) {
+				readerPool.setMetrics(metrics);
+			}
+			metrics.registerMBean();
+		}
+		return metrics;
+	}
+
+	/**
+	 * Disable query metrics and unregister the MBean
+	 *
+	 * @since 3.4.1
+	 */
+	public synchronized void disableMetrics() {
+		if (metrics != null) {
+			if (readerPool != null) {
+				readerPool.setMetrics(null);
+			}
+			metrics.close();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Determine if reads by the calling thread should be served by a pooled
+	 * read connection. Reads by the thread within an active transaction on the
+	 * writer connection remain on the writer to see uncommitted changes, while
+	 * other threads read committed data from the pool. Transactions begun
+	 * outside of {@link SQLUtils#beginTransaction(Connection)} have no known
+	 * thread and keep all reads on the writer.
+	 *
+	 * @return true if the reader pool should be used
+	 * @since 3.4.1
+	 */
+	public boolean useReaderPool() {
+		boolean usePool = false;
+		if (readerPool != null) {
+			try {
+				usePool = connection.getAutoCommit();
+				if (!usePool) {
+					Thread transactionThread = SQLUtils
+							.getTransactionThread(connection);
+					usePool = transactionThread != null
+							&& transactionThread != Thread.currentThread();
+				}
+			} catch (SQLException e) {
+				throw new GeoPackageException(
+						"Failed to check connection auto commit mode", e);
+			}
+		}
+		return usePool;
+	}
+
+	/**
+	 * Is the connection read only, rejecting writes
+	 *
+	 * @return true if read only
+	 * @since 3.4.1
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Set the connection as read only, rejecting writes through the
+	 * connection and user DAOs
+	 *
+	 * @param readOnly
+	 *            true if read only
+	 * @since 3.4.1
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Check that the connection accepts writes
+	 *
+	 * @throws GeoPackageException
+	 *             if read only
+	 * @since 3.4.1
+	 */
+	public void checkWritable() {
+		if (readOnly) {
+			throw new GeoPackageException(
+					"Write rejected, GeoPackage is opened read only: "
+							+ file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Determine if the SQL statement is a select, explain or pragma statement.
+	 * Pragma statements change connection settings, pragma writes to a read
+	 * only database are rejected by SQLite.
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @return true if a read statement
+	 * @since 3.4.1
+	 */
+	public static boolean isReadStatement(String sql) {
+		String statement = sql.trim().toUpperCase();
+		return statement.startsWith("SELECT")
+				|| statement.startsWith("EXPLAIN")
+				|| statement.startsWith("PRAGMA");
+	}
+
+	/**
+	 * Determine if the SQL statement changes the schema: a create, alter or
+	 * drop statement or a schema version pragma write
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @return true if a schema statement
+	 * @since 3.4.1
+	 */
+	public static boolean isSchemaStatement(String sql) {
+		String statement = sql.trim().toUpperCase();
+		return statement.startsWith("CREATE")
+				|| statement.startsWith("ALTER")
+				|| statement.startsWith("DROP")
+				|| (statement.startsWith("PRAGMA")
+						&& statement.contains("SCHEMA_VERSION")
+						&& statement.contains("="));
+	}
+
+	/**
+	 * Get the slow query log
+	 *
+	 * @return slow query log or null
+	 * @since 3.4.1
+	 */
+	public SlowQueryLog getSlowQueryLog() {
+		return slowQueryLog;
+	}
+
+	/**
+	 * Set the slow query log capturing queries and query plans through
+	 * {@link #query(String, String[])} and the user DAOs exceeding its
+	 * threshold
+	 *
+	 * @param slowQueryLog
+	 *            slow query log, null to disable
+	 * @since 3.4.1
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		this.slowQueryLog = slowQueryLog;
+	}
+
+	/**
+	 * Get the query timeout
+	 *
+	 * @return timeout in milliseconds, 0 for no timeout
+	 * @since 3.4.1
+	 */
+	public long getQueryTimeout() {
+		return QueryInterruptHandler.getTimeout(connection);
+	}
+
+	/**
+	 * Set the max milliseconds a single execution step of a statement may run
+	 * on the writer and pooled read connections before being interrupted with
+	 * a {@link mil.nga.geopackage.GeoPackageQueryTimeoutException}. Use a
+	 * {@link QueryDeadline} for a per call deadline.
+	 *
+	 * @param queryTimeout
+	 *            timeout in milliseconds, 0 for no timeout
+	 * @since 3.4.1
+	 */
+	public synchronized void setQueryTimeout(long queryTimeout) {
+		QueryInterruptHandler.setTimeout(connection, queryTimeout);
+		if (readerPool != null) {
+			readerPool.setQueryTimeout(queryTimeout);
+		}
+	}
+
+	/**
+	 * Borrow a connection for reading, either a pooled read connection or the
+	 * writer connection. Release with
+	 * {@link #releaseReadConnection(Connection)}.
+	 *
+	 * @return read connection
+	 * @since 3.4.1
+	 */
+	public Connection borrowReadConnection() {
+		Connection readConnection;
+		if (useReaderPool()) {
+			readConnection = readerPool.borrow();
+		} else {
+			readConnection = connection;
+		}
+		return readConnection;
+	}
+
+	/**
+	 * Release a connection borrowed with {@link #borrowReadConnection()}
+	 *
+	 * @param readConnection
+	 *            read connection
+	 * @since 3.4.1
+	 */
+	public void releaseReadConnection(Connection readConnection) {
+		if (readConnection != connection && readerPool != null) {
+			readerPool.release(readConnection);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -79,6 +433,13 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	@Override
 	public void execSQL(String sql) {
+		if (readOnly && !isReadStatement(sql)) {
+			checkWritable();
+		}
+		// Schema changes may alter the tables of cached statements
+		if (isSchemaStatement(sql)) {
+			statementCache.clear();
+		}
 		SQLUtils.execSQL(connection, sql);
 	}
 
@@ -87,6 +448,7 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	@Override
 	public void beginTransaction() {
+		checkWritable();
 		if (autoCommit != null) {
 			throw new GeoPackageException(
 					"Failed to begin transaction, previous transaction was not ended");
@@ -128,7 +490,9 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	@Override
 	public int delete(String table, String whereClause, String[] whereArgs) {
-		return SQLUtils.delete(connection, table, whereClause, whereArgs);
+		checkWritable();
+		return SQLUtils.delete(connection, statementCache, table, whereClause,
+				whereArgs);
 	}
 
 	/**
@@ -136,7 +500,37 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	@Override
 	public int count(String table, String where, String[] args) {
-		return SQLUtils.count(connection, table, where, args);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.count(readConnection, table, where, args);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
+	}
+
+	/**
+	 * Compute the aggregates in a single pass aggregate query
+	 *
+	 * @param table
+	 *            table name
+	 * @param where
+	 *            where clause
+	 * @param args
+	 *            where arguments
+	 * @param aggregates
+	 *            aggregates
+	 * @return aggregate result
+	 * @since 3.4.1
+	 */
+	public AggregateResult aggregate(String table, String where,
+			String[] args, Aggregate... aggregates) {
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.aggregate(readConnection, table, where, args,
+					aggregates);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
@@ -145,7 +539,12 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	@Override
 	public Integer min(String table, String column, String where,
 			String[] args) {
-		return SQLUtils.min(connection, table, column, where, args);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.min(readConnection, table, column, where, args);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
@@ -154,7 +553,12 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	@Override
 	public Integer max(String table, String column, String where,
 			String[] args) {
-		return SQLUtils.max(connection, table, column, where, args);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.max(readConnection, table, column, where, args);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
@@ -162,7 +566,16 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 */
 	@Override
 	public void close() {
+		if (replica != null) {
+			replica.close();
+		}
 		super.close();
+		disableMetrics();
+		QueryInterruptHandler.setTimeout(connection, 0);
+		statementCache.close();
+		if (readerPool != null) {
+			readerPool.close();
+		}
 		try {
 			connection.close();
 		} catch (SQLException e) {
@@ -177,8 +590,13 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	@Override
 	public Object querySingleResult(String sql, String[] args, int column,
 			GeoPackageDataType dataType) {
-		return SQLUtils.querySingleResult(connection, sql, args, column,
-				dataType);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.querySingleResult(readConnection, sql, args,
+					column, dataType);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
@@ -187,8 +605,13 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	@Override
 	public List<Object> querySingleColumnResults(String sql, String[] args,
 			int column, GeoPackageDataType dataType, Integer limit) {
-		return SQLUtils.querySingleColumnResults(connection, sql, args, column,
-				dataType, limit);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.querySingleColumnResults(readConnection, sql, args,
+					column, dataType, limit);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
@@ -197,11 +620,18 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	@Override
 	public List<List<Object>> queryResults(String sql, String[] args,
 			GeoPackageDataType[] dataTypes, Integer limit) {
-		return SQLUtils.queryResults(connection, sql, args, dataTypes, limit);
+		Connection readConnection = borrowReadConnection();
+		try {
+			return SQLUtils.queryResults(readConnection, sql, args, dataTypes,
+					limit);
+		} finally {
+			releaseReadConnection(readConnection);
+		}
 	}
 
 	/**
-	 * Perform a database query
+	 * Perform a database query. A slow query log only measures the query
+	 * execution up to the first row, not the iteration of the result set.
 	 * 
 	 * @param sql
 	 *            sql statement
@@ -211,7 +641,14 @@ public class GeoPackageConnection extends GeoPackageCoreConnection {
 	 * @since 1.1.2
 	 */
 	public ResultSet query(String sql, String[] args) {
-		return SQLUtils.query(connection, sql, args);
+		SlowQueryLog slowQueryLog = this.slowQueryLog;
+		long start = slowQueryLog != null ? System.nanoTime() : 0;
+		ResultSet resultSet = SQLUtils.query(connection, sql, args);
+		if (slowQueryLog != null) {
+			slowQueryLog.check(connection, sql, args,
+					System.nanoTime() - start);
+		}
+		return resultSet;
 	}
 
 }
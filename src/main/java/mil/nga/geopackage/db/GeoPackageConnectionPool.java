@@ -0,0 +1,376 @@
+package mil.nga.geopackage.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sqlite.SQLiteConfig;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * Bounded pool of read only connections to a GeoPackage file. Connections are
+ * created on demand up to the max size and callers block when all connections
+ * are borrowed. Borrowing is reentrant per thread, a thread already holding a
+ * connection borrows the same connection again, such as a count while a
+ * query result is open. Concurrent reads alongside the single writer
+ * connection require the database to be in WAL journal mode.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageConnectionPool implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageConnectionPool.class.getName());
+
+	/**
+	 * GeoPackage file
+	 */
+	private final File file;
+
+	/**
+	 * Max number of read connections
+	 */
+	private final int maxConnections;
+
+	/**
+	 * Idle connections available to borrow
+	 */
+	private final BlockingQueue<Connection> available = new LinkedBlockingQueue<>();
+
+	/**
+	 * All created connections
+	 */
+	private final List<Connection> connections = new ArrayList<>();
+
+	/**
+	 * Borrowed connection held by each borrowing thread
+	 */
+	private final Map<Thread, Connection> heldConnections = new HashMap<>();
+
+	/**
+	 * Outstanding borrow count of each borrowed connection
+	 */
+	private final Map<Connection, Integer> borrowCounts = new IdentityHashMap<>();
+
+	/**
+	 * Open options applied to each read connection
+	 */
+	private final GeoPackageOpenOptions options;
+
+	/**
+	 * Query metrics instrumenting the read connections, null when disabled
+	 */
+	private QueryMetrics metrics;
+
+	/**
+	 * Query timeout in milliseconds of the read connections, 0 for none
+	 */
+	private long queryTimeout = 0;
+
+	/**
+	 * Closed flag
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @param maxConnections
+	 *            max number of read connections
+	 */
+	public GeoPackageConnectionPool(File file, int maxConnections) {
+		this(file, maxConnections, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @param maxConnections
+	 *            max number of read connections
+	 * @param options
+	 *            open options applied to each read connection, may be null
+	 */
+	public GeoPackageConnectionPool(File file, int maxConnections,
+			GeoPackageOpenOptions options) {
+		if (maxConnections < 1) {
+			throw new GeoPackageException(
+					"Connection pool size must be at least 1, size: "
+							+ maxConnections);
+		}
+		this.file = file;
+		this.maxConnections = maxConnections;
+		this.options = options;
+	}
+
+	/**
+	 * Get the GeoPackage file
+	 *
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the max number of read connections
+	 *
+	 * @return max connections
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Get the number of currently created read connections
+	 *
+	 * @return connection count
+	 */
+	public synchronized int getConnectionCount() {
+		return connections.size();
+	}
+
+	/**
+	 * Get the number of idle read connections
+	 *
+	 * @return idle count
+	 */
+	public int getIdleCount() {
+		return available.size();
+	}
+
+	/**
+	 * Get the query metrics instrumenting the read connections
+	 *
+	 * @return query metrics or null
+	 */
+	public synchronized QueryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the query metrics instrumenting the current and future read
+	 * connections
+	 *
+	 * @param metrics
+	 *            query metrics, null to disable
+	 */
+	public synchronized void setMetrics(QueryMetrics metrics) {
+		for (Connection connection : connections) {
+			if (this.metrics != null) {
+				this.metrics.unregister(connection);
+			}
+			if (metrics != null) {
+				metrics.register(connection);
+			}
+		}
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Get the query timeout of the read connections
+	 *
+	 * @return timeout in milliseconds, 0 for no timeout
+	 * @since 3.4.1
+	 */
+	public synchronized long getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * Set the max milliseconds a single execution step of a statement on the
+	 * current and future read connections may run before being interrupted
+	 *
+	 * @param queryTimeout
+	 *            timeout in milliseconds, 0 for no timeout
+	 * @since 3.4.1
+	 */
+	public synchronized void setQueryTimeout(long queryTimeout) {
+		this.queryTimeout = queryTimeout;
+		for (Connection connection : connections) {
+			QueryInterruptHandler.setTimeout(connection, queryTimeout);
+		}
+	}
+
+	/**
+	 * Borrow a read connection, blocking until one is available. A thread
+	 * already holding a borrowed connection borrows the same connection
+	 * without blocking. Each borrow must be returned with
+	 * {@link #release(Connection)}.
+	 *
+	 * @return read only connection
+	 */
+	public Connection borrow() {
+
+		if (closed) {
+			throw new GeoPackageException(
+					"Connection pool is closed: " + file.getAbsolutePath());
+		}
+
+		Thread thread = Thread.currentThread();
+		synchronized (this) {
+			Connection held = heldConnections.get(thread);
+			if (held != null) {
+				borrowCounts.put(held, borrowCounts.get(held) + 1);
+				return held;
+			}
+		}
+
+		Connection connection = available.poll();
+
+		if (connection == null) {
+			connection = createIfAvailable();
+		}
+
+		if (connection == null) {
+			try {
+				connection = available.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GeoPackageException(
+						"Interrupted waiting for a read connection to: "
+								+ file.getAbsolutePath(),
+						e);
+			}
+		}
+
+		synchronized (this) {
+			heldConnections.put(thread, connection);
+			borrowCounts.put(connection, 1);
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Return a borrowed read connection to the pool, the connection becomes
+	 * available once each reentrant borrow is released
+	 *
+	 * @param connection
+	 *            borrowed connection
+	 */
+	public void release(Connection connection) {
+		if (connection != null) {
+			synchronized (this) {
+				Integer count = borrowCounts.get(connection);
+				if (count != null && count > 1) {
+					borrowCounts.put(connection, count - 1);
+					return;
+				}
+				borrowCounts.remove(connection);
+				heldConnections.values().remove(connection);
+			}
+			if (closed) {
+				closeConnection(connection);
+			} else {
+				available.offer(connection);
+			}
+		}
+	}
+
+	/**
+	 * Create a new read connection if the pool has not reached the max size
+	 *
+	 * @return new connection or null
+	 */
+	private synchronized Connection createIfAvailable() {
+		Connection connection = null;
+		if (connections.size() < maxConnections) {
+			connection = createConnection();
+			connections.add(connection);
+			if (metrics != null) {
+				metrics.register(connection);
+			}
+			QueryInterruptHandler.setTimeout(connection, queryTimeout);
+		}
+		return connection;
+	}
+
+	/**
+	 * Create a read only connection to the GeoPackage file
+	 *
+	 * @return connection
+	 */
+	protected Connection createConnection() {
+		SQLiteConfig config = options != null ? options.buildConfig()
+				: new SQLiteConfig();
+		config.setReadOnly(true);
+		Connection connection;
+		try {
+			String url = options != null ? options.buildUrl(file)
+					: "jdbc:sqlite:" + file.getPath();
+			connection = DriverManager.getConnection(url,
+					config.toProperties());
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to get read connection to the SQLite file: "
+							+ file.getAbsolutePath(),
+					e);
+		}
+		if (options != null) {
+			try {
+				for (String pragma : options.buildReaderPragmas()) {
+					SQLUtils.execSQL(connection, pragma);
+				}
+			} catch (RuntimeException e) {
+				closeConnection(connection);
+				throw e;
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Close the connection
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	private void closeConnection(Connection connection) {
+		QueryMetrics metrics = getMetrics();
+		if (metrics != null) {
+			metrics.unregister(connection);
+		}
+		QueryInterruptHandler.setTimeout(connection, 0);
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.log(Level.WARNING, "Failed to close GeoPackage read connection to: "
+					+ file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Close all pooled connections. Borrowed connections are closed when
+	 * released.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		Connection connection;
+		while ((connection = available.poll()) != null) {
+			closeConnection(connection);
+		}
+		connections.clear();
+	}
+
+}
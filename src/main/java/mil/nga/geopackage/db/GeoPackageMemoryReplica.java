@@ -0,0 +1,229 @@
+package mil.nga.geopackage.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory replica of a GeoPackage file. The file is loaded into an
+ * in-memory database connection so reads never touch the file system. When a
+ * refresh interval is set, a background thread reloads the database in place
+ * when the file or its write-ahead log changes, keeping existing DAOs valid. A
+ * reload replaces any changes written to the in-memory database.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageMemoryReplica implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageMemoryReplica.class.getName());
+
+	/**
+	 * Refresh thread number
+	 */
+	private static final AtomicLong threadNumber = new AtomicLong();
+
+	/**
+	 * GeoPackage file
+	 */
+	private final File file;
+
+	/**
+	 * In-memory database connection
+	 */
+	private final Connection connection;
+
+	/**
+	 * Refresh check interval in milliseconds, 0 when not refreshing
+	 */
+	private final long refreshInterval;
+
+	/**
+	 * Background refresh executor, null when not refreshing
+	 */
+	private final ScheduledExecutorService refresher;
+
+	/**
+	 * Write-ahead log file of the GeoPackage file
+	 */
+	private final File walFile;
+
+	/**
+	 * File modified time of the loaded database
+	 */
+	private volatile long lastModified;
+
+	/**
+	 * File and write-ahead log state of the loaded database
+	 */
+	private volatile long[] loadedState;
+
+	/**
+	 * Number of reloads since the initial load
+	 */
+	private final AtomicLong refreshes = new AtomicLong();
+
+	/**
+	 * Constructor, loading the file into the in-memory database
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @param connection
+	 *            in-memory database connection
+	 * @param refreshInterval
+	 *            refresh check interval in milliseconds, 0 to not refresh
+	 */
+	public GeoPackageMemoryReplica(File file, Connection connection,
+			long refreshInterval) {
+		this.file = file;
+		this.walFile = new File(file.getPath() + "-wal");
+		this.connection = connection;
+		this.refreshInterval = refreshInterval;
+		load();
+		if (refreshInterval > 0) {
+			refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable,
+						"geopackage-replica-refresh-"
+								+ threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			refresher.scheduleWithFixedDelay(this::refreshQuietly,
+					refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		} else {
+			refresher = null;
+		}
+	}
+
+	/**
+	 * Get the GeoPackage file
+	 *
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the in-memory database connection
+	 *
+	 * @return connection
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Get the refresh check interval
+	 *
+	 * @return refresh interval in milliseconds, 0 when not refreshing
+	 */
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * Get the file modified time of the loaded database
+	 *
+	 * @return modified time in milliseconds
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Get the number of reloads since the initial load
+	 *
+	 * @return refreshes
+	 */
+	public long getRefreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * Determine if the file or its write-ahead log has been modified since it
+	 * was loaded. Commits in WAL journal mode only reach the main file on a
+	 * checkpoint, so the write-ahead log is checked as well.
+	 *
+	 * @return true if modified
+	 */
+	public boolean isModified() {
+		return !Arrays.equals(fileState(), loadedState);
+	}
+
+	/**
+	 * Reload the database when the file has been modified since it was
+	 * loaded
+	 *
+	 * @return true if reloaded
+	 */
+	public synchronized boolean refresh() {
+		boolean refreshed = false;
+		if (isModified()) {
+			load();
+			refreshes.incrementAndGet();
+			refreshed = true;
+		}
+		return refreshed;
+	}
+
+	/**
+	 * Stop refreshing
+	 */
+	@Override
+	public void close() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	/**
+	 * Load the file into the in-memory database
+	 */
+	private synchronized void load() {
+		// Read the file state first so changes during the load are picked up
+		// by the next refresh
+		long[] state = fileState();
+		GeoPackageSnapshot.restore(connection, file);
+		loadedState = state;
+		lastModified = state[0];
+	}
+
+	/**
+	 * Get the modified times and lengths of the file and its write-ahead log
+	 *
+	 * @return file state
+	 */
+	private long[] fileState() {
+		return new long[] { file.lastModified(), file.length(),
+				walFile.lastModified(), walFile.length() };
+	}
+
+	/**
+	 * Refresh from the background thread, logging failures to retry on the
+	 * next interval
+	 */
+	private void refreshQuietly() {
+		try {
+			if (refresh()) {
+				log.log(Level.FINE, "Refreshed in-memory GeoPackage: "
+						+ file.getAbsolutePath());
+			}
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Failed to refresh in-memory GeoPackage: "
+					+ file.getAbsolutePath(), e);
+		}
+	}
+
+}
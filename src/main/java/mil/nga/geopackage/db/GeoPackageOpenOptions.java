@@ -0,0 +1,667 @@
+package mil.nga.geopackage.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.LockingMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.sqlite.SQLiteConfig.TempStore;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * GeoPackage create and open options. Configures SQLite connection pragmas
+ * applied when the connection is opened, before any DAOs are created. Null
+ * pragma values are left at the SQLite defaults.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageOpenOptions {
+
+	/**
+	 * Bulk load page cache size in KiB (negative pragma value), 256 MiB
+	 */
+	public static final int BULK_LOAD_CACHE_SIZE = -262144;
+
+	/**
+	 * Read serving page cache size in KiB (negative pragma value), 64 MiB
+	 */
+	public static final int READ_SERVING_CACHE_SIZE = -65536;
+
+	/**
+	 * Read serving memory map size in bytes, 1 GiB
+	 */
+	public static final long READ_SERVING_MMAP_SIZE = 1073741824L;
+
+	/**
+	 * Immutable memory map size in bytes, the SQLite default max of just
+	 * under 2 GiB
+	 */
+	public static final long IMMUTABLE_MMAP_SIZE = 0x7fff0000L;
+
+	/**
+	 * Profile the options were created from
+	 */
+	private final GeoPackageOpenProfile profile;
+
+	/**
+	 * Validate the GeoPackage on open
+	 */
+	private boolean validate = true;
+
+	/**
+	 * Max number of pooled read connections, 0 for none
+	 */
+	private int readConnections = 0;
+
+	/**
+	 * Journal mode
+	 */
+	private JournalMode journalMode;
+
+	/**
+	 * Synchronous mode
+	 */
+	private SynchronousMode synchronous;
+
+	/**
+	 * Page cache size, positive for pages or negative for KiB
+	 */
+	private Integer cacheSize;
+
+	/**
+	 * Memory map size in bytes
+	 */
+	private Long mmapSize;
+
+	/**
+	 * Temp store location
+	 */
+	private TempStore tempStore;
+
+	/**
+	 * Page size in bytes, only applied to new databases
+	 */
+	private Integer pageSize;
+
+	/**
+	 * Locking mode
+	 */
+	private LockingMode lockingMode;
+
+	/**
+	 * Query only flag, preventing all changes to the database file
+	 */
+	private Boolean queryOnly;
+
+	/**
+	 * Shared cache open flag
+	 */
+	private boolean sharedCache = false;
+
+	/**
+	 * Read only flag
+	 */
+	private boolean readOnly = false;
+
+	/**
+	 * Immutable file flag
+	 */
+	private boolean immutable = false;
+
+	/**
+	 * Per statement query metrics flag
+	 */
+	private boolean metrics = false;
+
+	/**
+	 * Slow query log threshold in milliseconds
+	 */
+	private Long slowQueryThreshold;
+
+	/**
+	 * Query timeout in milliseconds, 0 for no timeout
+	 */
+	private long queryTimeout = 0;
+
+	/**
+	 * Constructor with SQLite defaults
+	 */
+	public GeoPackageOpenOptions() {
+		this(GeoPackageOpenProfile.DEFAULT);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param profile
+	 *            open profile
+	 */
+	public GeoPackageOpenOptions(GeoPackageOpenProfile profile) {
+		this.profile = profile;
+		switch (profile) {
+		case DEFAULT:
+			break;
+		case BULK_LOAD:
+			journalMode = JournalMode.WAL;
+			synchronous = SynchronousMode.OFF;
+			cacheSize = BULK_LOAD_CACHE_SIZE;
+			tempStore = TempStore.MEMORY;
+			lockingMode = LockingMode.EXCLUSIVE;
+			break;
+		case READ_SERVING:
+			queryOnly = true;
+			mmapSize = READ_SERVING_MMAP_SIZE;
+			cacheSize = READ_SERVING_CACHE_SIZE;
+			tempStore = TempStore.MEMORY;
+			sharedCache = true;
+			break;
+		case IMMUTABLE:
+			readOnly = true;
+			immutable = true;
+			mmapSize = IMMUTABLE_MMAP_SIZE;
+			cacheSize = READ_SERVING_CACHE_SIZE;
+			tempStore = TempStore.MEMORY;
+			break;
+		default:
+			throw new GeoPackageException(
+					"Unsupported open profile: " + profile);
+		}
+	}
+
+	/**
+	 * Get the profile the options were created from
+	 *
+	 * @return profile
+	 */
+	public GeoPackageOpenProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Is the GeoPackage validated on open
+	 *
+	 * @return true if validated
+	 */
+	public boolean isValidate() {
+		return validate;
+	}
+
+	/**
+	 * Set if the GeoPackage is validated on open
+	 *
+	 * @param validate
+	 *            true to validate
+	 */
+	public void setValidate(boolean validate) {
+		this.validate = validate;
+	}
+
+	/**
+	 * Get the max number of pooled read connections
+	 *
+	 * @return read connections, 0 for none
+	 */
+	public int getReadConnections() {
+		return readConnections;
+	}
+
+	/**
+	 * Set the max number of pooled read connections. Pooled reads require WAL
+	 * journal mode, which is enabled when not otherwise set.
+	 *
+	 * @param readConnections
+	 *            read connections, 0 for none
+	 */
+	public void setReadConnections(int readConnections) {
+		this.readConnections = readConnections;
+	}
+
+	/**
+	 * Get the journal mode
+	 *
+	 * @return journal mode
+	 */
+	public JournalMode getJournalMode() {
+		return journalMode;
+	}
+
+	/**
+	 * Set the journal mode
+	 *
+	 * @param journalMode
+	 *            journal mode
+	 */
+	public void setJournalMode(JournalMode journalMode) {
+		this.journalMode = journalMode;
+	}
+
+	/**
+	 * Get the synchronous mode
+	 *
+	 * @return synchronous mode
+	 */
+	public SynchronousMode getSynchronous() {
+		return synchronous;
+	}
+
+	/**
+	 * Set the synchronous mode
+	 *
+	 * @param synchronous
+	 *            synchronous mode
+	 */
+	public void setSynchronous(SynchronousMode synchronous) {
+		this.synchronous = synchronous;
+	}
+
+	/**
+	 * Get the page cache size
+	 *
+	 * @return cache size, positive for pages or negative for KiB
+	 */
+	public Integer getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Set the page cache size
+	 *
+	 * @param cacheSize
+	 *            cache size, positive for pages or negative for KiB
+	 */
+	public void setCacheSize(Integer cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Get the memory map size
+	 *
+	 * @return mmap size in bytes
+	 */
+	public Long getMmapSize() {
+		return mmapSize;
+	}
+
+	/**
+	 * Set the memory map size
+	 *
+	 * @param mmapSize
+	 *            mmap size in bytes
+	 */
+	public void setMmapSize(Long mmapSize) {
+		this.mmapSize = mmapSize;
+	}
+
+	/**
+	 * Get the temp store location
+	 *
+	 * @return temp store
+	 */
+	public TempStore getTempStore() {
+		return tempStore;
+	}
+
+	/**
+	 * Set the temp store location
+	 *
+	 * @param tempStore
+	 *            temp store
+	 */
+	public void setTempStore(TempStore tempStore) {
+		this.tempStore = tempStore;
+	}
+
+	/**
+	 * Get the page size
+	 *
+	 * @return page size in bytes
+	 */
+	public Integer getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Set the page size, only applied when creating a GeoPackage
+	 *
+	 * @param pageSize
+	 *            page size in bytes
+	 */
+	public void setPageSize(Integer pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Get the locking mode
+	 *
+	 * @return locking mode
+	 */
+	public LockingMode getLockingMode() {
+		return lockingMode;
+	}
+
+	/**
+	 * Set the locking mode
+	 *
+	 * @param lockingMode
+	 *            locking mode
+	 */
+	public void setLockingMode(LockingMode lockingMode) {
+		this.lockingMode = lockingMode;
+	}
+
+	/**
+	 * Get the query only flag
+	 *
+	 * @return query only
+	 */
+	public Boolean getQueryOnly() {
+		return queryOnly;
+	}
+
+	/**
+	 * Set the query only flag
+	 *
+	 * @param queryOnly
+	 *            true to prevent all changes to the database file
+	 */
+	public void setQueryOnly(Boolean queryOnly) {
+		this.queryOnly = queryOnly;
+	}
+
+	/**
+	 * Is the shared cache enabled
+	 *
+	 * @return true if shared cache
+	 */
+	public boolean isSharedCache() {
+		return sharedCache;
+	}
+
+	/**
+	 * Set the shared cache open flag
+	 *
+	 * @param sharedCache
+	 *            true for shared cache
+	 */
+	public void setSharedCache(boolean sharedCache) {
+		this.sharedCache = sharedCache;
+	}
+
+	/**
+	 * Is the GeoPackage opened read only, rejecting writes
+	 *
+	 * @return true if read only
+	 */
+	public boolean isReadOnly() {
+		return readOnly || immutable;
+	}
+
+	/**
+	 * Set if the GeoPackage is opened read only, rejecting writes
+	 *
+	 * @param readOnly
+	 *            true if read only
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Is the GeoPackage file opened as immutable
+	 *
+	 * @return true if immutable
+	 */
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	/**
+	 * Set if the GeoPackage file is opened as immutable (immutable=1), which
+	 * implies read only. SQLite skips all locking and change detection, so
+	 * the file must not be modified by any process while open.
+	 *
+	 * @param immutable
+	 *            true if immutable
+	 */
+	public void setImmutable(boolean immutable) {
+		this.immutable = immutable;
+	}
+
+	/**
+	 * Is per statement query metrics recording enabled
+	 *
+	 * @return true if metrics are enabled
+	 */
+	public boolean isMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set if per statement query metrics are recorded and published as an
+	 * MBean, off by default
+	 *
+	 * @param metrics
+	 *            true to enable metrics
+	 */
+	public void setMetrics(boolean metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Get the slow query log threshold in milliseconds
+	 *
+	 * @return threshold milliseconds or null when not logging slow queries
+	 */
+	public Long getSlowQueryThreshold() {
+		return slowQueryThreshold;
+	}
+
+	/**
+	 * Set the slow query log threshold in milliseconds, queries reaching the
+	 * threshold are logged with their query plan
+	 *
+	 * @param slowQueryThreshold
+	 *            threshold milliseconds, null to not log slow queries
+	 */
+	public void setSlowQueryThreshold(Long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	/**
+	 * Get the query timeout in milliseconds
+	 *
+	 * @return timeout milliseconds, 0 for no timeout
+	 */
+	public long getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * Set the max milliseconds a single execution step of a statement may run
+	 * before being interrupted
+	 *
+	 * @param queryTimeout
+	 *            timeout milliseconds, 0 for no timeout
+	 */
+	public void setQueryTimeout(long queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * Is exclusive locking mode set
+	 *
+	 * @return true if exclusive locking
+	 */
+	public boolean isExclusiveLocking() {
+		return lockingMode == LockingMode.EXCLUSIVE;
+	}
+
+	/**
+	 * Validate the combination of options
+	 */
+	public void validate() {
+		if (readConnections > 0) {
+			if (isExclusiveLocking()) {
+				throw new GeoPackageException(
+						"Pooled read connections are not supported with exclusive locking");
+			}
+			if (journalMode != null && journalMode != JournalMode.WAL) {
+				throw new GeoPackageException(
+						"Pooled read connections require WAL journal mode, journal mode: "
+								+ journalMode);
+			}
+		}
+		if (isReadOnly() && journalMode != null) {
+			throw new GeoPackageException(
+					"Journal mode can not be changed on a read only GeoPackage, journal mode: "
+							+ journalMode);
+		}
+	}
+
+	/**
+	 * Build the SQLite config containing the connection open flags
+	 *
+	 * @return SQLite config
+	 */
+	public SQLiteConfig buildConfig() {
+		SQLiteConfig config = new SQLiteConfig();
+		if (sharedCache) {
+			config.setSharedCache(true);
+		}
+		if (isReadOnly()) {
+			config.setReadOnly(true);
+		}
+		return config;
+	}
+
+	/**
+	 * Build the JDBC URL of the GeoPackage file, a URI filename with the
+	 * immutable parameter when immutable
+	 *
+	 * @param file
+	 *            GeoPackage file
+	 * @return JDBC URL
+	 */
+	public String buildUrl(File file) {
+		String url;
+		if (immutable) {
+			url = "jdbc:sqlite:file:"
+					+ file.getAbsoluteFile().toURI().getRawPath()
+					+ "?immutable=1";
+		} else {
+			url = "jdbc:sqlite:" + file.getPath();
+		}
+		return url;
+	}
+
+	/**
+	 * Build the ordered pragma statements for the writer connection. The page
+	 * size is set first as it must precede the journal mode for new
+	 * databases. Query only is not applied when creating.
+	 *
+	 * @param create
+	 *            true when creating a new GeoPackage
+	 * @return pragma statements
+	 */
+	public List<String> buildPragmas(boolean create) {
+		List<String> pragmas = new ArrayList<>();
+		if (create && pageSize != null) {
+			pragmas.add(pragma("page_size", pageSize));
+		}
+		if (lockingMode != null) {
+			pragmas.add(pragma("locking_mode", lockingMode.getValue()));
+		}
+		JournalMode journalMode = buildJournalMode();
+		if (journalMode != null) {
+			pragmas.add(pragma("journal_mode", journalMode.getValue()));
+		}
+		if (synchronous != null) {
+			pragmas.add(pragma("synchronous", synchronous.getValue()));
+		}
+		addConnectionPragmas(pragmas, !create);
+		return pragmas;
+	}
+
+	/**
+	 * Build the journal mode applied to the writer connection, the set
+	 * journal mode or WAL when pooled read connections are used
+	 *
+	 * @return journal mode, null to leave the SQLite default
+	 */
+	public JournalMode buildJournalMode() {
+		JournalMode mode = journalMode;
+		if (mode == null && readConnections > 0 && !isReadOnly()) {
+			mode = JournalMode.WAL;
+		}
+		return mode;
+	}
+
+	/**
+	 * Build the ordered pragma statements for the separate ORMLite connection
+	 * used for the GeoPackage metadata tables. Query only is not applied when
+	 * creating.
+	 *
+	 * @param create
+	 *            true when creating a new GeoPackage
+	 * @return pragma statements
+	 */
+	public List<String> buildConnectionSourcePragmas(boolean create) {
+		List<String> pragmas = new ArrayList<>();
+		addConnectionPragmas(pragmas, !create);
+		return pragmas;
+	}
+
+	/**
+	 * Build the ordered pragma statements for pooled read connections
+	 *
+	 * @return pragma statements
+	 */
+	public List<String> buildReaderPragmas() {
+		List<String> pragmas = new ArrayList<>();
+		addConnectionPragmas(pragmas, true);
+		return pragmas;
+	}
+
+	/**
+	 * Add the pragma statements shared by writer and read connections
+	 *
+	 * @param pragmas
+	 *            pragma statements
+	 * @param includeQueryOnly
+	 *            true to include the query only pragma
+	 */
+	private void addConnectionPragmas(List<String> pragmas,
+			boolean includeQueryOnly) {
+		if (cacheSize != null) {
+			pragmas.add(pragma("cache_size", cacheSize));
+		}
+		if (mmapSize != null) {
+			pragmas.add(pragma("mmap_size", mmapSize));
+		}
+		if (tempStore != null) {
+			pragmas.add(pragma("temp_store", tempStore.getValue()));
+		}
+		if (includeQueryOnly && queryOnly != null) {
+			pragmas.add(pragma("query_only", queryOnly ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Build a pragma statement
+	 *
+	 * @param name
+	 *            pragma name
+	 * @param value
+	 *            pragma value
+	 * @return pragma statement
+	 */
+	private static String pragma(String name, Object value) {
+		return "PRAGMA " + name + " = " + value;
+	}
+
+}
@@ -0,0 +1,37 @@
+package mil.nga.geopackage.db;
+
+/**
+ * Named GeoPackage open option profiles of SQLite connection pragmas
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public enum GeoPackageOpenProfile {
+
+	/**
+	 * SQLite defaults, no pragmas are changed
+	 */
+	DEFAULT,
+
+	/**
+	 * Bulk loading of large amounts of data by a single writer: WAL journal
+	 * mode, synchronous off, large page cache, in memory temp store and
+	 * exclusive locking
+	 */
+	BULK_LOAD,
+
+	/**
+	 * Read only serving: query only connections, large memory map, shared
+	 * cache and in memory temp store
+	 */
+	READ_SERVING,
+
+	/**
+	 * Immutable serving of a published GeoPackage that is not modified while
+	 * open: read only immutable file with no locking, large memory map, large
+	 * page cache and in memory temp store. Safe for many processes reading
+	 * the same file.
+	 */
+	IMMUTABLE;
+
+}
@@ -0,0 +1,471 @@
+package mil.nga.geopackage.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.io.GeoPackageProgress;
+
+/**
+ * Online snapshots of a GeoPackage. A file backed GeoPackage is copied on a
+ * dedicated read only connection within a single read transaction, so it is
+ * consistent and the GeoPackage writer and reader connections are not
+ * blocked. An in-memory GeoPackage is copied from its own connection. Pages
+ * are written to a temporary file, reporting progress in pages and checking
+ * for cancellation between steps, and the file is moved into place once
+ * complete.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class GeoPackageSnapshot {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageSnapshot.class.getName());
+
+	/**
+	 * Snapshot the GeoPackage database of the connection, copying the
+	 * database file or the in-memory database
+	 *
+	 * @param db
+	 *            GeoPackage connection
+	 * @param destination
+	 *            snapshot file, must not exist
+	 * @param progress
+	 *            progress tracker, may be null
+	 * @return true if created, false if canceled
+	 */
+	public static boolean snapshot(GeoPackageConnection db, File destination,
+			GeoPackageProgress progress) {
+		boolean created;
+		Connection connection = db.getConnection();
+		File source = databaseFile(connection);
+		if (source != null) {
+			created = snapshot(source, destination, progress);
+		} else {
+			created = snapshot(destination,
+					snapshot -> copy(connection, snapshot, progress));
+		}
+		return created;
+	}
+
+	/**
+	 * Snapshot the GeoPackage file
+	 *
+	 * @param source
+	 *            GeoPackage file
+	 * @param destination
+	 *            snapshot file, must not exist
+	 * @param progress
+	 *            progress tracker, may be null
+	 * @return true if created, false if canceled
+	 */
+	public static boolean snapshot(File source, File destination,
+			GeoPackageProgress progress) {
+		return snapshot(destination, snapshot -> copy(source, snapshot,
+				progress));
+	}
+
+	/**
+	 * Get the file of the main database of the connection
+	 *
+	 * @param connection
+	 *            connection
+	 * @return database file, null for an in-memory database
+	 */
+	private static File databaseFile(Connection connection) {
+		String file = null;
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet resultSet = statement
+						.executeQuery("PRAGMA database_list");
+				while (resultSet.next()) {
+					if ("main".equalsIgnoreCase(resultSet.getString(2))) {
+						file = resultSet.getString(3);
+						break;
+					}
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to query the database file of the connection", e);
+		}
+		return file != null && !file.isEmpty() ? new File(file) : null;
+	}
+
+	/**
+	 * Snapshot into a temporary file moved to the destination once complete
+	 *
+	 * @param destination
+	 *            snapshot file, must not exist
+	 * @param copy
+	 *            copy into the temporary snapshot file, returning false when
+	 *            canceled
+	 * @return true if created, false if canceled
+	 */
+	private static boolean snapshot(File destination, Predicate<File> copy) {
+
+		if (destination.exists()) {
+			throw new GeoPackageException(
+					"Snapshot destination already exists: "
+							+ destination.getAbsolutePath());
+		}
+
+		File directory = destination.getAbsoluteFile().getParentFile();
+		File temp;
+		try {
+			temp = File.createTempFile(destination.getName() + "-", ".tmp",
+					directory);
+		} catch (IOException e) {
+			throw new GeoPackageException(
+					"Failed to create snapshot temporary file in: "
+							+ directory,
+					e);
+		}
+		// The snapshot target must not exist
+		temp.delete();
+
+		boolean created = false;
+		try {
+			created = copy.test(temp);
+			if (created) {
+				move(temp, destination);
+			}
+		} finally {
+			if (temp.exists() && !temp.delete()) {
+				log.log(Level.WARNING,
+						"Failed to delete snapshot temporary file: "
+								+ temp.getAbsolutePath());
+			}
+		}
+
+		return created;
+	}
+
+	/**
+	 * Restore a GeoPackage file into a new in-memory database connection
+	 *
+	 * @param source
+	 *            GeoPackage file
+	 * @return in-memory connection
+	 */
+	public static Connection restoreToMemory(File source) {
+
+		Connection connection;
+		try {
+			connection = DriverManager.getConnection(memoryUrl());
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to get in-memory database connection", e);
+		}
+
+		try {
+			restore(connection, source);
+		} catch (RuntimeException e) {
+			closeQuietly(connection);
+			throw e;
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Restore a GeoPackage file into the database connection, replacing its
+	 * contents
+	 *
+	 * @param connection
+	 *            database connection
+	 * @param source
+	 *            GeoPackage file
+	 */
+	public static void restore(Connection connection, File source) {
+
+		if (!source.isFile()) {
+			throw new GeoPackageException(
+					"GeoPackage file does not exist: "
+							+ source.getAbsolutePath());
+		}
+
+		try {
+			((SQLiteConnection) connection).getDatabase().restore("main",
+					source.getAbsolutePath(), null);
+		} catch (SQLException e) {
+			throw new GeoPackageException("Failed to restore the SQLite file: "
+					+ source.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Get the in-memory database URL
+	 *
+	 * @return database URL
+	 */
+	public static String memoryUrl() {
+		return "jdbc:sqlite::memory:";
+	}
+
+	/**
+	 * Copy the GeoPackage into the snapshot file
+	 *
+	 * @param source
+	 *            GeoPackage file
+	 * @param snapshot
+	 *            snapshot file
+	 * @param progress
+	 *            progress tracker, may be null
+	 * @return true if copied, false if canceled
+	 */
+	private static boolean copy(File source, File snapshot,
+			GeoPackageProgress progress) {
+
+		if (progress != null && !progress.isActive()) {
+			return false;
+		}
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+
+		Connection connection;
+		try {
+			connection = DriverManager.getConnection(
+					"jdbc:sqlite:" + source.getAbsolutePath(),
+					config.toProperties());
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to get snapshot connection to the SQLite file: "
+							+ source.getAbsolutePath(),
+					e);
+		}
+
+		try {
+			return copy(connection, snapshot, progress);
+		} finally {
+			closeQuietly(connection);
+		}
+	}
+
+	/**
+	 * Copy the database of the connection into the snapshot file
+	 *
+	 * @param connection
+	 *            connection, not within a transaction
+	 * @param snapshot
+	 *            snapshot file
+	 * @param progress
+	 *            progress tracker, may be null
+	 * @return true if copied, false if canceled
+	 */
+	private static boolean copy(Connection connection, File snapshot,
+			GeoPackageProgress progress) {
+
+		if (progress != null && !progress.isActive()) {
+			return false;
+		}
+
+		try {
+
+			SnapshotProgress snapshotProgress = null;
+			QueryInterruptHandler.Step step = null;
+			if (progress != null) {
+				snapshotProgress = QueryDeadline.start(new SnapshotProgress(
+						progress, snapshot, pragma(connection, "page_size"),
+						pragma(connection, "page_count")));
+				step = QueryInterruptHandler.begin(connection);
+			}
+
+			try {
+				PreparedStatement statement = connection
+						.prepareStatement("VACUUM INTO ?");
+				try {
+					statement.setString(1, snapshot.getAbsolutePath());
+					statement.executeUpdate();
+				} finally {
+					statement.close();
+				}
+			} finally {
+				QueryInterruptHandler.end(step);
+				if (snapshotProgress != null) {
+					snapshotProgress.close();
+				}
+			}
+
+			if (snapshotProgress != null) {
+				snapshotProgress.complete();
+			}
+
+		} catch (SQLException e) {
+			if (progress != null && !progress.isActive()) {
+				return false;
+			}
+			throw new GeoPackageException(
+					"Failed to snapshot the SQLite database to: "
+							+ snapshot.getAbsolutePath(),
+					e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Query a numeric pragma value
+	 *
+	 * @param connection
+	 *            connection
+	 * @param pragma
+	 *            pragma name
+	 * @return value
+	 */
+	private static long pragma(Connection connection, String pragma) {
+		Object value = SQLUtils.querySingleResult(connection,
+				"PRAGMA " + pragma, null, 0, GeoPackageDataType.INTEGER);
+		return ((Number) value).longValue();
+	}
+
+	/**
+	 * Move the completed snapshot into place
+	 *
+	 * @param snapshot
+	 *            completed snapshot file
+	 * @param destination
+	 *            destination file
+	 */
+	private static void move(File snapshot, File destination) {
+		try {
+			try {
+				Files.move(snapshot.toPath(), destination.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(snapshot.toPath(), destination.toPath());
+			}
+		} catch (IOException e) {
+			throw new GeoPackageException("Failed to move snapshot to: "
+					+ destination.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Close the connection, ignoring errors
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.log(Level.WARNING, "Failed to close snapshot connection", e);
+		}
+	}
+
+	/**
+	 * Query deadline reporting copied snapshot pages and canceling the copy
+	 * when the progress is no longer active
+	 */
+	private static class SnapshotProgress extends QueryDeadline {
+
+		/**
+		 * Progress tracker
+		 */
+		private final GeoPackageProgress progress;
+
+		/**
+		 * Snapshot file
+		 */
+		private final File snapshot;
+
+		/**
+		 * Page size in bytes
+		 */
+		private final long pageSize;
+
+		/**
+		 * Total pages
+		 */
+		private final int pages;
+
+		/**
+		 * Reported pages
+		 */
+		private int copied = 0;
+
+		/**
+		 * Constructor
+		 *
+		 * @param progress
+		 *            progress tracker
+		 * @param snapshot
+		 *            snapshot file
+		 * @param pageSize
+		 *            page size in bytes
+		 * @param pageCount
+		 *            source page count
+		 */
+		private SnapshotProgress(GeoPackageProgress progress, File snapshot,
+				long pageSize, long pageCount) {
+			super(0, progress);
+			this.progress = progress;
+			this.snapshot = snapshot;
+			this.pageSize = pageSize;
+			this.pages = (int) Math.min(pageCount, Integer.MAX_VALUE);
+			progress.setMax(pages);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected boolean check() {
+			boolean canceled = super.check();
+			if (!canceled) {
+				// Hold back the last page until complete, as a finished
+				// progress may no longer be active
+				report((int) Math.min(snapshot.length() / pageSize,
+						pages - 1));
+			}
+			return canceled;
+		}
+
+		/**
+		 * Report the remaining pages once the copy is complete
+		 */
+		private void complete() {
+			report(pages);
+		}
+
+		/**
+		 * Report the newly copied pages
+		 *
+		 * @param written
+		 *            written pages
+		 */
+		private void report(int written) {
+			if (written > copied) {
+				progress.addProgress(written - copied);
+				copied = written;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+package mil.nga.geopackage.db;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of prepared statements for a single connection,
+ * keyed by SQL. Repeated inserts, updates and deletes against the same table
+ * and column set reuse the compiled SQLite statement.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class PreparedStatementCache implements Closeable {
+
+	/**
+	 * Default max number of cached statements
+	 */
+	public static final int DEFAULT_MAX_SIZE = 32;
+
+	/**
+	 * Connection
+	 */
+	private final Connection connection;
+
+	/**
+	 * Max number of cached statements
+	 */
+	private int maxSize;
+
+	/**
+	 * Access ordered statements by SQL
+	 */
+	private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(
+		16, .75f, true);
+
+	/**
+	 * Cache hits
+	 */
+	private long hits = 0;
+
+	/**
+	 * Cache misses
+	 */
+	private long misses = 0;
+
+	/**
+	 * Cache evictions
+	 */
+	private long evictions = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	public PreparedStatementCache(Connection connection) {
+		this(connection, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param connection
+	 *            connection
+	 * @param maxSize
+	 *            max number of cached statements
+	 */
+	public PreparedStatementCache(Connection connection, int maxSize) {
+		this.connection = connection;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Get the max number of cached statements
+	 *
+	 * @return max size
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the max number of cached statements, evicting least recently used
+	 * statements as needed
+	 *
+	 * @param maxSize
+	 *            max size
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		evictToSize(maxSize);
+	}
+
+	/**
+	 * Get the number of cached statements
+	 *
+	 * @return size
+	 */
+	public synchronized int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Get the number of cache hits
+	 *
+	 * @return hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of cache misses
+	 *
+	 * @return misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of cache evictions
+	 *
+	 * @return evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Take a cached prepared statement or prepare a new one. The statement is
+	 * checked out of the cache until returned with
+	 * {@link #release(PreparedStatement, String)} or
+	 * {@link #discard(PreparedStatement, String)}, so concurrent callers of
+	 * the same SQL never share a statement.
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @return prepared statement
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	public synchronized PreparedStatement prepare(String sql)
+			throws SQLException {
+		PreparedStatement statement = statements.remove(sql);
+		if (statement != null) {
+			hits++;
+		} else {
+			misses++;
+			statement = connection.prepareStatement(sql);
+		}
+		return statement;
+	}
+
+	/**
+	 * Release a prepared statement after a successful use, clearing the
+	 * parameters and returning it to the cache as the most recently used
+	 *
+	 * @param statement
+	 *            prepared statement
+	 * @param sql
+	 *            sql statement
+	 */
+	public synchronized void release(PreparedStatement statement, String sql) {
+		if (statement != null) {
+			boolean cache = maxSize > 0;
+			if (cache) {
+				try {
+					statement.clearParameters();
+				} catch (SQLException e) {
+					cache = false;
+				}
+			}
+			if (cache) {
+				PreparedStatement previous = statements.put(sql, statement);
+				if (previous != null) {
+					SQLUtils.closeStatement(previous, sql);
+				}
+				evictToSize(maxSize);
+			} else {
+				SQLUtils.closeStatement(statement, sql);
+			}
+		}
+	}
+
+	/**
+	 * Discard a prepared statement after a failed use, closing it instead of
+	 * returning it to the cache
+	 *
+	 * @param statement
+	 *            prepared statement
+	 * @param sql
+	 *            sql statement
+	 */
+	public synchronized void discard(PreparedStatement statement, String sql) {
+		SQLUtils.closeStatement(statement, sql);
+	}
+
+	/**
+	 * Close and remove all cached statements
+	 */
+	public synchronized void clear() {
+		for (Map.Entry<String, PreparedStatement> entry : statements
+				.entrySet()) {
+			SQLUtils.closeStatement(entry.getValue(), entry.getKey());
+		}
+		statements.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		clear();
+	}
+
+	/**
+	 * Evict the least recently used statements down to the size
+	 *
+	 * @param size
+	 *            size
+	 */
+	private void evictToSize(int size) {
+		Iterator<Map.Entry<String, PreparedStatement>> iterator = statements
+				.entrySet().iterator();
+		while (statements.size() > size && iterator.hasNext()) {
+			Map.Entry<String, PreparedStatement> entry = iterator.next();
+			iterator.remove();
+			SQLUtils.closeStatement(entry.getValue(), entry.getKey());
+			evictions++;
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package mil.nga.geopackage.db;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+import mil.nga.geopackage.io.GeoPackageProgress;
+
+/**
+ * Per call query deadline for the current thread. SQL statements executed by
+ * the thread while the deadline is started are interrupted once the timeout
+ * passes or the progress is no longer active, failing with a
+ * {@link mil.nga.geopackage.GeoPackageQueryTimeoutException}. Deadlines
+ * nest, with an inner deadline also ending when an outer deadline ends.
+ * Start in a try with resources block:
+ *
+ * <pre>
+ * try (QueryDeadline deadline = QueryDeadline.start(5000)) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class QueryDeadline implements Closeable {
+
+	/**
+	 * Current thread deadline
+	 */
+	private static final ThreadLocal<QueryDeadline> current = new ThreadLocal<>();
+
+	/**
+	 * Start a deadline on the current thread
+	 *
+	 * @param timeout
+	 *            timeout in milliseconds
+	 * @return started deadline
+	 */
+	public static QueryDeadline start(long timeout) {
+		return start(timeout, null);
+	}
+
+	/**
+	 * Start a progress cancellation deadline on the current thread
+	 *
+	 * @param progress
+	 *            progress, ending the deadline when no longer active
+	 * @return started deadline
+	 */
+	public static QueryDeadline start(GeoPackageProgress progress) {
+		return start(0, progress);
+	}
+
+	/**
+	 * Start a deadline on the current thread
+	 *
+	 * @param timeout
+	 *            timeout in milliseconds, 0 for no timeout
+	 * @param progress
+	 *            progress, ending the deadline when no longer active, may be
+	 *            null
+	 * @return started deadline
+	 */
+	public static QueryDeadline start(long timeout,
+			GeoPackageProgress progress) {
+		return start(new QueryDeadline(timeout, progress));
+	}
+
+	/**
+	 * Start the deadline on the current thread
+	 *
+	 * @param deadline
+	 *            deadline
+	 * @param <T>
+	 *            deadline type
+	 * @return started deadline
+	 */
+	public static <T extends QueryDeadline> T start(T deadline) {
+		QueryDeadline started = deadline;
+		started.previous = current.get();
+		current.set(deadline);
+		return deadline;
+	}
+
+	/**
+	 * Get the current thread deadline
+	 *
+	 * @return deadline or null
+	 */
+	public static QueryDeadline current() {
+		return current.get();
+	}
+
+	/**
+	 * Timeout in milliseconds, 0 for no timeout
+	 */
+	private final long timeout;
+
+	/**
+	 * Deadline in nanoseconds
+	 */
+	private final long deadline;
+
+	/**
+	 * Progress, may be null
+	 */
+	private final GeoPackageProgress progress;
+
+	/**
+	 * Previous deadline of the thread
+	 */
+	private QueryDeadline previous;
+
+	/**
+	 * Constructor
+	 *
+	 * @param timeout
+	 *            timeout in milliseconds, 0 for no timeout
+	 * @param progress
+	 *            progress, ending the deadline when no longer active, may be
+	 *            null
+	 */
+	protected QueryDeadline(long timeout, GeoPackageProgress progress) {
+		this.timeout = timeout;
+		this.deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(timeout);
+		this.progress = progress;
+	}
+
+	/**
+	 * Get the timeout
+	 *
+	 * @return timeout in milliseconds, 0 for no timeout
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Get the progress
+	 *
+	 * @return progress or null
+	 */
+	public GeoPackageProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Determine if the timeout has passed
+	 *
+	 * @return true if expired
+	 */
+	public boolean isExpired() {
+		return (timeout > 0 && System.nanoTime() - deadline >= 0)
+				|| (previous != null && previous.isExpired());
+	}
+
+	/**
+	 * Determine if the progress is no longer active
+	 *
+	 * @return true if canceled
+	 */
+	public boolean isCanceled() {
+		return (progress != null && !progress.isActive())
+				|| (previous != null && previous.isCanceled());
+	}
+
+	/**
+	 * Check the deadline during statement execution
+	 *
+	 * @return true to interrupt the statement
+	 */
+	protected boolean check() {
+		return isCanceled() || isExpired();
+	}
+
+	/**
+	 * End the deadline, restoring the previous deadline of the thread
+	 */
+	@Override
+	public void close() {
+		if (current.get() == this) {
+			if (previous != null) {
+				current.set(previous);
+			} else {
+				current.remove();
+			}
+		}
+	}
+
+}
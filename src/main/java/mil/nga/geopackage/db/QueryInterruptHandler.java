@@ -0,0 +1,304 @@
+package mil.nga.geopackage.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.sqlite.ProgressHandler;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.GeoPackageQueryTimeoutException;
+
+/**
+ * SQLite progress handler interrupting in-flight statements. The handler is
+ * called on the thread executing the statement every
+ * {@link #INSTRUCTIONS} virtual machine instructions and interrupts the
+ * statement when the {@link QueryDeadline} of the thread has ended, or when
+ * the current execution step has run longer than the query timeout of its
+ * connection. The handler is installed on a connection by its first
+ * execution step with a thread deadline or connection query timeout, so
+ * connections that never use either run without handler calls. Once
+ * installed the handler is left installed, and returns immediately when the
+ * calling thread has no deadline or running step. The SQLite JDBC driver
+ * holds the progress handler in a single native reference shared by all
+ * connections, and clearing the handler from one connection releases it
+ * while statements on other connections may still be calling it.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class QueryInterruptHandler extends ProgressHandler {
+
+	/**
+	 * Number of SQLite virtual machine instructions between handler calls
+	 */
+	public static final int INSTRUCTIONS = 10000;
+
+	/**
+	 * Shared handler
+	 */
+	private static final QueryInterruptHandler handler = new QueryInterruptHandler();
+
+	/**
+	 * Query timeouts in milliseconds by connection
+	 */
+	private static final Map<Connection, Long> timeouts = new ConcurrentHashMap<>();
+
+	/**
+	 * Connections the handler is installed on
+	 */
+	private static final Set<Connection> installed = Collections
+			.newSetFromMap(new WeakHashMap<>());
+
+	/**
+	 * Current thread execution step
+	 */
+	private static final ThreadLocal<Step> currentStep = new ThreadLocal<>();
+
+	/**
+	 * Set the max milliseconds a single execution step of a statement on the
+	 * connection may run before being interrupted
+	 *
+	 * @param connection
+	 *            connection
+	 * @param timeout
+	 *            timeout in milliseconds, 0 for no timeout
+	 */
+	public static void setTimeout(Connection connection, long timeout) {
+		if (timeout > 0) {
+			timeouts.put(connection, timeout);
+		} else {
+			timeouts.remove(connection);
+		}
+	}
+
+	/**
+	 * Get the query timeout of the connection
+	 *
+	 * @param connection
+	 *            connection
+	 * @return timeout in milliseconds, 0 for no timeout
+	 */
+	public static long getTimeout(Connection connection) {
+		long timeout = 0;
+		if (!timeouts.isEmpty()) {
+			Long value = timeouts.get(connection);
+			if (value != null) {
+				timeout = value;
+			}
+		}
+		return timeout;
+	}
+
+	/**
+	 * Begin an execution step on the current thread, installing the handler
+	 * on the connection when the thread has a {@link QueryDeadline} or the
+	 * connection has a query timeout
+	 *
+	 * @param connection
+	 *            connection executing the step
+	 * @return step to end, null when not interruptible
+	 */
+	public static Step begin(Connection connection) {
+		Step step = null;
+		long timeout = getTimeout(connection);
+		if ((timeout > 0 || QueryDeadline.current() != null)
+				&& connection instanceof SQLiteConnection) {
+			install(connection);
+			step = new Step(TimeUnit.MILLISECONDS.toNanos(timeout),
+					currentStep.get());
+			currentStep.set(step);
+		}
+		return step;
+	}
+
+	/**
+	 * End the execution step on the current thread
+	 *
+	 * @param step
+	 *            step from {@link #begin(Connection)}, may be null
+	 */
+	public static void end(Step step) {
+		if (step != null) {
+			if (step.previous != null) {
+				currentStep.set(step.previous);
+			} else {
+				currentStep.remove();
+			}
+		}
+	}
+
+	/**
+	 * Determine if the handler is installed on the connection
+	 *
+	 * @param connection
+	 *            connection
+	 * @return true if installed
+	 */
+	public static boolean isInstalled(Connection connection) {
+		synchronized (installed) {
+			return installed.contains(connection);
+		}
+	}
+
+	/**
+	 * Create the exception for a failed statement execution, a
+	 * {@link GeoPackageQueryTimeoutException} when interrupted by the
+	 * handler
+	 *
+	 * @param message
+	 *            message
+	 * @param e
+	 *            SQL exception
+	 * @param step
+	 *            execution step, may be null
+	 * @return exception
+	 */
+	public static GeoPackageException exception(String message,
+			SQLException e, Step step) {
+		GeoPackageException exception = timeoutException(message, e, step);
+		if (exception == null) {
+			exception = new GeoPackageException(message, e);
+		}
+		return exception;
+	}
+
+	/**
+	 * Create the exception for a statement execution interrupted by the
+	 * handler
+	 *
+	 * @param message
+	 *            message
+	 * @param e
+	 *            SQL exception
+	 * @param step
+	 *            execution step, may be null
+	 * @return exception, null when not interrupted by the handler
+	 */
+	public static GeoPackageQueryTimeoutException timeoutException(
+			String message, SQLException e, Step step) {
+		GeoPackageQueryTimeoutException exception = null;
+		if (isInterrupt(e)) {
+			QueryDeadline deadline = QueryDeadline.current();
+			if (deadline != null && deadline.isCanceled()) {
+				exception = new GeoPackageQueryTimeoutException(
+						"Statement canceled. " + message, e, true);
+			} else if ((deadline != null && deadline.isExpired())
+					|| (step != null && step.interrupted)) {
+				exception = new GeoPackageQueryTimeoutException(
+						"Statement timed out. " + message, e, false);
+			}
+		}
+		return exception;
+	}
+
+	/**
+	 * Determine if the exception is from an interrupted statement
+	 *
+	 * @param e
+	 *            SQL exception
+	 * @return true if interrupted
+	 */
+	public static boolean isInterrupt(SQLException e) {
+		return e.getErrorCode() == SQLiteErrorCode.SQLITE_INTERRUPT.code
+				|| (e.getMessage() != null
+						&& e.getMessage().contains("interrupted"));
+	}
+
+	/**
+	 * Install the handler on the connection if not already installed
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	private static void install(Connection connection) {
+		synchronized (installed) {
+			if (!installed.contains(connection)) {
+				try {
+					ProgressHandler.setHandler(connection, INSTRUCTIONS,
+							handler);
+				} catch (SQLException e) {
+					throw new GeoPackageException(
+							"Failed to install the query interrupt handler",
+							e);
+				}
+				installed.add(connection);
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 */
+	private QueryInterruptHandler() {
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int progress() {
+		int interrupt = 0;
+		QueryDeadline deadline = QueryDeadline.current();
+		if (deadline != null && deadline.check()) {
+			interrupt = 1;
+		} else {
+			Step step = currentStep.get();
+			if (step != null && step.timeout > 0
+					&& System.nanoTime() - step.start > step.timeout) {
+				step.interrupted = true;
+				interrupt = 1;
+			}
+		}
+		return interrupt;
+	}
+
+	/**
+	 * Statement execution step on an interruptible connection
+	 */
+	public static class Step {
+
+		/**
+		 * Timeout in nanoseconds, 0 for no timeout
+		 */
+		private final long timeout;
+
+		/**
+		 * Previous step of the thread
+		 */
+		private final Step previous;
+
+		/**
+		 * Start time in nanoseconds
+		 */
+		private final long start = System.nanoTime();
+
+		/**
+		 * Interrupted by the handler flag
+		 */
+		private boolean interrupted = false;
+
+		/**
+		 * Constructor
+		 *
+		 * @param timeout
+		 *            timeout in nanoseconds, 0 for no timeout
+		 * @param previous
+		 *            previous step of the thread
+		 */
+		private Step(long timeout, Step previous) {
+			this.timeout = timeout;
+			this.previous = previous;
+		}
+
+	}
+
+}
@@ -0,0 +1,629 @@
+package mil.nga.geopackage.db;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per statement query metrics for the connections of an open GeoPackage,
+ * recording call counts, latency histograms, rows returned or changed and
+ * bytes of blob data read per normalized SQL shape. Metrics are off by
+ * default. When no GeoPackage has metrics enabled, the {@link SQLUtils}
+ * instrumentation is a single volatile read with no allocation.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(QueryMetrics.class.getName());
+
+	/**
+	 * JMX domain
+	 */
+	public static final String JMX_DOMAIN = "mil.nga.geopackage";
+
+	/**
+	 * Max number of raw SQL statements mapped to a normalized shape before
+	 * raw SQL is normalized on each call
+	 */
+	private static final int MAX_RAW_STATEMENTS = 1024;
+
+	/**
+	 * Linear sub buckets per power of two latency bucket
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * Sub bucket count
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Histogram bucket count covering all positive long nanoseconds
+	 */
+	private static final int BUCKETS = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS
+			+ SUB_BUCKETS;
+
+	/**
+	 * Metrics by instrumented connection
+	 */
+	private static final Map<Connection, QueryMetrics> registry = new ConcurrentHashMap<>();
+
+	/**
+	 * True when at least one connection is instrumented
+	 */
+	private static volatile boolean active = false;
+
+	/**
+	 * MBean id sequence, distinguishing GeoPackages opened with the same name
+	 */
+	private static final AtomicInteger sequence = new AtomicInteger();
+
+	/**
+	 * Get the metrics for the connection
+	 *
+	 * @param connection
+	 *            connection
+	 * @return metrics or null when not enabled
+	 */
+	public static QueryMetrics get(Connection connection) {
+		QueryMetrics metrics = null;
+		if (active) {
+			metrics = registry.get(connection);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Normalize the SQL into a statement shape by replacing string and
+	 * numeric literals with parameters, collapsing parameter lists and
+	 * whitespace
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @return normalized sql
+	 */
+	public static String normalize(String sql) {
+
+		StringBuilder shape = new StringBuilder(sql.length());
+		int length = sql.length();
+		boolean space = false;
+
+		for (int i = 0; i < length; i++) {
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				space = shape.length() > 0;
+				continue;
+			}
+
+			if (c == '\'') {
+				// String literal, with '' escaped quotes
+				i++;
+				while (i < length) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+							i++;
+						} else {
+							break;
+						}
+					}
+					i++;
+				}
+				c = '?';
+			} else if (c == '"' || c == '`' || c == '[') {
+				// Quoted identifier, copied as is
+				char close = c == '[' ? ']' : c;
+				int end = sql.indexOf(close, i + 1);
+				if (end == -1) {
+					end = length - 1;
+				}
+				appendToken(shape, sql.substring(i, end + 1), space);
+				space = false;
+				i = end;
+				continue;
+			} else if (Character.isDigit(c)
+					&& (space || !isIdentifierEnd(shape))) {
+				// Numeric literal
+				while (i + 1 < length) {
+					char next = sql.charAt(i + 1);
+					if (Character.isLetterOrDigit(next) || next == '.') {
+						i++;
+					} else if ((next == '+' || next == '-')
+							&& Character.toLowerCase(sql.charAt(i)) == 'e') {
+						i++;
+					} else {
+						break;
+					}
+				}
+				c = '?';
+			}
+
+			if (c == '?' && collapseParameter(shape)) {
+				space = false;
+				continue;
+			}
+
+			if (space && c != ',' && c != ')') {
+				char last = shape.charAt(shape.length() - 1);
+				if (last != '(') {
+					shape.append(' ');
+				}
+			}
+			space = false;
+			if (c == '?') {
+				// Drop numbered parameter suffixes
+				while (i + 1 < length && Character.isDigit(sql.charAt(i + 1))) {
+					i++;
+				}
+			}
+			shape.append(c);
+			if (c == ',') {
+				space = true;
+			}
+		}
+
+		return shape.toString();
+	}
+
+	/**
+	 * Append a token to the shape
+	 *
+	 * @param shape
+	 *            shape
+	 * @param token
+	 *            token
+	 * @param space
+	 *            true if preceded by whitespace
+	 */
+	private static void appendToken(StringBuilder shape, String token,
+			boolean space) {
+		if (space && shape.charAt(shape.length() - 1) != '(') {
+			shape.append(' ');
+		}
+		shape.append(token);
+	}
+
+	/**
+	 * Determine if the shape ends in an identifier character, in which case a
+	 * digit continues the identifier
+	 *
+	 * @param shape
+	 *            shape
+	 * @return true if an identifier end
+	 */
+	private static boolean isIdentifierEnd(StringBuilder shape) {
+		boolean identifier = false;
+		if (shape.length() > 0) {
+			char last = shape.charAt(shape.length() - 1);
+			identifier = Character.isLetterOrDigit(last) || last == '_'
+					|| last == '$';
+		}
+		return identifier;
+	}
+
+	/**
+	 * Collapse a parameter following a parameter list, "?, ?" becomes "?, ..."
+	 *
+	 * @param shape
+	 *            shape
+	 * @return true if the parameter was collapsed
+	 */
+	private static boolean collapseParameter(StringBuilder shape) {
+		boolean collapsed = false;
+		int length = shape.length();
+		if (length >= 3 && shape.charAt(length - 1) == ','
+				&& shape.charAt(length - 2) == '?') {
+			shape.append(" ...");
+			collapsed = true;
+		} else if (length >= 6 && shape.charAt(length - 1) == ','
+				&& shape.substring(length - 5, length - 1).equals(" ...")) {
+			shape.setLength(length - 1);
+			collapsed = true;
+		}
+		return collapsed;
+	}
+
+	/**
+	 * GeoPackage name
+	 */
+	private final String name;
+
+	/**
+	 * Instrumented connections
+	 */
+	private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Statement metrics by raw SQL
+	 */
+	private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+	/**
+	 * Statement metrics by normalized SQL shape
+	 */
+	private final Map<String, StatementMetrics> shapes = new ConcurrentHashMap<>();
+
+	/**
+	 * Registered MBean name
+	 */
+	private ObjectName objectName;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            GeoPackage name
+	 */
+	public QueryMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Instrument the connection, recording its statements in these metrics
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	public void register(Connection connection) {
+		connections.add(connection);
+		synchronized (registry) {
+			registry.put(connection, this);
+			active = true;
+		}
+	}
+
+	/**
+	 * Stop instrumenting the connection
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	public void unregister(Connection connection) {
+		connections.remove(connection);
+		synchronized (registry) {
+			registry.remove(connection, this);
+			active = !registry.isEmpty();
+		}
+	}
+
+	/**
+	 * Record a statement execution
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @param nanos
+	 *            latency in nanoseconds
+	 * @param rows
+	 *            rows returned or changed
+	 */
+	public void record(String sql, long nanos, long rows) {
+		StatementMetrics metrics = getStatementMetrics(sql);
+		metrics.calls.increment();
+		metrics.totalNanos.add(nanos);
+		metrics.maxNanos.accumulate(nanos);
+		metrics.histogram.incrementAndGet(bucket(nanos));
+		if (rows > 0) {
+			metrics.rows.add(rows);
+		}
+	}
+
+	/**
+	 * Record the rows and blob bytes read from a statement's query results
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @param rows
+	 *            rows read
+	 * @param blobBytes
+	 *            bytes of blob data read
+	 */
+	public void recordResults(String sql, long rows, long blobBytes) {
+		StatementMetrics metrics = getStatementMetrics(sql);
+		metrics.rows.add(rows);
+		metrics.blobBytes.add(blobBytes);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getStatementCount() {
+		return shapes.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCalls() {
+		long calls = 0;
+		for (StatementMetrics metrics : shapes.values()) {
+			calls += metrics.calls.sum();
+		}
+		return calls;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<QueryStatementMetrics> getStatements() {
+		List<QueryStatementMetrics> snapshots = new ArrayList<>();
+		for (Map.Entry<String, StatementMetrics> entry : shapes.entrySet()) {
+			snapshots.add(entry.getValue().snapshot(entry.getKey()));
+		}
+		Collections.sort(snapshots, Comparator
+				.comparingLong(QueryStatementMetrics::getTotalNanos)
+				.reversed());
+		return snapshots;
+	}
+
+	/**
+	 * Get the metrics of the statement shape matching the SQL
+	 *
+	 * @param sql
+	 *            sql statement, raw or normalized
+	 * @return statement metrics or null
+	 */
+	public QueryStatementMetrics getStatement(String sql) {
+		QueryStatementMetrics snapshot = null;
+		String shape = normalize(sql);
+		StatementMetrics metrics = shapes.get(shape);
+		if (metrics != null) {
+			snapshot = metrics.snapshot(shape);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reset() {
+		statements.clear();
+		shapes.clear();
+	}
+
+	/**
+	 * Register as an MBean with the platform MBean server, named
+	 * "mil.nga.geopackage:type=QueryMetrics,name=<name>,id=<id>"
+	 *
+	 * @return object name or null if registration failed
+	 */
+	public synchronized ObjectName registerMBean() {
+		if (objectName == null) {
+			try {
+				ObjectName mbeanName = new ObjectName(JMX_DOMAIN
+						+ ":type=QueryMetrics,name=" + ObjectName.quote(name)
+						+ ",id=" + sequence.incrementAndGet());
+				ManagementFactory.getPlatformMBeanServer()
+						.registerMBean(this, mbeanName);
+				objectName = mbeanName;
+			} catch (JMException e) {
+				log.log(Level.WARNING,
+						"Failed to register query metrics MBean for GeoPackage: "
+								+ name,
+						e);
+			}
+		}
+		return objectName;
+	}
+
+	/**
+	 * Get the registered MBean object name
+	 *
+	 * @return object name or null
+	 */
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+
+	/**
+	 * Unregister the MBean from the platform MBean server
+	 */
+	public synchronized void unregisterMBean() {
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (JMException e) {
+				log.log(Level.WARNING,
+						"Failed to unregister query metrics MBean: "
+								+ objectName,
+						e);
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * Stop instrumenting all connections and unregister the MBean
+	 */
+	public void close() {
+		for (Connection connection : connections) {
+			unregister(connection);
+		}
+		unregisterMBean();
+	}
+
+	/**
+	 * Get or create the metrics for the raw SQL statement
+	 *
+	 * @param sql
+	 *            sql statement
+	 * @return statement metrics
+	 */
+	private StatementMetrics getStatementMetrics(String sql) {
+		StatementMetrics metrics = statements.get(sql);
+		if (metrics == null) {
+			metrics = shapes.computeIfAbsent(normalize(sql),
+					shape -> new StatementMetrics());
+			if (statements.size() < MAX_RAW_STATEMENTS) {
+				statements.put(sql, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Get the histogram bucket of the latency, exact below 8 nanoseconds and
+	 * with 8 linear sub buckets per power of two above
+	 *
+	 * @param nanos
+	 *            latency in nanoseconds
+	 * @return bucket index
+	 */
+	static int bucket(long nanos) {
+		int bucket;
+		if (nanos < SUB_BUCKETS) {
+			bucket = (int) Math.max(nanos, 0);
+		} else {
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int shift = exponent - SUB_BUCKET_BITS;
+			int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+			bucket = (shift + 1) * SUB_BUCKETS + subBucket;
+		}
+		return bucket;
+	}
+
+	/**
+	 * Get the highest latency value of the histogram bucket
+	 *
+	 * @param bucket
+	 *            bucket index
+	 * @return nanoseconds
+	 */
+	static long bucketValue(int bucket) {
+		long value;
+		if (bucket < SUB_BUCKETS) {
+			value = bucket;
+		} else {
+			int shift = bucket / SUB_BUCKETS - 1;
+			long subBucket = bucket % SUB_BUCKETS;
+			long lower = (SUB_BUCKETS + subBucket) << shift;
+			value = lower + (1L << shift) - 1;
+		}
+		return value;
+	}
+
+	/**
+	 * Metrics of a single normalized SQL statement shape
+	 */
+	private static class StatementMetrics {
+
+		/**
+		 * Calls
+		 */
+		private final LongAdder calls = new LongAdder();
+
+		/**
+		 * Total latency
+		 */
+		private final LongAdder totalNanos = new LongAdder();
+
+		/**
+		 * Max latency
+		 */
+		private final LongAccumulator maxNanos = new LongAccumulator(
+				Math::max, 0);
+
+		/**
+		 * Rows returned or changed
+		 */
+		private final LongAdder rows = new LongAdder();
+
+		/**
+		 * Blob bytes read
+		 */
+		private final LongAdder blobBytes = new LongAdder();
+
+		/**
+		 * Latency histogram
+		 */
+		private final AtomicLongArray histogram = new AtomicLongArray(
+				BUCKETS);
+
+		/**
+		 * Snapshot the metrics
+		 *
+		 * @param shape
+		 *            normalized SQL
+		 * @return snapshot
+		 */
+		private QueryStatementMetrics snapshot(String shape) {
+			long[] counts = new long[BUCKETS];
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = histogram.get(i);
+				count += counts[i];
+			}
+			return new QueryStatementMetrics(shape, calls.sum(),
+					totalNanos.sum(), maxNanos.get(),
+					percentile(counts, count, 0.50),
+					percentile(counts, count, 0.99), rows.sum(),
+					blobBytes.sum());
+		}
+
+		/**
+		 * Estimate the latency percentile from the histogram counts
+		 *
+		 * @param counts
+		 *            bucket counts
+		 * @param count
+		 *            total count
+		 * @param percentile
+		 *            percentile between 0 and 1
+		 * @return nanoseconds
+		 */
+		private static long percentile(long[] counts, long count,
+				double percentile) {
+			long value = 0;
+			if (count > 0) {
+				long target = Math.max(1, (long) Math.ceil(percentile * count));
+				long cumulative = 0;
+				for (int i = 0; i < counts.length; i++) {
+					cumulative += counts[i];
+					if (cumulative >= target) {
+						value = bucketValue(i);
+						break;
+					}
+				}
+			}
+			return value;
+		}
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package mil.nga.geopackage.db;
+
+import java.util.List;
+
+/**
+ * JMX management interface of per statement query metrics for an open
+ * GeoPackage
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public interface QueryMetricsMXBean {
+
+	/**
+	 * Get the GeoPackage name
+	 *
+	 * @return name
+	 */
+	public String getName();
+
+	/**
+	 * Get the number of distinct normalized SQL statement shapes
+	 *
+	 * @return statement count
+	 */
+	public int getStatementCount();
+
+	/**
+	 * Get the total number of recorded statement calls
+	 *
+	 * @return call count
+	 */
+	public long getCalls();
+
+	/**
+	 * Get a snapshot of the metrics of each normalized SQL statement shape
+	 *
+	 * @return statement metrics
+	 */
+	public List<QueryStatementMetrics> getStatements();
+
+	/**
+	 * Reset all recorded metrics
+	 */
+	public void reset();
+
+}
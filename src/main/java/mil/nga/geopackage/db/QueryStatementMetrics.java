@@ -0,0 +1,172 @@
+package mil.nga.geopackage.db;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the query metrics recorded for a normalized SQL statement shape.
+ * Latencies are in nanoseconds, with percentiles estimated from a log scale
+ * histogram within 1/8th of the true value.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class QueryStatementMetrics {
+
+	/**
+	 * Normalized SQL
+	 */
+	private final String sql;
+
+	/**
+	 * Number of calls
+	 */
+	private final long calls;
+
+	/**
+	 * Total latency in nanoseconds
+	 */
+	private final long totalNanos;
+
+	/**
+	 * Max latency in nanoseconds
+	 */
+	private final long maxNanos;
+
+	/**
+	 * Median latency in nanoseconds
+	 */
+	private final long p50Nanos;
+
+	/**
+	 * 99th percentile latency in nanoseconds
+	 */
+	private final long p99Nanos;
+
+	/**
+	 * Rows returned or changed
+	 */
+	private final long rows;
+
+	/**
+	 * Bytes of blob data read
+	 */
+	private final long blobBytes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sql
+	 *            normalized SQL
+	 * @param calls
+	 *            number of calls
+	 * @param totalNanos
+	 *            total latency in nanoseconds
+	 * @param maxNanos
+	 *            max latency in nanoseconds
+	 * @param p50Nanos
+	 *            median latency in nanoseconds
+	 * @param p99Nanos
+	 *            99th percentile latency in nanoseconds
+	 * @param rows
+	 *            rows returned or changed
+	 * @param blobBytes
+	 *            bytes of blob data read
+	 */
+	@ConstructorProperties({ "sql", "calls", "totalNanos", "maxNanos",
+			"p50Nanos", "p99Nanos", "rows", "blobBytes" })
+	public QueryStatementMetrics(String sql, long calls, long totalNanos,
+			long maxNanos, long p50Nanos, long p99Nanos, long rows,
+			long blobBytes) {
+		this.sql = sql;
+		this.calls = calls;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.rows = rows;
+		this.blobBytes = blobBytes;
+	}
+
+	/**
+	 * Get the normalized SQL
+	 *
+	 * @return sql
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Get the number of calls
+	 *
+	 * @return calls
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Get the total latency in nanoseconds
+	 *
+	 * @return total nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * Get the max latency in nanoseconds
+	 *
+	 * @return max nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Get the median latency in nanoseconds
+	 *
+	 * @return p50 nanoseconds
+	 */
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	/**
+	 * Get the 99th percentile latency in nanoseconds
+	 *
+	 * @return p99 nanoseconds
+	 */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	/**
+	 * Get the number of rows returned by queries or changed by updates
+	 *
+	 * @return rows
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Get the bytes of blob data read from query results
+	 *
+	 * @return blob bytes
+	 */
+	public long getBlobBytes() {
+		return blobBytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return sql + " [calls=" + calls + ", p50Nanos=" + p50Nanos
+				+ ", p99Nanos=" + p99Nanos + ", rows=" + rows + ", blobBytes="
+				+ blobBytes + "]";
+	}
+
+}
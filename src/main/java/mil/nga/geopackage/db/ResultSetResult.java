@@ -1,5 +1,9 @@
 package mil.nga.geopackage.db;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
@@ -20,6 +24,67 @@ public class ResultSetResult implements Result {
 	 */
 	protected ResultSet resultSet;
 
+	/**
+	 * GeoPackage connection the read connection was borrowed from
+	 */
+	private GeoPackageConnection readDb;
+
+	/**
+	 * Borrowed read connection, released when the result is closed
+	 */
+	private Connection readConnection;
+
+	/**
+	 * Query metrics recording rows and blob bytes read, null when disabled
+	 */
+	private QueryMetrics metrics;
+
+	/**
+	 * Metrics SQL statement
+	 */
+	private String metricsSql;
+
+	/**
+	 * Rows read for metrics
+	 */
+	private long metricsRows;
+
+	/**
+	 * Blob bytes read for metrics
+	 */
+	private long metricsBlobBytes;
+
+	/**
+	 * Connection the result set was queried from, null when not
+	 * interruptible
+	 */
+	private Connection queryConnection;
+
+	/**
+	 * Slow query log checking the time until closed, null when disabled
+	 */
+	private SlowQueryLog slowQueryLog;
+
+	/**
+	 * Connection the slow query plan is captured on
+	 */
+	private Connection slowQueryConnection;
+
+	/**
+	 * Slow query SQL statement
+	 */
+	private String slowQuerySql;
+
+	/**
+	 * Slow query bound arguments
+	 */
+	private String[] slowQueryArgs;
+
+	/**
+	 * Slow query start nanoseconds
+	 */
+	private long slowQueryStart;
+
 	/**
 	 * Constructor
 	 * 
@@ -39,6 +104,76 @@ public class ResultSetResult implements Result {
 		return resultSet;
 	}
 
+	/**
+	 * Set the borrowed read connection the result set was queried from, to be
+	 * released back to the GeoPackage connection when closed
+	 * 
+	 * @param readDb
+	 *            GeoPackage connection
+	 * @param readConnection
+	 *            borrowed read connection
+	 * @since 3.4.1
+	 */
+	public void setReadConnection(GeoPackageConnection readDb,
+			Connection readConnection) {
+		this.readDb = readDb;
+		this.readConnection = readConnection;
+	}
+
+	/**
+	 * Set the connection the result set was queried from, interrupting a
+	 * cursor move running longer than the connection query timeout or past
+	 * the thread query deadline
+	 * 
+	 * @param queryConnection
+	 *            connection
+	 * @since 3.4.1
+	 */
+	public void setQueryConnection(Connection queryConnection) {
+		this.queryConnection = queryConnection;
+	}
+
+	/**
+	 * Set the query metrics of the connection the result set was queried
+	 * from, recording the rows and blob bytes read when closed
+	 * 
+	 * @param metrics
+	 *            query metrics, null when disabled
+	 * @param sql
+	 *            sql statement
+	 * @since 3.4.1
+	 */
+	public void setMetrics(QueryMetrics metrics, String sql) {
+		this.metrics = metrics;
+		this.metricsSql = sql;
+	}
+
+	/**
+	 * Set the slow query log checking the time from the query start until
+	 * the result is closed, including iterating the rows
+	 * 
+	 * @param slowQueryLog
+	 *            slow query log, null when disabled
+	 * @param connection
+	 *            connection the result set was queried from
+	 * @param sql
+	 *            sql statement
+	 * @param args
+	 *            bound arguments
+	 * @param startNanos
+	 *            query start nanoseconds
+	 * @since 3.4.1
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog,
+			Connection connection, String sql, String[] args,
+			long startNanos) {
+		this.slowQueryLog = slowQueryLog;
+		this.slowQueryConnection = connection;
+		this.slowQuerySql = sql;
+		this.slowQueryArgs = args;
+		this.slowQueryStart = startNanos;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -61,21 +196,55 @@ public class ResultSetResult implements Result {
 					"Failed to get value for column index: " + index, e);
 		}
 
+		if (metrics != null && value instanceof byte[]) {
+			metricsBlobBytes += ((byte[]) value).length;
+		}
+
 		value = ResultUtils.getValue(value, dataType);
 
 		return value;
 	}
 
+	/**
+	 * Get the current row values, reusing the provided values array when
+	 * sized to the column count. Iterating with the same array avoids a row
+	 * allocation per cursor position.
+	 * 
+	 * @param values
+	 *            reusable values array, may be null
+	 * @return row values
+	 * @since 3.4.1
+	 */
+	public Object[] getValues(Object[] values) {
+		int columnCount = getColumnCount();
+		if (values == null || values.length != columnCount) {
+			values = new Object[columnCount];
+		}
+		for (int i = 0; i < columnCount; i++) {
+			values[i] = getValue(i);
+		}
+		return values;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public boolean moveToNext() {
+		QueryInterruptHandler.Step step = queryConnection != null
+				? QueryInterruptHandler.begin(queryConnection)
+				: null;
 		try {
-			return resultSet.next();
+			boolean next = resultSet.next();
+			if (next && metrics != null) {
+				metricsRows++;
+			}
+			return next;
 		} catch (SQLException e) {
-			throw new GeoPackageException(
-					"Failed to move ResultSet cursor to next", e);
+			throw QueryInterruptHandler.exception(
+					"Failed to move ResultSet cursor to next", e, step);
+		} finally {
+			QueryInterruptHandler.end(step);
 		}
 	}
 
@@ -220,9 +389,41 @@ public class ResultSetResult implements Result {
 					"Failed to get blob bytes for column index: " + columnIndex,
 					e);
 		}
+		if (metrics != null && value != null) {
+			metricsBlobBytes += value.length;
+		}
 		return value;
 	}
 
+	/**
+	 * Get the blob as a read only byte buffer over the bytes returned by the
+	 * driver, without copying them again
+	 * 
+	 * @param columnIndex
+	 *            column index
+	 * @return read only byte buffer or null
+	 * @since 3.4.1
+	 */
+	public ByteBuffer getBlobByteBuffer(int columnIndex) {
+		byte[] value = getBlob(columnIndex);
+		return value != null ? ByteBuffer.wrap(value).asReadOnlyBuffer()
+				: null;
+	}
+
+	/**
+	 * Get the blob as an input stream over the bytes returned by the driver,
+	 * without copying them again
+	 * 
+	 * @param columnIndex
+	 *            column index
+	 * @return input stream or null
+	 * @since 3.4.1
+	 */
+	public InputStream getBlobInputStream(int columnIndex) {
+		byte[] value = getBlob(columnIndex);
+		return value != null ? new ByteArrayInputStream(value) : null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -313,15 +514,37 @@ public class ResultSetResult implements Result {
 	@Override
 	public void close() {
 		try {
-			resultSet.getStatement().close();
-		} catch (SQLException e) {
-			throw new GeoPackageException("Failed to close ResultSet Statement",
-					e);
-		}
-		try {
-			resultSet.close();
-		} catch (SQLException e) {
-			throw new GeoPackageException("Failed to close ResultSet", e);
+			try {
+				resultSet.getStatement().close();
+			} catch (SQLException e) {
+				throw new GeoPackageException(
+						"Failed to close ResultSet Statement", e);
+			}
+			try {
+				resultSet.close();
+			} catch (SQLException e) {
+				throw new GeoPackageException("Failed to close ResultSet", e);
+			}
+		} finally {
+			if (metrics != null) {
+				metrics.recordResults(metricsSql, metricsRows,
+						metricsBlobBytes);
+				metrics = null;
+			}
+			try {
+				if (slowQueryLog != null) {
+					SlowQueryLog queryLog = slowQueryLog;
+					slowQueryLog = null;
+					queryLog.check(slowQueryConnection, slowQuerySql,
+							slowQueryArgs, System.nanoTime() - slowQueryStart);
+				}
+			} finally {
+				if (readDb != null) {
+					readDb.releaseReadConnection(readConnection);
+					readDb = null;
+					readConnection = null;
+				}
+			}
 		}
 	}
 
@@ -5,11 +5,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.GeoPackageQueryTimeoutException;
 import mil.nga.geopackage.user.ContentValues;
 
 /**
@@ -25,6 +29,12 @@ public class SQLUtils {
 	private static final Logger log = Logger
 			.getLogger(SQLUtils.class.getName());
 
+	/**
+	 * Threads of the transactions begun on connections
+	 */
+	private static final Map<Connection, Thread> transactionThreads = Collections
+			.synchronizedMap(new WeakHashMap<Connection, Thread>());
+
 	/**
 	 * Execute the SQL
 	 * 
@@ -34,14 +44,23 @@ public class SQLUtils {
 	 *            sql statement
 	 */
 	public static void execSQL(Connection connection, String sql) {
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		long start = metrics != null ? System.nanoTime() : 0;
 		Statement statement = null;
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
 		try {
 			statement = connection.createStatement();
 			statement.execute(sql);
+			if (metrics != null) {
+				metrics.record(sql, System.nanoTime() - start,
+						Math.max(statement.getUpdateCount(), 0));
+			}
 		} catch (SQLException e) {
-			throw new GeoPackageException("Failed to execute SQL statement: "
-					+ sql, e);
+			throw QueryInterruptHandler.exception(
+					"Failed to execute SQL statement: " + sql, e, step);
 		} finally {
+			QueryInterruptHandler.end(step);
 			closeStatement(statement, sql);
 		}
 
@@ -61,17 +80,25 @@ public class SQLUtils {
 	public static ResultSet query(Connection connection, String sql,
 			String[] selectionArgs) {
 
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		long start = metrics != null ? System.nanoTime() : 0;
 		PreparedStatement statement = null;
 		ResultSet resultSet = null;
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
 
 		try {
 			statement = connection.prepareStatement(sql);
 			setArguments(statement, selectionArgs);
 			resultSet = statement.executeQuery();
+			if (metrics != null) {
+				metrics.record(sql, System.nanoTime() - start, 0);
+			}
 		} catch (SQLException e) {
-			throw new GeoPackageException("Failed to execute SQL statement: "
-					+ sql, e);
+			throw QueryInterruptHandler.exception(
+					"Failed to execute SQL statement: " + sql, e, step);
 		} finally {
+			QueryInterruptHandler.end(step);
 			if (resultSet == null) {
 				closeStatement(statement, sql);
 			}
@@ -153,22 +180,8 @@ public class SQLUtils {
 	 */
 	public static Integer min(Connection connection, String table,
 			String column, String where, String[] args) {
-
-		Integer min = null;
-		if (count(connection, table, where, args) > 0) {
-			StringBuilder minQuery = new StringBuilder();
-			minQuery.append("select min(")
-					.append(CoreSQLUtils.quoteWrap(column)).append(") from ")
-					.append(CoreSQLUtils.quoteWrap(table));
-			if (where != null) {
-				minQuery.append(" where ").append(where);
-			}
-			String sql = minQuery.toString();
-
-			min = querySingleInteger(connection, sql, args, false);
-		}
-
-		return min;
+		Aggregate min = Aggregate.min(column);
+		return aggregate(connection, table, where, args, min).getInteger(min);
 	}
 
 	/**
@@ -189,22 +202,55 @@ public class SQLUtils {
 	 */
 	public static Integer max(Connection connection, String table,
 			String column, String where, String[] args) {
+		Aggregate max = Aggregate.max(column);
+		return aggregate(connection, table, where, args, max).getInteger(max);
+	}
 
-		Integer max = null;
-		if (count(connection, table, where, args) > 0) {
-			StringBuilder maxQuery = new StringBuilder();
-			maxQuery.append("select max(")
-					.append(CoreSQLUtils.quoteWrap(column)).append(") from ")
-					.append(CoreSQLUtils.quoteWrap(table));
-			if (where != null) {
-				maxQuery.append(" where ").append(where);
-			}
-			String sql = maxQuery.toString();
+	/**
+	 * Compute the aggregates in a single pass aggregate query
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param table
+	 *            table name
+	 * @param where
+	 *            where clause
+	 * @param args
+	 *            where arguments
+	 * @param aggregates
+	 *            aggregates
+	 * @return aggregate result
+	 * @since 3.4.1
+	 */
+	public static AggregateResult aggregate(Connection connection,
+			String table, String where, String[] args,
+			Aggregate... aggregates) {
 
-			max = querySingleInteger(connection, sql, args, false);
+		if (aggregates.length == 0) {
+			throw new GeoPackageException(
+					"At least one aggregate is required. Table: " + table);
 		}
 
-		return max;
+		StringBuilder aggregateQuery = new StringBuilder();
+		aggregateQuery.append("select ");
+		GeoPackageDataType[] dataTypes = new GeoPackageDataType[aggregates.length];
+		for (int i = 0; i < aggregates.length; i++) {
+			if (i > 0) {
+				aggregateQuery.append(", ");
+			}
+			aggregateQuery.append(aggregates[i].buildSql());
+			dataTypes[i] = aggregates[i].getDataType();
+		}
+		aggregateQuery.append(" from ").append(CoreSQLUtils.quoteWrap(table));
+		if (where != null) {
+			aggregateQuery.append(" where ").append(where);
+		}
+		String sql = aggregateQuery.toString();
+
+		List<List<Object>> results = queryResults(connection, sql, args,
+				dataTypes, 1);
+
+		return new AggregateResult(aggregates, results.get(0));
 	}
 
 	/**
@@ -327,6 +373,28 @@ public class SQLUtils {
 	 */
 	public static int delete(Connection connection, String table, String where,
 			String[] args) {
+		return delete(connection, null, table, where, args);
+	}
+
+	/**
+	 * Execute a deletion using cached prepared statements
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param statementCache
+	 *            prepared statement cache, null to not cache
+	 * @param table
+	 *            table name
+	 * @param where
+	 *            where clause
+	 * @param args
+	 *            where arguments
+	 * @return deleted count
+	 * @since 3.4.1
+	 */
+	public static int delete(Connection connection,
+			PreparedStatementCache statementCache, String table, String where,
+			String[] args) {
 		StringBuilder delete = new StringBuilder();
 		delete.append("delete from ").append(CoreSQLUtils.quoteWrap(table));
 		if (where != null) {
@@ -334,18 +402,28 @@ public class SQLUtils {
 		}
 		String sql = delete.toString();
 
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		long start = metrics != null ? System.nanoTime() : 0;
 		PreparedStatement statement = null;
 
 		int count = 0;
+		boolean success = false;
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
 		try {
-			statement = connection.prepareStatement(sql);
+			statement = prepareStatement(connection, statementCache, sql);
 			setArguments(statement, args);
 			count = statement.executeUpdate();
+			success = true;
+			if (metrics != null) {
+				metrics.record(sql, System.nanoTime() - start, count);
+			}
 		} catch (SQLException e) {
-			throw new GeoPackageException(
-					"Failed to execute SQL delete statement: " + sql, e);
+			throw QueryInterruptHandler.exception(
+					"Failed to execute SQL delete statement: " + sql, e, step);
 		} finally {
-			closeStatement(statement, sql);
+			QueryInterruptHandler.end(step);
+			releaseStatement(statementCache, statement, sql, success);
 		}
 
 		return count;
@@ -368,48 +446,121 @@ public class SQLUtils {
 	 */
 	public static int update(Connection connection, String table,
 			ContentValues values, String whereClause, String[] whereArgs) {
+		return update(connection, null, table, values, whereClause,
+				whereArgs);
+	}
+
+	/**
+	 * Update table rows using cached prepared statements
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param statementCache
+	 *            prepared statement cache, null to not cache
+	 * @param table
+	 *            table name
+	 * @param values
+	 *            content values
+	 * @param whereClause
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public static int update(Connection connection,
+			PreparedStatementCache statementCache, String table,
+			ContentValues values, String whereClause, String[] whereArgs) {
+		String sql = updateSQL(table, values, whereClause);
+		Object[] args = updateArgs(values, whereArgs);
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		long start = metrics != null ? System.nanoTime() : 0;
+		PreparedStatement statement = null;
+
+		int count = 0;
+		boolean success = false;
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
+		try {
+			statement = prepareStatement(connection, statementCache, sql);
+			setArguments(statement, args);
+			count = statement.executeUpdate();
+			success = true;
+			if (metrics != null) {
+				metrics.record(sql, System.nanoTime() - start, count);
+			}
+		} catch (SQLException e) {
+			throw QueryInterruptHandler.exception(
+					"Failed to execute SQL update statement: " + sql, e, step);
+		} finally {
+			QueryInterruptHandler.end(step);
+			releaseStatement(statementCache, statement, sql, success);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Build the update SQL statement for the content value columns
+	 * 
+	 * @param table
+	 *            table name
+	 * @param values
+	 *            content values
+	 * @param whereClause
+	 *            where clause
+	 * @return update SQL
+	 * @since 3.4.1
+	 */
+	public static String updateSQL(String table, ContentValues values,
+			String whereClause) {
 
 		StringBuilder update = new StringBuilder();
 		update.append("update ").append(CoreSQLUtils.quoteWrap(table))
 				.append(" set ");
 
+		int i = 0;
+		for (String colName : values.keySet()) {
+			update.append((i++ > 0) ? "," : "");
+			update.append(CoreSQLUtils.quoteWrap(colName));
+			update.append("=?");
+		}
+		if (whereClause != null) {
+			update.append(" WHERE ");
+			update.append(whereClause);
+		}
+
+		return update.toString();
+	}
+
+	/**
+	 * Build the update arguments in content value column order followed by
+	 * the where arguments, matching
+	 * {@link #updateSQL(String, ContentValues, String)}
+	 * 
+	 * @param values
+	 *            content values
+	 * @param whereArgs
+	 *            where arguments
+	 * @return update arguments
+	 * @since 3.4.1
+	 */
+	public static Object[] updateArgs(ContentValues values,
+			Object[] whereArgs) {
 		int setValuesSize = values.size();
 		int argsSize = (whereArgs == null) ? setValuesSize
 				: (setValuesSize + whereArgs.length);
 		Object[] args = new Object[argsSize];
 		int i = 0;
 		for (String colName : values.keySet()) {
-			update.append((i > 0) ? "," : "");
-			update.append(CoreSQLUtils.quoteWrap(colName));
 			args[i++] = values.get(colName);
-			update.append("=?");
 		}
 		if (whereArgs != null) {
 			for (i = setValuesSize; i < argsSize; i++) {
 				args[i] = whereArgs[i - setValuesSize];
 			}
 		}
-		if (whereClause != null) {
-			update.append(" WHERE ");
-			update.append(whereClause);
-		}
-		String sql = update.toString();
-
-		PreparedStatement statement = null;
-
-		int count = 0;
-		try {
-			statement = connection.prepareStatement(sql);
-			setArguments(statement, args);
-			count = statement.executeUpdate();
-		} catch (SQLException e) {
-			throw new GeoPackageException(
-					"Failed to execute SQL update statement: " + sql, e);
-		} finally {
-			closeStatement(statement, sql);
-		}
-
-		return count;
+		return args;
 	}
 
 	/**
@@ -425,8 +576,33 @@ public class SQLUtils {
 	 */
 	public static long insert(Connection connection, String table,
 			ContentValues values) {
+		return insert(connection, null, table, values);
+	}
+
+	/**
+	 * Insert a new row using cached prepared statements
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param statementCache
+	 *            prepared statement cache, null to not cache
+	 * @param table
+	 *            table name
+	 * @param values
+	 *            content values
+	 * @return row id or -1 on an exception
+	 * @throws GeoPackageQueryTimeoutException
+	 *             when the insert is interrupted by a query deadline or
+	 *             timeout
+	 * @since 3.4.1
+	 */
+	public static long insert(Connection connection,
+			PreparedStatementCache statementCache, String table,
+			ContentValues values) {
 		try {
-			return insertOrThrow(connection, table, values);
+			return insertOrThrow(connection, statementCache, table, values);
+		} catch (GeoPackageQueryTimeoutException e) {
+			throw e;
 		} catch (Exception e) {
 			log.log(Level.WARNING, "Error inserting into table: " + table
 					+ ", Values: " + values, e);
@@ -447,35 +623,40 @@ public class SQLUtils {
 	 */
 	public static long insertOrThrow(Connection connection, String table,
 			ContentValues values) {
+		return insertOrThrow(connection, null, table, values);
+	}
 
-		StringBuilder insert = new StringBuilder();
-		insert.append("insert into ").append(CoreSQLUtils.quoteWrap(table))
-				.append("(");
-
-		Object[] args = null;
-		int size = (values != null && values.size() > 0) ? values.size() : 0;
-
-		args = new Object[size];
-		int i = 0;
-		for (String colName : values.keySet()) {
-			insert.append((i > 0) ? "," : "");
-			insert.append(CoreSQLUtils.quoteWrap(colName));
-			args[i++] = values.get(colName);
-		}
-		insert.append(')');
-		insert.append(" values (");
-		for (i = 0; i < size; i++) {
-			insert.append((i > 0) ? ",?" : "?");
-		}
-		insert.append(')');
+	/**
+	 * Insert a new row using cached prepared statements
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param statementCache
+	 *            prepared statement cache, null to not cache
+	 * @param table
+	 *            table name
+	 * @param values
+	 *            content values
+	 * @return row id
+	 * @since 3.4.1
+	 */
+	public static long insertOrThrow(Connection connection,
+			PreparedStatementCache statementCache, String table,
+			ContentValues values) {
 
-		String sql = insert.toString();
+		String sql = insertSQL(table, values);
+		Object[] args = insertArgs(values);
 
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		long start = metrics != null ? System.nanoTime() : 0;
 		PreparedStatement statement = null;
 
 		long id = 0;
+		boolean success = false;
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
 		try {
-			statement = connection.prepareStatement(sql);
+			statement = prepareStatement(connection, statementCache, sql);
 			setArguments(statement, args);
 			int count = statement.executeUpdate();
 
@@ -494,16 +675,125 @@ public class SQLUtils {
 									+ ". No row id was found.");
 				}
 			}
+			success = true;
+			if (metrics != null) {
+				metrics.record(sql, System.nanoTime() - start, count);
+			}
 		} catch (SQLException e) {
-			throw new GeoPackageException(
-					"Failed to execute SQL insert statement: " + sql, e);
+			throw QueryInterruptHandler.exception(
+					"Failed to execute SQL insert statement: " + sql, e, step);
 		} finally {
-			closeStatement(statement, sql);
+			QueryInterruptHandler.end(step);
+			releaseStatement(statementCache, statement, sql, success);
 		}
 
 		return id;
 	}
 
+	/**
+	 * Build the insert SQL statement for the content value columns
+	 * 
+	 * @param table
+	 *            table name
+	 * @param values
+	 *            content values
+	 * @return insert SQL
+	 * @since 3.4.1
+	 */
+	public static String insertSQL(String table, ContentValues values) {
+
+		StringBuilder insert = new StringBuilder();
+		insert.append("insert into ").append(CoreSQLUtils.quoteWrap(table))
+				.append("(");
+
+		int size = (values != null && values.size() > 0) ? values.size() : 0;
+
+		int i = 0;
+		for (String colName : values.keySet()) {
+			insert.append((i++ > 0) ? "," : "");
+			insert.append(CoreSQLUtils.quoteWrap(colName));
+		}
+		insert.append(')');
+		insert.append(" values (");
+		for (i = 0; i < size; i++) {
+			insert.append((i > 0) ? ",?" : "?");
+		}
+		insert.append(')');
+
+		return insert.toString();
+	}
+
+	/**
+	 * Build the insert arguments in content value column order, matching
+	 * {@link #insertSQL(String, ContentValues)}
+	 * 
+	 * @param values
+	 *            content values
+	 * @return insert arguments
+	 * @since 3.4.1
+	 */
+	public static Object[] insertArgs(ContentValues values) {
+		int size = (values != null && values.size() > 0) ? values.size() : 0;
+		Object[] args = new Object[size];
+		int i = 0;
+		for (String colName : values.keySet()) {
+			args[i++] = values.get(colName);
+		}
+		return args;
+	}
+
+	/**
+	 * Prepare a statement, from the cache when provided
+	 * 
+	 * @param connection
+	 *            connection
+	 * @param statementCache
+	 *            prepared statement cache, null to not cache
+	 * @param sql
+	 *            sql statement
+	 * @return prepared statement
+	 * @throws SQLException
+	 *             upon failure
+	 * @since 3.4.1
+	 */
+	public static PreparedStatement prepareStatement(Connection connection,
+			PreparedStatementCache statementCache, String sql)
+			throws SQLException {
+		PreparedStatement statement;
+		if (statementCache != null) {
+			statement = statementCache.prepare(sql);
+		} else {
+			statement = connection.prepareStatement(sql);
+		}
+		return statement;
+	}
+
+	/**
+	 * Release a prepared statement back to the cache or close it. Cached
+	 * statements that failed are removed from the cache.
+	 * 
+	 * @param statementCache
+	 *            prepared statement cache, null when not cached
+	 * @param statement
+	 *            prepared statement
+	 * @param sql
+	 *            sql statement
+	 * @param success
+	 *            true if the statement executed successfully
+	 * @since 3.4.1
+	 */
+	public static void releaseStatement(
+			PreparedStatementCache statementCache, PreparedStatement statement,
+			String sql, boolean success) {
+		if (statementCache == null) {
+			closeStatement(statement, sql);
+		} else if (success) {
+			statementCache.release(statement, sql);
+		} else {
+			statementCache.discard(statement, sql);
+		}
+	}
+
 	/**
 	 * Set the prepared statement arguments
 	 * 
@@ -595,7 +885,14 @@ public class SQLUtils {
 	 */
 	public static ResultSetResult wrapQuery(Connection connection, String sql,
 			String[] selectionArgs) {
-		return new ResultSetResult(query(connection, sql, selectionArgs));
+		ResultSetResult result = new ResultSetResult(
+				query(connection, sql, selectionArgs));
+		QueryMetrics metrics = QueryMetrics.get(connection);
+		if (metrics != null) {
+			result.setMetrics(metrics, sql);
+		}
+		result.setQueryConnection(connection);
+		return result;
 	}
 
 	/**
@@ -612,6 +909,7 @@ public class SQLUtils {
 			autoCommit = connection.getAutoCommit();
 			if (autoCommit) {
 				connection.setAutoCommit(false);
+				transactionThreads.put(connection, Thread.currentThread());
 			}
 		} catch (SQLException e) {
 			throw new GeoPackageException("Failed to begin transaction", e);
@@ -619,6 +917,19 @@ public class SQLUtils {
 		return autoCommit;
 	}
 
+	/**
+	 * Get the thread that began the active transaction of the connection
+	 * 
+	 * @param connection
+	 *            connection
+	 * @return transaction thread, null when not within a transaction begun by
+	 *         {@link #beginTransaction(Connection)}
+	 * @since 3.4.1
+	 */
+	public static Thread getTransactionThread(Connection connection) {
+		return transactionThreads.get(connection);
+	}
+
 	/**
 	 * End a transaction for the connection
 	 * 
@@ -652,6 +963,7 @@ public class SQLUtils {
 				connection.rollback();
 			}
 			if (autoCommit != null && autoCommit) {
+				transactionThreads.remove(connection);
 				connection.setAutoCommit(true);
 			}
 		} catch (SQLException e) {
@@ -0,0 +1,165 @@
+package mil.nga.geopackage.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow query log entry with the bound arguments, elapsed time and captured
+ * EXPLAIN QUERY PLAN output
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class SlowQuery {
+
+	/**
+	 * Time logged in epoch milliseconds
+	 */
+	private final long time;
+
+	/**
+	 * SQL statement
+	 */
+	private final String sql;
+
+	/**
+	 * Bound arguments
+	 */
+	private final String[] args;
+
+	/**
+	 * Elapsed time in nanoseconds
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * Query plan detail lines
+	 */
+	private final List<String> plan;
+
+	/**
+	 * Tables read with a full table scan
+	 */
+	private final List<String> scanTables;
+
+	/**
+	 * Constructor
+	 *
+	 * @param time
+	 *            time logged in epoch milliseconds
+	 * @param sql
+	 *            sql statement
+	 * @param args
+	 *            bound arguments
+	 * @param elapsedNanos
+	 *            elapsed time in nanoseconds
+	 * @param plan
+	 *            query plan detail lines
+	 * @param scanTables
+	 *            tables read with a full table scan
+	 */
+	public SlowQuery(long time, String sql, String[] args, long elapsedNanos,
+			List<String> plan, List<String> scanTables) {
+		this.time = time;
+		this.sql = sql;
+		this.args = args != null ? args.clone() : null;
+		this.elapsedNanos = elapsedNanos;
+		this.plan = Collections.unmodifiableList(plan);
+		this.scanTables = Collections.unmodifiableList(scanTables);
+	}
+
+	/**
+	 * Get the time logged in epoch milliseconds
+	 *
+	 * @return time
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Get the SQL statement
+	 *
+	 * @return sql
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Get the bound arguments
+	 *
+	 * @return arguments or null
+	 */
+	public String[] getArgs() {
+		return args != null ? args.clone() : null;
+	}
+
+	/**
+	 * Get the elapsed time in nanoseconds
+	 *
+	 * @return elapsed nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Get the elapsed time in milliseconds
+	 *
+	 * @return elapsed milliseconds
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * Get the EXPLAIN QUERY PLAN detail lines, empty if the plan could not be
+	 * captured
+	 *
+	 * @return query plan
+	 */
+	public List<String> getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Get the tables read with a full table scan
+	 *
+	 * @return scanned tables
+	 */
+	public List<String> getScanTables() {
+		return scanTables;
+	}
+
+	/**
+	 * Determine if the query plan includes a full table scan
+	 *
+	 * @return true if a full table scan
+	 */
+	public boolean isScan() {
+		return !scanTables.isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		StringBuilder value = new StringBuilder();
+		if (isScan()) {
+			value.append("SCAN ").append(scanTables).append(" ");
+		}
+		value.append(getElapsedMillis()).append(" ms: ").append(sql);
+		if (args != null && args.length > 0) {
+			value.append(" ").append(Arrays.toString(args));
+		}
+		for (String detail : plan) {
+			value.append("\n\t").append(detail);
+		}
+		return value.toString();
+	}
+
+}
@@ -0,0 +1,19 @@
+package mil.nga.geopackage.db;
+
+/**
+ * Listener notified of queries exceeding the slow query log threshold
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public interface SlowQueryListener {
+
+	/**
+	 * Called when a query exceeds the slow query threshold
+	 *
+	 * @param query
+	 *            slow query with captured query plan
+	 */
+	public void onSlowQuery(SlowQuery query);
+
+}
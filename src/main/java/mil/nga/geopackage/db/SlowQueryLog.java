@@ -0,0 +1,303 @@
+package mil.nga.geopackage.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Slow query log capturing queries exceeding a time threshold along with
+ * their bound arguments and EXPLAIN QUERY PLAN output. Plans reading a table
+ * without an index are flagged as a SCAN. The most recent slow queries are
+ * retained in a rolling buffer, logged and passed to registered listeners.
+ * User DAO queries are measured from execution until their result is closed,
+ * including iterating the rows. Raw result sets from
+ * {@link GeoPackageConnection#query(String, String[])} are measured only up
+ * to the first row.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class SlowQueryLog {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(SlowQueryLog.class.getName());
+
+	/**
+	 * Default number of retained slow queries
+	 */
+	public static final int DEFAULT_CAPACITY = 100;
+
+	/**
+	 * Threshold in nanoseconds
+	 */
+	private volatile long thresholdNanos;
+
+	/**
+	 * Number of retained slow queries
+	 */
+	private int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * Retained slow queries, oldest first
+	 */
+	private final Deque<SlowQuery> queries = new ArrayDeque<>();
+
+	/**
+	 * Listeners
+	 */
+	private final List<SlowQueryListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Log level of slow queries, null to not log
+	 */
+	private Level level = Level.WARNING;
+
+	/**
+	 * Constructor
+	 *
+	 * @param thresholdMillis
+	 *            threshold in milliseconds
+	 */
+	public SlowQueryLog(long thresholdMillis) {
+		setThresholdMillis(thresholdMillis);
+	}
+
+	/**
+	 * Get the threshold in milliseconds
+	 *
+	 * @return threshold milliseconds
+	 */
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	/**
+	 * Set the threshold in milliseconds, queries taking at least the threshold
+	 * are logged
+	 *
+	 * @param thresholdMillis
+	 *            threshold milliseconds
+	 */
+	public void setThresholdMillis(long thresholdMillis) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+	}
+
+	/**
+	 * Get the number of retained slow queries
+	 *
+	 * @return capacity
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Set the number of retained slow queries
+	 *
+	 * @param capacity
+	 *            capacity
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+		while (queries.size() > capacity) {
+			queries.removeFirst();
+		}
+	}
+
+	/**
+	 * Get the log level of slow queries
+	 *
+	 * @return level or null
+	 */
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Set the log level of slow queries
+	 *
+	 * @param level
+	 *            level, null to not log
+	 */
+	public void setLevel(Level level) {
+		this.level = level;
+	}
+
+	/**
+	 * Add a slow query listener
+	 *
+	 * @param listener
+	 *            listener
+	 */
+	public void addListener(SlowQueryListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a slow query listener
+	 *
+	 * @param listener
+	 *            listener
+	 */
+	public void removeListener(SlowQueryListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Get the retained slow queries, oldest first
+	 *
+	 * @return slow queries
+	 */
+	public synchronized List<SlowQuery> getQueries() {
+		return new ArrayList<>(queries);
+	}
+
+	/**
+	 * Clear the retained slow queries
+	 */
+	public synchronized void clear() {
+		queries.clear();
+	}
+
+	/**
+	 * Determine if the elapsed time reaches the threshold
+	 *
+	 * @param elapsedNanos
+	 *            elapsed nanoseconds
+	 * @return true if slow
+	 */
+	public boolean isSlow(long elapsedNanos) {
+		return elapsedNanos >= thresholdNanos;
+	}
+
+	/**
+	 * Check a query execution, capturing the query plan on the connection
+	 * and logging the query when it reaches the threshold
+	 *
+	 * @param connection
+	 *            connection the query executed on
+	 * @param sql
+	 *            sql statement
+	 * @param args
+	 *            bound arguments
+	 * @param elapsedNanos
+	 *            elapsed nanoseconds
+	 * @return slow query or null when under the threshold
+	 */
+	public SlowQuery check(Connection connection, String sql, String[] args,
+			long elapsedNanos) {
+		SlowQuery query = null;
+		if (isSlow(elapsedNanos)) {
+			List<String> plan = explain(connection, sql, args);
+			query = new SlowQuery(System.currentTimeMillis(), sql, args,
+					elapsedNanos, plan, scanTables(plan));
+			add(query);
+		}
+		return query;
+	}
+
+	/**
+	 * Add a slow query to the log
+	 *
+	 * @param query
+	 *            slow query
+	 */
+	public void add(SlowQuery query) {
+		synchronized (this) {
+			if (capacity > 0) {
+				while (queries.size() >= capacity) {
+					queries.removeFirst();
+				}
+				queries.addLast(query);
+			}
+		}
+		Level logLevel = level;
+		if (logLevel != null && log.isLoggable(logLevel)) {
+			log.log(logLevel, "Slow query " + query);
+		}
+		for (SlowQueryListener listener : listeners) {
+			try {
+				listener.onSlowQuery(query);
+			} catch (RuntimeException e) {
+				log.log(Level.WARNING, "Slow query listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Capture the EXPLAIN QUERY PLAN detail lines of the query
+	 *
+	 * @param connection
+	 *            connection
+	 * @param sql
+	 *            sql statement
+	 * @param args
+	 *            bound arguments
+	 * @return query plan detail lines, empty if not captured
+	 */
+	public static List<String> explain(Connection connection, String sql,
+			String[] args) {
+		List<String> plan = new ArrayList<>();
+		String explainSql = "EXPLAIN QUERY PLAN " + sql;
+		PreparedStatement statement = null;
+		try {
+			statement = connection.prepareStatement(explainSql);
+			SQLUtils.setArguments(statement, args);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				int detailColumn = resultSet.getMetaData().getColumnCount();
+				while (resultSet.next()) {
+					plan.add(resultSet.getString(detailColumn));
+				}
+			}
+		} catch (SQLException e) {
+			log.log(Level.FINE, "Failed to capture query plan: " + sql, e);
+		} finally {
+			SQLUtils.closeStatement(statement, explainSql);
+		}
+		return plan;
+	}
+
+	/**
+	 * Get the tables read with a full table scan from the query plan. Index,
+	 * virtual table (such as RTree), subquery and constant row scans are not
+	 * full table scans.
+	 *
+	 * @param plan
+	 *            query plan detail lines
+	 * @return scanned tables
+	 */
+	public static List<String> scanTables(List<String> plan) {
+		List<String> tables = new ArrayList<>();
+		for (String detail : plan) {
+			if (detail != null && detail.startsWith("SCAN ")
+					&& !detail.contains(" USING ")
+					&& !detail.contains("VIRTUAL TABLE")
+					&& !detail.startsWith("SCAN SUBQUERY")
+					&& !detail.startsWith("SCAN CONSTANT ROW")) {
+				String table = detail.substring("SCAN ".length());
+				if (table.startsWith("TABLE ")) {
+					table = table.substring("TABLE ".length());
+				}
+				int end = table.indexOf(' ');
+				if (end != -1) {
+					table = table.substring(0, end);
+				}
+				tables.add(table);
+			}
+		}
+		return tables;
+	}
+
+}
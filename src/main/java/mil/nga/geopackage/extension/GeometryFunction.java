@@ -3,6 +3,7 @@ package mil.nga.geopackage.extension;
 import java.sql.SQLException;
 
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
 
 import org.sqlite.Function;
 
@@ -38,7 +39,7 @@ public abstract class GeometryFunction extends Function {
 		byte[] bytes = value_blob(0);
 		GeoPackageGeometryData geometryData = null;
 		if (bytes != null && bytes.length > 0) {
-			geometryData = new GeoPackageGeometryData(bytes);
+			geometryData = new LazyGeoPackageGeometryData(bytes);
 		}
 
 		Object response = execute(geometryData);
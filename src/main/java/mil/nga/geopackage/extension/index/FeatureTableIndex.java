@@ -1,6 +1,7 @@
 package mil.nga.geopackage.extension.index;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
@@ -11,11 +12,15 @@ import com.j256.ormlite.support.ConnectionSource;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageCore;
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.QueryDeadline;
+import mil.nga.geopackage.extension.ExtensionScopeType;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureResultSet;
 import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.features.user.FeatureRowSync;
+import mil.nga.geopackage.user.UserChunkIterator;
 import mil.nga.sf.GeometryEnvelope;
 import mil.nga.sf.proj.Projection;
 
@@ -47,6 +52,16 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 	 */
 	private final FeatureRowSync featureRowSync = new FeatureRowSync();
 
+	/**
+	 * Bulk build flag, rebuilding with a {@link FeatureTableIndexBuilder}
+	 */
+	private boolean bulkBuild = false;
+
+	/**
+	 * Number of envelope scanning worker threads when bulk building
+	 */
+	private int buildWorkers = Runtime.getRuntime().availableProcessors();
+
 	/**
 	 * Constructor
 	 * 
@@ -76,6 +91,84 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 		// Don't close anything, leave the GeoPackage connection open
 	}
 
+	/**
+	 * Get the feature DAO
+	 * 
+	 * @return feature DAO
+	 * @since 3.4.1
+	 */
+	public FeatureDao getFeatureDao() {
+		return featureDao;
+	}
+
+	/**
+	 * Is the index rebuilt with a {@link FeatureTableIndexBuilder}
+	 * 
+	 * @return true if bulk building
+	 * @since 3.4.1
+	 */
+	public boolean isBulkBuild() {
+		return bulkBuild;
+	}
+
+	/**
+	 * Set whether to rebuild the index with a
+	 * {@link FeatureTableIndexBuilder}, default false. When false, features
+	 * are indexed row by row in chunk transactions.
+	 * 
+	 * @param bulkBuild
+	 *            true to bulk build
+	 * @since 3.4.1
+	 */
+	public void setBulkBuild(boolean bulkBuild) {
+		this.bulkBuild = bulkBuild;
+	}
+
+	/**
+	 * Get the number of envelope scanning worker threads when bulk building
+	 * 
+	 * @return build workers
+	 * @since 3.4.1
+	 */
+	public int getBuildWorkers() {
+		return buildWorkers;
+	}
+
+	/**
+	 * Set the number of envelope scanning worker threads when bulk building,
+	 * used in parallel only when the GeoPackage has a reader pool
+	 * 
+	 * @param buildWorkers
+	 *            build workers, at least 1
+	 * @since 3.4.1
+	 */
+	public void setBuildWorkers(int buildWorkers) {
+		if (buildWorkers < 1) {
+			throw new IllegalArgumentException(
+					"Build workers must be at least 1, workers: "
+							+ buildWorkers);
+		}
+		this.buildWorkers = buildWorkers;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * When bulk building outside of a transaction, the index is rebuilt with
+	 * a {@link FeatureTableIndexBuilder}, replacing the previous index of the
+	 * table only once the build completes.
+	 */
+	@Override
+	public int index(boolean force) {
+		int count = 0;
+		if (!bulkBuild || featureDao.getDb().inTransaction()) {
+			count = super.index(force);
+		} else if (force || !isIndexed()) {
+			count = new FeatureTableIndexBuilder(this, buildWorkers).build();
+		}
+		return count;
+	}
+
 	/**
 	 * Index the feature row. This method assumes that indexing has been
 	 * completed and maintained as the last indexed time is updated.
@@ -100,6 +193,59 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 		return indexed;
 	}
 
+	/**
+	 * Index the feature rows as a single transaction, updating the last
+	 * indexed time once. Rows without an indexable geometry have any previous
+	 * index removed. This method assumes that indexing has been completed and
+	 * maintained as the last indexed time is updated.
+	 *
+	 * @param rows
+	 *            feature rows
+	 * @return number of rows indexed
+	 * @since 3.4.1
+	 */
+	public int index(final Collection<FeatureRow> rows) {
+		final TableIndex tableIndex = getTableIndex();
+		if (tableIndex == null) {
+			throw new GeoPackageException(
+					"GeoPackage table is not indexed. GeoPackage: "
+							+ getGeoPackage().getName() + ", Table: "
+							+ getTableName());
+		}
+
+		int count;
+		try {
+			ConnectionSource connectionSource = getGeoPackage().getDatabase()
+					.getConnectionSource();
+			count = TransactionManager.callInTransaction(connectionSource,
+					new Callable<Integer>() {
+						public Integer call() throws Exception {
+							int count = 0;
+							for (FeatureRow row : rows) {
+								if (index(tableIndex, row.getId(),
+										row.getGeometry())) {
+									count++;
+								} else {
+									// Remove any stale index of an updated
+									// row without an indexable geometry
+									deleteIndex(row.getId());
+								}
+							}
+							return count;
+						}
+					});
+		} catch (SQLException e) {
+			throw new GeoPackageException("Failed to Index Rows. GeoPackage: "
+					+ getGeoPackage().getName() + ", Table: " + getTableName(),
+					e);
+		}
+
+		// Update the last indexed time
+		updateLastIndexed();
+
+		return count;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -108,13 +254,17 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 
 		int count = 0;
 
-		long offset = 0;
+		// Keyset paginate through the rows by id
+		final UserChunkIterator<FeatureResultSet> chunks = featureDao
+				.chunkIterator(chunkLimit);
 		int chunkCount = 0;
 
-		while (chunkCount >= 0) {
-
-			final long chunkOffset = offset;
+		while (chunkCount >= 0 && chunks.hasNext()) {
 
+			// Interrupt the in-flight chunk query when canceled
+			QueryDeadline deadline = progress != null
+					? QueryDeadline.start(progress)
+					: null;
 			try {
 				// Iterate through each row and index as a single transaction
 				ConnectionSource connectionSource = getGeoPackage()
@@ -123,8 +273,7 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 						connectionSource, new Callable<Integer>() {
 							public Integer call() throws Exception {
 
-								FeatureResultSet resultSet = featureDao
-										.queryForChunk(chunkLimit, chunkOffset);
+								FeatureResultSet resultSet = chunks.next();
 								int count = indexRows(tableIndex, resultSet);
 
 								return count;
@@ -133,15 +282,20 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 				if (chunkCount > 0) {
 					count += chunkCount;
 				}
-			} catch (SQLException e) {
+			} catch (SQLException | GeoPackageException e) {
+				if (progress != null && !progress.isActive()) {
+					break;
+				}
 				throw new GeoPackageException(
 						"Failed to Index Table. GeoPackage: "
 								+ getGeoPackage().getName() + ", Table: "
 								+ getTableName(),
 						e);
+			} finally {
+				if (deadline != null) {
+					deadline.close();
+				}
 			}
-
-			offset += chunkLimit;
 		}
 
 		// Update the last indexed time
@@ -172,9 +326,8 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 					count++;
 				}
 				try {
-					FeatureRow row = resultSet.getRow();
-					boolean indexed = index(tableIndex, row.getId(),
-							row.getGeometry());
+					boolean indexed = index(tableIndex, resultSet.getId(),
+							resultSet.getGeometry());
 					if (indexed) {
 						count++;
 					}
@@ -196,6 +349,57 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 		return count;
 	}
 
+	/**
+	 * Create the extension, table index and geometry index table as needed
+	 * for a bulk build
+	 */
+	void createIndexTables() {
+		getOrCreate(EXTENSION_NAME, getTableName(), getColumnName(),
+				EXTENSION_DEFINITION, ExtensionScopeType.READ_WRITE);
+		GeoPackageCore geoPackage = getGeoPackage();
+		try {
+			TableIndexDao tableIndexDao = geoPackage.getTableIndexDao();
+			if (!tableIndexDao.isTableExists()) {
+				geoPackage.createTableIndexTable();
+			}
+			if (getTableIndex() == null) {
+				TableIndex tableIndex = new TableIndex();
+				tableIndex.setTableName(getTableName());
+				tableIndexDao.create(tableIndex);
+			}
+			if (!geoPackage.getGeometryIndexDao().isTableExists()) {
+				geoPackage.createGeometryIndexTable();
+			}
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to create the table index. GeoPackage: "
+							+ geoPackage.getName() + ", Table: "
+							+ getTableName(),
+					e);
+		}
+	}
+
+	/**
+	 * Determine if indexing has not been canceled by the progress
+	 * 
+	 * @return true if active
+	 */
+	boolean isProgressActive() {
+		return progress == null || progress.isActive();
+	}
+
+	/**
+	 * Add indexing progress
+	 * 
+	 * @param count
+	 *            progress count
+	 */
+	void addProgress(int count) {
+		if (progress != null) {
+			progress.addProgress(count);
+		}
+	}
+
 	/**
 	 * Delete the index for the feature row
 	 *
@@ -0,0 +1,688 @@
+package mil.nga.geopackage.extension.index;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.Aggregate;
+import mil.nga.geopackage.db.AggregateResult;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Bulk builder of the Feature Table Index NGA Extension. Feature envelopes are
+ * read from the geometry blob headers, decoding only geometries without a
+ * header envelope. When the GeoPackage has a reader pool, worker threads scan
+ * id ranges of the feature table on pooled read connections while the calling
+ * thread stages the envelopes with batched prepared inserts into a temporary
+ * table without indexes.
+ *
+ * The staged envelopes are then sorted by geometry id into the geometry index
+ * table in a single transaction, which replaces the previous index rows of the
+ * feature table. As the geometry index table and its indexes are shared by all
+ * indexed feature tables, the swap replaces only the rows of the feature table
+ * and leaves the table indexes in place. Readers see either the previous or
+ * the rebuilt index, and a canceled or failed build leaves the previous index
+ * unchanged. A builder may be reused and may run builds concurrently, each
+ * build keeping its own state.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class FeatureTableIndexBuilder {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(FeatureTableIndexBuilder.class.getName());
+
+	/**
+	 * Staging table name prefix
+	 */
+	private static final String STAGING_TABLE = "nga_geometry_index_build_";
+
+	/**
+	 * Staging table number for unique staging table names
+	 */
+	private static final AtomicInteger stagingNumber = new AtomicInteger();
+
+	/**
+	 * Worker thread number for thread names
+	 */
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	/**
+	 * Id ranges per worker
+	 */
+	private static final int RANGES_PER_WORKER = 4;
+
+	/**
+	 * Staged chunks the queue holds per worker
+	 */
+	private static final int QUEUE_CHUNKS_PER_WORKER = 2;
+
+	/**
+	 * Feature table index
+	 */
+	private final FeatureTableIndex featureTableIndex;
+
+	/**
+	 * Feature DAO
+	 */
+	private final FeatureDao featureDao;
+
+	/**
+	 * Number of envelope scanning worker threads
+	 */
+	private int workers;
+
+	/**
+	 * Constructor, using a worker per available processor
+	 *
+	 * @param featureTableIndex
+	 *            feature table index
+	 */
+	public FeatureTableIndexBuilder(FeatureTableIndex featureTableIndex) {
+		this(featureTableIndex, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param featureTableIndex
+	 *            feature table index
+	 * @param workers
+	 *            number of envelope scanning worker threads
+	 */
+	public FeatureTableIndexBuilder(FeatureTableIndex featureTableIndex,
+			int workers) {
+		this.featureTableIndex = featureTableIndex;
+		this.featureDao = featureTableIndex.getFeatureDao();
+		setWorkers(workers);
+	}
+
+	/**
+	 * Get the feature table index
+	 *
+	 * @return feature table index
+	 */
+	public FeatureTableIndex getFeatureTableIndex() {
+		return featureTableIndex;
+	}
+
+	/**
+	 * Get the number of envelope scanning worker threads
+	 *
+	 * @return workers
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Set the number of envelope scanning worker threads. Workers scan in
+	 * parallel only when the GeoPackage has a reader pool and is not within a
+	 * transaction, otherwise the calling thread scans the feature table.
+	 *
+	 * @param workers
+	 *            workers, at least 1
+	 */
+	public void setWorkers(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException(
+					"Workers must be at least 1, workers: " + workers);
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * Build the index, replacing any previous index of the feature table
+	 *
+	 * @return number of indexed features, 0 when canceled
+	 */
+	public int build() {
+
+		featureTableIndex.createIndexTables();
+
+		GeoPackageConnection db = featureDao.getDb();
+		db.checkWritable();
+		Connection connection = db.getConnection();
+		boolean parallel = workers > 1 && db.useReaderPool();
+		String stagingTable = CoreSQLUtils.quoteWrap(
+				STAGING_TABLE + stagingNumber.incrementAndGet());
+
+		int count = 0;
+		boolean previousAutoCommit = SQLUtils.beginTransaction(connection);
+		boolean success = false;
+		try {
+
+			SQLUtils.execSQL(connection, "CREATE TEMP TABLE " + stagingTable
+					+ " (geom_id INTEGER NOT NULL, min_x DOUBLE NOT NULL,"
+					+ " max_x DOUBLE NOT NULL, min_y DOUBLE NOT NULL,"
+					+ " max_y DOUBLE NOT NULL, min_z DOUBLE, max_z DOUBLE,"
+					+ " min_m DOUBLE, max_m DOUBLE)");
+
+			String stageSql = "INSERT INTO temp." + stagingTable
+					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+			PreparedStatement stage = connection.prepareStatement(stageSql);
+			try {
+				count = parallel ? stageParallel(db.getReaderPool(), stage)
+						: stageSequential(connection, stage);
+			} finally {
+				SQLUtils.closeStatement(stage, stageSql);
+			}
+
+			if (featureTableIndex.isProgressActive()) {
+				swap(connection, stagingTable);
+				success = true;
+			} else {
+				count = 0;
+			}
+
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to build the index. GeoPackage: "
+							+ featureTableIndex.getGeoPackage().getName()
+							+ ", Table: " + featureTableIndex.getTableName(),
+					e);
+		} finally {
+			if (previousAutoCommit) {
+				SQLUtils.endTransaction(connection, success,
+						previousAutoCommit);
+			}
+			try {
+				SQLUtils.execSQL(connection,
+						"DROP TABLE IF EXISTS temp." + stagingTable);
+			} catch (Exception e) {
+				log.log(Level.WARNING,
+						"Failed to drop index staging table: " + stagingTable,
+						e);
+			}
+		}
+
+		if (success) {
+			featureTableIndex.updateLastIndexed();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Scan the feature table on the calling thread, staging each chunk
+	 *
+	 * @param connection
+	 *            connection
+	 * @param stage
+	 *            staging insert statement
+	 * @return staged count
+	 */
+	private int stageSequential(Connection connection,
+			PreparedStatement stage) {
+		int[] count = new int[1];
+		scan(connection, null, null, new AtomicBoolean(), (chunk, rows) -> {
+			count[0] += stage(stage, chunk, rows);
+		});
+		return count[0];
+	}
+
+	/**
+	 * Scan id ranges of the feature table with worker threads on pooled read
+	 * connections, staging the chunks on the calling thread as they complete
+	 *
+	 * @param readerPool
+	 *            reader pool
+	 * @param stage
+	 *            staging insert statement
+	 * @return staged count
+	 */
+	private int stageParallel(final GeoPackageConnectionPool readerPool,
+			PreparedStatement stage) {
+
+		String idColumn = featureDao.getTable().getPkColumn().getName();
+		Aggregate min = Aggregate.min(idColumn);
+		Aggregate max = Aggregate.max(idColumn);
+		AggregateResult bounds = featureDao.aggregate(min, max);
+		Long minId = bounds.getLong(min);
+		final Long maxId = bounds.getLong(max);
+		if (minId == null || maxId == null) {
+			return 0;
+		}
+
+		final long grain = Math.max(featureTableIndex.getChunkLimit(),
+				(maxId - minId) / (workers * (long) RANGES_PER_WORKER) + 1);
+		final AtomicLong nextAfterId = new AtomicLong(minId - 1);
+		final BlockingQueue<StagedChunk> queue = new ArrayBlockingQueue<>(
+				workers * QUEUE_CHUNKS_PER_WORKER);
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		final AtomicBoolean stopped = new AtomicBoolean();
+
+		Runnable scanner = () -> {
+			try {
+				long afterId;
+				while (isActive(stopped) && failure.get() == null
+						&& (afterId = nextAfterId.getAndAdd(grain)) < maxId) {
+					long throughId = Math.min(afterId + grain, maxId);
+					Connection readConnection = readerPool.borrow();
+					try {
+						scan(readConnection, afterId, throughId, stopped,
+								(chunk, rows) -> put(queue,
+										new StagedChunk(chunk, rows), stopped));
+					} finally {
+						readerPool.release(readConnection);
+					}
+				}
+			} catch (RuntimeException e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				put(queue, StagedChunk.END, stopped);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"geopackage-index-"
+										+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		int count = 0;
+		try {
+
+			for (int i = 0; i < workers; i++) {
+				executor.execute(scanner);
+			}
+
+			int finished = 0;
+			while (finished < workers) {
+				StagedChunk chunk = take(queue);
+				if (chunk == StagedChunk.END) {
+					finished++;
+				} else if (failure.get() == null) {
+					count += stage(stage, chunk.envelopes, chunk.rows);
+				}
+				if (failure.get() != null || !isActive(stopped)) {
+					break;
+				}
+			}
+
+		} catch (RuntimeException e) {
+			failure.compareAndSet(null, e);
+			throw e;
+		} finally {
+			stopped.set(true);
+			executor.shutdownNow();
+		}
+
+		RuntimeException workerFailure = failure.get();
+		if (workerFailure != null) {
+			throw new GeoPackageException(
+					"Failed to read feature envelopes for table: "
+							+ featureDao.getTableName(),
+					workerFailure);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Scan the feature envelopes of the id range in keyset paginated chunks,
+	 * reading the geometry blob headers and decoding only geometries without
+	 * a header envelope. Null and empty geometries are skipped.
+	 *
+	 * @param connection
+	 *            read connection
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param stopped
+	 *            stopped flag of the build
+	 * @param consumer
+	 *            consumer of each chunk of envelopes by geometry id and the
+	 *            number of rows scanned
+	 */
+	private void scan(Connection connection, Long afterId, Long throughId,
+			AtomicBoolean stopped, ObjIntConsumer<Map<Long, GeometryEnvelope>> consumer) {
+
+		int limit = featureTableIndex.getChunkLimit();
+		int rows;
+
+		do {
+
+			rows = 0;
+			Map<Long, GeometryEnvelope> chunk = new LinkedHashMap<>();
+			List<Long> decodeIds = new ArrayList<>();
+
+			ResultSet resultSet = featureDao.queryForGeometryHeaders(
+					connection, null, null, afterId, throughId, limit);
+			try {
+				while (resultSet.next()) {
+					rows++;
+					long geomId = resultSet.getLong(1);
+					afterId = geomId;
+					byte[] headerBytes = resultSet.getBytes(2);
+					if (headerBytes == null) {
+						continue;
+					}
+					try {
+						GeoPackageGeometryData header = new LazyGeoPackageGeometryData(
+								headerBytes);
+						GeometryEnvelope envelope = header.getEnvelope();
+						if (envelope != null) {
+							chunk.put(geomId, envelope);
+						} else if (!header.isEmpty()) {
+							chunk.put(geomId, null);
+							decodeIds.add(geomId);
+						}
+					} catch (Exception e) {
+						log.log(Level.SEVERE,
+								"Failed to index feature. Table: "
+										+ featureDao.getTableName()
+										+ ", Geometry Id: " + geomId,
+								e);
+					}
+				}
+			} catch (SQLException e) {
+				throw new GeoPackageException(
+						"Failed to read geometry headers. Table: "
+								+ featureDao.getTableName(),
+						e);
+			} finally {
+				SQLUtils.closeResultSetStatement(resultSet,
+						featureDao.getTableName());
+			}
+
+			if (!decodeIds.isEmpty()) {
+				decodeEnvelopes(connection, decodeIds, chunk);
+			}
+			chunk.values().removeIf(Objects::isNull);
+
+			consumer.accept(chunk, rows);
+
+		} while (rows == limit && isActive(stopped));
+
+	}
+
+	/**
+	 * Decode the geometries and build the envelopes of the geometry ids
+	 *
+	 * @param connection
+	 *            read connection
+	 * @param geomIds
+	 *            geometry ids
+	 * @param chunk
+	 *            chunk envelopes by geometry id to set
+	 */
+	private void decodeEnvelopes(Connection connection, List<Long> geomIds,
+			Map<Long, GeometryEnvelope> chunk) {
+		ResultSet resultSet = featureDao.queryForGeometries(connection,
+				geomIds);
+		try {
+			while (resultSet.next()) {
+				long geomId = resultSet.getLong(1);
+				byte[] bytes = resultSet.getBytes(2);
+				if (bytes == null) {
+					continue;
+				}
+				try {
+					chunk.put(geomId, new LazyGeoPackageGeometryData(bytes)
+							.getOrBuildEnvelope());
+				} catch (Exception e) {
+					log.log(Level.SEVERE,
+							"Failed to index feature. Table: "
+									+ featureDao.getTableName()
+									+ ", Geometry Id: " + geomId,
+							e);
+				}
+			}
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to decode geometries. Table: "
+							+ featureDao.getTableName(),
+					e);
+		} finally {
+			SQLUtils.closeResultSetStatement(resultSet,
+					featureDao.getTableName());
+		}
+	}
+
+	/**
+	 * Stage the chunk envelopes as a JDBC batch
+	 *
+	 * @param stage
+	 *            staging insert statement
+	 * @param chunk
+	 *            envelopes by geometry id
+	 * @param rows
+	 *            number of feature rows scanned for the chunk
+	 * @return staged count
+	 */
+	private int stage(PreparedStatement stage,
+			Map<Long, GeometryEnvelope> chunk, int rows) {
+		try {
+			for (Map.Entry<Long, GeometryEnvelope> entry : chunk.entrySet()) {
+				GeometryEnvelope envelope = entry.getValue();
+				stage.setLong(1, entry.getKey());
+				stage.setDouble(2, envelope.getMinX());
+				stage.setDouble(3, envelope.getMaxX());
+				stage.setDouble(4, envelope.getMinY());
+				stage.setDouble(5, envelope.getMaxY());
+				setOptional(stage, 6, envelope.hasZ(), envelope.getMinZ());
+				setOptional(stage, 7, envelope.hasZ(), envelope.getMaxZ());
+				setOptional(stage, 8, envelope.hasM(), envelope.getMinM());
+				setOptional(stage, 9, envelope.hasM(), envelope.getMaxM());
+				stage.addBatch();
+			}
+			if (!chunk.isEmpty()) {
+				stage.executeBatch();
+			}
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to stage feature envelopes. Table: "
+							+ featureDao.getTableName(),
+					e);
+		}
+		featureTableIndex.addProgress(rows);
+		return chunk.size();
+	}
+
+	/**
+	 * Set an optional envelope value argument
+	 *
+	 * @param statement
+	 *            statement
+	 * @param index
+	 *            argument index
+	 * @param has
+	 *            true if the envelope has the value
+	 * @param value
+	 *            value
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private static void setOptional(PreparedStatement statement, int index,
+			boolean has, Double value) throws SQLException {
+		if (has && value != null) {
+			statement.setDouble(index, value);
+		} else {
+			statement.setNull(index, Types.DOUBLE);
+		}
+	}
+
+	/**
+	 * Replace the index rows of the feature table with the staged envelopes
+	 * sorted by geometry id. The shared geometry index table indexes are kept,
+	 * so the work is proportional to the rows of the feature table.
+	 *
+	 * @param connection
+	 *            connection within a transaction
+	 * @param stagingTable
+	 *            quoted staging table name
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private void swap(Connection connection, String stagingTable)
+			throws SQLException {
+
+		String tableName = featureTableIndex.getTableName();
+		String columns = GeometryIndex.COLUMN_GEOM_ID + ", "
+				+ GeometryIndex.COLUMN_MIN_X + ", " + GeometryIndex.COLUMN_MAX_X
+				+ ", " + GeometryIndex.COLUMN_MIN_Y + ", "
+				+ GeometryIndex.COLUMN_MAX_Y + ", " + GeometryIndex.COLUMN_MIN_Z
+				+ ", " + GeometryIndex.COLUMN_MAX_Z + ", "
+				+ GeometryIndex.COLUMN_MIN_M + ", "
+				+ GeometryIndex.COLUMN_MAX_M;
+
+		String deleteSql = "DELETE FROM " + GeometryIndex.TABLE_NAME
+				+ " WHERE " + GeometryIndex.COLUMN_TABLE_NAME + " = ?";
+		execute(connection, deleteSql, tableName);
+
+		String insertSql = "INSERT INTO " + GeometryIndex.TABLE_NAME + " ("
+				+ GeometryIndex.COLUMN_TABLE_NAME + ", " + columns
+				+ ") SELECT ?, " + columns + " FROM temp." + stagingTable
+				+ " ORDER BY " + GeometryIndex.COLUMN_GEOM_ID;
+		execute(connection, insertSql, tableName);
+	}
+
+	/**
+	 * Execute an update statement with a single argument
+	 *
+	 * @param connection
+	 *            connection
+	 * @param sql
+	 *            sql statement
+	 * @param arg
+	 *            argument
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private static void execute(Connection connection, String sql,
+			String arg) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			statement.setString(1, arg);
+			statement.executeUpdate();
+		} finally {
+			SQLUtils.closeStatement(statement, sql);
+		}
+	}
+
+	/**
+	 * Determine if the build is still active and not canceled
+	 *
+	 * @param stopped
+	 *            stopped flag of the build
+	 * @return true if active
+	 */
+	private boolean isActive(AtomicBoolean stopped) {
+		return !stopped.get() && featureTableIndex.isProgressActive();
+	}
+
+	/**
+	 * Put the staged chunk on the queue, waiting for space unless stopped
+	 *
+	 * @param queue
+	 *            queue
+	 * @param chunk
+	 *            staged chunk
+	 * @param stopped
+	 *            stopped flag of the build
+	 */
+	private static void put(BlockingQueue<StagedChunk> queue,
+			StagedChunk chunk, AtomicBoolean stopped) {
+		try {
+			while (!stopped.get()
+					&& !queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+				// Wait for the calling thread to drain the queue
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Take the next staged chunk from the queue
+	 *
+	 * @param queue
+	 *            queue
+	 * @return staged chunk
+	 */
+	private static StagedChunk take(BlockingQueue<StagedChunk> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GeoPackageException(
+					"Interrupted waiting for feature envelopes", e);
+		}
+	}
+
+	/**
+	 * Chunk of feature envelopes scanned by a worker
+	 */
+	private static class StagedChunk {
+
+		/**
+		 * Worker finished marker
+		 */
+		private static final StagedChunk END = new StagedChunk(null, 0);
+
+		/**
+		 * Envelopes by geometry id
+		 */
+		private final Map<Long, GeometryEnvelope> envelopes;
+
+		/**
+		 * Number of feature rows scanned
+		 */
+		private final int rows;
+
+		/**
+		 * Constructor
+		 *
+		 * @param envelopes
+		 *            envelopes by geometry id
+		 * @param rows
+		 *            number of feature rows scanned
+		 */
+		private StagedChunk(Map<Long, GeometryEnvelope> envelopes, int rows) {
+			this.envelopes = envelopes;
+			this.rows = rows;
+		}
+
+	}
+
+}
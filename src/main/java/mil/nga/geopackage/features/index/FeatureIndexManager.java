@@ -15,6 +15,7 @@ import java.util.logging.Logger;
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.QueryDeadline;
 import mil.nga.geopackage.extension.RTreeIndexExtension;
 import mil.nga.geopackage.extension.RTreeIndexTableDao;
 import mil.nga.geopackage.extension.index.FeatureTableIndex;
@@ -80,6 +81,11 @@ public class FeatureIndexManager {
 	 */
 	private boolean continueOnError = true;
 
+	/**
+	 * Progress, canceling in-flight index statements when no longer active
+	 */
+	private GeoPackageProgress progress;
+
 	/**
 	 * Constructor
 	 *
@@ -269,6 +275,7 @@ public class FeatureIndexManager {
 	 *            GeoPackage progress
 	 */
 	public void setProgress(GeoPackageProgress progress) {
+		this.progress = progress;
 		featureTableIndex.setProgress(progress);
 		rTreeIndexTableDao.setProgress(progress);
 	}
@@ -363,8 +370,9 @@ public class FeatureIndexManager {
 				if (rTreeIndexed) {
 					rTreeIndexTableDao.delete();
 				}
-				rTreeIndexTableDao.create();
-				count = rTreeIndexTableDao.count();
+				if (createRTreeIndex()) {
+					count = rTreeIndexTableDao.count();
+				}
 			}
 			break;
 		default:
@@ -374,6 +382,43 @@ public class FeatureIndexManager {
 		return count;
 	}
 
+	/**
+	 * Create the RTree index, interrupting the in-flight statement when the
+	 * progress is canceled
+	 *
+	 * @return true if created, false if canceled
+	 */
+	private boolean createRTreeIndex() {
+		boolean created = true;
+		if (progress == null) {
+			rTreeIndexTableDao.create();
+		} else {
+			try {
+				QueryDeadline deadline = QueryDeadline.start(progress);
+				try {
+					rTreeIndexTableDao.create();
+				} finally {
+					deadline.close();
+				}
+			} catch (GeoPackageException e) {
+				if (!progress.isActive()) {
+					created = false;
+					try {
+						rTreeIndexTableDao.delete();
+					} catch (Exception deleteException) {
+						LOGGER.log(Level.WARNING,
+								"Failed to delete canceled RTree Index. Table: "
+										+ featureDao.getTableName(),
+								deleteException);
+					}
+				} else {
+					throw e;
+				}
+			}
+		}
+		return created;
+	}
+
 	/**
 	 * Index the feature row, using the set index location. This method assumes
 	 * that indexing has been completed and maintained as the last indexed time
@@ -408,6 +453,59 @@ public class FeatureIndexManager {
 		return indexed;
 	}
 
+	/**
+	 * Index the feature rows for the index types. This method assumes that
+	 * indexing has been completed and maintained as the last indexed time is
+	 * updated.
+	 *
+	 * @param rows
+	 *            feature rows to index
+	 * @param types
+	 *            feature index types
+	 * @return number of rows indexed, max from any type
+	 * @since 3.4.1
+	 */
+	public int index(Collection<FeatureRow> rows,
+			List<FeatureIndexType> types) {
+		int indexed = 0;
+		for (FeatureIndexType type : types) {
+			indexed = Math.max(indexed, index(type, rows));
+		}
+		return indexed;
+	}
+
+	/**
+	 * Index the feature rows. This method assumes that indexing has been
+	 * completed and maintained as the last indexed time is updated.
+	 *
+	 * @param type
+	 *            index location type
+	 * @param rows
+	 *            feature rows to index
+	 * @return number of rows indexed
+	 * @since 3.4.1
+	 */
+	public int index(FeatureIndexType type, Collection<FeatureRow> rows) {
+		int indexed = 0;
+		if (type == null) {
+			throw new GeoPackageException(
+					"FeatureIndexType is required to index");
+		}
+		switch (type) {
+		case GEOPACKAGE:
+			indexed = featureTableIndex.index(rows);
+			break;
+		case RTREE:
+			// Updated by triggers, ignore for RTree
+			indexed = rows.size();
+			break;
+		default:
+			throw new GeoPackageException(
+					"Unsupported FeatureIndexType: " + type);
+		}
+		return indexed;
+	}
+
 	/**
 	 * Index the feature row. This method assumes that indexing has been
 	 * completed and maintained as the last indexed time is updated.
@@ -1,5 +1,10 @@
 package mil.nga.geopackage.features.index;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import mil.nga.geopackage.features.user.FeatureRow;
 
 /**
@@ -30,4 +35,18 @@ public interface FeatureIndexResults extends Iterable<FeatureRow> {
 	 */
 	public Iterable<Long> ids();
 
+	/**
+	 * Stream the feature rows, sized by the result count. Closing the stream
+	 * closes the results.
+	 *
+	 * @return feature row stream, close when done
+	 * @since 3.4.1
+	 */
+	public default Stream<FeatureRow> stream() {
+		Spliterator<FeatureRow> spliterator = Spliterators.spliterator(
+				iterator(), count(),
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
 }
@@ -1,12 +1,22 @@
 package mil.nga.geopackage.features.user;
 
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.io.IOException;
+import java.util.Date;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
 
 /**
- * Feature Row Cache for a single feature table
+ * Feature Row Cache for a single feature table. The cache is bounded by a max
+ * number of feature rows and by a memory budget of estimated bytes, evicting
+ * the least recently used feature rows. The memory budget may be shared
+ * across caches, see {@link FeatureCacheTables}. Lookups are safe for
+ * concurrent readers and writers.
  *
  * @author osbornb
  * @since 3.2.0
@@ -19,14 +29,59 @@ public class FeatureCache {
 	public static final int DEFAULT_CACHE_MAX_SIZE = 1000;
 
 	/**
-	 * Feature Row cache
+	 * Estimated fixed bytes of a cached feature row
+	 */
+	private static final int ROW_BYTES = 64;
+
+	/**
+	 * Estimated fixed bytes of a column value
+	 */
+	private static final int VALUE_BYTES = 16;
+
+	/**
+	 * Feature Row cache by feature id
+	 */
+	private final Map<Long, Node> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Cached feature rows by access order stamp, least recently used first
+	 */
+	private final ConcurrentNavigableMap<Long, Node> accessOrder = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Memory budget
+	 */
+	private final FeatureCacheBudget budget;
+
+	/**
+	 * Estimated bytes of the cached feature rows
+	 */
+	private final AtomicLong weight = new AtomicLong();
+
+	/**
+	 * Cache hits
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Cache misses
 	 */
-	private final Map<Long, FeatureRow> cache;
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Cache evictions
+	 */
+	private final LongAdder evictions = new LongAdder();
 
 	/**
 	 * Max cache size
 	 */
-	private int maxSize;
+	private volatile int maxSize;
+
+	/**
+	 * Closed flag, puts are ignored once closed
+	 */
+	private volatile boolean closed = false;
 
 	/**
 	 * Constructor, created with cache max size of
@@ -43,15 +98,35 @@ public class FeatureCache {
 	 *            max feature rows to retain in the cache
 	 */
 	public FeatureCache(int size) {
-		maxSize = size;
-		cache = new LinkedHashMap<Long, FeatureRow>(maxSize, .75f, true) {
-			private static final long serialVersionUID = 1L;
+		this(size, 0);
+	}
 
-			@Override
-			protected boolean removeEldestEntry(Entry<Long, FeatureRow> eldest) {
-				return size() > maxSize;
-			}
-		};
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 *            max feature rows to retain in the cache
+	 * @param maxBytes
+	 *            max estimated bytes to retain in the cache, 0 for no limit
+	 * @since 3.4.1
+	 */
+	public FeatureCache(int size, long maxBytes) {
+		this(size, new FeatureCacheBudget(maxBytes));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 *            max feature rows to retain in the cache
+	 * @param budget
+	 *            memory budget, may be shared with other caches
+	 * @since 3.4.1
+	 */
+	public FeatureCache(int size, FeatureCacheBudget budget) {
+		maxSize = size;
+		this.budget = budget;
+		budget.register(this);
 	}
 
 	/**
@@ -72,6 +147,78 @@ public class FeatureCache {
 		return cache.size();
 	}
 
+	/**
+	 * Get the memory budget
+	 *
+	 * @return budget
+	 * @since 3.4.1
+	 */
+	public FeatureCacheBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the max estimated bytes of the memory budget
+	 *
+	 * @return max bytes, 0 for no limit
+	 * @since 3.4.1
+	 */
+	public long getMaxBytes() {
+		return budget.getMaxBytes();
+	}
+
+	/**
+	 * Get the estimated bytes of the cached feature rows
+	 *
+	 * @return weight in bytes
+	 * @since 3.4.1
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * Get the number of cache hits
+	 *
+	 * @return hits
+	 * @since 3.4.1
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of cache misses
+	 *
+	 * @return misses
+	 * @since 3.4.1
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of evicted feature rows
+	 *
+	 * @return evictions
+	 * @since 3.4.1
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Get the ratio of hits to lookups
+	 *
+	 * @return hit rate, 0 when no lookups
+	 * @since 3.4.1
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long lookups = hitCount + misses.sum();
+		return lookups > 0 ? hitCount / (double) lookups : 0;
+	}
+
 	/**
 	 * Get the cached feature row by feature id
 	 *
@@ -80,18 +227,61 @@ public class FeatureCache {
 	 * @return feature row or null
 	 */
 	public FeatureRow get(long featureId) {
-		return cache.get(featureId);
+		FeatureRow featureRow = null;
+		Node node = cache.get(featureId);
+		if (node != null) {
+			hits.increment();
+			touch(node);
+			featureRow = node.row;
+		} else {
+			misses.increment();
+		}
+		return featureRow;
 	}
 
 	/**
-	 * Cache the feature row
+	 * Determine if the cache has been closed
+	 *
+	 * @return true if closed
+	 * @since 3.4.1
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Cache the feature row. Nothing is cached when the max size is 0 or the
+	 * cache has been closed.
 	 *
 	 * @param featureRow
 	 *            feature row
 	 * @return previous cached feature row or null
 	 */
 	public FeatureRow put(FeatureRow featureRow) {
-		return cache.put(featureRow.getId(), featureRow);
+
+		if (closed || maxSize <= 0) {
+			return remove(featureRow.getId());
+		}
+
+		Node node = new Node(featureRow.getId(), featureRow,
+				estimateBytes(featureRow));
+		link(node);
+
+		Node previous = cache.put(node.id, node);
+		if (previous != null) {
+			release(previous, false);
+		}
+		if (node.removed) {
+			// Evicted before it was mapped
+			cache.remove(node.id, node);
+		} else if (closed) {
+			// Closed while being cached
+			release(node, false);
+		}
+
+		evict();
+
+		return previous != null ? previous.row : null;
 	}
 
 	/**
@@ -113,14 +303,22 @@ public class FeatureCache {
 	 * @return removed feature row or null
 	 */
 	public FeatureRow remove(long featureId) {
-		return cache.remove(featureId);
+		FeatureRow featureRow = null;
+		Node node = cache.remove(featureId);
+		if (node != null) {
+			release(node, false);
+			featureRow = node.row;
+		}
+		return featureRow;
 	}
 
 	/**
 	 * Clear the cache
 	 */
 	public void clear() {
-		cache.clear();
+		for (Node node : cache.values()) {
+			release(node, false);
+		}
 	}
 
 	/**
@@ -131,16 +329,7 @@ public class FeatureCache {
 	 */
 	public void resize(int maxSize) {
 		this.maxSize = maxSize;
-		if (cache.size() > maxSize) {
-			int count = 0;
-			Iterator<Long> rowIds = cache.keySet().iterator();
-			while (rowIds.hasNext()) {
-				rowIds.next();
-				if (++count > maxSize) {
-					rowIds.remove();
-				}
-			}
-		}
+		evict();
 	}
 
 	/**
@@ -154,4 +343,201 @@ public class FeatureCache {
 		resize(maxSize);
 	}
 
+	/**
+	 * Clear the cache and stop sharing the memory budget, ignoring any
+	 * further puts
+	 *
+	 * @since 3.4.1
+	 */
+	public void close() {
+		closed = true;
+		clear();
+		budget.unregister(this);
+	}
+
+	/**
+	 * Estimate the bytes of a cached feature row, the geometry WKB size plus
+	 * the attribute values
+	 *
+	 * @param featureRow
+	 *            feature row
+	 * @return estimated bytes
+	 * @since 3.4.1
+	 */
+	public static long estimateBytes(FeatureRow featureRow) {
+		long bytes = ROW_BYTES;
+		for (Object value : featureRow.getValues()) {
+			bytes += VALUE_BYTES;
+			if (value instanceof GeoPackageGeometryData) {
+				bytes += estimateBytes((GeoPackageGeometryData) value);
+			} else if (value instanceof String) {
+				bytes += 2L * ((String) value).length();
+			} else if (value instanceof byte[]) {
+				bytes += ((byte[]) value).length;
+			} else if (value instanceof Date) {
+				bytes += VALUE_BYTES;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Estimate the bytes of geometry data
+	 *
+	 * @param geometryData
+	 *            geometry data
+	 * @return estimated bytes
+	 */
+	private static long estimateBytes(GeoPackageGeometryData geometryData) {
+		byte[] bytes = geometryData.getBytes();
+		if (bytes == null && geometryData.getGeometry() != null) {
+			try {
+				bytes = geometryData.toBytes();
+			} catch (IOException e) {
+				// Estimate as empty geometry data
+			}
+		}
+		return bytes != null ? bytes.length : 0;
+	}
+
+	/**
+	 * Get the access order stamp of the least recently used feature row
+	 *
+	 * @return stamp, {@link Long#MAX_VALUE} when empty
+	 */
+	long getEldestStamp() {
+		Map.Entry<Long, Node> eldest = accessOrder.firstEntry();
+		return eldest != null ? eldest.getKey() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Evict the least recently used feature row
+	 *
+	 * @return true if a feature row was evicted or concurrently removed
+	 */
+	boolean evictEldest() {
+		boolean evicted = false;
+		Map.Entry<Long, Node> eldest = accessOrder.firstEntry();
+		if (eldest != null) {
+			release(eldest.getValue(), true);
+			evicted = true;
+		}
+		return evicted;
+	}
+
+	/**
+	 * Evict feature rows over the max size and memory budget
+	 */
+	private void evict() {
+		while (cache.size() > maxSize) {
+			if (!evictEldest()) {
+				break;
+			}
+		}
+		budget.evict();
+	}
+
+	/**
+	 * Link a new node as the most recently used
+	 *
+	 * @param node
+	 *            node
+	 */
+	private void link(Node node) {
+		synchronized (node) {
+			node.stamp = budget.nextStamp();
+			accessOrder.put(node.stamp, node);
+		}
+		weight.addAndGet(node.weight);
+		budget.add(node.weight);
+	}
+
+	/**
+	 * Move the node to the most recently used
+	 *
+	 * @param node
+	 *            node
+	 */
+	private void touch(Node node) {
+		synchronized (node) {
+			if (!node.removed) {
+				accessOrder.remove(node.stamp);
+				node.stamp = budget.nextStamp();
+				accessOrder.put(node.stamp, node);
+			}
+		}
+	}
+
+	/**
+	 * Release the node from the cache
+	 *
+	 * @param node
+	 *            node
+	 * @param evicted
+	 *            true if evicted
+	 */
+	private void release(Node node, boolean evicted) {
+		synchronized (node) {
+			if (node.removed) {
+				return;
+			}
+			node.removed = true;
+			accessOrder.remove(node.stamp);
+		}
+		cache.remove(node.id, node);
+		weight.addAndGet(-node.weight);
+		budget.add(-node.weight);
+		if (evicted) {
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Cached feature row
+	 */
+	private static class Node {
+
+		/**
+		 * Feature id
+		 */
+		private final long id;
+
+		/**
+		 * Feature row
+		 */
+		private final FeatureRow row;
+
+		/**
+		 * Estimated bytes
+		 */
+		private final long weight;
+
+		/**
+		 * Access order stamp
+		 */
+		private long stamp;
+
+		/**
+		 * Removed from the cache flag
+		 */
+		private volatile boolean removed = false;
+
+		/**
+		 * Constructor
+		 *
+		 * @param id
+		 *            feature id
+		 * @param row
+		 *            feature row
+		 * @param weight
+		 *            estimated bytes
+		 */
+		private Node(long id, FeatureRow row, long weight) {
+			this.id = id;
+			this.row = row;
+			this.weight = weight;
+		}
+
+	}
+
 }
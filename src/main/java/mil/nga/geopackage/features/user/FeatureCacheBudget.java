@@ -0,0 +1,167 @@
+package mil.nga.geopackage.features.user;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feature Row Cache memory budget in estimated bytes, shareable across
+ * feature row caches. When the budget is exceeded, the least recently used
+ * feature rows across all caches sharing the budget are evicted.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class FeatureCacheBudget {
+
+	/**
+	 * Default max estimated bytes of a shared budget
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+	/**
+	 * Max estimated bytes, 0 for no limit
+	 */
+	private volatile long maxBytes;
+
+	/**
+	 * Estimated bytes of cached feature rows
+	 */
+	private final AtomicLong weight = new AtomicLong();
+
+	/**
+	 * Access order clock shared by the caches
+	 */
+	private final AtomicLong clock = new AtomicLong();
+
+	/**
+	 * Caches sharing the budget
+	 */
+	private final List<FeatureCache> caches = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor, created with max bytes of {@link #DEFAULT_MAX_BYTES}
+	 */
+	public FeatureCacheBudget() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxBytes
+	 *            max estimated bytes, 0 for no limit
+	 */
+	public FeatureCacheBudget(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get the max estimated bytes
+	 *
+	 * @return max bytes, 0 for no limit
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Set the max estimated bytes, evicting feature rows over the budget
+	 *
+	 * @param maxBytes
+	 *            max bytes, 0 for no limit
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/**
+	 * Get the estimated bytes of feature rows cached within the budget
+	 *
+	 * @return weight in bytes
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * Determine if the estimated bytes exceed the budget
+	 *
+	 * @return true if exceeded
+	 */
+	public boolean isExceeded() {
+		long max = maxBytes;
+		return max > 0 && weight.get() > max;
+	}
+
+	/**
+	 * Get the number of caches sharing the budget
+	 *
+	 * @return cache count
+	 */
+	public int getCacheCount() {
+		return caches.size();
+	}
+
+	/**
+	 * Register a cache sharing the budget
+	 *
+	 * @param cache
+	 *            feature row cache
+	 */
+	void register(FeatureCache cache) {
+		caches.add(cache);
+	}
+
+	/**
+	 * Unregister a cache no longer sharing the budget
+	 *
+	 * @param cache
+	 *            feature row cache
+	 */
+	void unregister(FeatureCache cache) {
+		caches.remove(cache);
+	}
+
+	/**
+	 * Get the next access order stamp
+	 *
+	 * @return stamp
+	 */
+	long nextStamp() {
+		return clock.incrementAndGet();
+	}
+
+	/**
+	 * Add to the estimated bytes
+	 *
+	 * @param bytes
+	 *            bytes, negative when released
+	 */
+	void add(long bytes) {
+		weight.addAndGet(bytes);
+	}
+
+	/**
+	 * Evict the least recently used feature rows across the caches until
+	 * within the budget
+	 */
+	void evict() {
+		while (isExceeded()) {
+			FeatureCache eldest = null;
+			long eldestStamp = Long.MAX_VALUE;
+			for (FeatureCache cache : caches) {
+				long stamp = cache.getEldestStamp();
+				if (stamp < eldestStamp) {
+					eldest = cache;
+					eldestStamp = stamp;
+				}
+			}
+			if (eldest == null || !eldest.evictEldest()) {
+				break;
+			}
+		}
+	}
+
+}
@@ -1,11 +1,12 @@
 package mil.nga.geopackage.features.user;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Feature Row Cache for multiple feature tables in a single GeoPackage
+ * Feature Row Cache for multiple feature tables in a single GeoPackage,
+ * optionally sharing a single memory budget across the feature tables
  *
  * @author osbornb
  * @since 3.2.0
@@ -15,7 +16,13 @@ public class FeatureCacheTables {
 	/**
 	 * Mapping between feature table name and a feature row cache
 	 */
-	private Map<String, FeatureCache> tableCache = new HashMap<>();
+	private final Map<String, FeatureCache> tableCache = new ConcurrentHashMap<>();
+
+	/**
+	 * Memory budget shared by the feature table caches, null for an
+	 * unbounded budget per cache
+	 */
+	private final FeatureCacheBudget budget;
 
 	/**
 	 * Cache size
@@ -37,7 +44,102 @@ public class FeatureCacheTables {
 	 *            max feature rows to retain in each feature table cache
 	 */
 	public FeatureCacheTables(int maxCacheSize) {
+		this(maxCacheSize, null);
+	}
+
+	/**
+	 * Constructor, sharing a memory budget across the feature table caches
+	 *
+	 * @param maxCacheSize
+	 *            max feature rows to retain in each feature table cache
+	 * @param maxBytes
+	 *            max estimated bytes to retain across all feature table
+	 *            caches
+	 * @since 3.4.1
+	 */
+	public FeatureCacheTables(int maxCacheSize, long maxBytes) {
+		this(maxCacheSize, new FeatureCacheBudget(maxBytes));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxCacheSize
+	 *            max feature rows to retain in each feature table cache
+	 * @param budget
+	 *            memory budget shared across the feature table caches, null
+	 *            for an unbounded budget per cache
+	 * @since 3.4.1
+	 */
+	public FeatureCacheTables(int maxCacheSize, FeatureCacheBudget budget) {
 		this.maxCacheSize = maxCacheSize;
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the memory budget shared across the feature table caches
+	 *
+	 * @return budget or null
+	 * @since 3.4.1
+	 */
+	public FeatureCacheBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the estimated bytes cached across the feature table caches
+	 *
+	 * @return weight in bytes
+	 * @since 3.4.1
+	 */
+	public long getWeight() {
+		long weight = 0;
+		for (FeatureCache cache : tableCache.values()) {
+			weight += cache.getWeight();
+		}
+		return weight;
+	}
+
+	/**
+	 * Get the cache hits across the feature table caches
+	 *
+	 * @return hits
+	 * @since 3.4.1
+	 */
+	public long getHits() {
+		long hits = 0;
+		for (FeatureCache cache : tableCache.values()) {
+			hits += cache.getHits();
+		}
+		return hits;
+	}
+
+	/**
+	 * Get the cache misses across the feature table caches
+	 *
+	 * @return misses
+	 * @since 3.4.1
+	 */
+	public long getMisses() {
+		long misses = 0;
+		for (FeatureCache cache : tableCache.values()) {
+			misses += cache.getMisses();
+		}
+		return misses;
+	}
+
+	/**
+	 * Get the evicted feature rows across the feature table caches
+	 *
+	 * @return evictions
+	 * @since 3.4.1
+	 */
+	public long getEvictions() {
+		long evictions = 0;
+		for (FeatureCache cache : tableCache.values()) {
+			evictions += cache.getEvictions();
+		}
+		return evictions;
 	}
 
 	/**
@@ -76,12 +178,9 @@ public class FeatureCacheTables {
 	 * @return feature row cache
 	 */
 	public FeatureCache getCache(String tableName) {
-		FeatureCache cache = tableCache.get(tableName);
-		if (cache == null) {
-			cache = new FeatureCache(maxCacheSize);
-			tableCache.put(tableName, cache);
-		}
-		return cache;
+		return tableCache.computeIfAbsent(tableName, name -> budget != null
+				? new FeatureCache(maxCacheSize, budget)
+				: new FeatureCache(maxCacheSize));
 	}
 
 	/**
@@ -173,14 +272,19 @@ public class FeatureCacheTables {
 	 *            feature table name
 	 */
 	public void clear(String tableName) {
-		tableCache.remove(tableName);
+		FeatureCache cache = tableCache.remove(tableName);
+		if (cache != null) {
+			cache.close();
+		}
 	}
 
 	/**
 	 * Clear all caches
 	 */
 	public void clear() {
-		tableCache.clear();
+		for (String tableName : tableCache.keySet()) {
+			clear(tableName);
+		}
 	}
 
 	/**
@@ -1,11 +1,24 @@
 package mil.nga.geopackage.features.user;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.extension.index.FeatureTableIndex;
 import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
 import mil.nga.geopackage.user.UserDao;
 import mil.nga.sf.GeometryType;
 import mil.nga.sf.proj.Projection;
@@ -122,4 +135,278 @@ public class FeatureDao extends
 		return geometryColumns.getGeometryType();
 	}
 
+	/**
+	 * Query for the next chunk of feature ids and geometry blob headers,
+	 * ordered by id. Only the leading
+	 * {@link LazyGeoPackageGeometryData#MAX_HEADER_BYTES} of each geometry
+	 * blob are read, the header flags, SRS id and envelope. The result set
+	 * columns are the id and the header bytes (null for null geometries) and
+	 * must be closed with its statement.
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for the first chunk
+	 * @param limit
+	 *            chunk limit
+	 * @return result set
+	 * @since 3.4.1
+	 */
+	public ResultSet queryForGeometryHeaders(String where, String[] whereArgs,
+			Long afterId, int limit) {
+		List<String> args = new ArrayList<>();
+		String sql = buildGeometryHeadersSQL(where, whereArgs, afterId, null,
+				limit, args);
+		return getDb().query(sql, args.toArray(new String[args.size()]));
+	}
+
+	/**
+	 * Query for the next chunk of feature ids and geometry blob headers
+	 * within the id range on the connection, ordered by id. See
+	 * {@link #queryForGeometryHeaders(String, String[], Long, int)}.
+	 * 
+	 * @param connection
+	 *            read connection, such as from
+	 *            {@link GeoPackageConnection#borrowReadConnection()}
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param limit
+	 *            chunk limit
+	 * @return result set
+	 * @since 3.4.1
+	 */
+	public ResultSet queryForGeometryHeaders(Connection connection,
+			String where, String[] whereArgs, Long afterId, Long throughId,
+			int limit) {
+		List<String> args = new ArrayList<>();
+		String sql = buildGeometryHeadersSQL(where, whereArgs, afterId,
+				throughId, limit, args);
+		return SQLUtils.query(connection, sql,
+				args.toArray(new String[args.size()]));
+	}
+
+	/**
+	 * Query for the feature ids and full geometry blobs of the feature ids,
+	 * ordered by id. The result set must be closed with its statement.
+	 * 
+	 * @param featureIds
+	 *            feature ids
+	 * @return result set
+	 * @since 3.4.1
+	 */
+	public ResultSet queryForGeometries(Collection<Long> featureIds) {
+		String[] args = new String[featureIds.size()];
+		String sql = buildGeometriesSQL(featureIds, args);
+		return getDb().query(sql, args);
+	}
+
+	/**
+	 * Query for the feature ids and full geometry blobs of the feature ids on
+	 * the connection, ordered by id. The result set must be closed with its
+	 * statement.
+	 * 
+	 * @param connection
+	 *            read connection, such as from
+	 *            {@link GeoPackageConnection#borrowReadConnection()}
+	 * @param featureIds
+	 *            feature ids
+	 * @return result set
+	 * @since 3.4.1
+	 */
+	public ResultSet queryForGeometries(Connection connection,
+			Collection<Long> featureIds) {
+		String[] args = new String[featureIds.size()];
+		String sql = buildGeometriesSQL(featureIds, args);
+		return SQLUtils.query(connection, sql, args);
+	}
+
+	/**
+	 * Update the feature rows by id in batches, indexing each committed batch
+	 * 
+	 * @param rows
+	 *            feature rows to update
+	 * @param indexManager
+	 *            feature index manager, null to only update the rows
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public int updateBatch(Iterable<FeatureRow> rows,
+			FeatureIndexManager indexManager) {
+		return updateBatch(rows.iterator(), indexManager);
+	}
+
+	/**
+	 * Update the feature rows by id in batches as in
+	 * {@link #updateBatch(Iterator)}. RTree indexes are updated by triggers.
+	 * Each batch of {@link #getBatchChunkSize()} rows is then indexed in the
+	 * other indexed types of the index manager as a single transaction, such
+	 * as the GeoPackage {@link FeatureTableIndex}, instead of row by row. The
+	 * rows are expected to exist.
+	 * 
+	 * @param rows
+	 *            feature rows to update
+	 * @param indexManager
+	 *            feature index manager, null to only update the rows
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public int updateBatch(Iterator<FeatureRow> rows,
+			FeatureIndexManager indexManager) {
+		return writeIndexedBatch(rows, indexManager, false);
+	}
+
+	/**
+	 * Upsert the feature rows in batches, indexing each committed batch
+	 * 
+	 * @param rows
+	 *            feature rows to upsert
+	 * @param indexManager
+	 *            feature index manager, null to only upsert the rows
+	 * @return upserted count
+	 * @since 3.4.1
+	 */
+	public int upsertBatch(Iterable<FeatureRow> rows,
+			FeatureIndexManager indexManager) {
+		return upsertBatch(rows.iterator(), indexManager);
+	}
+
+	/**
+	 * Upsert the feature rows in batches as in
+	 * {@link #upsertBatch(Iterator)}. RTree indexes are updated by triggers.
+	 * Each batch of {@link #getBatchChunkSize()} rows is then indexed in the
+	 * other indexed types of the index manager as a single transaction, such
+	 * as the GeoPackage {@link FeatureTableIndex}, instead of row by row.
+	 * 
+	 * @param rows
+	 *            feature rows to upsert
+	 * @param indexManager
+	 *            feature index manager, null to only upsert the rows
+	 * @return upserted count
+	 * @since 3.4.1
+	 */
+	public int upsertBatch(Iterator<FeatureRow> rows,
+			FeatureIndexManager indexManager) {
+		return writeIndexedBatch(rows, indexManager, true);
+	}
+
+	/**
+	 * Update or upsert the feature rows in batches, indexing each batch
+	 * 
+	 * @param rows
+	 *            feature rows
+	 * @param indexManager
+	 *            feature index manager, null to not index
+	 * @param upsert
+	 *            true to upsert, false to update by id
+	 * @return written count
+	 */
+	private int writeIndexedBatch(Iterator<FeatureRow> rows,
+			FeatureIndexManager indexManager, boolean upsert) {
+
+		List<FeatureIndexType> types = null;
+		if (indexManager != null) {
+			types = indexManager.getIndexedTypes();
+		}
+		if (types == null || types.isEmpty()) {
+			return upsert ? upsertBatch(rows) : updateBatch(rows);
+		}
+
+		int count = 0;
+		int batchSize = getBatchChunkSize();
+		List<FeatureRow> batch = new ArrayList<>(batchSize);
+		while (rows.hasNext()) {
+			batch.add(rows.next());
+			if (batch.size() == batchSize || !rows.hasNext()) {
+				count += upsert ? upsertBatch(batch) : updateBatch(batch);
+				indexManager.index(batch, types);
+				batch.clear();
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Build the geometry headers chunk SQL
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param limit
+	 *            chunk limit
+	 * @param args
+	 *            built arguments
+	 * @return sql
+	 */
+	private String buildGeometryHeadersSQL(String where, String[] whereArgs,
+			Long afterId, Long throughId, int limit, List<String> args) {
+		String headerWhere = buildIdRangeWhere(where, whereArgs, afterId,
+				throughId, args);
+		String idColumn = idColumnName();
+		StringBuilder sql = new StringBuilder("SELECT ");
+		sql.append(idColumn);
+		sql.append(", substr(");
+		sql.append(CoreSQLUtils.quoteWrap(getGeometryColumnName()));
+		sql.append(", 1, ");
+		sql.append(LazyGeoPackageGeometryData.MAX_HEADER_BYTES);
+		sql.append(") FROM ");
+		sql.append(CoreSQLUtils.quoteWrap(getTableName()));
+		if (headerWhere != null) {
+			sql.append(" WHERE ");
+			sql.append(headerWhere);
+		}
+		sql.append(" ORDER BY ");
+		sql.append(idColumn);
+		sql.append(" LIMIT ");
+		sql.append(limit);
+		return sql.toString();
+	}
+
+	/**
+	 * Build the geometries of feature ids SQL
+	 * 
+	 * @param featureIds
+	 *            feature ids
+	 * @param args
+	 *            arguments to populate, sized to the feature ids
+	 * @return sql
+	 */
+	private String buildGeometriesSQL(Collection<Long> featureIds,
+			String[] args) {
+		String idColumn = idColumnName();
+		StringBuilder sql = new StringBuilder("SELECT ");
+		sql.append(idColumn);
+		sql.append(", ");
+		sql.append(CoreSQLUtils.quoteWrap(getGeometryColumnName()));
+		sql.append(" FROM ");
+		sql.append(CoreSQLUtils.quoteWrap(getTableName()));
+		sql.append(" WHERE ");
+		sql.append(idColumn);
+		sql.append(" IN (");
+		int index = 0;
+		for (Long featureId : featureIds) {
+			if (index > 0) {
+				sql.append(", ");
+			}
+			sql.append("?");
+			args[index++] = String.valueOf(featureId);
+		}
+		sql.append(") ORDER BY ");
+		sql.append(idColumn);
+		return sql.toString();
+	}
+
 }
@@ -0,0 +1,610 @@
+package mil.nga.geopackage.features.user;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.user.ContentValues;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.util.GeometryEnvelopeBuilder;
+
+/**
+ * Parallel feature ingest pipeline. Worker threads build feature rows from
+ * source items and encode the row values, including geometry envelopes and
+ * well-known binary, while the calling thread acts as the single writer
+ * draining a bounded queue into batched inserts. Workers block when the queue
+ * is full, bounding memory use when encoding outpaces the writer.
+ *
+ * Rows are inserted in the order they finish encoding, which matches the
+ * source order only with a single worker. Each batch is committed as its own
+ * transaction when the feature DAO is not already within a transaction.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class FeatureIngestPipeline {
+
+	/**
+	 * Default number of rows per inserted batch
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Default number of encoded rows the queue holds per batch
+	 */
+	public static final int DEFAULT_QUEUE_BATCHES = 4;
+
+	/**
+	 * Worker thread number for thread names
+	 */
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	/**
+	 * Feature DAO
+	 */
+	private final FeatureDao featureDao;
+
+	/**
+	 * Number of encoding worker threads
+	 */
+	private final int workers;
+
+	/**
+	 * Number of rows per inserted batch
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Encoded row queue capacity
+	 */
+	private int queueCapacity = DEFAULT_BATCH_SIZE * DEFAULT_QUEUE_BATCHES;
+
+	/**
+	 * Build missing geometry envelopes while encoding
+	 */
+	private boolean buildEnvelopes = false;
+
+	/**
+	 * Optional index manager to update with the inserted rows
+	 */
+	private FeatureIndexManager indexManager;
+
+	/**
+	 * Index types to update, null for all indexed types
+	 */
+	private List<FeatureIndexType> indexTypes;
+
+	/**
+	 * Progress
+	 */
+	private GeoPackageProgress progress;
+
+	/**
+	 * Constructor, using a worker per available processor
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 */
+	public FeatureIngestPipeline(FeatureDao featureDao) {
+		this(featureDao, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 * @param workers
+	 *            number of encoding worker threads
+	 */
+	public FeatureIngestPipeline(FeatureDao featureDao, int workers) {
+		if (workers < 1) {
+			throw new GeoPackageException(
+					"Ingest pipeline requires at least 1 worker, workers: "
+							+ workers);
+		}
+		this.featureDao = featureDao;
+		this.workers = workers;
+	}
+
+	/**
+	 * Get the feature DAO
+	 *
+	 * @return feature DAO
+	 */
+	public FeatureDao getFeatureDao() {
+		return featureDao;
+	}
+
+	/**
+	 * Get the number of encoding worker threads
+	 *
+	 * @return workers
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Get the number of rows per inserted batch
+	 *
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the number of rows per inserted batch
+	 *
+	 * @param batchSize
+	 *            batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new GeoPackageException(
+					"Batch size must be at least 1, size: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Get the encoded row queue capacity
+	 *
+	 * @return queue capacity
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Set the encoded row queue capacity, the max number of encoded rows
+	 * waiting on the writer before workers block
+	 *
+	 * @param queueCapacity
+	 *            queue capacity
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new GeoPackageException(
+					"Queue capacity must be at least 1, capacity: "
+							+ queueCapacity);
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Are missing geometry envelopes built while encoding
+	 *
+	 * @return true if envelopes are built
+	 */
+	public boolean isBuildEnvelopes() {
+		return buildEnvelopes;
+	}
+
+	/**
+	 * Set if missing geometry envelopes are built and written to the geometry
+	 * headers while encoding. Indexing uses the stored envelopes instead of
+	 * building them on the writer thread.
+	 *
+	 * @param buildEnvelopes
+	 *            true to build envelopes
+	 */
+	public void setBuildEnvelopes(boolean buildEnvelopes) {
+		this.buildEnvelopes = buildEnvelopes;
+	}
+
+	/**
+	 * Get the index manager updated with inserted rows
+	 *
+	 * @return index manager or null
+	 */
+	public FeatureIndexManager getIndexManager() {
+		return indexManager;
+	}
+
+	/**
+	 * Set the index manager to update with each inserted batch of rows
+	 *
+	 * @param indexManager
+	 *            index manager
+	 */
+	public void setIndexManager(FeatureIndexManager indexManager) {
+		setIndexManager(indexManager, null);
+	}
+
+	/**
+	 * Set the index manager and index types to update with each inserted
+	 * batch of rows
+	 *
+	 * @param indexManager
+	 *            index manager
+	 * @param indexTypes
+	 *            index types, null for the indexed types at ingest start
+	 */
+	public void setIndexManager(FeatureIndexManager indexManager,
+			List<FeatureIndexType> indexTypes) {
+		this.indexManager = indexManager;
+		this.indexTypes = indexTypes;
+	}
+
+	/**
+	 * Get the progress
+	 *
+	 * @return progress
+	 */
+	public GeoPackageProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Set the progress, updated after each inserted batch. Ingest stops when
+	 * the progress is no longer active, keeping previously inserted batches.
+	 *
+	 * @param progress
+	 *            progress
+	 */
+	public void setProgress(GeoPackageProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Ingest the feature rows, encoding them in parallel
+	 *
+	 * @param rows
+	 *            feature rows
+	 * @return inserted count
+	 */
+	public int ingest(Iterable<FeatureRow> rows) {
+		return ingest(rows.iterator(), Function.identity());
+	}
+
+	/**
+	 * Ingest the feature rows, encoding them in parallel
+	 *
+	 * @param rows
+	 *            feature rows
+	 * @return inserted count
+	 */
+	public int ingest(Stream<FeatureRow> rows) {
+		return ingest(rows.iterator(), Function.identity());
+	}
+
+	/**
+	 * Ingest feature rows built from the source items. Worker threads pull
+	 * source items, build rows with the row builder (typically starting from
+	 * {@link FeatureDao#newRow()}) and encode them. The source iterator is
+	 * accessed by one worker at a time.
+	 *
+	 * @param <T>
+	 *            source item type
+	 * @param sources
+	 *            source items
+	 * @param rowBuilder
+	 *            feature row builder, called concurrently from worker
+	 *            threads
+	 * @return inserted count
+	 */
+	public <T> int ingest(Iterator<T> sources,
+			Function<? super T, FeatureRow> rowBuilder) {
+
+		List<FeatureIndexType> types = null;
+		if (indexManager != null) {
+			types = indexTypes != null ? indexTypes
+					: indexManager.getIndexedTypes();
+		}
+		boolean returnIds = types != null && !types.isEmpty();
+
+		BlockingQueue<EncodedRow> queue = new ArrayBlockingQueue<>(
+				queueCapacity);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Ingest<T> ingest = new Ingest<>(sources, rowBuilder, queue, failure);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"geopackage-ingest-"
+										+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		int count = 0;
+		try {
+
+			for (int i = 0; i < workers; i++) {
+				executor.execute(ingest);
+			}
+
+			int finished = 0;
+			List<EncodedRow> batch = new ArrayList<>(batchSize);
+			while (finished < workers) {
+
+				EncodedRow encoded = take(queue);
+				if (encoded == EncodedRow.END) {
+					finished++;
+				} else {
+					batch.add(encoded);
+				}
+
+				if (failure.get() != null) {
+					break;
+				}
+
+				if (batch.size() >= batchSize
+						|| (finished == workers && !batch.isEmpty())) {
+					count += write(batch, returnIds, types);
+					batch.clear();
+					if (progress != null && !progress.isActive()) {
+						break;
+					}
+				}
+			}
+
+		} catch (RuntimeException e) {
+			failure.compareAndSet(null, e);
+			throw e;
+		} finally {
+			ingest.stop();
+			executor.shutdownNow();
+		}
+
+		RuntimeException workerFailure = failure.get();
+		if (workerFailure != null) {
+			throw new GeoPackageException(
+					"Failed to encode features for table: "
+							+ featureDao.getTableName(),
+					workerFailure);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Insert and index a batch of encoded rows
+	 *
+	 * @param batch
+	 *            encoded rows
+	 * @param returnIds
+	 *            true to set the inserted row ids
+	 * @param types
+	 *            index types
+	 * @return inserted count
+	 */
+	private int write(List<EncodedRow> batch, boolean returnIds,
+			List<FeatureIndexType> types) {
+
+		List<FeatureRow> rows = new ArrayList<>(batch.size());
+		Map<FeatureRow, ContentValues> values = new IdentityHashMap<>(
+				batch.size());
+		for (EncodedRow encoded : batch) {
+			rows.add(encoded.row);
+			values.put(encoded.row, encoded.values);
+		}
+
+		int count = featureDao.insertBatch(rows.iterator(), values::get,
+				returnIds);
+
+		if (returnIds) {
+			indexManager.index(rows, types);
+		}
+
+		if (progress != null) {
+			progress.addProgress(count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Take the next encoded row from the queue
+	 *
+	 * @param queue
+	 *            queue
+	 * @return encoded row
+	 */
+	private static EncodedRow take(BlockingQueue<EncodedRow> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GeoPackageException(
+					"Interrupted waiting for encoded features", e);
+		}
+	}
+
+	/**
+	 * Build the envelope when missing and encode the row values
+	 *
+	 * @param row
+	 *            feature row
+	 * @return encoded row
+	 */
+	private EncodedRow encode(FeatureRow row) {
+		if (buildEnvelopes) {
+			GeoPackageGeometryData geometryData = row.getGeometry();
+			if (geometryData != null && geometryData.getEnvelope() == null) {
+				Geometry geometry = geometryData.getGeometry();
+				if (geometry != null) {
+					geometryData.setEnvelope(
+							GeometryEnvelopeBuilder.buildEnvelope(geometry));
+				}
+			}
+		}
+		return new EncodedRow(row, row.toContentValues());
+	}
+
+	/**
+	 * Feature row with encoded content values
+	 */
+	private static class EncodedRow {
+
+		/**
+		 * Worker finished marker
+		 */
+		private static final EncodedRow END = new EncodedRow(null, null);
+
+		/**
+		 * Feature row
+		 */
+		private final FeatureRow row;
+
+		/**
+		 * Encoded content values
+		 */
+		private final ContentValues values;
+
+		/**
+		 * Constructor
+		 *
+		 * @param row
+		 *            feature row
+		 * @param values
+		 *            encoded content values
+		 */
+		private EncodedRow(FeatureRow row, ContentValues values) {
+			this.row = row;
+			this.values = values;
+		}
+
+	}
+
+	/**
+	 * Worker task pulling source items, building and encoding rows, and
+	 * queueing them for the writer
+	 *
+	 * @param <T>
+	 *            source item type
+	 */
+	private class Ingest<T> implements Runnable {
+
+		/**
+		 * Source items
+		 */
+		private final Iterator<T> sources;
+
+		/**
+		 * Row builder
+		 */
+		private final Function<? super T, FeatureRow> rowBuilder;
+
+		/**
+		 * Encoded row queue
+		 */
+		private final BlockingQueue<EncodedRow> queue;
+
+		/**
+		 * First failure
+		 */
+		private final AtomicReference<RuntimeException> failure;
+
+		/**
+		 * Writer stopped flag
+		 */
+		private volatile boolean stopped = false;
+
+		/**
+		 * Constructor
+		 *
+		 * @param sources
+		 *            source items
+		 * @param rowBuilder
+		 *            row builder
+		 * @param queue
+		 *            encoded row queue
+		 * @param failure
+		 *            first failure
+		 */
+		private Ingest(Iterator<T> sources,
+				Function<? super T, FeatureRow> rowBuilder,
+				BlockingQueue<EncodedRow> queue,
+				AtomicReference<RuntimeException> failure) {
+			this.sources = sources;
+			this.rowBuilder = rowBuilder;
+			this.queue = queue;
+			this.failure = failure;
+		}
+
+		/**
+		 * Stop the workers once the writer is no longer draining the queue
+		 */
+		private void stop() {
+			stopped = true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			try {
+				T source;
+				while ((source = next()) != null) {
+					put(encode(rowBuilder.apply(source)));
+				}
+			} catch (RuntimeException e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				put(EncodedRow.END);
+			}
+		}
+
+		/**
+		 * Get the next source item
+		 *
+		 * @return source item or null when done
+		 */
+		private T next() {
+			T source = null;
+			synchronized (sources) {
+				if (!stopped && failure.get() == null && sources.hasNext()) {
+					source = sources.next();
+					if (source == null) {
+						throw new GeoPackageException(
+								"Null ingest source item");
+					}
+				}
+			}
+			return source;
+		}
+
+		/**
+		 * Put the encoded row on the queue, waiting for space unless stopped
+		 *
+		 * @param encoded
+		 *            encoded row
+		 */
+		private void put(EncodedRow encoded) {
+			try {
+				while (!stopped
+						&& !queue.offer(encoded, 100, TimeUnit.MILLISECONDS)) {
+					// Wait for the writer to drain the queue
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+}
@@ -3,7 +3,9 @@ package mil.nga.geopackage.features.user;
 import java.sql.ResultSet;
 
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
 import mil.nga.geopackage.user.UserResultSet;
+import mil.nga.sf.GeometryEnvelope;
 
 /**
  * Feature Result Set to wrap a database ResultSet for feature queries
@@ -64,10 +66,25 @@ public class FeatureResultSet
 		int columnIndex = getTable().getGeometryColumnIndex();
 		byte[] geometryBytes = getBlob(columnIndex);
 		if (geometryBytes != null) {
-			geometry = new GeoPackageGeometryData(geometryBytes);
+			geometry = new LazyGeoPackageGeometryData(geometryBytes);
 		}
 
 		return geometry;
 	}
 
+	/**
+	 * Get the geometry envelope without reading the other row values
+	 * 
+	 * @return geometry envelope
+	 * @since 3.4.1
+	 */
+	public GeometryEnvelope getGeometryEnvelope() {
+		GeoPackageGeometryData data = getGeometry();
+		GeometryEnvelope envelope = null;
+		if (data != null) {
+			envelope = data.getOrBuildEnvelope();
+		}
+		return envelope;
+	}
+
 }
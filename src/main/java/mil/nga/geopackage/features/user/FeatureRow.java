@@ -5,6 +5,7 @@ import java.util.Arrays;
 
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
 import mil.nga.geopackage.user.ContentValues;
 import mil.nga.geopackage.user.UserRow;
 import mil.nga.sf.Geometry;
@@ -76,7 +77,7 @@ public class FeatureRow extends UserRow<FeatureColumn, FeatureTable> {
 	public void setValue(int index, Object value) {
 		if (index == getGeometryColumnIndex() && value instanceof byte[]) {
 			byte[] bytes = (byte[]) value;
-			value = new GeoPackageGeometryData(bytes);
+			value = new LazyGeoPackageGeometryData(bytes);
 		}
 		super.setValue(index, value);
 	}
@@ -176,7 +177,7 @@ public class FeatureRow extends UserRow<FeatureColumn, FeatureTable> {
 			try {
 				byte[] bytes = geometryData.toBytes();
 				byte[] copyBytes = Arrays.copyOf(bytes, bytes.length);
-				copyValue = new GeoPackageGeometryData(copyBytes);
+				copyValue = new LazyGeoPackageGeometryData(copyBytes);
 			} catch (IOException e) {
 				throw new GeoPackageException(
 						"Failed to copy Geometry Data bytes. column: "
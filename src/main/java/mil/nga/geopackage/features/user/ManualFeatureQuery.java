@@ -1,11 +1,29 @@
 package mil.nga.geopackage.features.user;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
 
 import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.Aggregate;
+import mil.nga.geopackage.db.AggregateResult;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.SQLUtils;
 import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
+import mil.nga.geopackage.user.UserChunkIterator;
 import mil.nga.sf.GeometryEnvelope;
 import mil.nga.sf.proj.Projection;
 import mil.nga.sf.proj.ProjectionTransform;
@@ -34,6 +52,41 @@ public class ManualFeatureQuery {
 	 */
 	protected double tolerance = .00000000000001;
 
+	/**
+	 * Header scan flag, when true envelopes are read from the geometry blob
+	 * headers and only geometries without a header envelope are decoded
+	 */
+	protected boolean headerScan = true;
+
+	/**
+	 * Memoize envelopes flag, when true envelopes built from geometries
+	 * without a header envelope are retained for following queries
+	 */
+	protected boolean memoizeEnvelopes = false;
+
+	/**
+	 * Parallel scan parallelism, scanning id ranges with fork-join tasks when
+	 * greater than 1
+	 */
+	protected int parallelism = 1;
+
+	/**
+	 * Ordered parallel scan results flag, when false feature ids are returned
+	 * in range completion order
+	 */
+	protected boolean ordered = true;
+
+	/**
+	 * Parallel scan fork-join pool, null for a dedicated pool per scan
+	 */
+	protected ForkJoinPool forkJoinPool = null;
+
+	/**
+	 * Memoized envelopes of geometries without a header envelope, by feature
+	 * id
+	 */
+	private final Map<Long, GeometryEnvelope> envelopes = new ConcurrentHashMap<>();
+
 	/**
 	 * Constructor
 	 *
@@ -91,6 +144,148 @@ public class ManualFeatureQuery {
 		this.tolerance = tolerance;
 	}
 
+	/**
+	 * Is the header scan enabled, reading envelopes from the geometry blob
+	 * headers and decoding only geometries without a header envelope
+	 *
+	 * @return true if header scan
+	 * @since 3.4.1
+	 */
+	public boolean isHeaderScan() {
+		return headerScan;
+	}
+
+	/**
+	 * Set the header scan flag, when false each feature row geometry is read
+	 * in full
+	 *
+	 * @param headerScan
+	 *            true to scan geometry headers
+	 * @since 3.4.1
+	 */
+	public void setHeaderScan(boolean headerScan) {
+		this.headerScan = headerScan;
+	}
+
+	/**
+	 * Get the parallel scan parallelism
+	 *
+	 * @return parallelism, 1 for sequential scans
+	 * @since 3.4.1
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set the parallel scan parallelism. When greater than 1, header scans
+	 * split the feature table into id ranges scanned by fork-join tasks,
+	 * each on its own pooled read connection. Without a fork-join pool, see
+	 * {@link #setForkJoinPool(ForkJoinPool)}, each scan runs on a dedicated
+	 * pool of parallelism threads, limited to the reader pool max
+	 * connections. Parallel scans require a reader pool, see
+	 * {@link GeoPackageConnection#setReaderPool}, and otherwise scan
+	 * sequentially, as do scans within a transaction.
+	 *
+	 * @param parallelism
+	 *            parallelism, 1 for sequential scans
+	 * @since 3.4.1
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Is the parallel scan result order by feature id
+	 *
+	 * @return true if ordered
+	 * @since 3.4.1
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Set the parallel scan ordered flag, when false feature ids are returned
+	 * in id range completion order
+	 *
+	 * @param ordered
+	 *            true to order by feature id
+	 * @since 3.4.1
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Get the parallel scan fork-join pool
+	 *
+	 * @return fork-join pool, null for a dedicated pool per scan
+	 * @since 3.4.1
+	 */
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
+	/**
+	 * Set the parallel scan fork-join pool. Tasks waiting on a read connection
+	 * are managed blockers, allowing the pool to compensate for blocked
+	 * workers.
+	 *
+	 * @param forkJoinPool
+	 *            fork-join pool, null for a dedicated pool per scan
+	 * @since 3.4.1
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Is memoizing envelopes enabled
+	 *
+	 * @return true if memoizing envelopes
+	 * @since 3.4.1
+	 */
+	public boolean isMemoizeEnvelopes() {
+		return memoizeEnvelopes;
+	}
+
+	/**
+	 * Set the memoize envelopes flag. When true, header scans retain the
+	 * envelopes built from geometries without a header envelope so following
+	 * queries skip decoding them. Memoized envelopes are not updated when
+	 * feature rows change, see {@link #clearEnvelopes()}.
+	 *
+	 * @param memoizeEnvelopes
+	 *            true to memoize envelopes
+	 * @since 3.4.1
+	 */
+	public void setMemoizeEnvelopes(boolean memoizeEnvelopes) {
+		this.memoizeEnvelopes = memoizeEnvelopes;
+		if (!memoizeEnvelopes) {
+			clearEnvelopes();
+		}
+	}
+
+	/**
+	 * Get the number of memoized envelopes
+	 *
+	 * @return memoized envelope count
+	 * @since 3.4.1
+	 */
+	public int getMemoizedEnvelopeCount() {
+		return envelopes.size();
+	}
+
+	/**
+	 * Clear the memoized envelopes
+	 *
+	 * @since 3.4.1
+	 */
+	public void clearEnvelopes() {
+		envelopes.clear();
+	}
+
 	/**
 	 * Query for features
 	 * 
@@ -215,37 +410,63 @@ public class ManualFeatureQuery {
 
 		GeometryEnvelope envelope = null;
 
-		long offset = 0;
-		boolean hasResults = true;
+		if (isParallel()) {
+
+			envelope = parallelScan(null, null,
+					new RangeScanner<GeometryEnvelope>() {
 
-		while (hasResults) {
+						@Override
+						public GeometryEnvelope scan(Connection connection,
+								Long afterId, Long throughId) {
+							return unionEnvelopes(connection, afterId,
+									throughId);
+						}
+
+						@Override
+						public GeometryEnvelope merge(GeometryEnvelope left,
+								GeometryEnvelope right) {
+							return union(left, right);
+						}
 
-			hasResults = false;
+					});
 
-			FeatureResultSet resultSet = featureDao.queryForChunk(chunkLimit,
-					offset);
+		} else if (headerScan) {
+
+			Connection connection = featureDao.getDb()
+					.borrowReadConnection();
 			try {
-				while (resultSet.moveToNext()) {
-					hasResults = true;
+				envelope = unionEnvelopes(connection, null, null);
+			} finally {
+				featureDao.getDb().releaseReadConnection(connection);
+			}
 
-					FeatureRow featureRow = resultSet.getRow();
-					GeometryEnvelope featureEnvelope = featureRow
-							.getGeometryEnvelope();
-					if (featureEnvelope != null) {
+		} else {
 
-						if (envelope == null) {
-							envelope = featureEnvelope;
-						} else {
-							envelope = envelope.union(featureEnvelope);
-						}
+			UserChunkIterator<FeatureResultSet> chunks = featureDao
+					.chunkIterator(chunkLimit);
+
+			while (chunks.hasNext()) {
+
+				FeatureResultSet resultSet = chunks.next();
+				try {
+					while (resultSet.moveToNext()) {
 
+						GeometryEnvelope featureEnvelope = resultSet
+								.getGeometryEnvelope();
+						if (featureEnvelope != null) {
+
+							if (envelope == null) {
+								envelope = featureEnvelope;
+							} else {
+								envelope = envelope.union(featureEnvelope);
+							}
+
+						}
 					}
+				} finally {
+					resultSet.close();
 				}
-			} finally {
-				resultSet.close();
 			}
-
-			offset += chunkLimit;
 		}
 
 		BoundingBox boundingBox = null;
@@ -808,45 +1029,100 @@ public class ManualFeatureQuery {
 
 		List<Long> featureIds = new ArrayList<>();
 
-		long offset = 0;
-		boolean hasResults = true;
+		double minXTolerance = minX - tolerance;
+		double maxXTolerance = maxX + tolerance;
+		double minYTolerance = minY - tolerance;
+		double maxYTolerance = maxY + tolerance;
+
+		if (isParallel()) {
+
+			final Collection<Long> unorderedIds = ordered ? null
+					: new ConcurrentLinkedQueue<>();
+			List<Long> orderedIds = parallelScan(where, whereArgs,
+					new RangeScanner<List<Long>>() {
+
+						@Override
+						public List<Long> scan(Connection connection,
+								Long afterId, Long throughId) {
+							List<Long> rangeIds = new ArrayList<>();
+							scanEnvelopes(connection, where, whereArgs,
+									afterId, throughId,
+									(featureId, envelope) -> {
+										if (intersects(envelope,
+												minXTolerance, minYTolerance,
+												maxXTolerance,
+												maxYTolerance)) {
+											rangeIds.add(featureId);
+										}
+									});
+							List<Long> result = rangeIds;
+							if (unorderedIds != null) {
+								unorderedIds.addAll(rangeIds);
+								result = null;
+							}
+							return result;
+						}
 
-		minX -= tolerance;
-		maxX += tolerance;
-		minY -= tolerance;
-		maxY += tolerance;
+						@Override
+						public List<Long> merge(List<Long> left,
+								List<Long> right) {
+							if (left == null) {
+								return right;
+							}
+							if (right != null) {
+								left.addAll(right);
+							}
+							return left;
+						}
 
-		while (hasResults) {
+					});
+			if (orderedIds != null) {
+				featureIds.addAll(orderedIds);
+			}
+			if (unorderedIds != null) {
+				featureIds.addAll(unorderedIds);
+			}
 
-			hasResults = false;
+		} else if (headerScan) {
 
-			FeatureResultSet resultSet = featureDao.queryForChunk(where,
-					whereArgs, chunkLimit, offset);
+			Connection connection = featureDao.getDb()
+					.borrowReadConnection();
 			try {
-				while (resultSet.moveToNext()) {
-					hasResults = true;
+				scanEnvelopes(connection, where, whereArgs, null, null,
+						(featureId, envelope) -> {
+							if (intersects(envelope, minXTolerance,
+									minYTolerance, maxXTolerance,
+									maxYTolerance)) {
+								featureIds.add(featureId);
+							}
+						});
+			} finally {
+				featureDao.getDb().releaseReadConnection(connection);
+			}
 
-					FeatureRow featureRow = resultSet.getRow();
-					GeometryEnvelope envelope = featureRow
-							.getGeometryEnvelope();
-					if (envelope != null) {
+		} else {
 
-						double minXMax = Math.max(minX, envelope.getMinX());
-						double maxXMin = Math.min(maxX, envelope.getMaxX());
-						double minYMax = Math.max(minY, envelope.getMinY());
-						double maxYMin = Math.min(maxY, envelope.getMaxY());
+			UserChunkIterator<FeatureResultSet> chunks = featureDao
+					.chunkIterator(where, whereArgs, chunkLimit);
 
-						if (minXMax <= maxXMin && minYMax <= maxYMin) {
-							featureIds.add(featureRow.getId());
-						}
+			while (chunks.hasNext()) {
+
+				FeatureResultSet resultSet = chunks.next();
+				try {
+					while (resultSet.moveToNext()) {
 
+						GeometryEnvelope envelope = resultSet
+								.getGeometryEnvelope();
+						if (envelope != null && intersects(envelope,
+								minXTolerance, minYTolerance, maxXTolerance,
+								maxYTolerance)) {
+							featureIds.add(resultSet.getId());
+						}
 					}
+				} finally {
+					resultSet.close();
 				}
-			} finally {
-				resultSet.close();
 			}
-
-			offset += chunkLimit;
 		}
 
 		ManualFeatureQueryResults results = new ManualFeatureQueryResults(
@@ -878,4 +1154,423 @@ public class ManualFeatureQuery {
 		return query(minX, minY, maxX, maxY, where, whereArgs).count();
 	}
 
+	/**
+	 * Determine if the envelope intersects the bounds
+	 * 
+	 * @param envelope
+	 *            geometry envelope
+	 * @param minX
+	 *            min x
+	 * @param minY
+	 *            min y
+	 * @param maxX
+	 *            max x
+	 * @param maxY
+	 *            max y
+	 * @return true if intersects
+	 */
+	private static boolean intersects(GeometryEnvelope envelope, double minX,
+			double minY, double maxX, double maxY) {
+
+		double minXMax = Math.max(minX, envelope.getMinX());
+		double maxXMin = Math.min(maxX, envelope.getMaxX());
+		double minYMax = Math.max(minY, envelope.getMinY());
+		double maxYMin = Math.min(maxY, envelope.getMaxY());
+
+		return minXMax <= maxXMin && minYMax <= maxYMin;
+	}
+
+	/**
+	 * Scan the feature envelopes in id order, reading only the geometry blob
+	 * headers. Geometries without a header envelope are decoded, or read from
+	 * the memoized envelopes. Null and empty geometries are skipped.
+	 * 
+	 * @param connection
+	 *            read connection
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where args
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param consumer
+	 *            feature id and envelope consumer
+	 */
+	private void scanEnvelopes(Connection connection, String where,
+			String[] whereArgs, Long afterId, Long throughId,
+			BiConsumer<Long, GeometryEnvelope> consumer) {
+
+		int rows;
+
+		do {
+
+			rows = 0;
+			Map<Long, GeometryEnvelope> chunk = new LinkedHashMap<>();
+			List<Long> decodeIds = new ArrayList<>();
+
+			ResultSet resultSet = featureDao.queryForGeometryHeaders(
+					connection, where, whereArgs, afterId, throughId,
+					chunkLimit);
+			try {
+				while (resultSet.next()) {
+					rows++;
+					long featureId = resultSet.getLong(1);
+					afterId = featureId;
+					byte[] headerBytes = resultSet.getBytes(2);
+					if (headerBytes == null) {
+						continue;
+					}
+					GeoPackageGeometryData header = new LazyGeoPackageGeometryData(
+							headerBytes);
+					GeometryEnvelope envelope = header.getEnvelope();
+					if (envelope == null && !header.isEmpty()) {
+						envelope = envelopes.get(featureId);
+						if (envelope == null) {
+							decodeIds.add(featureId);
+						}
+						chunk.put(featureId, envelope);
+					} else if (envelope != null) {
+						chunk.put(featureId, envelope);
+					}
+				}
+			} catch (SQLException e) {
+				throw new GeoPackageException(
+						"Failed to scan geometry headers. Table: "
+								+ featureDao.getTableName(),
+						e);
+			} finally {
+				SQLUtils.closeResultSetStatement(resultSet,
+						featureDao.getTableName());
+			}
+
+			if (!decodeIds.isEmpty()) {
+				decodeEnvelopes(connection, decodeIds, chunk);
+			}
+
+			for (Map.Entry<Long, GeometryEnvelope> entry : chunk.entrySet()) {
+				if (entry.getValue() != null) {
+					consumer.accept(entry.getKey(), entry.getValue());
+				}
+			}
+
+		} while (rows == chunkLimit);
+
+	}
+
+	/**
+	 * Decode the geometries and build the envelopes of the feature ids
+	 * 
+	 * @param connection
+	 *            read connection
+	 * @param featureIds
+	 *            feature ids
+	 * @param chunk
+	 *            chunk envelopes by feature id to set
+	 */
+	private void decodeEnvelopes(Connection connection, List<Long> featureIds,
+			Map<Long, GeometryEnvelope> chunk) {
+		ResultSet resultSet = featureDao.queryForGeometries(connection,
+				featureIds);
+		try {
+			while (resultSet.next()) {
+				long featureId = resultSet.getLong(1);
+				byte[] bytes = resultSet.getBytes(2);
+				if (bytes == null) {
+					continue;
+				}
+				GeometryEnvelope envelope = new LazyGeoPackageGeometryData(
+						bytes).getOrBuildEnvelope();
+				if (envelope != null) {
+					chunk.put(featureId, envelope);
+					if (memoizeEnvelopes) {
+						envelopes.put(featureId, envelope);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to decode geometries. Table: "
+							+ featureDao.getTableName(),
+					e);
+		} finally {
+			SQLUtils.closeResultSetStatement(resultSet,
+					featureDao.getTableName());
+		}
+	}
+
+	/**
+	 * Determine if scans run in parallel
+	 * 
+	 * @return true if parallel
+	 */
+	private boolean isParallel() {
+		return headerScan && parallelism > 1
+				&& featureDao.getDb().useReaderPool();
+	}
+
+	/**
+	 * Union the feature envelopes within the id range
+	 * 
+	 * @param connection
+	 *            read connection
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @return envelope or null
+	 */
+	private GeometryEnvelope unionEnvelopes(Connection connection,
+			Long afterId, Long throughId) {
+		List<GeometryEnvelope> union = new ArrayList<>(1);
+		union.add(null);
+		scanEnvelopes(connection, null, null, afterId, throughId,
+				(featureId, envelope) -> {
+					union.set(0, union(union.get(0), envelope));
+				});
+		return union.get(0);
+	}
+
+	/**
+	 * Union the envelopes
+	 * 
+	 * @param envelope1
+	 *            envelope or null
+	 * @param envelope2
+	 *            envelope or null
+	 * @return union envelope or null
+	 */
+	private static GeometryEnvelope union(GeometryEnvelope envelope1,
+			GeometryEnvelope envelope2) {
+		GeometryEnvelope envelope;
+		if (envelope1 == null) {
+			envelope = envelope2;
+		} else if (envelope2 == null) {
+			envelope = envelope1;
+		} else {
+			envelope = envelope1.union(envelope2);
+		}
+		return envelope;
+	}
+
+	/**
+	 * Scan the id ranges of the matching rows with fork-join tasks
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where args
+	 * @param scanner
+	 *            id range scanner
+	 * @param <T>
+	 *            result type
+	 * @return merged result, null when no rows
+	 */
+	private <T> T parallelScan(String where, String[] whereArgs,
+			RangeScanner<T> scanner) {
+
+		String idColumn = featureDao.getTable().getPkColumn().getName();
+		Aggregate min = Aggregate.min(idColumn);
+		Aggregate max = Aggregate.max(idColumn);
+		AggregateResult bounds = featureDao.getDb().aggregate(
+				featureDao.getTableName(), where, whereArgs, min, max);
+		Long minId = bounds.getLong(min);
+		Long maxId = bounds.getLong(max);
+
+		T result = null;
+		if (minId != null && maxId != null) {
+			long grain = Math.max(chunkLimit,
+					(maxId - minId) / (parallelism * 4L) + 1);
+			RangeScanTask<T> task = new RangeScanTask<>(scanner, minId - 1,
+					maxId, grain);
+			if (forkJoinPool != null) {
+				result = forkJoinPool.invoke(task);
+			} else {
+				int threads = Math.min(parallelism, featureDao.getDb()
+						.getReaderPool().getMaxConnections());
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				try {
+					result = pool.invoke(task);
+				} finally {
+					pool.shutdown();
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Id range scanner
+	 * 
+	 * @param <T>
+	 *            result type
+	 */
+	private interface RangeScanner<T> {
+
+		/**
+		 * Scan the id range
+		 * 
+		 * @param connection
+		 *            read connection
+		 * @param afterId
+		 *            exclusive lower id bound
+		 * @param throughId
+		 *            inclusive upper id bound
+		 * @return result
+		 */
+		T scan(Connection connection, Long afterId, Long throughId);
+
+		/**
+		 * Merge the results of adjacent id ranges
+		 * 
+		 * @param left
+		 *            lower id range result
+		 * @param right
+		 *            upper id range result
+		 * @return merged result
+		 */
+		T merge(T left, T right);
+
+	}
+
+	/**
+	 * Fork-join task splitting an id range until within the grain, scanning
+	 * each range on a borrowed read connection
+	 * 
+	 * @param <T>
+	 *            result type
+	 */
+	private class RangeScanTask<T> extends RecursiveTask<T> {
+
+		/**
+		 * Serial version id
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Id range scanner
+		 */
+		private final RangeScanner<T> scanner;
+
+		/**
+		 * Exclusive lower id bound
+		 */
+		private final long afterId;
+
+		/**
+		 * Inclusive upper id bound
+		 */
+		private final long throughId;
+
+		/**
+		 * Max id range size scanned without splitting
+		 */
+		private final long grain;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param scanner
+		 *            id range scanner
+		 * @param afterId
+		 *            exclusive lower id bound
+		 * @param throughId
+		 *            inclusive upper id bound
+		 * @param grain
+		 *            max id range size scanned without splitting
+		 */
+		private RangeScanTask(RangeScanner<T> scanner, long afterId,
+				long throughId, long grain) {
+			this.scanner = scanner;
+			this.afterId = afterId;
+			this.throughId = throughId;
+			this.grain = grain;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected T compute() {
+			T result;
+			if (throughId - afterId <= grain) {
+				GeoPackageConnection db = featureDao.getDb();
+				ReadConnectionBlocker blocker = new ReadConnectionBlocker(db);
+				try {
+					ForkJoinPool.managedBlock(blocker);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new GeoPackageException(
+							"Interrupted waiting for a read connection", e);
+				}
+				Connection connection = blocker.connection;
+				try {
+					result = scanner.scan(connection, afterId, throughId);
+				} finally {
+					db.releaseReadConnection(connection);
+				}
+			} else {
+				long middleId = afterId + (throughId - afterId) / 2;
+				RangeScanTask<T> right = new RangeScanTask<>(scanner,
+						middleId, throughId, grain);
+				right.fork();
+				T left = new RangeScanTask<>(scanner, afterId, middleId,
+						grain).compute();
+				result = scanner.merge(left, right.join());
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * Managed blocker borrowing a read connection, allowing a fork-join pool
+	 * to compensate while waiting on the reader pool
+	 */
+	private static class ReadConnectionBlocker
+			implements ForkJoinPool.ManagedBlocker {
+
+		/**
+		 * GeoPackage connection
+		 */
+		private final GeoPackageConnection db;
+
+		/**
+		 * Borrowed read connection
+		 */
+		private Connection connection;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param db
+		 *            GeoPackage connection
+		 */
+		private ReadConnectionBlocker(GeoPackageConnection db) {
+			this.db = db;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean block() {
+			if (connection == null) {
+				connection = db.borrowReadConnection();
+			}
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isReleasable() {
+			return connection != null;
+		}
+
+	}
+
 }
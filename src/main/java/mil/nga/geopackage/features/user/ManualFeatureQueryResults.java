@@ -1,7 +1,15 @@
 package mil.nga.geopackage.features.user;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import mil.nga.geopackage.features.index.FeatureIndexResults;
 
@@ -23,6 +31,11 @@ public class ManualFeatureQueryResults implements FeatureIndexResults {
 	 */
 	private final List<Long> featureIds;
 
+	/**
+	 * Max feature rows per stream chunk query
+	 */
+	private int chunkLimit = 100;
+
 	/**
 	 * Constructor
 	 * 
@@ -55,6 +68,43 @@ public class ManualFeatureQueryResults implements FeatureIndexResults {
 		return featureIds;
 	}
 
+	/**
+	 * Get the max feature rows per stream chunk query
+	 * 
+	 * @return chunk limit
+	 * @since 3.4.1
+	 */
+	public int getChunkLimit() {
+		return chunkLimit;
+	}
+
+	/**
+	 * Set the max feature rows per stream chunk query
+	 * 
+	 * @param chunkLimit
+	 *            chunk limit
+	 * @since 3.4.1
+	 */
+	public void setChunkLimit(int chunkLimit) {
+		this.chunkLimit = chunkLimit;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Feature rows are read in chunks of feature ids, in feature id list
+	 * order. The stream splits by feature id list range so parallel streams
+	 * read the chunks concurrently on pooled read connections when the
+	 * GeoPackage has a reader pool. Feature rows deleted since the query are
+	 * skipped, so the feature id count is only a size estimate.
+	 */
+	@Override
+	public Stream<FeatureRow> stream() {
+		return StreamSupport
+				.stream(new FeatureIdSpliterator(0, featureIds.size()), false)
+				.onClose(this::close);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -116,4 +166,110 @@ public class ManualFeatureQueryResults implements FeatureIndexResults {
 		};
 	}
 
+	/**
+	 * Feature row spliterator over a range of the feature ids, reading each
+	 * chunk of feature ids with a single query
+	 */
+	private class FeatureIdSpliterator implements Spliterator<FeatureRow> {
+
+		/**
+		 * Next feature id index
+		 */
+		private int index;
+
+		/**
+		 * Exclusive end feature id index
+		 */
+		private final int end;
+
+		/**
+		 * Read feature rows of the current chunk
+		 */
+		private final Queue<FeatureRow> rows = new ArrayDeque<>();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param index
+		 *            first feature id index
+		 * @param end
+		 *            exclusive end feature id index
+		 */
+		private FeatureIdSpliterator(int index, int end) {
+			this.index = index;
+			this.end = end;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryAdvance(Consumer<? super FeatureRow> action) {
+			while (rows.isEmpty() && index < end) {
+				readChunk();
+			}
+			FeatureRow row = rows.poll();
+			if (row != null) {
+				action.accept(row);
+			}
+			return row != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Spliterator<FeatureRow> trySplit() {
+			FeatureIdSpliterator prefix = null;
+			if (rows.isEmpty() && end - index > chunkLimit) {
+				int middle = index + (end - index) / 2;
+				prefix = new FeatureIdSpliterator(index, middle);
+				index = middle;
+			}
+			return prefix;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long estimateSize() {
+			return end - index + rows.size();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+
+		/**
+		 * Read the next chunk of feature rows in feature id order
+		 */
+		private void readChunk() {
+			int chunkEnd = Math.min(end, index + Math.max(chunkLimit, 1));
+			List<Long> chunkIds = featureIds.subList(index, chunkEnd);
+			index = chunkEnd;
+			Map<Long, FeatureRow> chunkRows = new HashMap<>();
+			FeatureResultSet resultSet = featureDao.queryForIds(chunkIds);
+			try {
+				while (resultSet.moveToNext()) {
+					FeatureRow row = resultSet.getRow();
+					chunkRows.put(row.getId(), row);
+				}
+			} finally {
+				resultSet.close();
+			}
+			for (Long featureId : chunkIds) {
+				FeatureRow row = chunkRows.get(featureId);
+				if (row != null) {
+					rows.add(row);
+				}
+			}
+		}
+
+	}
+
 }
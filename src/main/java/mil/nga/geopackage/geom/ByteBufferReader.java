@@ -0,0 +1,157 @@
+package mil.nga.geopackage.geom;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import mil.nga.sf.util.ByteReader;
+import mil.nga.sf.util.SFException;
+
+/**
+ * Byte Reader over a byte buffer, reading directly from heap, direct or read
+ * only buffers without copying into a byte array. Values are read with the
+ * buffer's absolute reads instead of wrapping each value, so decoding well
+ * known binary geometries with
+ * {@link mil.nga.sf.wkb.GeometryReader#readGeometry(ByteReader)} allocates
+ * only the geometries.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class ByteBufferReader extends ByteReader {
+
+	/**
+	 * Character set
+	 */
+	private static final String CHAR_SET = "UTF-8";
+
+	/**
+	 * Byte buffer, positioned at the next byte
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Buffer position of the first byte
+	 */
+	private final int start;
+
+	/**
+	 * Constructor, reading from the buffer position through the limit
+	 * without modifying the buffer position or byte order
+	 *
+	 * @param buffer
+	 *            byte buffer
+	 */
+	public ByteBufferReader(ByteBuffer buffer) {
+		super(new byte[0]);
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.start = this.buffer.position();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Relative to the starting buffer position
+	 */
+	@Override
+	public int getNextByte() {
+		return buffer.position() - start;
+	}
+
+	/**
+	 * Get the number of remaining bytes
+	 *
+	 * @return remaining bytes
+	 */
+	public int getRemaining() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteOrder getByteOrder() {
+		return buffer.order();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setByteOrder(ByteOrder byteOrder) {
+		buffer.order(byteOrder);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String readString(int num) throws UnsupportedEncodingException {
+		verifyRemainingBytes(num);
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(),
+					buffer.arrayOffset() + buffer.position(), num, CHAR_SET);
+			buffer.position(buffer.position() + num);
+		} else {
+			byte[] bytes = new byte[num];
+			buffer.get(bytes);
+			value = new String(bytes, CHAR_SET);
+		}
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte readByte() {
+		verifyRemainingBytes(1);
+		return buffer.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readInt() {
+		verifyRemainingBytes(4);
+		return buffer.getInt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long readUnsignedInt() {
+		return readInt() & 0xffffffffL;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double readDouble() {
+		verifyRemainingBytes(8);
+		return buffer.getDouble();
+	}
+
+	/**
+	 * Verify with the remaining bytes that there are enough remaining to read
+	 * the provided amount
+	 *
+	 * @param bytesToRead
+	 *            number of bytes to read
+	 */
+	private void verifyRemainingBytes(int bytesToRead) {
+		if (buffer.remaining() < bytesToRead) {
+			throw new SFException(
+					"No more remaining bytes to read. Total Bytes: "
+							+ (buffer.limit() - start)
+							+ ", Bytes already read: " + getNextByte()
+							+ ", Attempted to read: " + bytesToRead);
+		}
+	}
+
+}
@@ -0,0 +1,453 @@
+package mil.nga.geopackage.geom;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.wkb.GeometryReader;
+
+/**
+ * GeoPackage Geometry Data that parses only the GeoPackage binary header
+ * (flags, SRS id and envelope) when created, decoding the well-known binary
+ * geometry on the first {@link #getGeometry()}. The bytes or byte buffer are
+ * retained without copying and returned as is by {@link #toBytes()} and
+ * {@link #getByteBuffer()} until the geometry data is modified or the
+ * geometry, which may be modified in place, is accessed. The geometry is
+ * decoded directly from the byte buffer.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class LazyGeoPackageGeometryData extends GeoPackageGeometryData {
+
+	/**
+	 * Max bytes of a GeoPackage binary header: magic, version, flags, SRS id
+	 * and an XYZM envelope. Geometry data created from a header prefix of
+	 * this many bytes parses the header values without the geometry.
+	 */
+	public static final int MAX_HEADER_BYTES = 8 + 8 * 8;
+
+	/**
+	 * GeoPackage geometry magic number
+	 */
+	private static final String MAGIC = "GP";
+
+	/**
+	 * Geometry data bytes, null until copied when created from a byte buffer
+	 * without an accessible array
+	 */
+	private byte[] bytes;
+
+	/**
+	 * Read only geometry data buffer, positioned at the first byte
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Index of the well-known binary geometry within the bytes
+	 */
+	private int wkbGeometryIndex;
+
+	/**
+	 * Well-known binary geometry decoded flag
+	 */
+	private volatile boolean decoded = false;
+
+	/**
+	 * Modified since read from the bytes flag, parsing while null
+	 */
+	private Boolean modified = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes
+	 *            geometry data bytes, retained without copying
+	 */
+	public LazyGeoPackageGeometryData(byte[] bytes) {
+		super(0);
+		fromBytes(bytes);
+	}
+
+	/**
+	 * Constructor, reading from the buffer position through the limit. The
+	 * buffer contents are retained without copying and must not be modified.
+	 *
+	 * @param buffer
+	 *            geometry data buffer, such as from
+	 *            {@link mil.nga.geopackage.db.ResultSetResult#getBlobByteBuffer(int)}
+	 */
+	public LazyGeoPackageGeometryData(ByteBuffer buffer) {
+		super(0);
+		fromByteBuffer(buffer);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Parses the header, deferring the geometry decoding
+	 */
+	@Override
+	public void fromBytes(byte[] bytes) {
+		parse(bytes, ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Read the geometry data from the buffer position through the limit,
+	 * parsing the header and deferring the geometry decoding. The buffer
+	 * contents are retained without copying and must not be modified.
+	 *
+	 * @param buffer
+	 *            geometry data buffer
+	 */
+	public void fromByteBuffer(ByteBuffer buffer) {
+		parse(null, buffer);
+	}
+
+	/**
+	 * Parse the header of the geometry data
+	 *
+	 * @param bytes
+	 *            geometry data bytes or null
+	 * @param buffer
+	 *            geometry data buffer
+	 */
+	private void parse(byte[] bytes, ByteBuffer buffer) {
+
+		modified = null;
+		this.bytes = bytes;
+		this.buffer = buffer.slice().asReadOnlyBuffer();
+		super.setGeometry(null);
+
+		ByteBufferReader reader = new ByteBufferReader(this.buffer);
+
+		String magic = null;
+		try {
+			magic = reader.readString(2);
+		} catch (UnsupportedEncodingException e) {
+			throw new GeoPackageException(
+					"Unexpected GeoPackage Geometry magic number character encoding: Expected: "
+							+ MAGIC);
+		}
+		if (!MAGIC.equals(magic)) {
+			throw new GeoPackageException(
+					"Unexpected GeoPackage Geometry magic number: " + magic
+							+ ", Expected: " + MAGIC);
+		}
+
+		byte version = reader.readByte();
+		if (version != 0) {
+			throw new GeoPackageException(
+					"Unexpected GeoPackage Geometry version: " + version
+							+ ", Expected: 0");
+		}
+
+		byte flags = reader.readByte();
+		if (((flags >> 6) & 3) != 0) {
+			throw new GeoPackageException(
+					"Unexpected GeoPackage Geometry flags. Flag bit 7 and 6 should both be 0, flags: "
+							+ flags);
+		}
+		int envelopeIndicator = (flags >> 1) & 7;
+		if (envelopeIndicator > 4) {
+			throw new GeoPackageException(
+					"Unexpected GeoPackage Geometry flags. Envelope contents indicator must be between 0 and 4. Actual: "
+							+ envelopeIndicator);
+		}
+		ByteOrder byteOrder = (flags & 1) == 0 ? ByteOrder.BIG_ENDIAN
+				: ByteOrder.LITTLE_ENDIAN;
+
+		setExtended(((flags >> 5) & 1) == 1);
+		setEmpty(((flags >> 4) & 1) == 1);
+		setByteOrder(byteOrder);
+
+		reader.setByteOrder(byteOrder);
+		setSrsId(reader.readInt());
+		setEnvelope(readEnvelope(envelopeIndicator, reader));
+
+		wkbGeometryIndex = reader.getNextByte();
+
+		decoded = isEmpty();
+		modified = false;
+	}
+
+	/**
+	 * Determine if the well-known binary geometry has been decoded
+	 *
+	 * @return true if decoded
+	 */
+	public boolean isDecoded() {
+		return decoded;
+	}
+
+	/**
+	 * Determine if the geometry data has been modified since read from the
+	 * bytes
+	 *
+	 * @return true if modified
+	 */
+	public boolean isModified() {
+		return modified != null && modified;
+	}
+
+	/**
+	 * Get the geometry data as a read only buffer without copying, positioned
+	 * at the first byte
+	 *
+	 * @return byte buffer
+	 */
+	public ByteBuffer getByteBuffer() {
+		encodeQuietly();
+		return buffer.duplicate();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Decodes the well-known binary geometry on first access
+	 */
+	@Override
+	public Geometry getGeometry() {
+		if (!decoded) {
+			synchronized (this) {
+				if (!decoded) {
+					// Retain the header flags updated by the geometry setter
+					boolean extended = isExtended();
+					super.setGeometry(decode());
+					super.setExtended(extended);
+					decoded = true;
+				}
+			}
+		}
+		return super.getGeometry();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setGeometry(Geometry geometry) {
+		synchronized (this) {
+			super.setGeometry(geometry);
+			decoded = true;
+		}
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setExtended(boolean extended) {
+		super.setExtended(extended);
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setEmpty(boolean empty) {
+		super.setEmpty(empty);
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setByteOrder(ByteOrder byteOrder) {
+		super.setByteOrder(byteOrder);
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSrsId(int srsId) {
+		super.setSrsId(srsId);
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setEnvelope(GeometryEnvelope envelope) {
+		super.setEnvelope(envelope);
+		modify();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Returns the read bytes without copying when not modified and the
+	 * geometry has not been accessed
+	 */
+	@Override
+	public byte[] toBytes() throws IOException {
+		encode();
+		return getBytes();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Geometry data read from a byte buffer without an accessible array is
+	 * copied on the first call
+	 */
+	@Override
+	public byte[] getBytes() {
+		if (bytes == null) {
+			byte[] copy = new byte[buffer.remaining()];
+			buffer.duplicate().get(copy);
+			bytes = copy;
+		}
+		return bytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getHeaderBytes() {
+		byte[] headerBytes = new byte[wkbGeometryIndex];
+		getHeaderByteBuffer().get(headerBytes);
+		return headerBytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer getHeaderByteBuffer() {
+		ByteBuffer header = buffer.duplicate();
+		header.limit(wkbGeometryIndex);
+		return header.slice().order(getByteOrder());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getWkbBytes() {
+		ByteBuffer wkb = getWkbByteBuffer();
+		byte[] wkbBytes = new byte[wkb.remaining()];
+		wkb.get(wkbBytes);
+		return wkbBytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer getWkbByteBuffer() {
+		ByteBuffer wkb = buffer.duplicate();
+		wkb.position(wkbGeometryIndex);
+		return wkb.slice().order(getByteOrder());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWkbGeometryIndex() {
+		return wkbGeometryIndex;
+	}
+
+	/**
+	 * Mark the geometry data as modified, unless parsing
+	 */
+	private void modify() {
+		if (modified != null) {
+			modified = true;
+		}
+	}
+
+	/**
+	 * Encode the geometry data when modified or when the geometry, which may
+	 * be modified in place, has been accessed
+	 *
+	 * @throws IOException
+	 *             upon failure
+	 */
+	private void encode() throws IOException {
+		if (isModified() || (decoded && super.getGeometry() != null)) {
+			getGeometry();
+			bytes = super.toBytes();
+			buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+			wkbGeometryIndex = super.getWkbGeometryIndex();
+			modified = false;
+		}
+	}
+
+	/**
+	 * Encode the geometry data, converting modifications
+	 */
+	private void encodeQuietly() {
+		try {
+			encode();
+		} catch (IOException e) {
+			throw new GeoPackageException(
+					"Failed to write the GeoPackage Geometry bytes", e);
+		}
+	}
+
+	/**
+	 * Decode the well-known binary geometry directly from the buffer
+	 *
+	 * @return geometry or null when empty
+	 */
+	private Geometry decode() {
+		Geometry geometry = null;
+		if (!isEmpty()) {
+			ByteBuffer wkb = buffer.duplicate();
+			wkb.position(wkbGeometryIndex);
+			geometry = GeometryReader.readGeometry(new ByteBufferReader(wkb));
+		}
+		return geometry;
+	}
+
+	/**
+	 * Read the envelope of the envelope indicator
+	 *
+	 * @param envelopeIndicator
+	 *            envelope indicator
+	 * @param reader
+	 *            byte reader
+	 * @return envelope or null
+	 */
+	private static GeometryEnvelope readEnvelope(int envelopeIndicator,
+			ByteBufferReader reader) {
+
+		GeometryEnvelope envelope = null;
+
+		if (envelopeIndicator > 0) {
+
+			boolean hasZ = envelopeIndicator == 2 || envelopeIndicator == 4;
+			boolean hasM = envelopeIndicator == 3 || envelopeIndicator == 4;
+
+			envelope = new GeometryEnvelope(hasZ, hasM);
+			envelope.setMinX(reader.readDouble());
+			envelope.setMaxX(reader.readDouble());
+			envelope.setMinY(reader.readDouble());
+			envelope.setMaxY(reader.readDouble());
+			if (hasZ) {
+				envelope.setMinZ(reader.readDouble());
+				envelope.setMaxZ(reader.readDouble());
+			}
+			if (hasM) {
+				envelope.setMinM(reader.readDouble());
+				envelope.setMaxM(reader.readDouble());
+			}
+		}
+
+		return envelope;
+	}
+
+}
@@ -10,6 +10,7 @@ import com.j256.ormlite.stmt.QueryBuilder;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageAsync;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.attributes.AttributesDao;
 import mil.nga.geopackage.attributes.AttributesTable;
@@ -53,6 +54,11 @@ class GeoPackageImpl extends GeoPackageCoreImpl implements GeoPackage {
 	 */
 	private final GeoPackageConnection database;
 
+	/**
+	 * Asynchronous facade, created on first use
+	 */
+	private GeoPackageAsync async;
+
 	/**
 	 * Constructor
 	 *
@@ -71,6 +77,33 @@ class GeoPackageImpl extends GeoPackageCoreImpl implements GeoPackage {
 		this.database = database;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized GeoPackageAsync async() {
+		if (async == null) {
+			async = new GeoPackageAsync(this);
+		}
+		return async;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		GeoPackageAsync closeAsync;
+		synchronized (this) {
+			closeAsync = async;
+			async = null;
+		}
+		if (closeAsync != null) {
+			closeAsync.close();
+		}
+		super.close();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,20 +1,36 @@
 package mil.nga.geopackage.manager;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sqlite.SQLiteConfig.JournalMode;
 
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.jdbc.JdbcSingleConnectionSource;
 import com.j256.ormlite.logger.LocalLog;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageConstants;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.db.GeoPackageMemoryReplica;
+import mil.nga.geopackage.db.GeoPackageOpenOptions;
+import mil.nga.geopackage.db.GeoPackageOpenProfile;
+import mil.nga.geopackage.db.GeoPackageSnapshot;
 import mil.nga.geopackage.db.GeoPackageTableCreator;
+import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.db.SlowQueryLog;
 import mil.nga.geopackage.io.GeoPackageIOUtils;
+import mil.nga.geopackage.io.GeoPackageProgress;
 import mil.nga.geopackage.validate.GeoPackageValidate;
 
 /**
@@ -24,6 +40,12 @@ import mil.nga.geopackage.validate.GeoPackageValidate;
  */
 public class GeoPackageManager {
 
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(GeoPackageManager.class.getName());
+
 	static {
 		// Change the ORMLite log level
 		System.setProperty(LocalLog.LOCAL_LOG_LEVEL_PROPERTY, "INFO");
@@ -37,6 +59,20 @@ public class GeoPackageManager {
 	 * @return true if created
 	 */
 	public static boolean create(File file) {
+		return create(file, new GeoPackageOpenOptions());
+	}
+
+	/**
+	 * Create a GeoPackage
+	 * 
+	 * @param file
+	 *            file
+	 * @param options
+	 *            open options
+	 * @return true if created
+	 * @since 3.4.1
+	 */
+	public static boolean create(File file, GeoPackageOpenOptions options) {
 
 		boolean created = false;
 
@@ -48,12 +84,16 @@ public class GeoPackageManager {
 					GeoPackageConstants.GEOPACKAGE_EXTENSION);
 		}
 
-		if (file.exists()) {
+		if (options.isReadOnly()) {
+			throw new GeoPackageException(
+					"GeoPackage can not be created read only: "
+							+ file.getAbsolutePath());
+		} else if (file.exists()) {
 			throw new GeoPackageException(
 					"GeoPackage already exists: " + file.getAbsolutePath());
 		} else {
 			// Create the GeoPackage Connection
-			GeoPackageConnection connection = connect(file);
+			GeoPackageConnection connection = connect(file, options, true);
 
 			// Set the GeoPackage application id and user version
 			connection.setApplicationId();
@@ -123,6 +163,222 @@ public class GeoPackageManager {
 	 * @since 3.3.0
 	 */
 	public static GeoPackage open(String name, File file, boolean validate) {
+		GeoPackageOpenOptions options = new GeoPackageOpenOptions();
+		options.setValidate(validate);
+		return open(name, file, options);
+	}
+
+	/**
+	 * Open a GeoPackage with a single writer connection and a bounded pool of
+	 * read only connections. The database is placed in WAL journal mode so
+	 * that pooled reads run concurrently with the writer.
+	 * 
+	 * @param file
+	 *            file
+	 * @param readConnections
+	 *            max number of pooled read connections, 0 for none
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage open(File file, int readConnections) {
+		return open(file.getName(), file, true, readConnections);
+	}
+
+	/**
+	 * Open a GeoPackage with a single writer connection and a bounded pool of
+	 * read only connections. The database is placed in WAL journal mode so
+	 * that pooled reads run concurrently with the writer.
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            GeoPackage file
+	 * @param validate
+	 *            validate the GeoPackage
+	 * @param readConnections
+	 *            max number of pooled read connections, 0 for none
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage open(String name, File file, boolean validate,
+			int readConnections) {
+		GeoPackageOpenOptions options = new GeoPackageOpenOptions();
+		options.setValidate(validate);
+		options.setReadConnections(readConnections);
+		return open(name, file, options);
+	}
+
+	/**
+	 * Open a GeoPackage
+	 * 
+	 * @param file
+	 *            file
+	 * @param options
+	 *            open options
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage open(File file, GeoPackageOpenOptions options) {
+		return open(file.getName(), file, options);
+	}
+
+	/**
+	 * Open a published GeoPackage read only and immutable for serving. The
+	 * file is opened with immutable=1 and a large memory map, without
+	 * locking, and all writes are rejected. The file must not be modified by
+	 * any process while open.
+	 * 
+	 * @param file
+	 *            file
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openReadOnly(File file) {
+		return openReadOnly(file.getName(), file);
+	}
+
+	/**
+	 * Open a published GeoPackage read only and immutable for serving
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            file
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openReadOnly(String name, File file) {
+		return openReadOnly(name, file, 0);
+	}
+
+	/**
+	 * Open a published GeoPackage read only and immutable for serving, with
+	 * pooled read connections for concurrent reads
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            file
+	 * @param readConnections
+	 *            max number of pooled read connections, 0 for none
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openReadOnly(String name, File file,
+			int readConnections) {
+		GeoPackageOpenOptions options = new GeoPackageOpenOptions(
+				GeoPackageOpenProfile.IMMUTABLE);
+		options.setReadConnections(readConnections);
+		return open(name, file, options);
+	}
+
+	/**
+	 * Open a GeoPackage loaded into an in-memory database, so reads never
+	 * touch the file system. Writes are kept only in memory.
+	 * 
+	 * @param file
+	 *            file
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openInMemory(File file) {
+		return openInMemory(file.getName(), file);
+	}
+
+	/**
+	 * Open a GeoPackage loaded into an in-memory database, so reads never
+	 * touch the file system. Writes are kept only in memory.
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            file
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openInMemory(String name, File file) {
+		return openInMemory(name, file, 0);
+	}
+
+	/**
+	 * Open a GeoPackage loaded into an in-memory database, so reads never
+	 * touch the file system. When refreshing, the GeoPackage is read only and
+	 * is reloaded in place when the file modified time changes.
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            file
+	 * @param refreshInterval
+	 *            milliseconds between file modified time checks, 0 to not
+	 *            refresh
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openInMemory(String name, File file,
+			long refreshInterval) {
+
+		if (GeoPackageIOUtils.hasFileExtension(file)) {
+			GeoPackageValidate.validateGeoPackageExtension(file);
+		} else {
+			file = GeoPackageIOUtils.addFileExtension(file,
+					GeoPackageConstants.GEOPACKAGE_EXTENSION);
+		}
+
+		Connection databaseConnection;
+		try {
+			databaseConnection = DriverManager
+					.getConnection(GeoPackageSnapshot.memoryUrl());
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to get in-memory database connection", e);
+		}
+
+		GeoPackageMemoryReplica replica;
+		try {
+			replica = new GeoPackageMemoryReplica(file, databaseConnection,
+					refreshInterval);
+		} catch (RuntimeException e) {
+			closeQuietly(databaseConnection);
+			throw e;
+		}
+
+		GeoPackage geoPackage;
+		try {
+			geoPackage = openMemory(name, file, databaseConnection);
+		} catch (RuntimeException e) {
+			replica.close();
+			throw e;
+		}
+		geoPackage.getConnection().setReplica(replica);
+		geoPackage.getConnection().setReadOnly(refreshInterval > 0);
+
+		try {
+			GeoPackageValidate.validateMinimumTables(geoPackage);
+		} catch (RuntimeException e) {
+			geoPackage.close();
+			throw e;
+		}
+
+		return geoPackage;
+	}
+
+	/**
+	 * Open a GeoPackage
+	 * 
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            GeoPackage file
+	 * @param options
+	 *            open options
+	 * @return GeoPackage
+	 * @since 3.4.1
+	 */
+	public static GeoPackage open(String name, File file,
+			GeoPackageOpenOptions options) {
+
+		boolean validate = options.isValidate();
 
 		// Validate or add the file extension
 		if (validate) {
@@ -135,7 +391,17 @@ public class GeoPackageManager {
 		}
 
 		// Create the GeoPackage Connection and table creator
-		GeoPackageConnection connection = connect(file);
+		GeoPackageConnection connection = connect(file, options, false);
+		if (options.isMetrics()) {
+			connection.enableMetrics(name);
+		}
+		if (options.getSlowQueryThreshold() != null) {
+			connection.setSlowQueryLog(
+					new SlowQueryLog(options.getSlowQueryThreshold()));
+		}
+		if (options.getQueryTimeout() > 0) {
+			connection.setQueryTimeout(options.getQueryTimeout());
+		}
 		GeoPackageTableCreator tableCreator = new GeoPackageTableCreator(
 				connection);
 
@@ -156,15 +422,122 @@ public class GeoPackageManager {
 		return geoPackage;
 	}
 
+	/**
+	 * Snapshot the GeoPackage into a new in-memory GeoPackage, to be closed by
+	 * the caller
+	 *
+	 * @param geoPackage
+	 *            GeoPackage
+	 * @return in-memory GeoPackage
+	 * @since 3.4.1
+	 * @see #openSnapshotInMemory(GeoPackage, GeoPackageProgress)
+	 */
+	public static GeoPackage openSnapshotInMemory(GeoPackage geoPackage) {
+		return openSnapshotInMemory(geoPackage, null);
+	}
+
+	/**
+	 * Snapshot the GeoPackage into a new in-memory GeoPackage, to be closed by
+	 * the caller, reporting progress in pages. The snapshot is first written
+	 * to a temporary file in the default temporary directory, so it is copied
+	 * within a single read transaction and can be canceled, and then restored
+	 * into memory. This needs free temporary disk space about the size of the
+	 * database, in addition to the memory for the restored copy. The
+	 * temporary file is deleted before returning.
+	 *
+	 * @param geoPackage
+	 *            GeoPackage
+	 * @param progress
+	 *            progress tracker, canceled when no longer active, may be
+	 *            null
+	 * @return in-memory GeoPackage, null if canceled
+	 * @since 3.4.1
+	 */
+	public static GeoPackage openSnapshotInMemory(GeoPackage geoPackage,
+			GeoPackageProgress progress) {
+
+		File snapshot;
+		try {
+			snapshot = File.createTempFile("geopackage-snapshot-", ".gpkg");
+		} catch (IOException e) {
+			throw new GeoPackageException(
+					"Failed to create snapshot temporary file for GeoPackage: "
+							+ geoPackage.getName(),
+					e);
+		}
+		snapshot.delete();
+
+		GeoPackage memoryGeoPackage = null;
+		try {
+			GeoPackageConnection connection = geoPackage.getConnection();
+			if (GeoPackageSnapshot.snapshot(connection, snapshot, progress)) {
+				memoryGeoPackage = openMemory(geoPackage.getName(),
+						connection.getFile(),
+						GeoPackageSnapshot.restoreToMemory(snapshot));
+			}
+		} finally {
+			snapshot.delete();
+		}
+
+		return memoryGeoPackage;
+	}
+
+	/**
+	 * Open a GeoPackage over an in-memory database connection
+	 *
+	 * @param name
+	 *            GeoPackage name
+	 * @param file
+	 *            GeoPackage file the database was loaded from
+	 * @param databaseConnection
+	 *            in-memory database connection
+	 * @return GeoPackage
+	 */
+	static GeoPackage openMemory(String name, File file,
+			Connection databaseConnection) {
+
+		// Each in-memory connection is a separate database, share the
+		// connection with ORMLite
+		ConnectionSource connectionSource;
+		try {
+			JdbcSingleConnectionSource singleConnectionSource = new JdbcSingleConnectionSource(
+					GeoPackageSnapshot.memoryUrl(), databaseConnection);
+			singleConnectionSource.initialize();
+			connectionSource = singleConnectionSource;
+		} catch (SQLException e) {
+			closeQuietly(databaseConnection);
+			throw new GeoPackageException(
+					"Failed to get connection source to the in-memory GeoPackage: "
+							+ name,
+					e);
+		}
+
+		GeoPackageConnection connection = new GeoPackageConnection(file,
+				databaseConnection, connectionSource);
+		connection.enableForeignKeys();
+		GeoPackageTableCreator tableCreator = new GeoPackageTableCreator(
+				connection);
+
+		return new GeoPackageImpl(name, file, connection, tableCreator);
+	}
+
 	/**
 	 * Connect to a GeoPackage file
 	 * 
 	 * @param file
-	 * @return
+	 *            GeoPackage file
+	 * @param options
+	 *            open options
+	 * @param create
+	 *            true when creating the GeoPackage
+	 * @return connection
 	 */
-	private static GeoPackageConnection connect(File file) {
+	private static GeoPackageConnection connect(File file,
+			GeoPackageOpenOptions options, boolean create) {
+
+		options.validate();
 
-		String databaseUrl = "jdbc:sqlite:" + file.getPath();
+		String databaseUrl = options.buildUrl(file);
 
 		// load the sqlite-JDBC driver using the current class loader
 		try {
@@ -177,7 +550,8 @@ public class GeoPackageManager {
 		// create a database connection
 		Connection databaseConnection;
 		try {
-			databaseConnection = DriverManager.getConnection(databaseUrl);
+			databaseConnection = DriverManager.getConnection(databaseUrl,
+					options.buildConfig().toProperties());
 		} catch (SQLException e) {
 			throw new GeoPackageException(
 					"Failed to get connection to the SQLite file: "
@@ -185,10 +559,58 @@ public class GeoPackageManager {
 					e);
 		}
 
+		// Apply the pragmas before any DAOs are created
+		try {
+			for (String pragma : options.buildPragmas(create)) {
+				SQLUtils.execSQL(databaseConnection, pragma);
+			}
+			if (options.buildJournalMode() == JournalMode.WAL) {
+				Object journalMode = SQLUtils.querySingleResult(
+						databaseConnection, "PRAGMA journal_mode", null, 0,
+						GeoPackageDataType.TEXT);
+				if (journalMode == null || !JournalMode.WAL.getValue()
+						.equalsIgnoreCase(journalMode.toString())) {
+					throw new GeoPackageException(
+							"Failed to enable WAL journal mode for the SQLite file: "
+									+ file.getAbsolutePath()
+									+ ", journal mode: " + journalMode);
+				}
+			}
+		} catch (RuntimeException e) {
+			closeQuietly(databaseConnection);
+			throw e;
+		}
+
 		ConnectionSource connectionSource;
 		try {
-			connectionSource = new JdbcConnectionSource(databaseUrl);
+			if (options.isExclusiveLocking()) {
+				// Exclusive locking blocks other connections, share the
+				// connection with ORMLite
+				JdbcSingleConnectionSource singleConnectionSource = new JdbcSingleConnectionSource(
+						databaseUrl, databaseConnection);
+				// Re-initialize to wrap the connection, which is not yet set
+				// when initialized by the constructor
+				singleConnectionSource.initialize();
+				connectionSource = singleConnectionSource;
+			} else {
+				connectionSource = new JdbcConnectionSource(databaseUrl) {
+					@Override
+					protected DatabaseConnection makeConnection(
+							com.j256.ormlite.logger.Logger logger)
+							throws SQLException {
+						DatabaseConnection ormliteConnection = super.makeConnection(
+								logger);
+						for (String pragma : options
+								.buildConnectionSourcePragmas(create)) {
+							ormliteConnection.executeStatement(pragma,
+									DatabaseConnection.DEFAULT_RESULT_FLAGS);
+						}
+						return ormliteConnection;
+					}
+				};
+			}
 		} catch (SQLException e) {
+			closeQuietly(databaseConnection);
 			throw new GeoPackageException(
 					"Failed to get connection source to the SQLite file: "
 							+ file.getAbsolutePath(),
@@ -199,7 +621,27 @@ public class GeoPackageManager {
 		GeoPackageConnection connection = new GeoPackageConnection(file,
 				databaseConnection, connectionSource);
 		connection.enableForeignKeys();
+		connection.setReadOnly(options.isReadOnly());
+
+		if (!create && options.getReadConnections() > 0) {
+			connection.setReaderPool(new GeoPackageConnectionPool(file,
+					options.getReadConnections(), options));
+		}
 
 		return connection;
 	}
+
+	/**
+	 * Close the connection, ignoring errors
+	 * 
+	 * @param connection
+	 *            connection
+	 */
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.log(Level.WARNING, "Failed to close GeoPackage connection", e);
+		}
+	}
 }
@@ -16,6 +16,7 @@ import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.contents.ContentsDao;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystemDao;
+import mil.nga.geopackage.db.QueryDeadline;
 import mil.nga.geopackage.extension.scale.TileScaling;
 import mil.nga.geopackage.extension.scale.TileTableScaling;
 import mil.nga.geopackage.io.GeoPackageZoomLevelProgress;
@@ -815,8 +816,19 @@ public abstract class TileGenerator {
 
 				try {
 
-					// Create the tile
-					byte[] tileBytes = createTile(zoomLevel, x, y);
+					// Create the tile, interrupting in-flight queries when
+					// the progress is cancelled
+					byte[] tileBytes;
+					if (progress != null) {
+						QueryDeadline deadline = QueryDeadline.start(progress);
+						try {
+							tileBytes = createTile(zoomLevel, x, y);
+						} finally {
+							deadline.close();
+						}
+					} else {
+						tileBytes = createTile(zoomLevel, x, y);
+					}
 
 					if (tileBytes != null) {
 
@@ -871,6 +883,10 @@ public abstract class TileGenerator {
 						}
 					}
 				} catch (Exception e) {
+					// Check if the progress has been cancelled
+					if (progress != null && !progress.isActive()) {
+						break;
+					}
 					LOGGER.log(Level.WARNING, "Failed to create tile. Zoom: "
 							+ zoomLevel + ", x: " + x + ", y: " + y, e);
 					// Skip this tile, don't increase count
@@ -8,6 +8,8 @@ import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.db.Aggregate;
+import mil.nga.geopackage.db.AggregateResult;
 import mil.nga.geopackage.db.GeoPackageConnection;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
 import mil.nga.geopackage.tiles.TileGrid;
@@ -547,10 +549,17 @@ public class TileDao
 		String where = buildWhere(TileTable.COLUMN_ZOOM_LEVEL, zoomLevel);
 		String[] whereArgs = buildWhereArgs(new Object[] { zoomLevel });
 
-		Integer minX = min(TileTable.COLUMN_TILE_COLUMN, where, whereArgs);
-		Integer maxX = max(TileTable.COLUMN_TILE_COLUMN, where, whereArgs);
-		Integer minY = min(TileTable.COLUMN_TILE_ROW, where, whereArgs);
-		Integer maxY = max(TileTable.COLUMN_TILE_ROW, where, whereArgs);
+		Aggregate minColumn = Aggregate.min(TileTable.COLUMN_TILE_COLUMN);
+		Aggregate maxColumn = Aggregate.max(TileTable.COLUMN_TILE_COLUMN);
+		Aggregate minRow = Aggregate.min(TileTable.COLUMN_TILE_ROW);
+		Aggregate maxRow = Aggregate.max(TileTable.COLUMN_TILE_ROW);
+		AggregateResult result = aggregate(where, whereArgs, minColumn,
+				maxColumn, minRow, maxRow);
+
+		Integer minX = result.getInteger(minColumn);
+		Integer maxX = result.getInteger(maxColumn);
+		Integer minY = result.getInteger(minRow);
+		Integer maxY = result.getInteger(maxRow);
 
 		TileGrid tileGrid = null;
 		if (minX != null && maxX != null && minY != null && maxY != null) {
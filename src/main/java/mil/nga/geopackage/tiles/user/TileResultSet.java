@@ -1,7 +1,13 @@
 package mil.nga.geopackage.tiles.user;
 
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 
+import javax.imageio.ImageIO;
+
 import mil.nga.geopackage.user.UserResultSet;
 
 /**
@@ -34,4 +40,58 @@ public class TileResultSet extends
 		return new TileRow(getTable(), columnTypes, values);
 	}
 
+	/**
+	 * Get the tile data of the current row without reading the other columns
+	 * 
+	 * @return tile data bytes
+	 * @since 3.4.1
+	 */
+	public byte[] getTileData() {
+		return getBlob(getTable().getTileDataColumnIndex());
+	}
+
+	/**
+	 * Get the tile data of the current row as a read only byte buffer without
+	 * copying or reading the other columns
+	 * 
+	 * @return read only byte buffer or null
+	 * @since 3.4.1
+	 */
+	public ByteBuffer getTileDataByteBuffer() {
+		return getBlobByteBuffer(getTable().getTileDataColumnIndex());
+	}
+
+	/**
+	 * Get the tile data of the current row as an input stream without copying
+	 * or reading the other columns
+	 * 
+	 * @return input stream or null
+	 * @since 3.4.1
+	 */
+	public InputStream getTileDataInputStream() {
+		return getBlobInputStream(getTable().getTileDataColumnIndex());
+	}
+
+	/**
+	 * Read the tile data image of the current row directly from the tile
+	 * data, without creating the tile row
+	 * 
+	 * @return buffered image or null
+	 * @throws IOException
+	 *             upon failure
+	 * @since 3.4.1
+	 */
+	public BufferedImage getTileDataImage() throws IOException {
+		BufferedImage image = null;
+		InputStream stream = getTileDataInputStream();
+		if (stream != null) {
+			try {
+				image = ImageIO.read(stream);
+			} finally {
+				stream.close();
+			}
+		}
+		return image;
+	}
+
 }
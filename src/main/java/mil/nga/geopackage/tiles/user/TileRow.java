@@ -1,7 +1,10 @@
 package mil.nga.geopackage.tiles.user;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import mil.nga.geopackage.tiles.ImageUtils;
 import mil.nga.geopackage.user.UserRow;
@@ -192,6 +195,29 @@ public class TileRow extends UserRow<TileColumn, TileTable> {
 		setValue(getTileDataColumnIndex(), tileData);
 	}
 
+	/**
+	 * Get the tile data as a read only byte buffer without copying
+	 * 
+	 * @return read only byte buffer or null
+	 * @since 3.4.1
+	 */
+	public ByteBuffer getTileDataByteBuffer() {
+		byte[] tileData = getTileData();
+		return tileData != null ? ByteBuffer.wrap(tileData).asReadOnlyBuffer()
+				: null;
+	}
+
+	/**
+	 * Get the tile data as an input stream without copying
+	 * 
+	 * @return input stream or null
+	 * @since 3.4.1
+	 */
+	public InputStream getTileDataInputStream() {
+		byte[] tileData = getTileData();
+		return tileData != null ? new ByteArrayInputStream(tileData) : null;
+	}
+
 	/**
 	 * Get the tile data image
 	 * 
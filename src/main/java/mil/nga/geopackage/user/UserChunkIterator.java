@@ -0,0 +1,139 @@
+package mil.nga.geopackage.user;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Keyset paginated chunk iterator over a user table. Each chunk covers the
+ * next range of primary key ids following the previous chunk, so a pass over
+ * the table seeks directly to each chunk instead of skipping all earlier rows
+ * as with a limit and offset. Chunks are returned in primary key order and
+ * each result must be closed by the caller.
+ *
+ * @param <TResult>
+ *            result type
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class UserChunkIterator<TResult extends UserResultSet<?, ?, ?>>
+		implements Iterator<TResult> {
+
+	/**
+	 * User DAO
+	 */
+	private final UserDao<?, ?, ?, TResult> dao;
+
+	/**
+	 * Where clause
+	 */
+	private final String where;
+
+	/**
+	 * Where arguments
+	 */
+	private final String[] whereArgs;
+
+	/**
+	 * Max rows per chunk
+	 */
+	private final int limit;
+
+	/**
+	 * Exclusive lower id bound of the next chunk, null for the first chunk
+	 */
+	private Long afterId = null;
+
+	/**
+	 * Chunk count
+	 */
+	private int chunks = 0;
+
+	/**
+	 * Remaining chunks flag
+	 */
+	private boolean hasNext = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param limit
+	 *            max rows per chunk
+	 */
+	UserChunkIterator(UserDao<?, ?, ?, TResult> dao, String where,
+			String[] whereArgs, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException(
+					"Chunk limit must be at least 1, limit: " + limit);
+		}
+		this.dao = dao;
+		this.where = where;
+		this.whereArgs = whereArgs;
+		this.limit = limit;
+	}
+
+	/**
+	 * Get the max rows per chunk
+	 *
+	 * @return limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Get the exclusive lower id bound of the next chunk
+	 *
+	 * @return id or null before the first chunk
+	 */
+	public Long getAfterId() {
+		return afterId;
+	}
+
+	/**
+	 * Get the number of chunks returned
+	 *
+	 * @return chunk count
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		return hasNext;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TResult next() {
+		if (!hasNext) {
+			throw new NoSuchElementException();
+		}
+
+		// Find the last id of this chunk, null when the remaining rows fit
+		Long throughId = dao.queryForChunkBound(where, whereArgs, afterId,
+				limit);
+
+		TResult result = dao.queryForIdRange(where, whereArgs, afterId,
+				throughId);
+
+		chunks++;
+		afterId = throughId;
+		hasNext = throughId != null;
+
+		return result;
+	}
+
+}
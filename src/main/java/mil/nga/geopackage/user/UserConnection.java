@@ -4,7 +4,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.QueryMetrics;
 import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.db.SlowQueryLog;
 import mil.nga.geopackage.db.SQLiteQueryBuilder;
 
 /**
@@ -30,6 +32,11 @@ public abstract class UserConnection<TColumn extends UserColumn, TTable extends
 	 */
 	protected final Connection connection;
 
+	/**
+	 * GeoPackage connection
+	 */
+	protected final GeoPackageConnection db;
+
 	/**
 	 * Table
 	 */
@@ -42,6 +49,7 @@ public abstract class UserConnection<TColumn extends UserColumn, TTable extends
 	 *            GeoPackage connection
 	 */
 	protected UserConnection(GeoPackageConnection database) {
+		this.db = database;
 		this.connection = database.getConnection();
 	}
 
@@ -80,11 +88,7 @@ public abstract class UserConnection<TColumn extends UserColumn, TTable extends
 	 */
 	@Override
 	public TResult rawQuery(String sql, String[] selectionArgs) {
-
-		ResultSet resultSet = SQLUtils.query(connection, sql, selectionArgs);
-		int count = SQLUtils.count(connection, sql, selectionArgs);
-
-		return createResult(resultSet, count);
+		return query(sql, selectionArgs);
 	}
 
 	/**
@@ -131,10 +135,49 @@ public abstract class UserConnection<TColumn extends UserColumn, TTable extends
 		String sql = querySQL(table, columns, columnsAs, selection, groupBy,
 				having, orderBy, limit);
 
-		ResultSet resultSet = SQLUtils.query(connection, sql, selectionArgs);
-		int count = SQLUtils.count(connection, sql, selectionArgs);
+		return query(sql, selectionArgs);
+	}
 
-		return createResult(resultSet, count);
+	/**
+	 * Query the SQL on a read connection, borrowed from the reader pool when
+	 * one exists and released when the result is closed
+	 * 
+	 * @param sql
+	 *            sql statement
+	 * @param selectionArgs
+	 *            selection arguments
+	 * @return result
+	 * @since 3.4.1
+	 */
+	protected TResult query(String sql, String[] selectionArgs) {
+
+		Connection readConnection = db.borrowReadConnection();
+		SlowQueryLog slowQueryLog = db.getSlowQueryLog();
+		long start = slowQueryLog != null ? System.nanoTime() : 0;
+
+		TResult result = null;
+		try {
+			int count = SQLUtils.count(readConnection, sql, selectionArgs);
+			ResultSet resultSet = SQLUtils.query(readConnection, sql,
+					selectionArgs);
+			result = createResult(resultSet, count);
+			result.setReadConnection(db, readConnection);
+			if (slowQueryLog != null) {
+				result.setSlowQueryLog(slowQueryLog, readConnection, sql,
+						selectionArgs, start);
+			}
+			QueryMetrics metrics = QueryMetrics.get(readConnection);
+			if (metrics != null) {
+				result.setMetrics(metrics, sql);
+			}
+			result.setQueryConnection(readConnection);
+		} finally {
+			if (result == null) {
+				db.releaseReadConnection(readConnection);
+			}
+		}
+
+		return result;
 	}
 
 	/**
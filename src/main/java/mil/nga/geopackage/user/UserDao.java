@@ -1,10 +1,29 @@
 package mil.nga.geopackage.user;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.GeoPackageQueryTimeoutException;
+import mil.nga.geopackage.db.Aggregate;
+import mil.nga.geopackage.db.AggregateResult;
+import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.db.PreparedStatementCache;
+import mil.nga.geopackage.db.QueryInterruptHandler;
 import mil.nga.geopackage.db.SQLUtils;
 
 /**
@@ -29,11 +48,28 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 */
 	private final Connection connection;
 
+	/**
+	 * Prepared statement cache for inserts, updates and deletes
+	 */
+	private final PreparedStatementCache statementCache;
+
+	/**
+	 * Default number of rows inserted per batch insert transaction commit
+	 * 
+	 * @since 3.4.1
+	 */
+	public static final int DEFAULT_BATCH_CHUNK_SIZE = 1000;
+
 	/**
 	 * Auto commit mode at the beginning of a transaction
 	 */
 	private Boolean autoCommit = null;
 
+	/**
+	 * Number of rows inserted per batch insert transaction commit
+	 */
+	private int batchChunkSize = DEFAULT_BATCH_CHUNK_SIZE;
+
 	/**
 	 * Constructor
 	 * 
@@ -51,6 +87,7 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 			TTable table) {
 		super(database, db, userDb, table);
 		this.connection = db.getConnection();
+		this.statementCache = db.getStatementCache();
 		userDb.setTable(table);
 	}
 
@@ -71,6 +108,42 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 		return connection;
 	}
 
+	/**
+	 * Get the prepared statement cache
+	 * 
+	 * @return statement cache
+	 * @since 3.4.1
+	 */
+	public PreparedStatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	/**
+	 * Get the number of rows inserted per batch insert transaction commit
+	 * 
+	 * @return batch chunk size
+	 * @since 3.4.1
+	 */
+	public int getBatchChunkSize() {
+		return batchChunkSize;
+	}
+
+	/**
+	 * Set the number of rows inserted per batch insert transaction commit
+	 * 
+	 * @param batchChunkSize
+	 *            batch chunk size
+	 * @since 3.4.1
+	 */
+	public void setBatchChunkSize(int batchChunkSize) {
+		if (batchChunkSize < 1) {
+			throw new GeoPackageException(
+					"Batch chunk size must be at least 1, size: "
+							+ batchChunkSize);
+		}
+		this.batchChunkSize = batchChunkSize;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -88,6 +161,7 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 			throw new GeoPackageException(
 					"Failed to begin transaction, previous transaction was not ended");
 		}
+		getDb().checkWritable();
 		autoCommit = SQLUtils.beginTransaction(connection);
 	}
 
@@ -125,11 +199,13 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 */
 	@Override
 	public int update(TRow row) {
+		getDb().checkWritable();
 		ContentValues contentValues = row.toContentValues();
 		int updated = 0;
 		if (contentValues.size() > 0) {
-			updated = SQLUtils.update(connection, getTableName(), contentValues,
-					getPkWhere(row.getId()), getPkWhereArgs(row.getId()));
+			updated = SQLUtils.update(connection, statementCache,
+					getTableName(), contentValues, getPkWhere(row.getId()),
+					getPkWhereArgs(row.getId()));
 		}
 		return updated;
 	}
@@ -147,8 +223,9 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 */
 	public int update(ContentValues values, String whereClause,
 			String[] whereArgs) {
-		return SQLUtils.update(connection, getTableName(), values, whereClause,
-				whereArgs);
+		getDb().checkWritable();
+		return SQLUtils.update(connection, statementCache, getTableName(),
+				values, whereClause, whereArgs);
 	}
 
 	/**
@@ -156,8 +233,9 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 */
 	@Override
 	public long insert(TRow row) {
-		long id = SQLUtils.insertOrThrow(connection, getTableName(),
-				row.toContentValues());
+		getDb().checkWritable();
+		long id = SQLUtils.insertOrThrow(connection, statementCache,
+				getTableName(), row.toContentValues());
 		if (row.hasIdColumn()) {
 			row.setId(id);
 		}
@@ -172,7 +250,9 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 * @return row id, -1 on error
 	 */
 	public long insert(ContentValues values) {
-		return SQLUtils.insert(connection, getTableName(), values);
+		getDb().checkWritable();
+		return SQLUtils.insert(connection, statementCache, getTableName(),
+				values);
 	}
 
 	/**
@@ -183,7 +263,859 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
 	 * @return row id
 	 */
 	public long insertOrThrow(ContentValues values) {
-		return SQLUtils.insertOrThrow(connection, getTableName(), values);
+		getDb().checkWritable();
+		return SQLUtils.insertOrThrow(connection, statementCache,
+				getTableName(), values);
+	}
+
+	/**
+	 * Compute the aggregates over all rows in a single pass
+	 * 
+	 * @param aggregates
+	 *            aggregates
+	 * @return aggregate result
+	 * @since 3.4.1
+	 */
+	public AggregateResult aggregate(Aggregate... aggregates) {
+		return aggregate(null, null, aggregates);
+	}
+
+	/**
+	 * Compute the aggregates over the matching rows in a single pass
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param args
+	 *            where arguments
+	 * @param aggregates
+	 *            aggregates
+	 * @return aggregate result
+	 * @since 3.4.1
+	 */
+	public AggregateResult aggregate(String where, String[] args,
+			Aggregate... aggregates) {
+		return getDb().aggregate(getTableName(), where, args, aggregates);
+	}
+
+	/**
+	 * Query for a chunk of rows following the id, ordered by id. Keyset
+	 * paginate by passing the last id of the previous chunk.
+	 * 
+	 * @param afterId
+	 *            exclusive lower id bound
+	 * @param limit
+	 *            max rows
+	 * @return result
+	 * @since 3.4.1
+	 */
+	public TResult queryForKeysetChunk(long afterId, int limit) {
+		return queryForKeysetChunk(null, null, afterId, limit);
+	}
+
+	/**
+	 * Query for a chunk of matching rows following the id, ordered by id.
+	 * Keyset paginate by passing the last id of the previous chunk.
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound
+	 * @param limit
+	 *            max rows
+	 * @return result
+	 * @since 3.4.1
+	 */
+	public TResult queryForKeysetChunk(String where, String[] whereArgs,
+			long afterId, int limit) {
+		List<String> args = new ArrayList<>();
+		String keysetWhere = buildIdRangeWhere(where, whereArgs, afterId,
+				null, args);
+		return query(keysetWhere, args.toArray(new String[args.size()]), null,
+				null, idColumnName(), String.valueOf(limit));
+	}
+
+	/**
+	 * Query for the rows in the id range, ordered by id
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @return result
+	 * @since 3.4.1
+	 */
+	public TResult queryForIdRange(String where, String[] whereArgs,
+			Long afterId, Long throughId) {
+		return queryForIdRange(where, whereArgs, afterId, throughId, null);
+	}
+
+	/**
+	 * Query for the rows in the id range, ordered by id and limited
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param limit
+	 *            max rows, null for no limit
+	 * @return result
+	 * @since 3.4.1
+	 */
+	public TResult queryForIdRange(String where, String[] whereArgs,
+			Long afterId, Long throughId, Integer limit) {
+		List<String> args = new ArrayList<>();
+		String rangeWhere = buildIdRangeWhere(where, whereArgs, afterId,
+				throughId, args);
+		return query(rangeWhere, args.toArray(new String[args.size()]), null,
+				null, idColumnName(),
+				limit != null ? String.valueOf(limit) : null);
+	}
+
+	/**
+	 * Query for the rows of the ids, ordered by id
+	 * 
+	 * @param ids
+	 *            row ids
+	 * @return result
+	 * @since 3.4.1
+	 */
+	public TResult queryForIds(Collection<Long> ids) {
+		StringBuilder where = new StringBuilder(idColumnName());
+		where.append(" IN (");
+		String[] args = new String[ids.size()];
+		int index = 0;
+		for (Long id : ids) {
+			if (index > 0) {
+				where.append(", ");
+			}
+			where.append("?");
+			args[index++] = String.valueOf(id);
+		}
+		where.append(")");
+		return query(where.toString(), args, null, null, idColumnName(),
+				null);
+	}
+
+	/**
+	 * Query for the last id of the chunk of matching rows following the id
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param limit
+	 *            max rows in the chunk
+	 * @return last chunk id, null if fewer than limit rows remain
+	 * @since 3.4.1
+	 */
+	public Long queryForChunkBound(String where, String[] whereArgs,
+			Long afterId, int limit) {
+		List<String> args = new ArrayList<>();
+		String boundWhere = buildIdRangeWhere(where, whereArgs, afterId, null,
+				args);
+		String idColumn = idColumnName();
+		StringBuilder sql = new StringBuilder("SELECT ");
+		sql.append(idColumn);
+		sql.append(" FROM ");
+		sql.append(CoreSQLUtils.quoteWrap(getTableName()));
+		if (boundWhere != null) {
+			sql.append(" WHERE ");
+			sql.append(boundWhere);
+		}
+		sql.append(" ORDER BY ");
+		sql.append(idColumn);
+		sql.append(" LIMIT 1 OFFSET ");
+		sql.append(limit - 1);
+		Object value = getDb().querySingleResult(sql.toString(),
+				args.toArray(new String[args.size()]), 0,
+				GeoPackageDataType.INTEGER);
+		Long id = null;
+		if (value != null) {
+			id = ((Number) value).longValue();
+		}
+		return id;
+	}
+
+	/**
+	 * Keyset paginated chunk iterator over all rows
+	 * 
+	 * @param limit
+	 *            max rows per chunk
+	 * @return chunk iterator
+	 * @since 3.4.1
+	 */
+	public UserChunkIterator<TResult> chunkIterator(int limit) {
+		return chunkIterator(null, null, limit);
+	}
+
+	/**
+	 * Keyset paginated chunk iterator over the matching rows
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param limit
+	 *            max rows per chunk
+	 * @return chunk iterator
+	 * @since 3.4.1
+	 */
+	public UserChunkIterator<TResult> chunkIterator(String where,
+			String[] whereArgs, int limit) {
+		return new UserChunkIterator<>(this, where, whereArgs, limit);
+	}
+
+	/**
+	 * Stream all rows in id order, see
+	 * {@link #stream(String, String[], int)}
+	 * 
+	 * @return row stream, close when done
+	 * @since 3.4.1
+	 */
+	public Stream<TRow> stream() {
+		return stream(null, null);
+	}
+
+	/**
+	 * Stream the matching rows in id order, see
+	 * {@link #stream(String, String[], int)}
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @return row stream, close when done
+	 * @since 3.4.1
+	 */
+	public Stream<TRow> stream(String where, String[] whereArgs) {
+		return stream(where, whereArgs, UserRowSpliterator.DEFAULT_CHUNK_LIMIT);
+	}
+
+	/**
+	 * Stream the matching rows in id order. The stream is sized by the
+	 * matching row count and splits into id ranges, each read in keyset
+	 * paginated chunks, so a parallel stream reads the ranges concurrently on
+	 * pooled read connections when a reader pool is configured. Each chunk
+	 * query is read and closed before its rows are returned, so no read
+	 * connection is held between elements. Short circuiting operations stop
+	 * reading further chunks.
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param chunkLimit
+	 *            max rows per chunk query
+	 * @return row stream, close when done
+	 * @since 3.4.1
+	 */
+	public Stream<TRow> stream(String where, String[] whereArgs,
+			int chunkLimit) {
+		String idColumn = getTable().getPkColumn().getName();
+		Aggregate count = Aggregate.count();
+		Aggregate min = Aggregate.min(idColumn);
+		Aggregate max = Aggregate.max(idColumn);
+		AggregateResult bounds = aggregate(where, whereArgs, count, min, max);
+		Long minId = bounds.getLong(min);
+		Long maxId = bounds.getLong(max);
+		UserRowSpliterator<TRow, TResult> spliterator = new UserRowSpliterator<>(
+				this, where, whereArgs, chunkLimit,
+				minId != null ? minId - 1 : 0, maxId != null ? maxId : 0,
+				bounds.getCount());
+		return StreamSupport.stream(spliterator, false)
+				.onClose(spliterator::closeAll);
+	}
+
+	/**
+	 * Get the quoted primary key column name
+	 * 
+	 * @return id column
+	 * @since 3.4.1
+	 */
+	protected String idColumnName() {
+		return CoreSQLUtils.quoteWrap(getTable().getPkColumn().getName());
+	}
+
+	/**
+	 * Build the where clause restricting the rows to the id range
+	 * 
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param afterId
+	 *            exclusive lower id bound, null for no lower bound
+	 * @param throughId
+	 *            inclusive upper id bound, null for no upper bound
+	 * @param args
+	 *            built where arguments
+	 * @return where clause or null
+	 * @since 3.4.1
+	 */
+	protected String buildIdRangeWhere(String where, String[] whereArgs,
+			Long afterId, Long throughId, List<String> args) {
+		StringBuilder rangeWhere = new StringBuilder();
+		if (where != null) {
+			rangeWhere.append("(").append(where).append(")");
+			if (whereArgs != null) {
+				args.addAll(Arrays.asList(whereArgs));
+			}
+		}
+		String idColumn = idColumnName();
+		if (afterId != null) {
+			if (rangeWhere.length() > 0) {
+				rangeWhere.append(" AND ");
+			}
+			rangeWhere.append(idColumn).append(" > ?");
+			args.add(String.valueOf(afterId));
+		}
+		if (throughId != null) {
+			if (rangeWhere.length() > 0) {
+				rangeWhere.append(" AND ");
+			}
+			rangeWhere.append(idColumn).append(" <= ?");
+			args.add(String.valueOf(throughId));
+		}
+		return rangeWhere.length() > 0 ? rangeWhere.toString() : null;
+	}
+
+	/**
+	 * Insert the rows in batches, setting the inserted row ids
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Iterable<TRow> rows) {
+		return insertBatch(rows, true);
+	}
+
+	/**
+	 * Insert the rows in batches
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @param returnIds
+	 *            true to set the inserted row ids, false to skip id retrieval
+	 *            and execute JDBC batches
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Iterable<TRow> rows, boolean returnIds) {
+		return insertBatch(rows.iterator(), returnIds);
+	}
+
+	/**
+	 * Insert the stream rows in batches, setting the inserted row ids
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Stream<TRow> rows) {
+		return insertBatch(rows, true);
+	}
+
+	/**
+	 * Insert the stream rows in batches
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @param returnIds
+	 *            true to set the inserted row ids, false to skip id retrieval
+	 *            and execute JDBC batches
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Stream<TRow> rows, boolean returnIds) {
+		return insertBatch(rows.iterator(), returnIds);
+	}
+
+	/**
+	 * Insert the rows in batches. When not already within a transaction, the
+	 * rows are committed every {@link #getBatchChunkSize()} rows and a failure
+	 * rolls back only the current uncommitted chunk. Within an existing
+	 * transaction, committing is left to the caller.
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @param returnIds
+	 *            true to set the inserted row ids, false to skip id retrieval
+	 *            and execute JDBC batches
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Iterator<TRow> rows, boolean returnIds) {
+		return insertBatch(rows, TRow::toContentValues, returnIds);
+	}
+
+	/**
+	 * Insert the rows in batches using provided content values, such as
+	 * values encoded ahead of time by other threads. Transactions and chunked
+	 * commits behave as in {@link #insertBatch(Iterator, boolean)}.
+	 * 
+	 * @param rows
+	 *            rows to insert
+	 * @param values
+	 *            row content values function
+	 * @param returnIds
+	 *            true to set the inserted row ids, false to skip id retrieval
+	 *            and execute JDBC batches
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public int insertBatch(Iterator<TRow> rows,
+			Function<? super TRow, ContentValues> values, boolean returnIds) {
+		ObjLongConsumer<TRow> ids = null;
+		if (returnIds) {
+			ids = (row, id) -> {
+				if (row.hasIdColumn()) {
+					row.setId(id);
+				}
+			};
+		}
+		return insertBatch(rows, values, ids);
+	}
+
+	/**
+	 * Insert items in batches, where each item provides the content values of
+	 * a row. Transactions and chunked commits behave as in
+	 * {@link #insertBatch(Iterator, boolean)}.
+	 * 
+	 * @param <T>
+	 *            item type
+	 * @param items
+	 *            items to insert
+	 * @param values
+	 *            item content values function
+	 * @param ids
+	 *            consumer of each item and inserted row id, null to skip id
+	 *            retrieval and execute JDBC batches
+	 * @return inserted count
+	 * @since 3.4.1
+	 */
+	public <T> int insertBatch(Iterator<T> items,
+			Function<? super T, ContentValues> values,
+			ObjLongConsumer<? super T> ids) {
+
+		getDb().checkWritable();
+		boolean previousAutoCommit = SQLUtils.beginTransaction(connection);
+		boolean commitChunks = previousAutoCommit;
+
+		int count = 0;
+		int pending = 0;
+		String sql = null;
+		PreparedStatement statement = null;
+		boolean success = false;
+		try {
+
+			while (items.hasNext()) {
+
+				T item = items.next();
+				ContentValues itemValues = values.apply(item);
+				String itemSql = SQLUtils.insertSQL(getTableName(), itemValues);
+
+				if (!itemSql.equals(sql)) {
+					if (pending > 0) {
+						executeBatch(statement, sql);
+						pending = 0;
+					}
+					SQLUtils.releaseStatement(statementCache, statement, sql,
+							true);
+					statement = null;
+					sql = itemSql;
+					statement = SQLUtils.prepareStatement(connection,
+							statementCache, sql);
+				}
+
+				SQLUtils.setArguments(statement,
+						SQLUtils.insertArgs(itemValues));
+
+				if (ids != null) {
+					ids.accept(item, executeInsert(statement, sql));
+				} else {
+					statement.addBatch();
+					pending++;
+				}
+				count++;
+
+				if (commitChunks && count % batchChunkSize == 0) {
+					if (pending > 0) {
+						executeBatch(statement, sql);
+						pending = 0;
+					}
+					connection.commit();
+				}
+			}
+
+			if (pending > 0) {
+				executeBatch(statement, sql);
+			}
+
+			success = true;
+		} catch (SQLException e) {
+			throw new GeoPackageException(
+					"Failed to batch insert into table: " + getTableName()
+							+ ", SQL: " + sql,
+					e);
+		} finally {
+			SQLUtils.releaseStatement(statementCache, statement, sql,
+					success);
+			if (commitChunks) {
+				SQLUtils.endTransaction(connection, success,
+						previousAutoCommit);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Update the rows by id in batches
+	 * 
+	 * @param rows
+	 *            rows to update
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public int updateBatch(Iterable<TRow> rows) {
+		return updateBatch(rows.iterator());
+	}
+
+	/**
+	 * Update the stream rows by id in batches
+	 * 
+	 * @param rows
+	 *            rows to update
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public int updateBatch(Stream<TRow> rows) {
+		return updateBatch(rows.iterator());
+	}
+
+	/**
+	 * Update the rows by id in batches of prepared update statements,
+	 * executed as JDBC batches. Rows without a matching id are not counted.
+	 * Transactions and chunked commits behave as in
+	 * {@link #insertBatch(Iterator, boolean)}.
+	 * 
+	 * @param rows
+	 *            rows to update, each with an id
+	 * @return updated count
+	 * @since 3.4.1
+	 */
+	public int updateBatch(Iterator<TRow> rows) {
+		return writeBatch(rows, false);
+	}
+
+	/**
+	 * Upsert the rows in batches, setting the inserted ids of rows without an
+	 * id
+	 * 
+	 * @param rows
+	 *            rows to upsert
+	 * @return upserted count
+	 * @since 3.4.1
+	 */
+	public int upsertBatch(Iterable<TRow> rows) {
+		return upsertBatch(rows.iterator());
+	}
+
+	/**
+	 * Upsert the stream rows in batches, setting the inserted ids of rows
+	 * without an id
+	 * 
+	 * @param rows
+	 *            rows to upsert
+	 * @return upserted count
+	 * @since 3.4.1
+	 */
+	public int upsertBatch(Stream<TRow> rows) {
+		return upsertBatch(rows.iterator());
+	}
+
+	/**
+	 * Upsert the rows in batches. Rows with an id are updated by id in JDBC
+	 * batches of prepared update statements, and the rows of each batch
+	 * without an existing id are then inserted with their ids as a batch.
+	 * Rows without an id are inserted individually and the inserted ids set.
+	 * Transactions and chunked commits behave as in
+	 * {@link #insertBatch(Iterator, boolean)}.
+	 * 
+	 * @param rows
+	 *            rows to upsert
+	 * @return upserted count
+	 * @since 3.4.1
+	 */
+	public int upsertBatch(Iterator<TRow> rows) {
+		return writeBatch(rows, true);
+	}
+
+	/**
+	 * Update or upsert the rows in batches
+	 * 
+	 * @param rows
+	 *            rows to write
+	 * @param upsert
+	 *            true to upsert, false to update by id
+	 * @return written count
+	 */
+	private int writeBatch(Iterator<TRow> rows, boolean upsert) {
+
+		getDb().checkWritable();
+		boolean previousAutoCommit = SQLUtils.beginTransaction(connection);
+		boolean commitChunks = previousAutoCommit;
+
+		String idWhere = idColumnName() + " = ?";
+		String pkColumn = getTable().getPkColumn().getName();
+
+		int count = 0;
+		int processed = 0;
+		List<TRow> pending = new ArrayList<>();
+		String sql = null;
+		PreparedStatement statement = null;
+		boolean success = false;
+		try {
+
+			while (rows.hasNext()) {
+
+				TRow row = rows.next();
+				ContentValues values = row.toContentValues();
+				boolean insert = false;
+				String rowSql;
+				Object[] args;
+				if (row.hasId()) {
+					if (values.size() == 0 && upsert) {
+						values.put(pkColumn, row.getId());
+					}
+					rowSql = SQLUtils.updateSQL(getTableName(), values,
+							idWhere);
+					args = SQLUtils.updateArgs(values,
+							new Object[] { row.getId() });
+				} else if (upsert) {
+					rowSql = SQLUtils.insertSQL(getTableName(), values);
+					args = SQLUtils.insertArgs(values);
+					insert = true;
+				} else {
+					throw new GeoPackageException(
+							"Failed to batch update table: " + getTableName()
+									+ ". Row has no id.");
+				}
+
+				if (values.size() > 0) {
+
+					if (!rowSql.equals(sql)) {
+						count += executeBatch(statement, pending, upsert);
+						SQLUtils.releaseStatement(statementCache, statement,
+								sql, true);
+						statement = null;
+						sql = rowSql;
+						statement = SQLUtils.prepareStatement(connection,
+								statementCache, sql);
+					}
+
+					SQLUtils.setArguments(statement, args);
+
+					if (insert) {
+						long id = executeInsert(statement, sql);
+						if (row.hasIdColumn()) {
+							row.setId(id);
+						}
+						count++;
+					} else {
+						statement.addBatch();
+						pending.add(row);
+					}
+				}
+				processed++;
+
+				if (commitChunks && processed % batchChunkSize == 0) {
+					count += executeBatch(statement, pending, upsert);
+					connection.commit();
+				}
+			}
+
+			count += executeBatch(statement, pending, upsert);
+
+			success = true;
+		} catch (SQLException e) {
+			throw new GeoPackageException("Failed to batch "
+					+ (upsert ? "upsert into" : "update") + " table: "
+					+ getTableName() + ", SQL: " + sql, e);
+		} finally {
+			SQLUtils.releaseStatement(statementCache, statement, sql,
+					success);
+			if (commitChunks) {
+				SQLUtils.endTransaction(connection, success,
+						previousAutoCommit);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Execute a single batch row insert
+	 * 
+	 * @param statement
+	 *            prepared insert statement with arguments set
+	 * @param sql
+	 *            insert SQL
+	 * @return inserted row id
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private long executeInsert(PreparedStatement statement, String sql)
+			throws SQLException {
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
+		try {
+			if (statement.executeUpdate() == 0) {
+				throw new GeoPackageException(
+						"Failed to execute SQL insert statement: " + sql
+								+ ". No rows added from execution.");
+			}
+			try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+				if (!generatedKeys.next()) {
+					throw new GeoPackageException(
+							"Failed to execute SQL insert statement: " + sql
+									+ ". No row id was found.");
+				}
+				return generatedKeys.getLong(1);
+			}
+		} catch (SQLException e) {
+			checkTimeout("Failed to execute SQL insert statement: " + sql, e,
+					step);
+			throw e;
+		} finally {
+			QueryInterruptHandler.end(step);
+		}
+	}
+
+	/**
+	 * Execute the pending JDBC update batch, counting the updated rows. When
+	 * upserting, pending rows without an existing id are then inserted as a
+	 * batch.
+	 * 
+	 * @param statement
+	 *            prepared update statement
+	 * @param pending
+	 *            pending rows of the batch, cleared after execution
+	 * @param upsert
+	 *            true to insert the pending rows that were not updated
+	 * @return written row count
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private int executeBatch(PreparedStatement statement, List<TRow> pending,
+			boolean upsert) throws SQLException {
+		int count = 0;
+		if (!pending.isEmpty()) {
+			int[] results = executeBatch(statement);
+			List<TRow> missing = new ArrayList<>();
+			for (int i = 0; i < results.length; i++) {
+				int updated = results[i];
+				if (updated == Statement.SUCCESS_NO_INFO) {
+					count++;
+				} else if (updated > 0) {
+					count += updated;
+				} else if (upsert) {
+					missing.add(pending.get(i));
+				}
+			}
+			pending.clear();
+			if (!missing.isEmpty()) {
+				String pkColumn = getTable().getPkColumn().getName();
+				count += insertBatch(missing.iterator(), (TRow row) -> {
+					ContentValues values = row.toContentValues();
+					values.put(pkColumn, row.getId());
+					return values;
+				}, null);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Execute the pending JDBC batch
+	 * 
+	 * @param statement
+	 *            prepared insert statement
+	 * @param sql
+	 *            insert SQL
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private void executeBatch(PreparedStatement statement, String sql)
+			throws SQLException {
+		for (int updated : executeBatch(statement)) {
+			if (updated == 0) {
+				throw new GeoPackageException(
+						"Failed to execute SQL batch insert statement: " + sql
+								+ ". No rows added from execution.");
+			}
+		}
+	}
+
+	/**
+	 * Execute the JDBC batch, interruptible by a query deadline or the
+	 * connection query timeout
+	 * 
+	 * @param statement
+	 *            prepared statement
+	 * @return update counts
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private int[] executeBatch(PreparedStatement statement)
+			throws SQLException {
+		QueryInterruptHandler.Step step = QueryInterruptHandler
+				.begin(connection);
+		try {
+			return statement.executeBatch();
+		} catch (SQLException e) {
+			checkTimeout("Failed to execute SQL batch", e, step);
+			throw e;
+		} finally {
+			QueryInterruptHandler.end(step);
+		}
+	}
+
+	/**
+	 * Check if a failed statement execution was interrupted by a query
+	 * deadline or the connection query timeout
+	 * 
+	 * @param message
+	 *            message
+	 * @param e
+	 *            SQL exception
+	 * @param step
+	 *            execution step, may be null
+	 * @throws GeoPackageQueryTimeoutException
+	 *             when interrupted
+	 */
+	private static void checkTimeout(String message, SQLException e,
+			QueryInterruptHandler.Step step) {
+		GeoPackageQueryTimeoutException timeout = QueryInterruptHandler
+				.timeoutException(message, e, step);
+		if (timeout != null) {
+			throw timeout;
+		}
 	}
 
 }
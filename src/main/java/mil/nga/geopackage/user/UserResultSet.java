@@ -1,8 +1,16 @@
 package mil.nga.geopackage.user;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.db.ResultSetResult;
@@ -35,6 +43,26 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 	 */
 	private int count;
 
+	/**
+	 * Reuse a single row instance across cursor positions
+	 */
+	private boolean reuseRow = false;
+
+	/**
+	 * Reusable row, backed by the reusable column types and values
+	 */
+	private TRow reusableRow;
+
+	/**
+	 * Reusable row column types
+	 */
+	private int[] reusableColumnTypes;
+
+	/**
+	 * Reusable row values
+	 */
+	private Object[] reusableValues;
+
 	/**
 	 * Constructor
 	 * 
@@ -51,6 +79,35 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 		this.count = count;
 	}
 
+	/**
+	 * Is the reusable row mode enabled
+	 * 
+	 * @return true if rows are reused
+	 * @since 3.4.1
+	 */
+	public boolean isReuseRow() {
+		return reuseRow;
+	}
+
+	/**
+	 * Set the reusable row mode. When enabled, {@link #getRow()} refills and
+	 * returns the same row instance at each cursor position instead of
+	 * allocating a new row, column types and values. The returned row is only
+	 * valid until the cursor moves and must be copied to be retained.
+	 * 
+	 * @param reuseRow
+	 *            true to reuse rows
+	 * @since 3.4.1
+	 */
+	public void setReuseRow(boolean reuseRow) {
+		this.reuseRow = reuseRow;
+		if (!reuseRow) {
+			reusableRow = null;
+			reusableColumnTypes = null;
+			reusableValues = null;
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -80,7 +137,6 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 	 */
 	@Override
 	public long getId() {
-		long id = -1;
 
 		TColumn pkColumn = table.getPkColumn();
 		if (pkColumn == null) {
@@ -88,20 +144,106 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 					"No primary key column for table: " + table.getTableName());
 		}
 
-		Object objectValue = getValue(pkColumn);
-		if (objectValue instanceof Number) {
-			id = ((Number) objectValue).longValue();
-		} else {
+		long id = getLong(pkColumn.getIndex());
+		if (wasNull()) {
 			throw new GeoPackageException(
-					"Primary Key value was not a number. Table: "
+					"Primary Key value was null. Table: "
 							+ table.getTableName() + ", Column Index: "
 							+ pkColumn.getIndex() + ", Column Name: "
-							+ pkColumn.getName() + ", Value: " + objectValue);
+							+ pkColumn.getName());
 		}
 
 		return id;
 	}
 
+	/**
+	 * Get the string value for the column name
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return string value
+	 * @since 3.4.1
+	 */
+	public String getString(String columnName) {
+		return getString(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the int value for the column name without boxing, 0 for null
+	 * values as reported by {@link #wasNull()}
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return int value
+	 * @since 3.4.1
+	 */
+	public int getInt(String columnName) {
+		return getInt(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the long value for the column name without boxing, 0 for null
+	 * values as reported by {@link #wasNull()}
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return long value
+	 * @since 3.4.1
+	 */
+	public long getLong(String columnName) {
+		return getLong(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the double value for the column name without boxing, 0 for null
+	 * values as reported by {@link #wasNull()}
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return double value
+	 * @since 3.4.1
+	 */
+	public double getDouble(String columnName) {
+		return getDouble(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the blob bytes for the column name
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return blob bytes
+	 * @since 3.4.1
+	 */
+	public byte[] getBlob(String columnName) {
+		return getBlob(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the blob for the column name as a read only byte buffer without
+	 * copying
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return read only byte buffer or null
+	 * @since 3.4.1
+	 */
+	public ByteBuffer getBlobByteBuffer(String columnName) {
+		return getBlobByteBuffer(table.getColumnIndex(columnName));
+	}
+
+	/**
+	 * Get the blob for the column name as an input stream without copying
+	 * 
+	 * @param columnName
+	 *            column name
+	 * @return input stream or null
+	 * @since 3.4.1
+	 */
+	public InputStream getBlobInputStream(String columnName) {
+		return getBlobInputStream(table.getColumnIndex(columnName));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -112,6 +254,8 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * In reusable row mode the same row instance is refilled and returned.
 	 */
 	@Override
 	public TRow getRow() {
@@ -120,8 +264,15 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 
 		if (table != null) {
 
-			int[] columnTypes = new int[table.columnCount()];
-			Object[] values = new Object[table.columnCount()];
+			int[] columnTypes;
+			Object[] values;
+			if (reusableRow != null) {
+				columnTypes = reusableColumnTypes;
+				values = reusableValues;
+			} else {
+				columnTypes = new int[table.columnCount()];
+				values = new Object[table.columnCount()];
+			}
 
 			try {
 
@@ -148,7 +299,16 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 				throw new GeoPackageException("Failed to retrieve the row", e);
 			}
 
-			row = getRow(columnTypes, values);
+			if (reusableRow != null) {
+				row = reusableRow;
+			} else {
+				row = getRow(columnTypes, values);
+				if (reuseRow) {
+					reusableRow = row;
+					reusableColumnTypes = columnTypes;
+					reusableValues = values;
+				}
+			}
 
 		}
 
@@ -163,4 +323,68 @@ public abstract class UserResultSet<TColumn extends UserColumn, TTable extends U
 		return count;
 	}
 
+	/**
+	 * Stream the remaining rows from the cursor position. The stream is sized
+	 * by the result count when the cursor has not moved and the count is
+	 * known. Rows are read on demand so short circuiting operations stop
+	 * stepping the statement. Reusable row mode is disabled so each element
+	 * is a distinct row. Closing the stream, or reading all rows, closes the
+	 * result set. The
+	 * cursor can not be split by id range, see
+	 * {@link UserDao#stream(String, String[])} for splittable streams.
+	 * 
+	 * @return row stream, close when done
+	 * @since 3.4.1
+	 */
+	public Stream<TRow> stream() {
+
+		setReuseRow(false);
+
+		final boolean[] closed = new boolean[1];
+		final Runnable close = () -> {
+			if (!closed[0]) {
+				closed[0] = true;
+				close();
+			}
+		};
+
+		Iterator<TRow> iterator = new Iterator<TRow>() {
+
+			private Boolean next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					next = !closed[0] && moveToNext();
+					if (!next) {
+						close.run();
+					}
+				}
+				return next;
+			}
+
+			@Override
+			public TRow next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				next = null;
+				return getRow();
+			}
+
+		};
+
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+		Spliterator<TRow> spliterator;
+		if (getPosition() == 0 && count >= 0) {
+			spliterator = Spliterators.spliterator(iterator, count,
+					characteristics);
+		} else {
+			spliterator = Spliterators.spliteratorUnknownSize(iterator,
+					characteristics);
+		}
+
+		return StreamSupport.stream(spliterator, false).onClose(close);
+	}
+
 }
@@ -0,0 +1,257 @@
+package mil.nga.geopackage.user;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Splittable row spliterator over a primary key id range of a user table.
+ * Rows are read in keyset paginated chunk queries, each chunk read on demand
+ * so short circuiting stops further reads. Each chunk is read fully and its
+ * query closed before rows are returned, so no read connection is held
+ * between advances. Splitting divides the remaining id range in half,
+ * allowing parallel streams to read the ranges concurrently, each chunk
+ * query on a pooled read connection when the GeoPackage has a reader pool.
+ *
+ * @param <TRow>
+ *            row type
+ * @param <TResult>
+ *            result type
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class UserRowSpliterator<TRow extends UserRow<?, ?>, TResult extends UserResultSet<?, ?, TRow>>
+		implements Spliterator<TRow> {
+
+	/**
+	 * Default max rows per chunk query
+	 */
+	public static final int DEFAULT_CHUNK_LIMIT = 1000;
+
+	/**
+	 * User DAO
+	 */
+	private final UserDao<?, ?, TRow, TResult> dao;
+
+	/**
+	 * Where clause
+	 */
+	private final String where;
+
+	/**
+	 * Where arguments
+	 */
+	private final String[] whereArgs;
+
+	/**
+	 * Max rows per chunk query
+	 */
+	private final int chunkLimit;
+
+	/**
+	 * Spliterators split from the same root, including the root
+	 */
+	private final Queue<UserRowSpliterator<TRow, TResult>> splits;
+
+	/**
+	 * Exclusive lower id bound of the remaining rows
+	 */
+	private long afterId;
+
+	/**
+	 * Inclusive upper id bound of the remaining rows
+	 */
+	private long throughId;
+
+	/**
+	 * Estimated remaining rows
+	 */
+	private long estimate;
+
+	/**
+	 * Exact remaining rows flag, true until split
+	 */
+	private boolean sized;
+
+	/**
+	 * Unreturned rows of the current chunk
+	 */
+	private final Queue<TRow> rows = new ArrayDeque<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param chunkLimit
+	 *            max rows per chunk query
+	 * @param afterId
+	 *            exclusive lower id bound
+	 * @param throughId
+	 *            inclusive upper id bound
+	 * @param count
+	 *            exact number of rows in the id range
+	 */
+	UserRowSpliterator(UserDao<?, ?, TRow, TResult> dao, String where,
+			String[] whereArgs, int chunkLimit, long afterId, long throughId,
+			long count) {
+		this(dao, where, whereArgs, chunkLimit, afterId, throughId, count,
+				true, new ConcurrentLinkedQueue<>());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param where
+	 *            where clause
+	 * @param whereArgs
+	 *            where arguments
+	 * @param chunkLimit
+	 *            max rows per chunk query
+	 * @param afterId
+	 *            exclusive lower id bound
+	 * @param throughId
+	 *            inclusive upper id bound
+	 * @param estimate
+	 *            estimated rows in the id range
+	 * @param sized
+	 *            true if the estimate is exact
+	 * @param splits
+	 *            spliterators split from the same root
+	 */
+	private UserRowSpliterator(UserDao<?, ?, TRow, TResult> dao, String where,
+			String[] whereArgs, int chunkLimit, long afterId, long throughId,
+			long estimate, boolean sized,
+			Queue<UserRowSpliterator<TRow, TResult>> splits) {
+		if (chunkLimit < 1) {
+			throw new IllegalArgumentException(
+					"Chunk limit must be at least 1, limit: " + chunkLimit);
+		}
+		this.dao = dao;
+		this.where = where;
+		this.whereArgs = whereArgs;
+		this.chunkLimit = chunkLimit;
+		this.afterId = afterId;
+		this.throughId = throughId;
+		this.estimate = estimate;
+		this.sized = sized;
+		this.splits = splits;
+		splits.add(this);
+	}
+
+	/**
+	 * Get the max rows per chunk query
+	 *
+	 * @return chunk limit
+	 */
+	public int getChunkLimit() {
+		return chunkLimit;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean tryAdvance(Consumer<? super TRow> action) {
+		while (rows.isEmpty() && afterId < throughId) {
+			readChunk();
+		}
+		TRow row = rows.poll();
+		if (row != null) {
+			if (estimate > 0) {
+				estimate--;
+			}
+			action.accept(row);
+		}
+		return row != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Spliterator<TRow> trySplit() {
+		UserRowSpliterator<TRow, TResult> prefix = null;
+		if (rows.isEmpty() && estimate > chunkLimit
+				&& throughId - afterId > 1) {
+			long middleId = afterId + (throughId - afterId) / 2;
+			long prefixEstimate = estimate / 2;
+			prefix = new UserRowSpliterator<>(dao, where, whereArgs,
+					chunkLimit, afterId, middleId, prefixEstimate, false,
+					splits);
+			afterId = middleId;
+			estimate -= prefixEstimate;
+			sized = false;
+		}
+		return prefix;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long estimateSize() {
+		return estimate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | DISTINCT | NONNULL;
+		if (sized) {
+			characteristics |= SIZED;
+		}
+		return characteristics;
+	}
+
+	/**
+	 * Stop reading, discarding the unreturned rows of the current chunk
+	 */
+	public void close() {
+		afterId = throughId;
+		rows.clear();
+	}
+
+	/**
+	 * Stop reading in all spliterators split from the same root
+	 */
+	public void closeAll() {
+		for (UserRowSpliterator<TRow, TResult> split : splits) {
+			split.close();
+		}
+	}
+
+	/**
+	 * Read the next chunk of rows, closing the chunk query before returning
+	 */
+	private void readChunk() {
+		int chunkRows = 0;
+		TResult chunk = dao.queryForIdRange(where, whereArgs, afterId,
+				throughId, chunkLimit);
+		try {
+			while (chunk.moveToNext()) {
+				rows.add(chunk.getRow());
+				afterId = chunk.getId();
+				chunkRows++;
+			}
+		} finally {
+			chunk.close();
+		}
+		if (chunkRows < chunkLimit) {
+			// Partial chunk, no rows remain in the range
+			afterId = throughId;
+		}
+	}
+
+}
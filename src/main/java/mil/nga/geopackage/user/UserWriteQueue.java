@@ -0,0 +1,582 @@
+package mil.nga.geopackage.user;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.SQLUtils;
+
+/**
+ * Group commit write queue for a GeoPackage connection. Producer threads
+ * submit row inserts, updates and deletes and receive a future of the result.
+ * A single writer thread applies queued writes in transactions committed
+ * after a max number of writes or a max latency from the first queued write.
+ * Each write in a group runs within a savepoint, so a failed write is rolled
+ * back and completes exceptionally without affecting the rest of the group.
+ * When the group itself fails to commit, queued row inserts, updates and
+ * deletes are applied again individually, with inserted row ids reset, while
+ * submitted operations are never run a second time and complete
+ * exceptionally. While running, the queue should own all writes on the
+ * connection. Writes are never applied within a transaction begun by another
+ * thread, as they would not be committed when their futures complete. The
+ * writer waits for that transaction to end, failing the group when it does
+ * not end within the transaction wait.
+ *
+ * @author osbornb
+ * @since 3.4.1
+ */
+public class UserWriteQueue implements Closeable {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger log = Logger
+			.getLogger(UserWriteQueue.class.getName());
+
+	/**
+	 * Default max number of writes per commit
+	 */
+	public static final int DEFAULT_MAX_WRITES = 500;
+
+	/**
+	 * Default max milliseconds from the first queued write to the commit
+	 */
+	public static final long DEFAULT_MAX_LATENCY = 20;
+
+	/**
+	 * Default max number of queued writes before producers block
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * Default max milliseconds to wait for a transaction begun by another
+	 * thread to end
+	 */
+	public static final long DEFAULT_TRANSACTION_WAIT = 30000;
+
+	/**
+	 * Milliseconds between checks for the end of a transaction begun by
+	 * another thread
+	 */
+	private static final long TRANSACTION_POLL = 5;
+
+	/**
+	 * Writer thread number
+	 */
+	private static final AtomicLong threadNumber = new AtomicLong();
+
+	/**
+	 * GeoPackage connection
+	 */
+	private final GeoPackageConnection db;
+
+	/**
+	 * Max number of writes per commit
+	 */
+	private final int maxWrites;
+
+	/**
+	 * Max nanoseconds from the first queued write to the commit
+	 */
+	private final long maxLatencyNanos;
+
+	/**
+	 * Queued writes
+	 */
+	private final BlockingQueue<Write<?>> queue;
+
+	/**
+	 * Writer thread
+	 */
+	private final Thread writer;
+
+	/**
+	 * Max milliseconds to wait for a transaction begun by another thread to
+	 * end
+	 */
+	private volatile long transactionWait = DEFAULT_TRANSACTION_WAIT;
+
+	/**
+	 * Running flag
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Number of commits
+	 */
+	private final AtomicLong commits = new AtomicLong();
+
+	/**
+	 * Number of applied writes
+	 */
+	private final AtomicLong writes = new AtomicLong();
+
+	/**
+	 * Constructor with the default max writes, latency and capacity
+	 *
+	 * @param db
+	 *            GeoPackage connection
+	 */
+	public UserWriteQueue(GeoPackageConnection db) {
+		this(db, DEFAULT_MAX_WRITES, DEFAULT_MAX_LATENCY, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param db
+	 *            GeoPackage connection
+	 * @param maxWrites
+	 *            max number of writes per commit
+	 * @param maxLatency
+	 *            max milliseconds from the first queued write to the commit
+	 * @param capacity
+	 *            max number of queued writes before producers block
+	 */
+	public UserWriteQueue(GeoPackageConnection db, int maxWrites,
+			long maxLatency, int capacity) {
+		if (maxWrites < 1) {
+			throw new GeoPackageException(
+					"Max writes must be at least 1, max writes: " + maxWrites);
+		}
+		db.checkWritable();
+		this.db = db;
+		this.maxWrites = maxWrites;
+		this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatency);
+		this.queue = new LinkedBlockingQueue<>(capacity);
+		writer = new Thread(this::run,
+				"geopackage-write-queue-" + threadNumber.incrementAndGet());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Get the max number of writes per commit
+	 *
+	 * @return max writes
+	 */
+	public int getMaxWrites() {
+		return maxWrites;
+	}
+
+	/**
+	 * Get the max milliseconds from the first queued write to the commit
+	 *
+	 * @return max latency milliseconds
+	 */
+	public long getMaxLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+	}
+
+	/**
+	 * Get the max milliseconds to wait for a transaction begun by another
+	 * thread to end before failing a group
+	 *
+	 * @return transaction wait milliseconds
+	 */
+	public long getTransactionWait() {
+		return transactionWait;
+	}
+
+	/**
+	 * Set the max milliseconds to wait for a transaction begun by another
+	 * thread to end before failing a group
+	 *
+	 * @param transactionWait
+	 *            transaction wait milliseconds
+	 */
+	public void setTransactionWait(long transactionWait) {
+		this.transactionWait = transactionWait;
+	}
+
+	/**
+	 * Get the number of commits
+	 *
+	 * @return commits
+	 */
+	public long getCommits() {
+		return commits.get();
+	}
+
+	/**
+	 * Get the number of applied writes
+	 *
+	 * @return writes
+	 */
+	public long getWrites() {
+		return writes.get();
+	}
+
+	/**
+	 * Get the number of queued writes
+	 *
+	 * @return queued writes
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Queue a row insert
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param row
+	 *            row to insert
+	 * @param <TRow>
+	 *            row type
+	 * @return future inserted row id
+	 */
+	public <TRow extends UserRow<?, ?>> CompletableFuture<Long> insert(
+			UserDao<?, ?, TRow, ?> dao, TRow row) {
+		final boolean hasId = row.hasId();
+		return submit(new Write<>(() -> dao.insert(row), () -> {
+			if (!hasId) {
+				row.resetId();
+			}
+		}));
+	}
+
+	/**
+	 * Queue a row update
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param row
+	 *            row to update
+	 * @param <TRow>
+	 *            row type
+	 * @return future updated count
+	 */
+	public <TRow extends UserRow<?, ?>> CompletableFuture<Integer> update(
+			UserDao<?, ?, TRow, ?> dao, TRow row) {
+		return submit(new Write<>(() -> dao.update(row), Write.NO_RESET));
+	}
+
+	/**
+	 * Queue a row delete by id
+	 *
+	 * @param dao
+	 *            user DAO
+	 * @param id
+	 *            row id
+	 * @return future deleted count
+	 */
+	public CompletableFuture<Integer> deleteById(UserDao<?, ?, ?, ?> dao,
+			long id) {
+		return submit(new Write<>(() -> dao.deleteById(id), Write.NO_RESET));
+	}
+
+	/**
+	 * Queue a write operation, performed on the writer thread within a group
+	 * commit. The operation is run at most once, completing exceptionally if
+	 * its group fails to commit.
+	 *
+	 * @param operation
+	 *            write operation
+	 * @param <T>
+	 *            result type
+	 * @return future result
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> operation) {
+		return submit(new Write<>(operation, null));
+	}
+
+	/**
+	 * Queue a write
+	 *
+	 * @param write
+	 *            write
+	 * @param <T>
+	 *            result type
+	 * @return future result
+	 */
+	private <T> CompletableFuture<T> submit(Write<T> write) {
+		if (!running) {
+			write.future.completeExceptionally(new GeoPackageException(
+					"Write queue is closed: " + writer.getName()));
+		} else {
+			try {
+				queue.put(write);
+				if (!running && !writer.isAlive() && queue.remove(write)) {
+					write.future.completeExceptionally(new GeoPackageException(
+							"Write queue is closed: " + writer.getName()));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				write.future.completeExceptionally(e);
+			}
+		}
+		return write.future;
+	}
+
+	/**
+	 * Queue a flush, completing once all previously queued writes are
+	 * committed
+	 *
+	 * @return future completion
+	 */
+	public CompletableFuture<Void> flush() {
+		return submit(new Write<Void>(() -> null, Write.NO_RESET));
+	}
+
+	/**
+	 * Stop accepting writes, commit all queued writes and stop the writer
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writer loop, grouping queued writes into commits
+	 */
+	private void run() {
+		List<Write<?>> group = new ArrayList<>();
+		while (running || !queue.isEmpty()) {
+			try {
+				Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+				long deadline = System.nanoTime() + maxLatencyNanos;
+				while (group.size() < maxWrites) {
+					queue.drainTo(group, maxWrites - group.size());
+					long remaining = deadline - System.nanoTime();
+					if (group.size() >= maxWrites || remaining <= 0) {
+						break;
+					}
+					Write<?> next = queue.poll(remaining,
+							TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					group.add(next);
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			}
+			if (!group.isEmpty()) {
+				commit(group);
+				group.clear();
+			}
+		}
+		// Fail writes queued concurrently with closing
+		Write<?> write;
+		while ((write = queue.poll()) != null) {
+			write.future.completeExceptionally(new GeoPackageException(
+					"Write queue is closed: " + writer.getName()));
+		}
+	}
+
+	/**
+	 * Apply and commit a group of writes
+	 *
+	 * @param group
+	 *            writes
+	 */
+	private void commit(List<Write<?>> group) {
+
+		Connection connection = db.getConnection();
+
+		try {
+			beginTransaction(connection);
+		} catch (RuntimeException e) {
+			for (Write<?> write : group) {
+				write.future.completeExceptionally(e);
+			}
+			return;
+		}
+
+		Object[] results = new Object[group.size()];
+		RuntimeException[] failures = new RuntimeException[group.size()];
+		int applied = 0;
+		RuntimeException groupFailure = null;
+		try {
+			for (; applied < results.length; applied++) {
+				Savepoint savepoint = connection.setSavepoint();
+				try {
+					results[applied] = group.get(applied).operation.get();
+				} catch (RuntimeException e) {
+					failures[applied] = e;
+					connection.rollback(savepoint);
+				}
+				connection.releaseSavepoint(savepoint);
+			}
+		} catch (SQLException e) {
+			groupFailure = new GeoPackageException(
+					"Failed to apply group commit write savepoint", e);
+		}
+
+		try {
+			SQLUtils.endTransaction(connection, groupFailure == null, true);
+		} catch (RuntimeException e) {
+			if (groupFailure == null) {
+				groupFailure = e;
+			}
+		}
+
+		// Count before completing futures so completed writes are reflected
+		writes.addAndGet(group.size());
+		if (groupFailure == null) {
+			commits.incrementAndGet();
+			for (int i = 0; i < results.length; i++) {
+				Write<?> write = group.get(i);
+				if (failures[i] != null) {
+					write.future.completeExceptionally(failures[i]);
+				} else {
+					write.complete(results[i]);
+				}
+			}
+		} else {
+			log.log(Level.FINE,
+					"Group commit failed, applying writes individually",
+					groupFailure);
+			// Apply in auto commit mode, running operations at most once
+			commits.addAndGet(group.size());
+			for (int i = 0; i < results.length; i++) {
+				Write<?> write = group.get(i);
+				if (failures[i] != null) {
+					write.future.completeExceptionally(failures[i]);
+				} else if (i >= applied) {
+					write.run();
+				} else if (write.replay()) {
+					write.run();
+				} else {
+					write.future.completeExceptionally(new GeoPackageException(
+							"Group commit failed: " + writer.getName(),
+							groupFailure));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Begin a group transaction, waiting for a transaction begun by another
+	 * thread to end
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	private void beginTransaction(Connection connection) {
+		long deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(transactionWait);
+		while (!SQLUtils.beginTransaction(connection)) {
+			if (System.nanoTime() - deadline >= 0) {
+				throw new GeoPackageException(
+						"Timed out waiting for a transaction begun by another thread to end: "
+								+ writer.getName());
+			}
+			try {
+				Thread.sleep(TRANSACTION_POLL);
+			} catch (InterruptedException e) {
+				running = false;
+				throw new GeoPackageException(
+						"Interrupted waiting for a transaction begun by another thread to end: "
+								+ writer.getName(),
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Queued write operation and its future result
+	 *
+	 * @param <T>
+	 *            result type
+	 */
+	private static class Write<T> {
+
+		/**
+		 * Reset of a write operation that may be applied again as is
+		 */
+		private static final Runnable NO_RESET = () -> {
+		};
+
+		/**
+		 * Write operation
+		 */
+		private final Supplier<T> operation;
+
+		/**
+		 * Future result
+		 */
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+
+		/**
+		 * Reset of the write state before applying the operation again, null
+		 * when the operation may not be applied again
+		 */
+		private final Runnable reset;
+
+		/**
+		 * Constructor
+		 *
+		 * @param operation
+		 *            write operation
+		 * @param reset
+		 *            reset of the write state before applying the operation
+		 *            again, null when the operation may only run once
+		 */
+		private Write(Supplier<T> operation, Runnable reset) {
+			this.operation = operation;
+			this.reset = reset;
+		}
+
+		/**
+		 * Reset the write state to apply the rolled back operation again
+		 *
+		 * @return true if the operation may be applied again
+		 */
+		private boolean replay() {
+			boolean replay = reset != null;
+			if (replay) {
+				reset.run();
+			}
+			return replay;
+		}
+
+		/**
+		 * Complete the future with the result
+		 *
+		 * @param result
+		 *            result
+		 */
+		@SuppressWarnings("unchecked")
+		private void complete(Object result) {
+			future.complete((T) result);
+		}
+
+		/**
+		 * Apply the operation and complete the future
+		 */
+		private void run() {
+			try {
+				future.complete(operation.get());
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+
+	}
+
+}
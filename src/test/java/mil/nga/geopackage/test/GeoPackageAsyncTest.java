@@ -0,0 +1,230 @@
+package mil.nga.geopackage.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageAsync;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.manager.GeoPackageManager;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileResultSet;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test the asynchronous GeoPackage facade
+ *
+ * @author osbornb
+ */
+public class GeoPackageAsyncTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test asynchronous reads and writes
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testAsync() throws Exception {
+
+		GeoPackageAsync async = geoPackage.async();
+		TestCase.assertSame(async, geoPackage.async());
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			int count = featureDao.count();
+
+			CompletableFuture<Integer> countFuture = async.count(featureTable);
+			CompletableFuture<List<FeatureRow>> allFuture = async
+					.queryFeatures(featureTable, null, null);
+			CompletableFuture<Long> bboxCountFuture = async.countFeatures(
+					featureTable, new BoundingBox(-180, -90, 180, 90));
+			CompletableFuture<List<FeatureRow>> bboxFuture = async
+					.queryFeatures(featureTable,
+							new BoundingBox(-180, -90, 180, 90));
+
+			TestCase.assertEquals(count, countFuture.get().intValue());
+			TestCase.assertEquals(count, allFuture.get().size());
+			TestCase.assertEquals(bboxCountFuture.get().intValue(),
+					bboxFuture.get().size());
+			FeatureIndexManager indexManager = new FeatureIndexManager(
+					geoPackage, featureDao);
+			try {
+				TestCase.assertEquals(
+						indexManager.count(new BoundingBox(-180, -90, 180, 90)),
+						bboxCountFuture.get().longValue());
+			} finally {
+				indexManager.close();
+			}
+			async.clearFeatureIndexes().get();
+			TestCase.assertEquals(bboxCountFuture.get(),
+					async.countFeatures(featureTable,
+							new BoundingBox(-180, -90, 180, 90)).get());
+
+			FeatureRow row = featureDao.newRow();
+			GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+					featureDao.getGeometryColumns().getSrsId());
+			geometry.setGeometry(new Point(1, 1));
+			row.setGeometry(geometry);
+			long id = async.insert(featureTable, row).get();
+			TestCase.assertTrue(id > 0);
+
+			List<FeatureRow> rows = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				FeatureRow batchRow = featureDao.newRow();
+				batchRow.setGeometry(geometry);
+				rows.add(batchRow);
+			}
+			TestCase.assertEquals(10,
+					async.insertBatch(featureTable, rows).get().intValue());
+			TestCase.assertEquals(count + 11,
+					async.count(featureTable).get().intValue());
+		}
+
+		for (String tileTable : geoPackage.getTileTables()) {
+			TileDao tileDao = geoPackage.getTileDao(tileTable);
+			TileResultSet resultSet = tileDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+					TileRow tileRow = resultSet.getRow();
+					TileRow asyncRow = async
+							.queryForTile(tileTable, tileRow.getTileColumn(),
+									tileRow.getTileRow(),
+									tileRow.getZoomLevel())
+							.get();
+					TestCase.assertNotNull(asyncRow);
+					TestCase.assertEquals(tileRow.getId(), asyncRow.getId());
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+
+		// Without a reader pool reads share the writer thread
+		String thread = async.read(geoPackage -> Thread.currentThread()
+				.getName()).get();
+		TestCase.assertTrue(thread.startsWith("geopackage-async-write-"));
+		thread = async.write(geoPackage -> Thread.currentThread().getName())
+				.get();
+		TestCase.assertTrue(thread.startsWith("geopackage-async-write-"));
+
+		try {
+			async.read(geoPackage -> {
+				throw new IllegalStateException("Failed read");
+			}).get();
+			TestCase.fail("Failed read did not fail the future");
+		} catch (ExecutionException e) {
+			TestCase.assertTrue(
+					e.getCause() instanceof IllegalStateException);
+		}
+
+	}
+
+	/**
+	 * Test asynchronous reads on pooled read connections
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testPooledReads() throws Exception {
+
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 2);
+		try {
+			GeoPackageAsync async = pooled.async();
+			String thread = async
+					.read(geoPackage -> Thread.currentThread().getName())
+					.get();
+			TestCase.assertTrue(thread.startsWith("geopackage-async-read-"));
+
+			// Reads during a transaction of an unknown thread use the writer
+			pooled.getConnection().getConnection().setAutoCommit(false);
+			try {
+				thread = async
+						.read(geoPackage -> Thread.currentThread().getName())
+						.get();
+				TestCase.assertTrue(
+						thread.startsWith("geopackage-async-write-"));
+			} finally {
+				pooled.getConnection().getConnection().rollback();
+				pooled.getConnection().getConnection().setAutoCommit(true);
+			}
+
+			// Reads during a transaction of another thread use the pool
+			pooled.beginTransaction();
+			try {
+				for (String featureTable : pooled.getFeatureTables()) {
+					int count = pooled.getFeatureDao(featureTable).count();
+					pooled.getFeatureDao(featureTable).deleteAll();
+					TestCase.assertEquals(count,
+							async.count(featureTable).get().intValue());
+				}
+			} finally {
+				pooled.endTransaction(false);
+			}
+		} finally {
+			pooled.close();
+		}
+
+	}
+
+	/**
+	 * Test rejecting tasks beyond the queue capacity and closing
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testRejectAndClose() throws Exception {
+
+		GeoPackageAsync async = new GeoPackageAsync(geoPackage, 1, 1);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> blocked = async.write(geoPackage -> {
+			started.countDown();
+			try {
+				return release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		});
+		started.await();
+		CompletableFuture<Integer> queued = async.write(geoPackage -> 1);
+		CompletableFuture<Integer> rejected = async.write(geoPackage -> 2);
+		TestCase.assertTrue(rejected.isCompletedExceptionally());
+		try {
+			rejected.get();
+			TestCase.fail("Rejected write did not fail");
+		} catch (ExecutionException e) {
+			TestCase.assertTrue(
+					e.getCause() instanceof RejectedExecutionException);
+		}
+
+		release.countDown();
+		async.close();
+		TestCase.assertTrue(async.isClosed());
+		TestCase.assertTrue(blocked.get());
+		TestCase.assertEquals(1, queued.get().intValue());
+		TestCase.assertTrue(async.read(geoPackage -> 3)
+				.isCompletedExceptionally());
+
+	}
+
+}
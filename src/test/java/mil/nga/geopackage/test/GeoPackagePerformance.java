@@ -6,6 +6,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
@@ -38,6 +39,7 @@ public class GeoPackagePerformance {
 	private static final String COLUMN_NAME = "geom";
 	private static final int CREATE_COUNT = 50000000;
 	private static final boolean AUTO_COMMIT = false;
+	private static final boolean BATCH = false;
 	private static final int COMMIT_CHUNK = 1000;
 	private static final int LOG_CHUNK = 1000000;
 
@@ -60,8 +62,9 @@ public class GeoPackagePerformance {
 		LOGGER.log(Level.INFO, "Table Name: " + TABLE_NAME);
 		LOGGER.log(Level.INFO, "Column Name: " + COLUMN_NAME);
 		LOGGER.log(Level.INFO, "Features: " + CREATE_COUNT);
+		LOGGER.log(Level.INFO, "Batch: " + BATCH);
 		LOGGER.log(Level.INFO, "Auto Commit: " + AUTO_COMMIT);
-		if (!AUTO_COMMIT) {
+		if (BATCH || !AUTO_COMMIT) {
 			LOGGER.log(Level.INFO, "Commit Chunk: " + COMMIT_CHUNK);
 		}
 		if (LOG_CHUNK > 0) {
@@ -96,6 +99,34 @@ public class GeoPackagePerformance {
 
 		FeatureDao dao = geoPackage.getFeatureDao(geometryColumns);
 
+		if (BATCH) {
+			insertBatch(dao, geometryData);
+		} else {
+			insert(dao, geometryData);
+		}
+
+		geoPackage.close();
+
+		geoPackage = GeoPackageManager.open(file);
+		dao = geoPackage.getFeatureDao(TABLE_NAME);
+		LOGGER.log(Level.INFO, "Final Count: " + dao.count());
+		geoPackage.close();
+
+	}
+
+	/**
+	 * Insert features one row at a time
+	 * 
+	 * @param dao
+	 *            feature dao
+	 * @param geometryData
+	 *            geometry data
+	 * @throws SQLException
+	 *             upon failure
+	 */
+	private static void insert(FeatureDao dao,
+			GeoPackageGeometryData geometryData) throws SQLException {
+
 		if (AUTO_COMMIT) {
 			dao.getConnection().setAutoCommit(true);
 		} else {
@@ -121,24 +152,7 @@ public class GeoPackagePerformance {
 				}
 
 				if (LOG_CHUNK > 0 && count % LOG_CHUNK == 0) {
-					Instant time = Instant.now();
-					LOGGER.log(Level.INFO, "Total Count: " + count);
-					Duration duration = Duration.between(logTime, time);
-					LOGGER.log(Level.INFO, "Chunk Time: "
-							+ duration.toString().substring(2));
-					LOGGER.log(Level.INFO,
-							"Chunk Average: "
-									+ (duration.toMillis() / (float) LOG_CHUNK)
-									+ " ms");
-					Duration totalDuration = Duration.between(startTime, time);
-					LOGGER.log(Level.INFO, "Total Time: "
-							+ totalDuration.toString().substring(2));
-					LOGGER.log(
-							Level.INFO,
-							"Feature Average: "
-									+ (totalDuration.toMillis() / (float) count)
-									+ " ms");
-					logTime = time;
+					logTime = logChunk(count, startTime, logTime);
 				}
 
 			}
@@ -154,13 +168,69 @@ public class GeoPackagePerformance {
 			throw e;
 		}
 
-		geoPackage.close();
+	}
 
-		geoPackage = GeoPackageManager.open(file);
-		dao = geoPackage.getFeatureDao(TABLE_NAME);
-		LOGGER.log(Level.INFO, "Final Count: " + dao.count());
-		geoPackage.close();
+	/**
+	 * Insert features using batched inserts
+	 * 
+	 * @param dao
+	 *            feature dao
+	 * @param geometryData
+	 *            geometry data
+	 */
+	private static void insertBatch(FeatureDao dao,
+			GeoPackageGeometryData geometryData) {
 
+		dao.setBatchChunkSize(COMMIT_CHUNK);
+
+		int chunk = LOG_CHUNK > 0 ? LOG_CHUNK : CREATE_COUNT;
+
+		Instant startTime = Instant.now();
+		Instant logTime = Instant.now();
+
+		int count = 0;
+		while (count < CREATE_COUNT) {
+
+			int limit = Math.min(chunk, CREATE_COUNT - count);
+			count += dao.insertBatch(Stream.generate(() -> {
+				FeatureRow newRow = dao.newRow();
+				newRow.setGeometry(geometryData);
+				return newRow;
+			}).limit(limit), false);
+
+			if (LOG_CHUNK > 0) {
+				logTime = logChunk(count, startTime, logTime);
+			}
+		}
+
+	}
+
+	/**
+	 * Log the chunk and total durations
+	 * 
+	 * @param count
+	 *            total count
+	 * @param startTime
+	 *            start time
+	 * @param logTime
+	 *            previous log time
+	 * @return new log time
+	 */
+	private static Instant logChunk(int count, Instant startTime,
+			Instant logTime) {
+		Instant time = Instant.now();
+		LOGGER.log(Level.INFO, "Total Count: " + count);
+		Duration duration = Duration.between(logTime, time);
+		LOGGER.log(Level.INFO,
+				"Chunk Time: " + duration.toString().substring(2));
+		LOGGER.log(Level.INFO, "Chunk Average: "
+				+ (duration.toMillis() / (float) LOG_CHUNK) + " ms");
+		Duration totalDuration = Duration.between(startTime, time);
+		LOGGER.log(Level.INFO,
+				"Total Time: " + totalDuration.toString().substring(2));
+		LOGGER.log(Level.INFO, "Feature Average: "
+				+ (totalDuration.toMillis() / (float) count) + " ms");
+		return time;
 	}
 
 	private static Geometry createGeometry() {
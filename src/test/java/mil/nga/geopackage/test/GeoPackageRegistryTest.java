@@ -0,0 +1,199 @@
+package mil.nga.geopackage.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.GeoPackageRegistry;
+
+import org.junit.Test;
+
+/**
+ * Test the reference counted GeoPackage registry
+ *
+ * @author osbornb
+ */
+public class GeoPackageRegistryTest extends BaseTestCase {
+
+	/**
+	 * Test sharing, reference counting and idle eviction
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testReferences() throws Exception {
+
+		File file = createFile("registry");
+
+		GeoPackageRegistry registry = new GeoPackageRegistry(10, 0, null);
+		try {
+
+			GeoPackageRegistry.Handle handle = registry.acquire(file);
+			GeoPackageRegistry.Handle handle2 = registry
+					.acquire(new File(file.getParentFile(), ".." + File.separator
+							+ file.getParentFile().getName() + File.separator
+							+ file.getName()));
+			TestCase.assertSame(handle.getGeoPackage(),
+					handle2.getGeoPackage());
+			TestCase.assertEquals(handle.getPath(), handle2.getPath());
+			TestCase.assertEquals(2, registry.getReferences(file));
+			TestCase.assertEquals(1, registry.getOpens());
+			TestCase.assertEquals(1, registry.getHits());
+
+			TestCase.assertEquals(2, registry.getCachedPathCount());
+
+			GeoPackage geoPackage = handle.getGeoPackage();
+			TestCase.assertFalse(geoPackage.getFeatureTables().isEmpty());
+			try {
+				geoPackage.close();
+				TestCase.fail("Shared GeoPackage was closed");
+			} catch (GeoPackageException e) {
+				// expected
+			}
+			TestCase.assertFalse(handle2.getGeoPackage().getFeatureTables()
+					.isEmpty());
+
+			handle.close();
+			handle.close();
+			TestCase.assertEquals(1, registry.getReferences(file));
+			try {
+				handle.getGeoPackage();
+				TestCase.fail("Released handle returned the GeoPackage");
+			} catch (GeoPackageException e) {
+				// expected
+			}
+
+			TestCase.assertEquals(0, registry.evictIdle());
+			handle2.close();
+			TestCase.assertEquals(0, registry.getReferences(file));
+			TestCase.assertTrue(registry.isOpen(file));
+			TestCase.assertEquals(1, registry.evictIdle());
+			TestCase.assertFalse(registry.isOpen(file));
+			TestCase.assertEquals(1, registry.getCloses());
+			TestCase.assertEquals(0, registry.getCachedPathCount());
+
+			GeoPackageRegistry.Handle handle3 = registry.acquire(file);
+			TestCase.assertNotSame(geoPackage, handle3.getGeoPackage());
+			TestCase.assertEquals(2, registry.getOpens());
+			handle3.close();
+
+		} finally {
+			registry.close();
+		}
+		TestCase.assertEquals(0, registry.getOpenCount());
+
+	}
+
+	/**
+	 * Test least recently used eviction over the max open
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testLeastRecentlyUsed() throws Exception {
+
+		File file1 = createFile("lru1");
+		File file2 = createFile("lru2");
+		File file3 = createFile("lru3");
+
+		GeoPackageRegistry registry = new GeoPackageRegistry(2, 0, null);
+		try {
+
+			GeoPackageRegistry.Handle handle1 = registry.acquire(file1);
+			registry.acquire(file2).close();
+			handle1.close();
+
+			// file2 is the least recently released
+			registry.acquire(file3).close();
+			TestCase.assertEquals(2, registry.getOpenCount());
+			TestCase.assertTrue(registry.isOpen(file1));
+			TestCase.assertFalse(registry.isOpen(file2));
+			TestCase.assertTrue(registry.isOpen(file3));
+			TestCase.assertEquals(0, registry.getOverflows());
+
+			// Referenced GeoPackages are not evicted
+			GeoPackageRegistry.Handle held1 = registry.acquire(file1);
+			GeoPackageRegistry.Handle held3 = registry.acquire(file3);
+			GeoPackageRegistry.Handle held2 = registry.acquire(file2);
+			TestCase.assertEquals(3, registry.getOpenCount());
+			TestCase.assertEquals(1, registry.getOverflows());
+			held1.close();
+			held2.close();
+			held3.close();
+
+		} finally {
+			registry.close();
+		}
+
+	}
+
+	/**
+	 * Test concurrent acquires share a single open
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testConcurrentAcquire() throws Exception {
+
+		final File file = createFile("concurrent");
+
+		final GeoPackageRegistry registry = new GeoPackageRegistry(10, 60000,
+				null);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					int count = 0;
+					for (int j = 0; j < 100; j++) {
+						GeoPackageRegistry.Handle handle = registry
+								.acquire(file);
+						try {
+							count += handle.getGeoPackage().getTables().size();
+						} finally {
+							handle.close();
+						}
+					}
+					return count;
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				TestCase.assertTrue(future.get() > 0);
+			}
+			TestCase.assertEquals(1, registry.getOpens());
+			TestCase.assertEquals(799, registry.getHits());
+			TestCase.assertEquals(0, registry.getReferences(file));
+		} finally {
+			executor.shutdown();
+			registry.close();
+		}
+
+	}
+
+	/**
+	 * Create a GeoPackage file
+	 *
+	 * @param name
+	 *            directory name
+	 * @return file
+	 * @throws Exception
+	 *             upon error
+	 */
+	private File createFile(String name) throws Exception {
+		GeoPackage geoPackage = TestSetupTeardown
+				.setUpCreate(folder.newFolder(name), true, false);
+		File file = new File(geoPackage.getPath());
+		geoPackage.close();
+		return file;
+	}
+
+}
@@ -0,0 +1,143 @@
+package mil.nga.geopackage.test.db;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.db.Aggregate;
+import mil.nga.geopackage.db.AggregateResult;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.TileGrid;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileResultSet;
+import mil.nga.geopackage.tiles.user.TileRow;
+
+import org.junit.Test;
+
+/**
+ * Test single pass aggregate queries
+ *
+ * @author osbornb
+ */
+public class AggregateTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test feature table aggregates
+	 */
+	@Test
+	public void testFeatureAggregates() {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			String idColumn = featureDao.getTable().getPkColumn().getName();
+
+			long count = 0;
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			long sum = 0;
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+					long id = resultSet.getId();
+					count++;
+					min = Math.min(min, id);
+					max = Math.max(max, id);
+					sum += id;
+				}
+			} finally {
+				resultSet.close();
+			}
+
+			Aggregate countAggregate = Aggregate.count();
+			Aggregate countColumn = Aggregate.count(idColumn);
+			Aggregate minAggregate = Aggregate.min(idColumn);
+			Aggregate maxAggregate = Aggregate.max(idColumn);
+			Aggregate sumAggregate = Aggregate.sum(idColumn);
+			Aggregate avgAggregate = Aggregate.avg(idColumn);
+
+			AggregateResult result = featureDao.aggregate(countAggregate,
+					countColumn, minAggregate, maxAggregate, sumAggregate,
+					avgAggregate);
+			TestCase.assertEquals(6, result.getValues().size());
+			TestCase.assertEquals(count, result.getCount());
+			TestCase.assertEquals(count,
+					result.getLong(countColumn).longValue());
+			TestCase.assertEquals(count, featureDao.count());
+			if (count > 0) {
+				TestCase.assertEquals(min,
+						result.getLong(minAggregate).longValue());
+				TestCase.assertEquals(max,
+						result.getLong(maxAggregate).longValue());
+				TestCase.assertEquals(sum,
+						result.getLong(sumAggregate).longValue());
+				TestCase.assertEquals(sum / (double) count,
+						result.getDouble(avgAggregate), 0.0000001);
+				TestCase.assertEquals((int) min, featureDao
+						.min(idColumn, null, null).intValue());
+				TestCase.assertEquals((int) max, featureDao
+						.max(idColumn, null, null).intValue());
+			}
+			TestCase.assertEquals(result.getValue(3),
+					result.getValue(Aggregate.max(idColumn)));
+
+			AggregateResult empty = featureDao.aggregate(idColumn + " < ?",
+					new String[] { "0" }, countAggregate, minAggregate,
+					sumAggregate, avgAggregate);
+			TestCase.assertEquals(0, empty.getCount());
+			TestCase.assertNull(empty.getValue(minAggregate));
+			TestCase.assertNull(empty.getValue(sumAggregate));
+			TestCase.assertNull(empty.getValue(avgAggregate));
+			TestCase.assertNull(featureDao.min(idColumn, idColumn + " < ?",
+					new String[] { "0" }));
+		}
+
+	}
+
+	/**
+	 * Test tile grids computed by a single aggregate query
+	 */
+	@Test
+	public void testTileGrid() {
+
+		for (String tileTable : geoPackage.getTileTables()) {
+
+			TileDao tileDao = geoPackage.getTileDao(tileTable);
+
+			for (long zoomLevel = tileDao.getMinZoom(); zoomLevel <= tileDao
+					.getMaxZoom(); zoomLevel++) {
+
+				TileGrid tileGrid = tileDao.queryForTileGrid(zoomLevel);
+
+				// Compute the expected grid from the tile rows
+				long minX = Long.MAX_VALUE;
+				long minY = Long.MAX_VALUE;
+				long maxX = Long.MIN_VALUE;
+				long maxY = Long.MIN_VALUE;
+				TileResultSet resultSet = tileDao.queryForTile(zoomLevel);
+				try {
+					while (resultSet.moveToNext()) {
+						TileRow tileRow = resultSet.getRow();
+						minX = Math.min(minX, tileRow.getTileColumn());
+						minY = Math.min(minY, tileRow.getTileRow());
+						maxX = Math.max(maxX, tileRow.getTileColumn());
+						maxY = Math.max(maxY, tileRow.getTileRow());
+					}
+				} finally {
+					resultSet.close();
+				}
+
+				if (minX == Long.MAX_VALUE) {
+					TestCase.assertNull(tileGrid);
+				} else {
+					TestCase.assertNotNull(tileGrid);
+					TestCase.assertEquals(minX, tileGrid.getMinX());
+					TestCase.assertEquals(minY, tileGrid.getMinY());
+					TestCase.assertEquals(maxX, tileGrid.getMaxX());
+					TestCase.assertEquals(maxY, tileGrid.getMaxY());
+				}
+			}
+		}
+
+	}
+
+}
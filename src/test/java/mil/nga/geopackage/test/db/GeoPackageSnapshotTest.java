@@ -0,0 +1,205 @@
+package mil.nga.geopackage.test.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.manager.GeoPackageManager;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.io.TestGeoPackageProgress;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test online GeoPackage snapshots
+ *
+ * @author osbornb
+ */
+public class GeoPackageSnapshotTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test a snapshot to a file
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testSnapshotTo() throws Exception {
+
+		File file = snapshotFile();
+		try {
+
+			TestGeoPackageProgress progress = new TestGeoPackageProgress();
+			TestCase.assertTrue(geoPackage.snapshotTo(file, progress));
+			TestCase.assertTrue(file.exists());
+			TestCase.assertTrue(progress.getMax() > 0);
+			TestCase.assertEquals(progress.getMax().intValue(),
+					progress.getProgress());
+
+			try {
+				geoPackage.snapshotTo(file);
+				TestCase.fail("Snapshot overwrote an existing file");
+			} catch (Exception e) {
+				// expected
+			}
+
+			GeoPackage snapshot = GeoPackageManager.open(file);
+			try {
+				assertCounts(snapshot);
+			} finally {
+				snapshot.close();
+			}
+
+		} finally {
+			file.delete();
+		}
+
+	}
+
+	/**
+	 * Test a snapshot into memory
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testSnapshotToMemory() throws Exception {
+
+		GeoPackage snapshot = GeoPackageManager
+				.openSnapshotInMemory(geoPackage);
+		try {
+			assertCounts(snapshot);
+
+			String featureTable = geoPackage.getFeatureTables().get(0);
+			FeatureDao featureDao = snapshot.getFeatureDao(featureTable);
+			int count = featureDao.count();
+			featureDao.insert(newRow(featureDao));
+			TestCase.assertEquals(count + 1, featureDao.count());
+			TestCase.assertEquals(count,
+					geoPackage.getFeatureDao(featureTable).count());
+
+			// Snapshots of an in-memory GeoPackage include in-memory writes
+			File file = snapshotFile();
+			TestCase.assertTrue(snapshot.snapshotTo(file));
+			GeoPackage fileSnapshot = GeoPackageManager.open(file);
+			try {
+				TestCase.assertEquals(count + 1,
+						fileSnapshot.getFeatureDao(featureTable).count());
+			} finally {
+				fileSnapshot.close();
+				file.delete();
+			}
+			GeoPackage memorySnapshot = GeoPackageManager
+					.openSnapshotInMemory(snapshot);
+			try {
+				TestCase.assertEquals(count + 1,
+						memorySnapshot.getFeatureDao(featureTable).count());
+			} finally {
+				memorySnapshot.close();
+			}
+		} finally {
+			snapshot.close();
+		}
+
+	}
+
+	/**
+	 * Test canceling a snapshot
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testCancel() throws Exception {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		List<FeatureRow> rows = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			rows.add(newRow(featureDao));
+		}
+		featureDao.insertBatch(rows);
+
+		TestGeoPackageProgress progress = new TestGeoPackageProgress() {
+
+			private int checks = 0;
+
+			@Override
+			public boolean isActive() {
+				if (++checks > 1) {
+					cancel();
+				}
+				return super.isActive();
+			}
+		};
+
+		File file = snapshotFile();
+		try {
+			TestCase.assertFalse(geoPackage.snapshotTo(file, progress));
+			TestCase.assertFalse(file.exists());
+			TestCase.assertEquals(0,
+					file.getParentFile().listFiles(
+							(dir, name) -> name.startsWith(file.getName()))
+							.length);
+		} finally {
+			file.delete();
+		}
+
+		progress = new TestGeoPackageProgress();
+		progress.cancel();
+		TestCase.assertNull(
+				GeoPackageManager.openSnapshotInMemory(geoPackage, progress));
+
+	}
+
+	/**
+	 * Create a snapshot file path that does not exist
+	 *
+	 * @return file
+	 * @throws Exception
+	 *             upon error
+	 */
+	private static File snapshotFile() throws Exception {
+		File file = File.createTempFile("snapshot", ".gpkg");
+		file.delete();
+		return file;
+	}
+
+	/**
+	 * Assert the snapshot table counts match the GeoPackage
+	 *
+	 * @param snapshot
+	 *            snapshot GeoPackage
+	 */
+	private void assertCounts(GeoPackage snapshot) {
+		TestCase.assertEquals(geoPackage.getTables(), snapshot.getTables());
+		for (String table : geoPackage.getTables()) {
+			TestCase.assertEquals(
+					geoPackage.getConnection().count(table, null, null),
+					snapshot.getConnection().count(table, null, null));
+		}
+	}
+
+	/**
+	 * Create a new point row
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @return feature row
+	 */
+	private static FeatureRow newRow(FeatureDao featureDao) {
+		FeatureRow row = featureDao.newRow();
+		GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+				featureDao.getGeometryColumns().getSrsId());
+		geometry.setGeometry(new Point(1, 1));
+		row.setGeometry(geometry);
+		return row;
+	}
+
+}
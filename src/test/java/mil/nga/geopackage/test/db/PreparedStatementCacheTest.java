@@ -0,0 +1,170 @@
+package mil.nga.geopackage.test.db;
+
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.PreparedStatementCache;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.user.ContentValues;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test the prepared statement cache used for user DAO inserts, updates and
+ * deletes
+ *
+ * @author osbornb
+ */
+public class PreparedStatementCacheTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test repeated inserts, updates and deletes reuse cached statements
+	 *
+	 * @throws SQLException
+	 *             upon error
+	 */
+	@Test
+	public void testStatementReuse() throws SQLException {
+
+		final int rows = 100;
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			PreparedStatementCache cache = featureDao.getStatementCache();
+			TestCase.assertSame(cache, featureDao.getDb().getStatementCache());
+
+			int countBefore = featureDao.count();
+			long hitsBefore = cache.getHits();
+			long missesBefore = cache.getMisses();
+
+			long[] ids = new long[rows];
+			for (int i = 0; i < rows; i++) {
+				ids[i] = insertRow(featureDao, i);
+			}
+			TestCase.assertEquals(countBefore + rows, featureDao.count());
+			TestCase.assertEquals(missesBefore + 1, cache.getMisses());
+			TestCase.assertEquals(hitsBefore + rows - 1, cache.getHits());
+			TestCase.assertTrue(cache.size() > 0);
+
+			for (int i = 0; i < rows; i++) {
+				FeatureRow row = featureDao.queryForIdRow(ids[i]);
+				Point point = (Point) row.getGeometry().getGeometry();
+				TestCase.assertEquals((double) i, point.getX());
+				point.setY(i);
+				row.setGeometry(row.getGeometry());
+				TestCase.assertEquals(1, featureDao.update(row));
+			}
+			for (int i = 0; i < rows; i++) {
+				FeatureRow row = featureDao.queryForIdRow(ids[i]);
+				TestCase.assertEquals((double) i,
+						((Point) row.getGeometry().getGeometry()).getY());
+			}
+
+			for (int i = 0; i < rows; i++) {
+				TestCase.assertEquals(1, featureDao.deleteById(ids[i]));
+			}
+			TestCase.assertEquals(countBefore, featureDao.count());
+
+			TestCase.assertTrue(cache.getHits() >= hitsBefore + 3 * (rows - 1));
+			TestCase.assertTrue(cache.size() <= cache.getMaxSize());
+		}
+
+	}
+
+	/**
+	 * Test cache eviction, disabling and failed statements
+	 *
+	 * @throws SQLException
+	 *             upon error
+	 */
+	@Test
+	public void testEvictionAndFailure() throws SQLException {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		PreparedStatementCache cache = featureDao.getStatementCache();
+
+		int maxSize = cache.getMaxSize();
+		try {
+
+			cache.setMaxSize(1);
+			long id = insertRow(featureDao, 0);
+			TestCase.assertEquals(1, featureDao.deleteById(id));
+			TestCase.assertEquals(1, cache.size());
+			TestCase.assertTrue(cache.getEvictions() > 0);
+
+			// Insert with an existing id fails and is not cached
+			id = insertRow(featureDao, 1);
+			ContentValues duplicate = featureDao.queryForIdRow(id)
+					.toContentValues();
+			duplicate.put(featureDao.getTable().getPkColumn().getName(), id);
+			long misses = cache.getMisses();
+			try {
+				featureDao.insertOrThrow(duplicate);
+				TestCase.fail("Duplicate id insert did not fail");
+			} catch (GeoPackageException e) {
+				// expected
+			}
+			TestCase.assertEquals(misses + 1, cache.getMisses());
+			try {
+				featureDao.insertOrThrow(duplicate);
+				TestCase.fail("Duplicate id insert did not fail");
+			} catch (GeoPackageException e) {
+				// expected
+			}
+			TestCase.assertEquals(misses + 2, cache.getMisses());
+			TestCase.assertEquals(1, featureDao.deleteById(id));
+
+			cache.setMaxSize(0);
+			TestCase.assertEquals(0, cache.size());
+			id = insertRow(featureDao, 2);
+			TestCase.assertEquals(0, cache.size());
+			TestCase.assertEquals(1, featureDao.deleteById(id));
+
+			cache.setMaxSize(maxSize);
+			insertRow(featureDao, 3);
+			TestCase.assertTrue(cache.size() > 0);
+			int size = cache.size();
+			geoPackage.execSQL("SELECT 1");
+			geoPackage.execSQL("PRAGMA foreign_keys = OFF");
+			TestCase.assertEquals(size, cache.size());
+			geoPackage.execSQL("CREATE TABLE statement_cache_test (id INTEGER)");
+			TestCase.assertEquals(0, cache.size());
+			insertRow(featureDao, 4);
+			TestCase.assertTrue(cache.size() > 0);
+			geoPackage.execSQL("DROP TABLE statement_cache_test");
+			TestCase.assertEquals(0, cache.size());
+
+		} finally {
+			cache.setMaxSize(maxSize);
+		}
+
+	}
+
+	/**
+	 * Insert a point row into the feature table
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @param x
+	 *            point x
+	 * @return row id
+	 */
+	private long insertRow(FeatureDao featureDao, double x) {
+
+		FeatureRow row = featureDao.newRow();
+		GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+				featureDao.getGeometryColumns().getSrsId());
+		geometry.setGeometry(new Point(x, 0));
+		row.setGeometry(geometry);
+		return featureDao.insert(row);
+
+	}
+
+}
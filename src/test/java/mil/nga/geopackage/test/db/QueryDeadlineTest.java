@@ -0,0 +1,430 @@
+package mil.nga.geopackage.test.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackageQueryTimeoutException;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.db.GeoPackageSnapshot;
+import mil.nga.geopackage.db.QueryDeadline;
+import mil.nga.geopackage.db.QueryInterruptHandler;
+import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.io.TestGeoPackageProgress;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.TileGenerator;
+import mil.nga.geopackage.user.ContentValues;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import org.junit.Test;
+
+/**
+ * Test query deadlines, timeouts and progress cancellation
+ *
+ * @author osbornb
+ */
+public class QueryDeadlineTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Long running query
+	 */
+	private static final String LONG_QUERY = "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c LIMIT 1000000000) SELECT COUNT(*) FROM c";
+
+	/**
+	 * Test a per call deadline timeout
+	 */
+	@Test
+	public void testDeadline() {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+
+		long start = System.currentTimeMillis();
+		try (QueryDeadline deadline = QueryDeadline.start(100)) {
+			TestCase.assertSame(deadline, QueryDeadline.current());
+			connection.querySingleResult(LONG_QUERY, null, 0,
+					GeoPackageDataType.INTEGER);
+			TestCase.fail("Query did not time out");
+		} catch (GeoPackageQueryTimeoutException e) {
+			TestCase.assertFalse(e.isCanceled());
+		}
+		TestCase.assertTrue(System.currentTimeMillis() - start < 10000);
+		TestCase.assertNull(QueryDeadline.current());
+
+		assertQueries(connection);
+	}
+
+	/**
+	 * Test progress cancellation
+	 */
+	@Test
+	public void testCancel() {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+
+		final TestGeoPackageProgress progress = new TestGeoPackageProgress();
+		progress.setMax(1);
+
+		Thread cancel = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// cancel now
+			}
+			progress.cancel();
+		});
+		cancel.start();
+
+		try (QueryDeadline outer = QueryDeadline.start(progress);
+				QueryDeadline inner = QueryDeadline.start(60000)) {
+			TestCase.assertSame(progress, outer.getProgress());
+			TestCase.assertSame(inner, QueryDeadline.current());
+			connection.querySingleResult(LONG_QUERY, null, 0,
+					GeoPackageDataType.INTEGER);
+			TestCase.fail("Query was not canceled");
+		} catch (GeoPackageQueryTimeoutException e) {
+			TestCase.assertTrue(e.isCanceled());
+		}
+		TestCase.assertNull(QueryDeadline.current());
+
+		assertQueries(connection);
+	}
+
+	/**
+	 * Test the GeoPackage query timeout
+	 */
+	@Test
+	public void testQueryTimeout() {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+
+		connection.setQueryTimeout(100);
+		try {
+			TestCase.assertEquals(100, connection.getQueryTimeout());
+			assertQueries(connection);
+			try {
+				connection.querySingleResult(LONG_QUERY, null, 0,
+						GeoPackageDataType.INTEGER);
+				TestCase.fail("Query did not time out");
+			} catch (GeoPackageQueryTimeoutException e) {
+				TestCase.assertFalse(e.isCanceled());
+			}
+			assertQueries(connection);
+		} finally {
+			connection.setQueryTimeout(0);
+		}
+		TestCase.assertEquals(0, connection.getQueryTimeout());
+
+	}
+
+	/**
+	 * Test the handler is installed by the first interruptible statement and
+	 * left installed
+	 */
+	@Test
+	public void testInstallation() {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+		TestCase.assertFalse(
+				QueryInterruptHandler.isInstalled(connection.getConnection()));
+
+		assertQueries(connection);
+		TestCase.assertFalse(
+				QueryInterruptHandler.isInstalled(connection.getConnection()));
+
+		try (QueryDeadline deadline = QueryDeadline.start(60000)) {
+			TestCase.assertSame(deadline, QueryDeadline.current());
+			QueryInterruptHandler.Step step = QueryInterruptHandler
+					.begin(connection.getConnection());
+			try {
+				TestCase.assertTrue(QueryInterruptHandler
+						.isInstalled(connection.getConnection()));
+				assertQueries(connection);
+				TestCase.assertTrue(QueryInterruptHandler
+						.isInstalled(connection.getConnection()));
+			} finally {
+				QueryInterruptHandler.end(step);
+			}
+			TestCase.assertTrue(QueryInterruptHandler
+					.isInstalled(connection.getConnection()));
+		}
+
+		assertQueries(connection);
+		TestCase.assertTrue(
+				QueryInterruptHandler.isInstalled(connection.getConnection()));
+	}
+
+	/**
+	 * Test a statement on one connection times out while interruptible
+	 * statements start and end on another connection
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testConcurrentConnections() throws Exception {
+
+		final Connection shortConnection = DriverManager
+				.getConnection(GeoPackageSnapshot.memoryUrl());
+		Connection longConnection = DriverManager
+				.getConnection(GeoPackageSnapshot.memoryUrl());
+		QueryInterruptHandler.setTimeout(shortConnection, 60000);
+		QueryInterruptHandler.setTimeout(longConnection, 100);
+		try {
+
+			final AtomicBoolean running = new AtomicBoolean(true);
+			final AtomicInteger queries = new AtomicInteger();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			Thread shortQueries = new Thread(() -> {
+				try {
+					while (running.get()) {
+						SQLUtils.querySingleResult(shortConnection, "SELECT 1",
+								null, 0, GeoPackageDataType.INTEGER);
+						queries.incrementAndGet();
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			shortQueries.start();
+
+			try {
+				while (queries.get() == 0 && failure.get() == null) {
+					Thread.sleep(1);
+				}
+				SQLUtils.querySingleResult(longConnection, LONG_QUERY, null, 0,
+						GeoPackageDataType.INTEGER);
+				TestCase.fail("Query did not time out");
+			} catch (GeoPackageQueryTimeoutException e) {
+				TestCase.assertFalse(e.isCanceled());
+			} finally {
+				running.set(false);
+				shortQueries.join();
+			}
+
+			TestCase.assertNull(failure.get());
+			TestCase.assertTrue(queries.get() > 0);
+			TestCase.assertTrue(
+					QueryInterruptHandler.isInstalled(shortConnection));
+			TestCase.assertTrue(
+					QueryInterruptHandler.isInstalled(longConnection));
+
+		} finally {
+			QueryInterruptHandler.setTimeout(shortConnection, 0);
+			QueryInterruptHandler.setTimeout(longConnection, 0);
+			shortConnection.close();
+			longConnection.close();
+		}
+
+	}
+
+	/**
+	 * Test feature DAO queries, updates and deletes past a deadline
+	 */
+	@Test
+	public void testFeatureDao() {
+
+		String where = "(" + LONG_QUERY + ") > 0";
+
+		for (String table : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(table);
+			int count = featureDao.count();
+
+			try (QueryDeadline deadline = QueryDeadline.start(100)) {
+				TestCase.assertSame(deadline, QueryDeadline.current());
+				FeatureResultSet resultSet = featureDao.query(where);
+				resultSet.close();
+				TestCase.fail("Query did not time out");
+			} catch (GeoPackageQueryTimeoutException e) {
+				TestCase.assertFalse(e.isCanceled());
+			}
+
+			ContentValues values = new ContentValues();
+			values.putNull(featureDao.getGeometryColumnName());
+			try (QueryDeadline deadline = QueryDeadline.start(100)) {
+				TestCase.assertSame(deadline, QueryDeadline.current());
+				featureDao.update(values, where, null);
+				TestCase.fail("Update did not time out");
+			} catch (GeoPackageQueryTimeoutException e) {
+				TestCase.assertFalse(e.isCanceled());
+			}
+
+			try (QueryDeadline deadline = QueryDeadline.start(100)) {
+				TestCase.assertSame(deadline, QueryDeadline.current());
+				featureDao.delete(where, null);
+				TestCase.fail("Delete did not time out");
+			} catch (GeoPackageQueryTimeoutException e) {
+				TestCase.assertFalse(e.isCanceled());
+			}
+
+			TestCase.assertNull(QueryDeadline.current());
+			TestCase.assertEquals(count, featureDao.count());
+		}
+
+		assertQueries(geoPackage.getConnection());
+	}
+
+	/**
+	 * Test canceling tile generation interrupts an in-flight tile query
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testTileGenerator() throws Exception {
+
+		final GeoPackageConnection connection = geoPackage.getConnection();
+
+		BoundingBox boundingBox = TileBoundingBoxUtils
+				.boundWgs84BoundingBoxWithWebMercatorLimits(new BoundingBox());
+		boundingBox = boundingBox.transform(ProjectionFactory
+				.getProjection(ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM)
+				.getTransformation(ProjectionConstants.EPSG_WEB_MERCATOR));
+
+		TileGenerator tileGenerator = new TileGenerator(geoPackage,
+				"deadline_tiles", 0, 0, boundingBox,
+				ProjectionFactory
+						.getProjection(ProjectionConstants.EPSG_WEB_MERCATOR)) {
+
+			@Override
+			protected void preTileGeneration() {
+
+			}
+
+			@Override
+			protected byte[] createTile(int z, long x, long y) {
+				connection.querySingleResult(LONG_QUERY, null, 0,
+						GeoPackageDataType.INTEGER);
+				return null;
+			}
+
+		};
+
+		final TestGeoPackageProgress progress = new TestGeoPackageProgress();
+		tileGenerator.setProgress(progress);
+
+		Thread cancel = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// cancel now
+			}
+			progress.cancel();
+		});
+		cancel.start();
+
+		long start = System.currentTimeMillis();
+		TestCase.assertEquals(0, tileGenerator.generateTiles());
+		TestCase.assertTrue(System.currentTimeMillis() - start < 10000);
+		TestCase.assertNull(QueryDeadline.current());
+		cancel.join();
+
+		assertQueries(connection);
+	}
+
+	/**
+	 * Test canceling the RTree index interrupts the in-flight index
+	 * statement
+	 */
+	@Test
+	public void testFeatureIndexManager() {
+
+		String table = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(table);
+		FeatureRow first = featureDao.queryForIdRow(
+				featureDao.getDb().min(table,
+						featureDao.getTable().getPkColumn().getName(), null,
+						null));
+		featureDao.insertBatch(IntStream.range(0, 5000).mapToObj(i -> {
+			FeatureRow copy = first.copy();
+			copy.resetId();
+			return copy;
+		}));
+
+		FeatureIndexManager indexManager = new FeatureIndexManager(
+				geoPackage, featureDao);
+		try {
+			indexManager.deleteIndex(FeatureIndexType.RTREE);
+
+			DeadlineCancelProgress progress = new DeadlineCancelProgress();
+			indexManager.setProgress(progress);
+			TestCase.assertEquals(0,
+					indexManager.index(FeatureIndexType.RTREE, true));
+			TestCase.assertTrue(progress.canceled);
+			TestCase.assertFalse(
+					indexManager.isIndexed(FeatureIndexType.RTREE));
+			TestCase.assertNull(QueryDeadline.current());
+
+			indexManager.setProgress(null);
+			TestCase.assertTrue(
+					indexManager.index(FeatureIndexType.RTREE, true) > 5000);
+			TestCase.assertTrue(
+					indexManager.isIndexed(FeatureIndexType.RTREE));
+		} finally {
+			indexManager.close();
+		}
+
+		assertQueries(geoPackage.getConnection());
+	}
+
+	/**
+	 * Verify queries execute normally
+	 *
+	 * @param connection
+	 *            connection
+	 */
+	private void assertQueries(GeoPackageConnection connection) {
+		TestCase.assertEquals(1000L,
+				((Number) connection.querySingleResult(
+						"WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c LIMIT 1000) SELECT COUNT(*) FROM c",
+						null, 0, GeoPackageDataType.INTEGER)).longValue());
+		for (String table : geoPackage.getFeatureTables()) {
+			geoPackage.getFeatureDao(table).count();
+		}
+	}
+
+	/**
+	 * Progress canceled from the query interrupt handler after it checks the
+	 * progress of a running deadline
+	 */
+	private static class DeadlineCancelProgress
+			extends TestGeoPackageProgress {
+
+		/**
+		 * Progress checks within a deadline
+		 */
+		private int deadlineChecks = 0;
+
+		/**
+		 * Canceled flag
+		 */
+		private boolean canceled = false;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isActive() {
+			if (!canceled && QueryDeadline.current() != null
+					&& ++deadlineChecks > 2) {
+				canceled = true;
+			}
+			return !canceled && super.isActive();
+		}
+
+	}
+
+}
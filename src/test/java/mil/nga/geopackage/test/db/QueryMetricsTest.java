@@ -0,0 +1,154 @@
+package mil.nga.geopackage.test.db;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.QueryMetrics;
+import mil.nga.geopackage.db.QueryStatementMetrics;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test per statement query metrics
+ *
+ * @author osbornb
+ */
+public class QueryMetricsTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test recording metrics and publishing the MBean
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testMetrics() throws Exception {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+		TestCase.assertFalse(connection.isMetricsEnabled());
+		TestCase.assertNull(QueryMetrics.get(connection.getConnection()));
+
+		QueryMetrics metrics = connection.enableMetrics();
+		try {
+			TestCase.assertSame(metrics, connection.enableMetrics());
+			TestCase.assertSame(metrics,
+					QueryMetrics.get(connection.getConnection()));
+
+			String featureTable = geoPackage.getFeatureTables().get(0);
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+
+			final int rows = 20;
+			for (int i = 0; i < rows; i++) {
+				FeatureRow row = featureDao.newRow();
+				GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+						featureDao.getGeometryColumns().getSrsId());
+				geometry.setGeometry(new Point(i, i));
+				row.setGeometry(geometry);
+				featureDao.insert(row);
+			}
+
+			int count = featureDao.count();
+			long blobBytes = 0;
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+					byte[] bytes = resultSet.getBlob(resultSet.getColumnIndex(
+							featureDao.getGeometryColumnName()));
+					if (bytes != null) {
+						blobBytes += bytes.length;
+					}
+				}
+			} finally {
+				resultSet.close();
+			}
+
+			geoPackage.execSQL("UPDATE " + featureTable + " SET "
+					+ featureDao.getGeometryColumnName() + " = "
+					+ featureDao.getGeometryColumnName() + " WHERE 1 = 1");
+
+			List<QueryStatementMetrics> statements = metrics.getStatements();
+			TestCase.assertEquals(statements.size(),
+					metrics.getStatementCount());
+			TestCase.assertTrue(metrics.getCalls() >= rows + 3);
+
+			boolean insert = false;
+			boolean query = false;
+			boolean update = false;
+			for (QueryStatementMetrics statement : statements) {
+				TestCase.assertTrue(statement.getP50Nanos() <= statement
+						.getP99Nanos());
+				TestCase.assertTrue(statement.getMaxNanos() > 0);
+				String sql = statement.getSql().toLowerCase();
+				if (sql.startsWith("insert into")) {
+					insert = true;
+					TestCase.assertTrue(statement.getCalls() >= rows);
+					TestCase.assertTrue(statement.getRows() >= rows);
+				} else if (sql.startsWith("select \"")) {
+					query = true;
+					TestCase.assertEquals(count, statement.getRows());
+					TestCase.assertEquals(blobBytes,
+							statement.getBlobBytes());
+				} else if (sql.startsWith("update")) {
+					update = true;
+					TestCase.assertTrue(sql.endsWith("where ? = ?"));
+					TestCase.assertEquals(count, statement.getRows());
+				}
+			}
+			TestCase.assertTrue(insert);
+			TestCase.assertTrue(query);
+			TestCase.assertTrue(update);
+
+			ObjectName objectName = metrics.getObjectName();
+			TestCase.assertNotNull(objectName);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			TestCase.assertTrue(server.isRegistered(objectName));
+			TestCase.assertEquals(metrics.getStatementCount(),
+					server.getAttribute(objectName, "StatementCount"));
+
+			metrics.reset();
+			TestCase.assertEquals(0, metrics.getStatementCount());
+
+			connection.disableMetrics();
+			TestCase.assertFalse(server.isRegistered(objectName));
+			TestCase.assertNull(QueryMetrics.get(connection.getConnection()));
+			featureDao.count();
+			TestCase.assertEquals(0, metrics.getStatementCount());
+
+		} finally {
+			connection.disableMetrics();
+		}
+
+	}
+
+	/**
+	 * Test normalizing SQL into statement shapes
+	 */
+	@Test
+	public void testNormalize() {
+
+		TestCase.assertEquals("SELECT * FROM t WHERE id = ?",
+				QueryMetrics.normalize("SELECT *  FROM t\n WHERE id = 42"));
+		TestCase.assertEquals("SELECT * FROM t WHERE name = ? AND x > ?",
+				QueryMetrics.normalize(
+						"SELECT * FROM t WHERE name = 'it''s' AND x > 1.5e3"));
+		TestCase.assertEquals("SELECT * FROM \"table 1\" WHERE id IN (?, ...)",
+				QueryMetrics.normalize(
+						"SELECT * FROM \"table 1\" WHERE id IN (1, 2, 3)"));
+		TestCase.assertEquals(
+				QueryMetrics.normalize("DELETE FROM t2 WHERE id IN (?, ?)"),
+				QueryMetrics.normalize("DELETE FROM t2 WHERE id IN (?,?,?)"));
+
+	}
+
+}
@@ -0,0 +1,138 @@
+package mil.nga.geopackage.test.db;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.SQLUtils;
+import mil.nga.geopackage.db.SlowQuery;
+import mil.nga.geopackage.db.SlowQueryLog;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+
+import org.junit.Test;
+
+/**
+ * Test the slow query log
+ *
+ * @author osbornb
+ */
+public class SlowQueryLogTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test capturing slow queries with query plans
+	 */
+	@Test
+	public void testSlowQueries() {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+		SlowQueryLog slowQueryLog = new SlowQueryLog(0);
+		slowQueryLog.setLevel(null);
+		final List<SlowQuery> notified = new ArrayList<>();
+		slowQueryLog.addListener(notified::add);
+		connection.setSlowQueryLog(slowQueryLog);
+		try {
+
+			String featureTable = geoPackage.getFeatureTables().get(0);
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			resultSet.close();
+			SlowQuery scan = slowQueryLog.getQueries().get(0);
+			TestCase.assertTrue(scan.isScan());
+			TestCase.assertEquals(Arrays.asList(featureTable),
+					scan.getScanTables());
+			TestCase.assertFalse(scan.getPlan().isEmpty());
+			TestCase.assertTrue(scan.toString().startsWith("SCAN"));
+
+			resultSet = featureDao.queryForId(1);
+			resultSet.close();
+			SlowQuery search = slowQueryLog.getQueries().get(1);
+			TestCase.assertFalse(search.isScan());
+			TestCase.assertEquals("1", search.getArgs()[0]);
+			TestCase.assertFalse(search.getPlan().isEmpty());
+
+			String tileTable = geoPackage.getTileTables().get(0);
+			ResultSet tiles = connection.query(
+					"SELECT * FROM \"" + tileTable + "\" WHERE zoom_level = ?",
+					new String[] { "0" });
+			SQLUtils.closeResultSetStatement(tiles, tileTable);
+			SlowQuery tileQuery = slowQueryLog.getQueries().get(2);
+			TestCase.assertFalse(tileQuery.isScan());
+
+			TestCase.assertEquals(slowQueryLog.getQueries(), notified);
+
+			slowQueryLog.setCapacity(1);
+			TestCase.assertEquals(1, slowQueryLog.getQueries().size());
+			TestCase.assertSame(tileQuery, slowQueryLog.getQueries().get(0));
+
+			slowQueryLog.clear();
+			slowQueryLog.setThresholdMillis(60000);
+			resultSet = featureDao.queryForAll();
+			resultSet.close();
+			TestCase.assertTrue(slowQueryLog.getQueries().isEmpty());
+
+		} finally {
+			connection.setSlowQueryLog(null);
+		}
+
+	}
+
+	/**
+	 * Test user DAO queries are measured until the result is closed
+	 *
+	 * @throws InterruptedException
+	 *             upon interruption
+	 */
+	@Test
+	public void testSlowIteration() throws InterruptedException {
+
+		GeoPackageConnection connection = geoPackage.getConnection();
+		SlowQueryLog slowQueryLog = new SlowQueryLog(200);
+		slowQueryLog.setLevel(null);
+		connection.setSlowQueryLog(slowQueryLog);
+		try {
+
+			String featureTable = geoPackage.getFeatureTables().get(0);
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try {
+				TestCase.assertTrue(resultSet.moveToNext());
+				Thread.sleep(300);
+				TestCase.assertTrue(slowQueryLog.getQueries().isEmpty());
+			} finally {
+				resultSet.close();
+			}
+			TestCase.assertEquals(1, slowQueryLog.getQueries().size());
+			SlowQuery query = slowQueryLog.getQueries().get(0);
+			TestCase.assertTrue(query.isScan());
+			TestCase.assertFalse(query.getPlan().isEmpty());
+
+		} finally {
+			connection.setSlowQueryLog(null);
+		}
+
+	}
+
+	/**
+	 * Test parsing full table scans from query plans
+	 */
+	@Test
+	public void testScanTables() {
+
+		TestCase.assertEquals(Arrays.asList("t1", "t2"),
+				SlowQueryLog.scanTables(Arrays.asList("SCAN TABLE t1",
+						"SCAN t2 AS b",
+						"SEARCH TABLE t3 USING INTEGER PRIMARY KEY (rowid=?)",
+						"SCAN TABLE t4 USING COVERING INDEX idx",
+						"SCAN TABLE rtree_t5_geom VIRTUAL TABLE INDEX 2:",
+						"SCAN SUBQUERY 1", "USE TEMP B-TREE FOR ORDER BY")));
+
+	}
+
+}
@@ -2,7 +2,10 @@ package mil.nga.geopackage.test.db;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Stream;
 
 import junit.framework.TestCase;
 import mil.nga.geopackage.GeoPackage;
@@ -59,6 +62,33 @@ public class TransactionTest extends CreateGeoPackageTestCase {
 
 	}
 
+	/**
+	 * Test batch inserts on the User DAO
+	 * 
+	 * @throws SQLException
+	 *             upon error
+	 */
+	@Test
+	public void testUserDaoBatch() throws SQLException {
+
+		final int rows = 500;
+		final int chunkSize = 150;
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			featureDao.setBatchChunkSize(chunkSize);
+
+			testUserDaoBatch(featureDao, rows, true);
+			testUserDaoBatch(featureDao, rows, false);
+
+			testUserDaoBatchTransaction(featureDao, rows, false);
+			testUserDaoBatchTransaction(featureDao, rows, true);
+
+		}
+
+	}
+
 	/**
 	 * Test transactions on the GeoPackage
 	 * 
@@ -266,6 +296,87 @@ public class TransactionTest extends CreateGeoPackageTestCase {
 
 	}
 
+	/**
+	 * Test batch inserts committed in chunks
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @param rows
+	 *            rows to insert
+	 * @param returnIds
+	 *            true to return inserted ids
+	 * @throws SQLException
+	 *             upon error
+	 */
+	private void testUserDaoBatch(FeatureDao featureDao, int rows,
+			boolean returnIds) throws SQLException {
+
+		int countBefore = featureDao.count();
+
+		int inserted;
+		if (returnIds) {
+			List<FeatureRow> newRows = new ArrayList<>();
+			for (int i = 0; i < rows; i++) {
+				newRows.add(newRow(featureDao));
+			}
+			inserted = featureDao.insertBatch(newRows);
+			long previousId = -1;
+			for (FeatureRow row : newRows) {
+				TestCase.assertTrue(row.getId() > previousId);
+				TestCase.assertNotNull(featureDao.queryForIdRow(row.getId()));
+				previousId = row.getId();
+			}
+		} else {
+			inserted = featureDao.insertBatch(
+					Stream.generate(() -> newRow(featureDao)).limit(rows),
+					false);
+		}
+
+		TestCase.assertEquals(rows, inserted);
+		TestCase.assertEquals(countBefore + rows, featureDao.count());
+		TestCase.assertTrue(featureDao.getConnection().getAutoCommit());
+
+	}
+
+	/**
+	 * Test batch inserts within an existing transaction
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @param rows
+	 *            rows to insert
+	 * @param successful
+	 *            true for a successful transaction
+	 */
+	private void testUserDaoBatchTransaction(FeatureDao featureDao, int rows,
+			boolean successful) {
+
+		int countBefore = featureDao.count();
+
+		featureDao.beginTransaction();
+
+		try {
+
+			featureDao.insertBatch(
+					Stream.generate(() -> newRow(featureDao)).limit(rows),
+					false);
+
+		} catch (Exception e) {
+
+			featureDao.failTransaction();
+			TestCase.fail(e.getMessage());
+
+		} finally {
+
+			featureDao.endTransaction(successful);
+
+		}
+
+		TestCase.assertEquals(successful ? countBefore + rows : countBefore,
+				featureDao.count());
+
+	}
+
 	/**
 	 * Insert rows into the feature table
 	 *
@@ -290,12 +401,25 @@ public class TransactionTest extends CreateGeoPackageTestCase {
 	 */
 	private void insertRow(FeatureDao featureDao) {
 
+		featureDao.insert(newRow(featureDao));
+
+	}
+
+	/**
+	 * Create a new point row for the feature table
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @return feature row
+	 */
+	private FeatureRow newRow(FeatureDao featureDao) {
+
 		FeatureRow row = featureDao.newRow();
 		GeoPackageGeometryData geometry = new GeoPackageGeometryData(featureDao
 				.getGeometryColumns().getSrsId());
 		geometry.setGeometry(new Point(0, 0));
 		row.setGeometry(geometry);
-		featureDao.insert(row);
+		return row;
 
 	}
 
@@ -0,0 +1,218 @@
+package mil.nga.geopackage.test.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.user.UserWriteQueue;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test the group commit user write queue
+ *
+ * @author osbornb
+ */
+public class UserWriteQueueTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test concurrent producers with group commits
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testConcurrentWrites() throws Exception {
+
+		final String featureTable = geoPackage.getFeatureTables().get(0);
+		final FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		int countBefore = featureDao.count();
+
+		final int producers = 8;
+		final int rows = 250;
+
+		final UserWriteQueue writeQueue = new UserWriteQueue(
+				geoPackage.getConnection(), 100, 20, 1000);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		try {
+			List<Future<List<CompletableFuture<Long>>>> futures = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				futures.add(executor.submit(() -> {
+					List<CompletableFuture<Long>> ids = new ArrayList<>();
+					for (int i = 0; i < rows; i++) {
+						ids.add(writeQueue.insert(featureDao,
+								newRow(featureDao, i)));
+					}
+					return ids;
+				}));
+			}
+
+			List<Long> ids = new ArrayList<>();
+			for (Future<List<CompletableFuture<Long>>> future : futures) {
+				for (CompletableFuture<Long> id : future.get()) {
+					ids.add(id.get());
+				}
+			}
+			TestCase.assertEquals(producers * rows,
+					ids.stream().distinct().count());
+			TestCase.assertEquals(countBefore + producers * rows,
+					featureDao.count());
+			TestCase.assertEquals(producers * rows, writeQueue.getWrites());
+			TestCase.assertTrue(writeQueue.getCommits() < producers * rows);
+
+			FeatureRow row = featureDao.queryForIdRow(ids.get(0));
+			row.setGeometry(newRow(featureDao, 999).getGeometry());
+			TestCase.assertEquals(1,
+					writeQueue.update(featureDao, row).get().intValue());
+			TestCase.assertEquals(1, writeQueue
+					.deleteById(featureDao, ids.get(1)).get().intValue());
+			writeQueue.flush().get();
+			TestCase.assertEquals(999.0,
+					((Point) featureDao.queryForIdRow(ids.get(0)).getGeometry()
+							.getGeometry()).getX());
+			TestCase.assertNull(featureDao.queryForIdRow(ids.get(1)));
+
+		} finally {
+			executor.shutdown();
+			writeQueue.close();
+		}
+
+	}
+
+	/**
+	 * Test a failed write in a group only fails its own future
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testFailedWrite() throws Exception {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		int countBefore = featureDao.count();
+
+		UserWriteQueue writeQueue = new UserWriteQueue(
+				geoPackage.getConnection(), 50, 200, 100);
+		try {
+			CompletableFuture<Long> first = writeQueue.insert(featureDao,
+					newRow(featureDao, 1));
+			final AtomicInteger failedRuns = new AtomicInteger();
+			CompletableFuture<Object> failed = writeQueue.submit(() -> {
+				failedRuns.incrementAndGet();
+				featureDao.insert(newRow(featureDao, 4));
+				throw new GeoPackageException("Failed write");
+			});
+			final AtomicInteger runs = new AtomicInteger();
+			CompletableFuture<Integer> operation = writeQueue
+					.submit(() -> runs.incrementAndGet());
+			FeatureRow lastRow = newRow(featureDao, 2);
+			CompletableFuture<Long> last = writeQueue.insert(featureDao,
+					lastRow);
+
+			TestCase.assertTrue(first.get() > 0);
+			TestCase.assertTrue(last.get() > 0);
+			TestCase.assertEquals(lastRow.getId(), last.get().longValue());
+			TestCase.assertEquals(1, operation.get().intValue());
+			TestCase.assertEquals(1, runs.get());
+			TestCase.assertEquals(1, failedRuns.get());
+			try {
+				failed.get();
+				TestCase.fail("Failed write did not fail the future");
+			} catch (ExecutionException e) {
+				TestCase.assertTrue(
+						e.getCause() instanceof GeoPackageException);
+			}
+			TestCase.assertEquals(countBefore + 2, featureDao.count());
+		} finally {
+			writeQueue.close();
+		}
+
+		TestCase.assertTrue(writeQueue
+				.insert(featureDao, newRow(featureDao, 3))
+				.isCompletedExceptionally());
+		TestCase.assertEquals(countBefore + 2, featureDao.count());
+
+	}
+
+	/**
+	 * Test writes wait for a transaction begun by another thread to end
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testOtherTransaction() throws Exception {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		int countBefore = featureDao.count();
+
+		UserWriteQueue writeQueue = new UserWriteQueue(
+				geoPackage.getConnection(), 50, 1, 100);
+		try {
+
+			geoPackage.beginTransaction();
+			CompletableFuture<Long> committed = writeQueue.insert(featureDao,
+					newRow(featureDao, 1));
+			Thread.sleep(100);
+			TestCase.assertFalse(committed.isDone());
+			geoPackage.endTransaction(true);
+			TestCase.assertTrue(committed.get() > 0);
+			TestCase.assertEquals(countBefore + 1, featureDao.count());
+
+			writeQueue.setTransactionWait(100);
+			TestCase.assertEquals(100, writeQueue.getTransactionWait());
+			geoPackage.beginTransaction();
+			CompletableFuture<Long> failed = writeQueue.insert(featureDao,
+					newRow(featureDao, 2));
+			try {
+				failed.get();
+				TestCase.fail("Write within another transaction did not fail");
+			} catch (ExecutionException e) {
+				TestCase.assertTrue(
+						e.getCause() instanceof GeoPackageException);
+			} finally {
+				geoPackage.endTransaction(false);
+			}
+			TestCase.assertEquals(countBefore + 1, featureDao.count());
+
+		} finally {
+			writeQueue.close();
+		}
+
+	}
+
+	/**
+	 * Create a new point row
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @param x
+	 *            point x
+	 * @return feature row
+	 */
+	private static FeatureRow newRow(FeatureDao featureDao, double x) {
+
+		FeatureRow row = featureDao.newRow();
+		GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+				featureDao.getGeometryColumns().getSrsId());
+		geometry.setGeometry(new Point(x, 0));
+		row.setGeometry(geometry);
+		return row;
+
+	}
+
+}
@@ -0,0 +1,153 @@
+package mil.nga.geopackage.test.extension.index;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.j256.ormlite.dao.CloseableIterator;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.extension.index.FeatureTableIndex;
+import mil.nga.geopackage.extension.index.FeatureTableIndexBuilder;
+import mil.nga.geopackage.extension.index.GeometryIndex;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.manager.GeoPackageManager;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.io.TestGeoPackageProgress;
+
+import org.junit.Test;
+
+/**
+ * Test bulk builds of the Feature Table Index
+ *
+ * @author osbornb
+ */
+public class FeatureTableIndexBuilderTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test bulk builds match row by row indexing
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testBuild() throws Exception {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			FeatureTableIndex featureTableIndex = new FeatureTableIndex(
+					geoPackage, featureDao);
+			TestCase.assertFalse(featureTableIndex.isBulkBuild());
+
+			int expectedCount = featureTableIndex.index(true);
+			Map<Long, String> expected = indexRows(featureTableIndex);
+			TestCase.assertEquals(expectedCount, expected.size());
+
+			featureTableIndex.setBulkBuild(true);
+			featureTableIndex.setChunkLimit(3);
+			TestCase.assertEquals(0, featureTableIndex.index());
+			TestCase.assertEquals(expectedCount, featureTableIndex.index(true));
+			TestCase.assertEquals(expected, indexRows(featureTableIndex));
+			TestCase.assertTrue(featureTableIndex.isIndexed());
+
+			FeatureTableIndexBuilder builder = new FeatureTableIndexBuilder(
+					featureTableIndex, 1);
+			TestCase.assertEquals(expectedCount, builder.build());
+			TestCase.assertEquals(expected, indexRows(featureTableIndex));
+
+			if (!expected.isEmpty()) {
+				FeatureRow row = featureDao.queryForIdRow(
+						expected.keySet().iterator().next());
+				row.setGeometry(null);
+				featureDao.update(row);
+				expectedCount--;
+				TestCase.assertEquals(expectedCount, builder.build());
+				TestCase.assertEquals(expectedCount, featureTableIndex.count());
+			}
+
+			TestGeoPackageProgress progress = new TestGeoPackageProgress();
+			progress.cancel();
+			featureTableIndex.setProgress(progress);
+			TestCase.assertEquals(0, featureTableIndex.index(true));
+			TestCase.assertEquals(expectedCount, featureTableIndex.count());
+			featureTableIndex.setProgress(null);
+		}
+
+	}
+
+	/**
+	 * Test parallel bulk builds on pooled read connections
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testParallelBuild() throws Exception {
+
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 3);
+		try {
+
+			for (String featureTable : pooled.getFeatureTables()) {
+
+				FeatureDao featureDao = pooled.getFeatureDao(featureTable);
+				FeatureTableIndex featureTableIndex = new FeatureTableIndex(
+						pooled, featureDao);
+
+				int expectedCount = featureTableIndex.index(true);
+				Map<Long, String> expected = indexRows(featureTableIndex);
+
+				featureTableIndex.setBulkBuild(true);
+				featureTableIndex.setChunkLimit(2);
+				featureTableIndex.setBuildWorkers(4);
+				TestCase.assertEquals(4, featureTableIndex.getBuildWorkers());
+				TestGeoPackageProgress progress = new TestGeoPackageProgress();
+				featureTableIndex.setProgress(progress);
+				TestCase.assertEquals(expectedCount,
+						featureTableIndex.index(true));
+				TestCase.assertEquals(featureDao.count(),
+						progress.getProgress());
+				TestCase.assertEquals(expected, indexRows(featureTableIndex));
+			}
+
+		} finally {
+			pooled.close();
+		}
+
+	}
+
+	/**
+	 * Read the geometry index rows of the table
+	 *
+	 * @param featureTableIndex
+	 *            feature table index
+	 * @return envelope values by geometry id
+	 * @throws Exception
+	 *             upon error
+	 */
+	private Map<Long, String> indexRows(FeatureTableIndex featureTableIndex)
+			throws Exception {
+		Map<Long, String> rows = new TreeMap<>();
+		CloseableIterator<GeometryIndex> iterator = featureTableIndex.query();
+		try {
+			while (iterator.hasNext()) {
+				GeometryIndex geometryIndex = iterator.next();
+				rows.put(geometryIndex.getGeomId(),
+						geometryIndex.getMinX() + "," + geometryIndex.getMaxX()
+								+ "," + geometryIndex.getMinY() + ","
+								+ geometryIndex.getMaxY() + ","
+								+ geometryIndex.getMinZ() + ","
+								+ geometryIndex.getMaxZ() + ","
+								+ geometryIndex.getMinM() + ","
+								+ geometryIndex.getMaxM());
+			}
+		} finally {
+			iterator.close();
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,241 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.attributes.AttributesDao;
+import mil.nga.geopackage.attributes.AttributesResultSet;
+import mil.nga.geopackage.attributes.AttributesRow;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test batched updates and upserts of feature and attribute rows
+ *
+ * @author osbornb
+ */
+public class FeatureBatchWriteTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Index types maintained by the batch writes
+	 */
+	private static final List<FeatureIndexType> TYPES = Arrays
+			.asList(FeatureIndexType.GEOPACKAGE, FeatureIndexType.RTREE);
+
+	/**
+	 * Test batch feature updates and upserts maintain the indexes
+	 *
+	 * @throws SQLException
+	 *             upon error
+	 */
+	@Test
+	public void testFeatureBatch() throws SQLException {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			featureDao.setBatchChunkSize(3);
+			FeatureIndexManager indexManager = new FeatureIndexManager(
+					geoPackage, featureDao);
+			try {
+
+				indexManager.index(TYPES);
+				TestCase.assertEquals(TYPES.size(),
+						indexManager.getIndexedTypes().size());
+
+				BoundingBox boundingBox = indexManager.getBoundingBox();
+				double x = boundingBox.getMaxLongitude() + 10;
+				double y = boundingBox.getMaxLatitude() + 10;
+
+				List<FeatureRow> rows = queryRows(featureDao);
+				for (FeatureRow row : rows) {
+					row.setGeometry(point(featureDao, x, y));
+				}
+				TestCase.assertEquals(rows.size(),
+						featureDao.updateBatch(rows, indexManager));
+				assertIndexed(indexManager, x, y, rows.size());
+
+				FeatureRow deletedRow = rows.remove(rows.size() - 1);
+				TestCase.assertEquals(1,
+						featureDao.deleteById(deletedRow.getId()));
+				int count = featureDao.count();
+				x += 10;
+				y += 10;
+				List<FeatureRow> upsertRows = new ArrayList<>();
+				for (FeatureRow row : rows) {
+					row.setGeometry(point(featureDao, x, y));
+					upsertRows.add(row);
+				}
+				rows.get(0).setGeometry(null);
+				FeatureRow newRow = rows.get(1).copy();
+				newRow.resetId();
+				upsertRows.add(newRow);
+				deletedRow.setGeometry(point(featureDao, x, y));
+				upsertRows.add(deletedRow);
+
+				TestCase.assertEquals(upsertRows.size(),
+						featureDao.upsertBatch(upsertRows, indexManager));
+				TestCase.assertTrue(newRow.hasId());
+				TestCase.assertEquals(count + 2, featureDao.count());
+				TestCase.assertNotNull(
+						featureDao.queryForIdRow(deletedRow.getId()));
+				TestCase.assertNull(
+						featureDao.queryForIdRow(rows.get(0).getId())
+								.getGeometry());
+				assertIndexed(indexManager, x, y, upsertRows.size() - 1);
+				assertIndexed(indexManager, x - 10, y - 10, 0);
+
+				rows.get(0).setGeometry(point(featureDao, x, y));
+				TestCase.assertEquals(1,
+						featureDao.updateBatch(rows.subList(0, 1), null));
+				TestCase.assertEquals(1, featureDao
+						.upsertBatch(rows.subList(0, 1), indexManager));
+				assertIndexed(indexManager, x, y, upsertRows.size());
+				TestCase.assertTrue(
+						featureDao.getConnection().getAutoCommit());
+
+			} finally {
+				indexManager.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Test batch attribute updates and upserts
+	 */
+	@Test
+	public void testAttributesBatch() {
+
+		for (String attributesTable : geoPackage.getAttributesTables()) {
+
+			AttributesDao attributesDao = geoPackage
+					.getAttributesDao(attributesTable);
+			attributesDao.setBatchChunkSize(2);
+			int count = attributesDao.count();
+
+			List<AttributesRow> rows = new ArrayList<>();
+			AttributesResultSet resultSet = attributesDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+					rows.add(resultSet.getRow());
+				}
+			} finally {
+				resultSet.close();
+			}
+
+			TestCase.assertEquals(count, attributesDao.updateBatch(rows));
+			TestCase.assertEquals(count, attributesDao.upsertBatch(rows));
+			TestCase.assertEquals(count, attributesDao.count());
+
+			List<AttributesRow> copies = new ArrayList<>();
+			for (AttributesRow row : rows) {
+				AttributesRow copy = row.copy();
+				copy.resetId();
+				copies.add(copy);
+			}
+			TestCase.assertEquals(count,
+					attributesDao.upsertBatch(copies.stream()));
+			TestCase.assertEquals(2 * count, attributesDao.count());
+			for (AttributesRow copy : copies) {
+				TestCase.assertTrue(copy.hasId());
+				TestCase.assertNotNull(
+						attributesDao.queryForIdRow(copy.getId()));
+			}
+
+			attributesDao.beginTransaction();
+			try {
+				TestCase.assertEquals(count,
+						attributesDao.updateBatch(copies.iterator()));
+			} finally {
+				attributesDao.endTransaction(false);
+			}
+			TestCase.assertEquals(2 * count, attributesDao.count());
+		}
+
+	}
+
+	/**
+	 * Query the feature rows with geometries, creating copies so there are at
+	 * least five
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 * @return feature rows
+	 */
+	private List<FeatureRow> queryRows(FeatureDao featureDao) {
+		List<FeatureRow> rows = new ArrayList<>();
+		FeatureResultSet resultSet = featureDao.query(
+				featureDao.getGeometryColumnName() + " IS NOT NULL", null);
+		try {
+			while (resultSet.moveToNext()) {
+				rows.add(resultSet.getRow());
+			}
+		} finally {
+			resultSet.close();
+		}
+		TestCase.assertFalse(rows.isEmpty());
+		while (rows.size() < 5) {
+			FeatureRow copy = rows.get(0).copy();
+			copy.resetId();
+			featureDao.create(copy);
+			rows.add(copy);
+		}
+		return rows;
+	}
+
+	/**
+	 * Create point geometry data
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @return geometry data
+	 */
+	private GeoPackageGeometryData point(FeatureDao featureDao, double x,
+			double y) {
+		GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+				featureDao.getGeometryColumns().getSrsId());
+		geometryData.setGeometry(new Point(x, y));
+		return geometryData;
+	}
+
+	/**
+	 * Assert the number of features indexed near the point in each index
+	 *
+	 * @param indexManager
+	 *            feature index manager
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @param expected
+	 *            expected count
+	 */
+	private void assertIndexed(FeatureIndexManager indexManager, double x,
+			double y, long expected) {
+		BoundingBox boundingBox = new BoundingBox(x - 1, y - 1, x + 1,
+				y + 1);
+		for (FeatureIndexType type : TYPES) {
+			indexManager.prioritizeQueryLocation(type);
+			TestCase.assertEquals(type.name(), expected,
+					indexManager.count(boundingBox));
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.features.user.FeatureCache;
+import mil.nga.geopackage.features.user.FeatureCacheTables;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+
+import org.junit.Test;
+
+/**
+ * Test byte budgeted feature row caches
+ *
+ * @author osbornb
+ */
+public class FeatureCacheBudgetTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test a byte budget evicts the least recently used rows
+	 */
+	@Test
+	public void testByteBudget() {
+
+		List<FeatureRow> rows = rows(largestTables().get(0));
+		TestCase.assertTrue(rows.size() > 3);
+
+		long bytes = 0;
+		for (FeatureRow row : rows.subList(0, 3)) {
+			bytes += FeatureCache.estimateBytes(row);
+		}
+
+		FeatureCache cache = new FeatureCache(100, bytes);
+		for (FeatureRow row : rows.subList(0, 3)) {
+			cache.put(row);
+		}
+		TestCase.assertEquals(3, cache.getSize());
+		TestCase.assertEquals(bytes, cache.getWeight());
+		TestCase.assertEquals(0, cache.getEvictions());
+
+		// Access the first row so the second is least recently used
+		TestCase.assertNotNull(cache.get(rows.get(0).getId()));
+		cache.put(rows.get(3));
+		TestCase.assertTrue(cache.getWeight() <= bytes);
+		TestCase.assertTrue(cache.getEvictions() > 0);
+		TestCase.assertNull(cache.get(rows.get(1).getId()));
+		TestCase.assertNotNull(cache.get(rows.get(3).getId()));
+
+		TestCase.assertEquals(2, cache.getHits());
+		TestCase.assertEquals(1, cache.getMisses());
+		TestCase.assertEquals(2 / 3.0, cache.getHitRate(), 0.0000001);
+
+		cache.clear();
+		TestCase.assertEquals(0, cache.getSize());
+		TestCase.assertEquals(0, cache.getWeight());
+		TestCase.assertEquals(0, cache.getBudget().getWeight());
+	}
+
+	/**
+	 * Test a memory budget shared across feature tables
+	 */
+	@Test
+	public void testSharedBudget() {
+
+		List<String> featureTables = largestTables();
+		TestCase.assertTrue(featureTables.size() > 1);
+		List<FeatureRow> rows1 = rows(featureTables.get(0));
+		List<FeatureRow> rows2 = rows(featureTables.get(1));
+
+		long weight = FeatureCache.estimateBytes(rows1.get(0))
+				+ FeatureCache.estimateBytes(rows2.get(0));
+		long bytes = Math.max(weight,
+				FeatureCache.estimateBytes(rows2.get(0))
+						+ FeatureCache.estimateBytes(rows2.get(1)));
+
+		FeatureCacheTables cacheTables = new FeatureCacheTables(100, bytes);
+		cacheTables.put(rows1.get(0));
+		cacheTables.put(rows2.get(0));
+		TestCase.assertEquals(weight, cacheTables.getWeight());
+		TestCase.assertEquals(weight, cacheTables.getBudget().getWeight());
+
+		// The first table row is the least recently used across both tables
+		cacheTables.put(rows2.get(1));
+		TestCase.assertTrue(cacheTables.getBudget().getWeight() <= bytes);
+		TestCase.assertNull(
+				cacheTables.get(featureTables.get(0), rows1.get(0).getId()));
+		TestCase.assertNotNull(
+				cacheTables.get(featureTables.get(1), rows2.get(1).getId()));
+		TestCase.assertTrue(cacheTables.getEvictions() > 0);
+
+		cacheTables.clear();
+		TestCase.assertEquals(0, cacheTables.getBudget().getWeight());
+		TestCase.assertEquals(0, cacheTables.getBudget().getCacheCount());
+	}
+
+	/**
+	 * Test a max size of 0 and closed caches retain no feature rows
+	 */
+	@Test
+	public void testNoCaching() {
+
+		List<String> featureTables = largestTables();
+		List<FeatureRow> rows = rows(featureTables.get(0));
+
+		FeatureCache cache = new FeatureCache(0);
+		TestCase.assertNull(cache.put(rows.get(0)));
+		TestCase.assertEquals(0, cache.getSize());
+		TestCase.assertEquals(0, cache.getWeight());
+		TestCase.assertNull(cache.get(rows.get(0).getId()));
+
+		FeatureCacheTables cacheTables = new FeatureCacheTables(100,
+				FeatureCache.estimateBytes(rows.get(0)) * 10);
+		FeatureCache tableCache = cacheTables.getCache(featureTables.get(0));
+		tableCache.put(rows.get(0));
+		TestCase.assertEquals(1, tableCache.getSize());
+
+		cacheTables.clear();
+		TestCase.assertTrue(tableCache.isClosed());
+		TestCase.assertNull(tableCache.put(rows.get(1)));
+		TestCase.assertEquals(0, tableCache.getSize());
+		TestCase.assertEquals(0, tableCache.getWeight());
+		TestCase.assertEquals(0, cacheTables.getBudget().getWeight());
+
+		cacheTables.put(rows.get(1));
+		TestCase.assertEquals(1, cacheTables.getBudget().getCacheCount());
+		TestCase.assertEquals(FeatureCache.estimateBytes(rows.get(1)),
+				cacheTables.getBudget().getWeight());
+	}
+
+	/**
+	 * Test concurrent readers and writers stay within the bounds
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testConcurrent() throws Exception {
+
+		final List<FeatureRow> rows = rows(largestTables().get(0));
+		final FeatureCache cache = new FeatureCache(rows.size() / 2 + 1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				final int offset = thread;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 2000; i++) {
+						FeatureRow row = rows.get((i + offset) % rows.size());
+						if (cache.get(row.getId()) == null) {
+							cache.put(row);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		TestCase.assertTrue(cache.getSize() <= cache.getMaxSize());
+		long weight = 0;
+		for (FeatureRow row : rows) {
+			if (cache.get(row.getId()) != null) {
+				weight += FeatureCache.estimateBytes(row);
+			}
+		}
+		TestCase.assertEquals(weight, cache.getWeight());
+		TestCase.assertEquals(8 * 2000 + rows.size(),
+				cache.getHits() + cache.getMisses());
+	}
+
+	/**
+	 * Get the feature tables ordered by descending row count
+	 *
+	 * @return feature tables
+	 */
+	private List<String> largestTables() {
+		List<String> featureTables = new ArrayList<>(
+				geoPackage.getFeatureTables());
+		featureTables.sort(Comparator.comparingInt(
+				(String table) -> geoPackage.getFeatureDao(table).count())
+				.reversed());
+		return featureTables;
+	}
+
+	/**
+	 * Query the feature rows of the table, first creating rows so the table
+	 * has at least 10
+	 *
+	 * @param featureTable
+	 *            feature table
+	 * @return feature rows
+	 */
+	private List<FeatureRow> rows(String featureTable) {
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		FeatureRow first = featureDao.queryForIdRow(
+				featureDao.getDb().min(featureTable,
+						featureDao.getTable().getPkColumn().getName(), null,
+						null));
+		for (int count = featureDao.count(); count < 10; count++) {
+			FeatureRow copy = first.copy();
+			copy.resetId();
+			featureDao.create(copy);
+		}
+		List<FeatureRow> rows = new ArrayList<>();
+		FeatureResultSet resultSet = featureDao.queryForAll();
+		try {
+			while (resultSet.moveToNext()) {
+				rows.add(resultSet.getRow());
+			}
+		} finally {
+			resultSet.close();
+		}
+		return rows;
+	}
+
+}
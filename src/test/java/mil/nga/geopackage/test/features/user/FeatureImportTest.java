@@ -85,4 +85,17 @@ public class FeatureImportTest extends ImportGeoPackageTestCase {
 
 	}
 
+	/**
+	 * Test reusable row iteration
+	 * 
+	 * @throws SQLException
+	 *             upon error
+	 */
+	@Test
+	public void testReuseRow() throws SQLException {
+
+		FeatureUtils.testReuseRow(geoPackage);
+
+	}
+
 }
@@ -0,0 +1,160 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureIngestPipeline;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.io.TestGeoPackageProgress;
+import mil.nga.sf.Point;
+
+import org.junit.Test;
+
+/**
+ * Test the parallel feature ingest pipeline
+ *
+ * @author osbornb
+ */
+public class FeatureIngestPipelineTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Number of features to ingest
+	 */
+	private static final int FEATURES = 1000;
+
+	@Override
+	public boolean allowEmptyFeatures() {
+		return false;
+	}
+
+	/**
+	 * Test ingesting features with progress
+	 */
+	@Test
+	public void testIngest() {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			int countBefore = featureDao.count();
+
+			FeatureIngestPipeline pipeline = new FeatureIngestPipeline(
+					featureDao, 4);
+			pipeline.setBatchSize(50);
+			pipeline.setQueueCapacity(100);
+			pipeline.setBuildEnvelopes(true);
+			TestGeoPackageProgress progress = new TestGeoPackageProgress();
+			pipeline.setProgress(progress);
+
+			int count = pipeline.ingest(IntStream.range(0, FEATURES).iterator(),
+					i -> newRow(featureDao, i));
+
+			TestCase.assertEquals(FEATURES, count);
+			TestCase.assertEquals(FEATURES, progress.getProgress());
+			TestCase.assertEquals(countBefore + FEATURES, featureDao.count());
+
+		}
+
+	}
+
+	/**
+	 * Test ingesting features with an NGA table index update
+	 */
+	@Test
+	public void testIngestIndex() {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+
+		FeatureIndexManager indexManager = new FeatureIndexManager(geoPackage,
+				featureDao);
+		try {
+			indexManager.index(FeatureIndexType.GEOPACKAGE);
+			long indexedBefore = indexManager.getFeatureTableIndex().count();
+
+			FeatureIngestPipeline pipeline = new FeatureIngestPipeline(
+					featureDao, 3);
+			pipeline.setBatchSize(64);
+			pipeline.setIndexManager(indexManager);
+
+			int count = pipeline.ingest(IntStream.range(0, FEATURES).iterator(),
+					i -> newRow(featureDao, i));
+
+			TestCase.assertEquals(FEATURES, count);
+			TestCase.assertEquals(indexedBefore + FEATURES,
+					indexManager.getFeatureTableIndex().count());
+			TestCase.assertEquals(featureDao.count(),
+					indexManager.getFeatureTableIndex().count());
+		} finally {
+			indexManager.close();
+		}
+
+	}
+
+	/**
+	 * Test canceling through progress and failing row builders
+	 */
+	@Test
+	public void testCancelAndFailure() {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		int countBefore = featureDao.count();
+
+		FeatureIngestPipeline pipeline = new FeatureIngestPipeline(featureDao,
+				2);
+		pipeline.setBatchSize(50);
+		pipeline.setQueueCapacity(10);
+		TestGeoPackageProgress progress = new TestGeoPackageProgress();
+		progress.setMax(200);
+		pipeline.setProgress(progress);
+
+		int count = pipeline.ingest(IntStream.range(0, FEATURES).iterator(),
+				i -> newRow(featureDao, i));
+		TestCase.assertEquals(200, count);
+		TestCase.assertEquals(countBefore + 200, featureDao.count());
+
+		pipeline.setProgress(null);
+		try {
+			pipeline.ingest(IntStream.range(0, FEATURES).iterator(), i -> {
+				if (i == 500) {
+					throw new IllegalStateException("Failed row " + i);
+				}
+				return newRow(featureDao, i);
+			});
+			TestCase.fail("Failed row builder did not fail ingest");
+		} catch (GeoPackageException e) {
+			TestCase.assertTrue(
+					e.getCause() instanceof IllegalStateException);
+		}
+		TestCase.assertTrue(featureDao.count() < countBefore + 200 + FEATURES);
+
+	}
+
+	/**
+	 * Create a new point row
+	 *
+	 * @param featureDao
+	 *            feature dao
+	 * @param i
+	 *            feature number
+	 * @return feature row
+	 */
+	private static FeatureRow newRow(FeatureDao featureDao, int i) {
+
+		FeatureRow row = featureDao.newRow();
+		GeoPackageGeometryData geometry = new GeoPackageGeometryData(
+				featureDao.getGeometryColumns().getSrsId());
+		geometry.setGeometry(new Point(i % 360 - 180, i % 180 - 90));
+		row.setGeometry(geometry);
+		return row;
+
+	}
+
+}
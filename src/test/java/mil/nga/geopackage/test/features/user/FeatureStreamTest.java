@@ -0,0 +1,261 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.features.index.FeatureIndexListResults;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.ManualFeatureQuery;
+import mil.nga.geopackage.features.user.ManualFeatureQueryResults;
+import mil.nga.geopackage.manager.GeoPackageManager;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+
+import org.junit.Test;
+
+/**
+ * Test feature row streams
+ *
+ * @author osbornb
+ */
+public class FeatureStreamTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test sequential feature row streams
+	 */
+	@Test
+	public void testStream() {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			createRows(featureDao);
+			List<Long> ids = ids(featureDao);
+
+			try (Stream<FeatureRow> rows = featureDao.stream(null, null, 3)) {
+				TestCase.assertEquals(ids, rows.map(FeatureRow::getId)
+						.collect(Collectors.toList()));
+			}
+
+			try (Stream<FeatureRow> rows = featureDao.stream()) {
+				Optional<FeatureRow> first = rows.findFirst();
+				TestCase.assertTrue(first.isPresent());
+				TestCase.assertEquals(ids.get(0).longValue(),
+						first.get().getId());
+			}
+
+			try (Stream<FeatureRow> rows = featureDao.stream(null, null, 2)) {
+				TestCase.assertEquals(ids.subList(0, 5), rows.limit(5)
+						.map(FeatureRow::getId).collect(Collectors.toList()));
+			}
+
+			String idColumn = featureDao.getTable().getPkColumn().getName();
+			String where = idColumn + " > ?";
+			String[] whereArgs = new String[] { String.valueOf(ids.get(2)) };
+			try (Stream<FeatureRow> rows = featureDao.stream(where,
+					whereArgs)) {
+				TestCase.assertEquals(ids.subList(3, ids.size()),
+						rows.map(FeatureRow::getId)
+								.collect(Collectors.toList()));
+			}
+
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try (Stream<FeatureRow> rows = resultSet.stream()) {
+				TestCase.assertEquals(ids.size(), rows.toArray().length);
+			}
+
+			resultSet = featureDao.queryForAll();
+			try (Stream<FeatureRow> rows = resultSet.stream()) {
+				TestCase.assertEquals(2, rows.limit(2).count());
+			}
+
+			resultSet = featureDao.queryForAll();
+			resultSet.setReuseRow(true);
+			try (Stream<FeatureRow> rows = resultSet.stream()) {
+				List<FeatureRow> streamRows = rows.collect(Collectors.toList());
+				TestCase.assertEquals(ids.size(), streamRows.size());
+				TestCase.assertNotSame(streamRows.get(0), streamRows.get(1));
+				TestCase.assertEquals(ids, streamRows.stream()
+						.map(FeatureRow::getId).collect(Collectors.toList()));
+			}
+
+			FeatureIndexListResults listResults = new FeatureIndexListResults();
+			try (Stream<FeatureRow> rows = featureDao.stream()) {
+				rows.forEach(listResults::addRow);
+			}
+			try (Stream<FeatureRow> rows = listResults.stream()) {
+				TestCase.assertEquals(ids, rows.map(FeatureRow::getId)
+						.collect(Collectors.toList()));
+			}
+		}
+
+	}
+
+	/**
+	 * Test parallel feature row streams split by id range
+	 */
+	@Test
+	public void testParallelStream() {
+
+		List<String> featureTables = geoPackage.getFeatureTables();
+		for (String featureTable : featureTables) {
+			createRows(geoPackage.getFeatureDao(featureTable));
+		}
+
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 3);
+		try {
+
+			for (String featureTable : featureTables) {
+
+				FeatureDao featureDao = pooled.getFeatureDao(featureTable);
+				List<Long> ids = ids(featureDao);
+
+				try (Stream<FeatureRow> rows = featureDao.stream(null, null,
+						2)) {
+					List<Long> streamIds = rows.parallel()
+							.map(FeatureRow::getId)
+							.collect(Collectors.toList());
+					TestCase.assertEquals(ids, streamIds);
+				}
+
+				try (Stream<FeatureRow> rows = featureDao.stream(null, null,
+						2)) {
+					List<Long> streamIds = rows.parallel().unordered()
+							.map(FeatureRow::getId)
+							.collect(Collectors.toList());
+					Collections.sort(streamIds);
+					TestCase.assertEquals(ids, streamIds);
+				}
+
+				try (Stream<FeatureRow> rows = featureDao.stream(null, null,
+						2)) {
+					Optional<FeatureRow> first = rows.parallel().findFirst();
+					TestCase.assertEquals(ids.get(0).longValue(),
+							first.get().getId());
+				}
+
+				ManualFeatureQuery manualQuery = new ManualFeatureQuery(
+						featureDao);
+				BoundingBox boundingBox = manualQuery.getBoundingBox();
+				if (boundingBox != null) {
+					ManualFeatureQueryResults results = manualQuery
+							.query(boundingBox);
+					results.setChunkLimit(2);
+					TestCase.assertEquals(2, results.getChunkLimit());
+					try (Stream<FeatureRow> rows = results.stream()) {
+						TestCase.assertEquals(results.getFeatureIds(),
+								rows.parallel().map(FeatureRow::getId)
+										.collect(Collectors.toList()));
+					}
+					try (Stream<FeatureRow> rows = results.stream()) {
+						TestCase.assertEquals(results.count(),
+								rows.parallel().count());
+					}
+				}
+			}
+
+		} finally {
+			pooled.close();
+		}
+
+	}
+
+	/**
+	 * Test short circuiting parallel streams with more worker threads than
+	 * pooled read connections
+	 *
+	 * @throws Exception
+	 *             upon error
+	 */
+	@Test
+	public void testParallelShortCircuit() throws Exception {
+
+		String featureTable = geoPackage.getFeatureTables().get(0);
+		FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+		createRows(featureDao);
+		FeatureRow first = featureDao.queryForIdRow(ids(featureDao).get(0));
+		featureDao.insertBatch(IntStream.range(0, 30000).mapToObj(i -> {
+			FeatureRow copy = first.copy();
+			copy.resetId();
+			return copy;
+		}));
+		List<Long> ids = ids(featureDao);
+		final long matchId = ids.get(ids.size() / 3);
+
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 2);
+		ForkJoinPool workers = new ForkJoinPool(8);
+		try {
+			final FeatureDao pooledDao = pooled.getFeatureDao(featureTable);
+			Future<Optional<FeatureRow>> future = workers.submit(() -> {
+				try (Stream<FeatureRow> rows = pooledDao.stream(null, null,
+						100)) {
+					return rows.parallel()
+							.filter(row -> row.getId() % 1000 == matchId % 1000
+									&& row.getId() >= matchId)
+							.findFirst();
+				}
+			});
+			Optional<FeatureRow> found = future.get(60, TimeUnit.SECONDS);
+			TestCase.assertTrue(found.isPresent());
+			TestCase.assertEquals(matchId, found.get().getId());
+		} finally {
+			workers.shutdownNow();
+			pooled.close();
+		}
+
+	}
+
+	/**
+	 * Create copies of a feature row so the table has at least 20 rows
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 */
+	private void createRows(FeatureDao featureDao) {
+		FeatureRow first = featureDao.queryForIdRow(featureDao.getDb().min(
+				featureDao.getTableName(),
+				featureDao.getTable().getPkColumn().getName(), null, null));
+		for (int count = featureDao.count(); count < 20; count++) {
+			FeatureRow copy = first.copy();
+			copy.resetId();
+			featureDao.create(copy);
+		}
+	}
+
+	/**
+	 * Query the feature ids in id order
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 * @return feature ids
+	 */
+	private List<Long> ids(FeatureDao featureDao) {
+		List<Long> ids = new ArrayList<>();
+		FeatureResultSet resultSet = featureDao.queryForAll();
+		try {
+			while (resultSet.moveToNext()) {
+				ids.add(resultSet.getId());
+			}
+		} finally {
+			resultSet.close();
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+}
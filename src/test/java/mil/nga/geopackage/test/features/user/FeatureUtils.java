@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -1405,4 +1406,97 @@ public class FeatureUtils {
 		}
 	}
 
+	/**
+	 * Test reusable row iteration and primitive getters
+	 * 
+	 * @param geoPackage
+	 *            GeoPackage
+	 * @throws SQLException
+	 *             upon error
+	 */
+	public static void testReuseRow(GeoPackage geoPackage)
+			throws SQLException {
+
+		GeometryColumnsDao geometryColumnsDao = geoPackage
+				.getGeometryColumnsDao();
+
+		if (geometryColumnsDao.isTableExists()) {
+			List<GeometryColumns> results = geometryColumnsDao.queryForAll();
+
+			for (GeometryColumns geometryColumns : results) {
+
+				FeatureDao dao = geoPackage.getFeatureDao(geometryColumns);
+				TestCase.assertNotNull(dao);
+				FeatureTable table = dao.getTable();
+				String pkColumnName = table.getPkColumn().getName();
+				int pkIndex = table.getPkColumnIndex();
+
+				FeatureResultSet cursor = dao.queryForAll();
+				FeatureResultSet reuseCursor = dao.queryForAll();
+				reuseCursor.setReuseRow(true);
+				TestCase.assertTrue(reuseCursor.isReuseRow());
+				try {
+					FeatureRow previousRow = null;
+					Object[] values = null;
+					while (cursor.moveToNext()) {
+						TestCase.assertTrue(reuseCursor.moveToNext());
+
+						FeatureRow row = cursor.getRow();
+						FeatureRow reuseRow = reuseCursor.getRow();
+						if (previousRow != null) {
+							TestCase.assertSame(previousRow, reuseRow);
+						}
+						previousRow = reuseRow;
+
+						TestCase.assertEquals(row.getId(), reuseRow.getId());
+						TestCase.assertEquals(row.getId(),
+								reuseCursor.getId());
+						TestCase.assertEquals(row.getId(),
+								reuseCursor.getLong(pkColumnName));
+						TestCase.assertEquals(row.getId(),
+								reuseCursor.getInt(pkColumnName));
+						TestCase.assertEquals((double) row.getId(),
+								reuseCursor.getDouble(pkColumnName));
+						TestCase.assertEquals(row.getId(),
+								((Number) reuseCursor.getValues(values)[pkIndex])
+										.longValue());
+						values = reuseCursor.getValues(values);
+						TestCase.assertEquals(table.columnCount(),
+								values.length);
+
+						for (int i = 0; i < row.columnCount(); i++) {
+							TestCase.assertEquals(row.getRowColumnType(i),
+									reuseRow.getRowColumnType(i));
+							Object value = row.getValue(i);
+							Object reuseValue = reuseRow.getValue(i);
+							if (value instanceof byte[]) {
+								TestCase.assertTrue(Arrays.equals(
+										(byte[]) value, (byte[]) reuseValue));
+							} else if (i != table.getGeometryColumnIndex()) {
+								TestCase.assertEquals(value, reuseValue);
+							}
+						}
+
+						byte[] geometryBytes = reuseCursor
+								.getBlob(dao.getGeometryColumnName());
+						if (geometryBytes == null) {
+							TestCase.assertNull(reuseRow.getGeometry());
+							TestCase.assertNull(
+									reuseCursor.getGeometryEnvelope());
+						} else {
+							TestCase.assertNotNull(reuseRow.getGeometry());
+							TestCase.assertEquals(
+									row.getGeometryEnvelope(),
+									reuseCursor.getGeometryEnvelope());
+						}
+					}
+					TestCase.assertFalse(reuseCursor.moveToNext());
+				} finally {
+					cursor.close();
+					reuseCursor.close();
+				}
+			}
+		}
+	}
+
 }
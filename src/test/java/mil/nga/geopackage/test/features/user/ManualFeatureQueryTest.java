@@ -0,0 +1,277 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.ManualFeatureQuery;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.manager.GeoPackageManager;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+
+import org.junit.Test;
+
+/**
+ * Test manual feature queries scanning geometry blob headers
+ *
+ * @author osbornb
+ */
+public class ManualFeatureQueryTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test header scans match full geometry scans
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testHeaderScan() throws IOException {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			String idColumn = featureDao.getTable().getPkColumn().getName();
+			createEnvelopeVariants(featureDao);
+
+			ManualFeatureQuery headerQuery = new ManualFeatureQuery(featureDao);
+			headerQuery.setChunkLimit(3);
+			headerQuery.setMemoizeEnvelopes(true);
+			ManualFeatureQuery fullQuery = new ManualFeatureQuery(featureDao);
+			fullQuery.setHeaderScan(false);
+			TestCase.assertTrue(headerQuery.isHeaderScan());
+			TestCase.assertFalse(fullQuery.isHeaderScan());
+
+			BoundingBox boundingBox = fullQuery.getBoundingBox();
+			TestCase.assertNotNull(boundingBox);
+			TestCase.assertEquals(boundingBox, headerQuery.getBoundingBox());
+			int memoized = headerQuery.getMemoizedEnvelopeCount();
+			TestCase.assertTrue(memoized > 0);
+
+			BoundingBox halfBoundingBox = new BoundingBox(
+					boundingBox.getMinLongitude(), boundingBox.getMinLatitude(),
+					(boundingBox.getMinLongitude()
+							+ boundingBox.getMaxLongitude()) / 2,
+					(boundingBox.getMinLatitude()
+							+ boundingBox.getMaxLatitude()) / 2);
+
+			for (BoundingBox queryBoundingBox : new BoundingBox[] {
+					boundingBox, halfBoundingBox }) {
+				TestCase.assertEquals(
+						fullQuery.query(queryBoundingBox).getFeatureIds(),
+						headerQuery.query(queryBoundingBox).getFeatureIds());
+				TestCase.assertEquals(fullQuery.count(queryBoundingBox),
+						headerQuery.count(queryBoundingBox));
+			}
+
+			String where = idColumn + " > ?";
+			String[] whereArgs = new String[] { "1" };
+			TestCase.assertEquals(
+					fullQuery.query(boundingBox, where, whereArgs)
+							.getFeatureIds(),
+					headerQuery.query(boundingBox, where, whereArgs)
+							.getFeatureIds());
+
+			TestCase.assertEquals(memoized,
+					headerQuery.getMemoizedEnvelopeCount());
+			headerQuery.clearEnvelopes();
+			TestCase.assertEquals(0, headerQuery.getMemoizedEnvelopeCount());
+			headerQuery.setMemoizeEnvelopes(false);
+			headerQuery.getBoundingBox();
+			TestCase.assertEquals(0, headerQuery.getMemoizedEnvelopeCount());
+		}
+
+	}
+
+	/**
+	 * Test parallel id range scans match sequential scans
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testParallelScan() throws IOException {
+
+		List<String> featureTables = geoPackage.getFeatureTables();
+		for (String featureTable : featureTables) {
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			for (int i = 0; i < 10; i++) {
+				createEnvelopeVariants(featureDao);
+			}
+		}
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 3);
+		try {
+
+			TestCase.assertNotNull(pooled.getConnection().getReaderPool());
+
+			for (String featureTable : featureTables) {
+
+				FeatureDao featureDao = pooled.getFeatureDao(featureTable);
+
+				ManualFeatureQuery sequentialQuery = new ManualFeatureQuery(
+						featureDao);
+				ManualFeatureQuery parallelQuery = new ManualFeatureQuery(
+						featureDao);
+				parallelQuery.setParallelism(4);
+				parallelQuery.setChunkLimit(2);
+				parallelQuery.setForkJoinPool(forkJoinPool);
+				TestCase.assertEquals(4, parallelQuery.getParallelism());
+				TestCase.assertSame(forkJoinPool,
+						parallelQuery.getForkJoinPool());
+
+				BoundingBox boundingBox = sequentialQuery.getBoundingBox();
+				TestCase.assertEquals(boundingBox,
+						parallelQuery.getBoundingBox());
+
+				List<Long> featureIds = sequentialQuery.query(boundingBox)
+						.getFeatureIds();
+				TestCase.assertTrue(featureIds.size() > 20);
+				TestCase.assertEquals(featureIds,
+						parallelQuery.query(boundingBox).getFeatureIds());
+				TestCase.assertEquals(featureIds.size(),
+						parallelQuery.count(boundingBox));
+
+				TestCase.assertTrue(parallelQuery.isOrdered());
+				parallelQuery.setOrdered(false);
+				List<Long> unorderedIds = new ArrayList<>(
+						parallelQuery.query(boundingBox).getFeatureIds());
+				Collections.sort(unorderedIds);
+				TestCase.assertEquals(featureIds, unorderedIds);
+
+				String idColumn = featureDao.getTable().getPkColumn()
+						.getName();
+				String where = idColumn + " > ?";
+				String[] whereArgs = new String[] {
+						String.valueOf(featureIds.get(featureIds.size() / 2)) };
+				parallelQuery.setOrdered(true);
+				TestCase.assertEquals(
+						sequentialQuery.query(boundingBox, where, whereArgs)
+								.getFeatureIds(),
+						parallelQuery.query(boundingBox, where, whereArgs)
+								.getFeatureIds());
+			}
+
+		} finally {
+			pooled.close();
+			forkJoinPool.shutdown();
+		}
+
+	}
+
+	/**
+	 * Test parallel scans without a fork-join pool run on a dedicated pool
+	 * limited to the parallelism
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testParallelism() throws IOException {
+
+		List<String> featureTables = geoPackage.getFeatureTables();
+		for (String featureTable : featureTables) {
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			for (int i = 0; i < 10; i++) {
+				createEnvelopeVariants(featureDao);
+			}
+		}
+
+		GeoPackage pooled = GeoPackageManager
+				.open(new File(geoPackage.getPath()), 8);
+		try {
+
+			GeoPackageConnectionPool readerPool = pooled.getConnection()
+					.getReaderPool();
+			TestCase.assertNotNull(readerPool);
+
+			for (String featureTable : featureTables) {
+
+				FeatureDao featureDao = pooled.getFeatureDao(featureTable);
+
+				ManualFeatureQuery sequentialQuery = new ManualFeatureQuery(
+						featureDao);
+				ManualFeatureQuery parallelQuery = new ManualFeatureQuery(
+						featureDao);
+				parallelQuery.setParallelism(2);
+				parallelQuery.setChunkLimit(1);
+				TestCase.assertNull(parallelQuery.getForkJoinPool());
+
+				BoundingBox boundingBox = sequentialQuery.getBoundingBox();
+				TestCase.assertEquals(boundingBox,
+						parallelQuery.getBoundingBox());
+				List<Long> featureIds = sequentialQuery.query(boundingBox)
+						.getFeatureIds();
+				TestCase.assertEquals(featureIds,
+						parallelQuery.query(boundingBox).getFeatureIds());
+				TestCase.assertEquals(featureIds.size(),
+						parallelQuery.count(boundingBox));
+			}
+
+			TestCase.assertTrue(readerPool.getConnectionCount() <= 2);
+
+		} finally {
+			pooled.close();
+		}
+
+	}
+
+	/**
+	 * Create copies of a feature row with and without a header envelope and
+	 * with a null geometry
+	 *
+	 * @param featureDao
+	 *            feature DAO
+	 * @throws IOException
+	 *             upon error
+	 */
+	private void createEnvelopeVariants(FeatureDao featureDao)
+			throws IOException {
+
+		FeatureRow first = null;
+		FeatureResultSet resultSet = featureDao.query(
+				featureDao.getGeometryColumnName() + " IS NOT NULL", null,
+				null, null, featureDao.getTable().getPkColumn().getName(), "1");
+		try {
+			TestCase.assertTrue(resultSet.moveToNext());
+			first = resultSet.getRow();
+		} finally {
+			resultSet.close();
+		}
+		GeoPackageGeometryData geometryData = first.getGeometry();
+
+		FeatureRow withEnvelope = first.copy();
+		withEnvelope.resetId();
+		GeoPackageGeometryData envelopeData = new GeoPackageGeometryData(
+				geometryData.getSrsId());
+		envelopeData.setGeometry(geometryData.getGeometry());
+		envelopeData.setEnvelope(geometryData.getOrBuildEnvelope());
+		withEnvelope.setGeometry(envelopeData);
+		featureDao.create(withEnvelope);
+
+		FeatureRow withoutEnvelope = first.copy();
+		withoutEnvelope.resetId();
+		GeoPackageGeometryData noEnvelopeData = new GeoPackageGeometryData(
+				geometryData.getSrsId());
+		noEnvelopeData.setGeometry(geometryData.getGeometry());
+		withoutEnvelope.setGeometry(noEnvelopeData);
+		featureDao.create(withoutEnvelope);
+
+		FeatureRow nullGeometry = first.copy();
+		nullGeometry.resetId();
+		nullGeometry.setGeometry(null);
+		featureDao.create(nullGeometry);
+	}
+
+}
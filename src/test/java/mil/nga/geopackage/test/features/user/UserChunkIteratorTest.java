@@ -0,0 +1,105 @@
+package mil.nga.geopackage.test.features.user;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.user.UserChunkIterator;
+
+import org.junit.Test;
+
+/**
+ * Test keyset paginated chunk iteration
+ *
+ * @author osbornb
+ */
+public class UserChunkIteratorTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test chunk iteration over all rows and matching rows
+	 */
+	@Test
+	public void testChunkIterator() {
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			String idColumn = featureDao.getTable().getPkColumn().getName();
+
+			List<Long> ids = ids(featureDao.queryForAll());
+			Collections.sort(ids);
+
+			// Delete a row to leave a gap in the ids
+			if (ids.size() > 2) {
+				featureDao.deleteById(ids.remove(1));
+			}
+
+			for (int limit = 1; limit <= ids.size() + 1; limit += 3) {
+				UserChunkIterator<FeatureResultSet> chunks = featureDao
+						.chunkIterator(limit);
+				List<Long> chunkIds = new ArrayList<>();
+				while (chunks.hasNext()) {
+					List<Long> chunk = ids(chunks.next());
+					TestCase.assertTrue(chunk.size() <= limit);
+					chunkIds.addAll(chunk);
+				}
+				TestCase.assertEquals(ids, chunkIds);
+				TestCase.assertTrue(
+						chunks.getChunks() >= Math.ceil(ids.size() / (double) limit));
+			}
+
+			if (!ids.isEmpty()) {
+
+				long maxId = ids.get(ids.size() / 2);
+				String where = idColumn + " <= ?";
+				String[] whereArgs = new String[] { String.valueOf(maxId) };
+				UserChunkIterator<FeatureResultSet> chunks = featureDao
+						.chunkIterator(where, whereArgs, 2);
+				List<Long> chunkIds = new ArrayList<>();
+				while (chunks.hasNext()) {
+					chunkIds.addAll(ids(chunks.next()));
+				}
+				TestCase.assertEquals(ids.subList(0, ids.size() / 2 + 1),
+						chunkIds);
+
+				List<Long> keysetIds = new ArrayList<>();
+				long afterId = Long.MIN_VALUE;
+				List<Long> chunk;
+				do {
+					chunk = ids(featureDao.queryForKeysetChunk(afterId, 3));
+					if (!chunk.isEmpty()) {
+						afterId = chunk.get(chunk.size() - 1);
+						keysetIds.addAll(chunk);
+					}
+				} while (chunk.size() == 3);
+				TestCase.assertEquals(ids, keysetIds);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Read the ids of the result and close it
+	 *
+	 * @param resultSet
+	 *            result set
+	 * @return ids
+	 */
+	private static List<Long> ids(FeatureResultSet resultSet) {
+		List<Long> ids = new ArrayList<>();
+		try {
+			while (resultSet.moveToNext()) {
+				ids.add(resultSet.getId());
+			}
+		} finally {
+			resultSet.close();
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,199 @@
+package mil.nga.geopackage.test.geom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
+import mil.nga.geopackage.geom.ByteBufferReader;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.LazyGeoPackageGeometryData;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.util.ByteReader;
+import mil.nga.sf.wkb.GeometryReader;
+
+import org.junit.Test;
+
+/**
+ * Test lazily decoded GeoPackage Geometry Data
+ *
+ * @author osbornb
+ */
+public class LazyGeoPackageGeometryDataTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test lazy geometry data matches eagerly decoded geometry data
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testLazyGeometryData() throws IOException {
+
+		int geometries = 0;
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+
+					GeoPackageGeometryData geometryData = resultSet
+							.getGeometry();
+					if (geometryData == null) {
+						continue;
+					}
+					geometries++;
+
+					TestCase.assertTrue(
+							geometryData instanceof LazyGeoPackageGeometryData);
+					LazyGeoPackageGeometryData lazy = (LazyGeoPackageGeometryData) geometryData;
+					byte[] bytes = lazy.getBytes();
+					GeoPackageGeometryData eager = new GeoPackageGeometryData(
+							bytes);
+
+					// Header values without decoding the geometry
+					TestCase.assertEquals(eager.isEmpty(), lazy.isDecoded());
+					TestCase.assertEquals(eager.getSrsId(), lazy.getSrsId());
+					TestCase.assertEquals(eager.isEmpty(), lazy.isEmpty());
+					TestCase.assertEquals(eager.isExtended(),
+							lazy.isExtended());
+					TestCase.assertEquals(eager.getByteOrder(),
+							lazy.getByteOrder());
+					TestCase.assertEquals(eager.getEnvelope(),
+							lazy.getEnvelope());
+					TestCase.assertEquals(eager.getWkbGeometryIndex(),
+							lazy.getWkbGeometryIndex());
+					TestCase.assertTrue(Arrays.equals(eager.getHeaderBytes(),
+							lazy.getHeaderBytes()));
+					TestCase.assertTrue(Arrays.equals(eager.getWkbBytes(),
+							lazy.getWkbBytes()));
+					TestCase.assertEquals(eager.getWkbByteBuffer(),
+							lazy.getWkbByteBuffer());
+					TestCase.assertEquals(eager.isEmpty(), lazy.isDecoded());
+
+					// Raw bytes without copying
+					TestCase.assertSame(bytes, lazy.toBytes());
+					TestCase.assertEquals(bytes.length,
+							lazy.getByteBuffer().remaining());
+					TestCase.assertFalse(lazy.isModified());
+
+					// Decoded on access
+					TestCase.assertEquals(eager.getGeometry(),
+							lazy.getGeometry());
+					TestCase.assertTrue(lazy.isDecoded());
+					TestCase.assertEquals(eager.getOrBuildEnvelope(),
+							lazy.getOrBuildEnvelope());
+
+					// Accessed geometries are written as they may be modified
+					TestCase.assertTrue(Arrays.equals(eager.toBytes(),
+							lazy.toBytes()));
+					bytes = lazy.getBytes();
+
+					// Modifications are written
+					int srsId = eager.getSrsId() + 1;
+					eager.setSrsId(srsId);
+					lazy.setSrsId(srsId);
+					TestCase.assertTrue(lazy.isModified());
+					byte[] modified = lazy.toBytes();
+					TestCase.assertNotSame(bytes, modified);
+					TestCase.assertTrue(Arrays.equals(eager.toBytes(), modified));
+					TestCase.assertFalse(lazy.isModified());
+					TestCase.assertEquals(srsId,
+							new LazyGeoPackageGeometryData(modified).getSrsId());
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+
+		TestCase.assertTrue(geometries > 0);
+	}
+
+	/**
+	 * Test lazy geometry data read from direct and read only byte buffers
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testByteBuffer() throws IOException {
+
+		int geometries = 0;
+
+		for (String featureTable : geoPackage.getFeatureTables()) {
+
+			FeatureDao featureDao = geoPackage.getFeatureDao(featureTable);
+			FeatureResultSet resultSet = featureDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+
+					ByteBuffer blob = resultSet.getBlobByteBuffer(
+							featureDao.getGeometryColumnName());
+					if (blob == null) {
+						continue;
+					}
+					geometries++;
+					TestCase.assertTrue(blob.isReadOnly());
+
+					byte[] bytes = new byte[blob.remaining()];
+					blob.duplicate().get(bytes);
+					GeoPackageGeometryData eager = new GeoPackageGeometryData(
+							bytes);
+
+					// Direct buffer offset within a larger buffer
+					ByteBuffer direct = ByteBuffer
+							.allocateDirect(bytes.length + 3);
+					direct.position(3);
+					direct.put(bytes);
+					direct.position(3);
+
+					for (ByteBuffer buffer : new ByteBuffer[] { blob,
+							direct }) {
+
+						LazyGeoPackageGeometryData lazy = new LazyGeoPackageGeometryData(
+								buffer);
+						TestCase.assertEquals(eager.getSrsId(),
+								lazy.getSrsId());
+						TestCase.assertEquals(eager.getEnvelope(),
+								lazy.getEnvelope());
+						TestCase.assertEquals(eager.getWkbByteBuffer(),
+								lazy.getWkbByteBuffer());
+						TestCase.assertEquals(eager.getHeaderByteBuffer(),
+								lazy.getHeaderByteBuffer());
+						TestCase.assertEquals(buffer, lazy.getByteBuffer());
+						TestCase.assertEquals(eager.getGeometry(),
+								lazy.getGeometry());
+						TestCase.assertTrue(
+								Arrays.equals(bytes, lazy.getBytes()));
+						TestCase.assertTrue(
+								Arrays.equals(eager.toBytes(), lazy.toBytes()));
+					}
+					TestCase.assertEquals(3, direct.position());
+
+					// Buffer reader matches the byte array reader
+					if (!eager.isEmpty()) {
+						ByteReader arrayReader = new ByteReader(
+								eager.getWkbBytes());
+						ByteBufferReader bufferReader = new ByteBufferReader(
+								eager.getWkbByteBuffer());
+						TestCase.assertEquals(
+								GeometryReader.readGeometry(arrayReader),
+								GeometryReader.readGeometry(bufferReader));
+						TestCase.assertEquals(arrayReader.getNextByte(),
+								bufferReader.getNextByte());
+						TestCase.assertEquals(0, bufferReader.getRemaining());
+					}
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+
+		TestCase.assertTrue(geometries > 0);
+	}
+
+}
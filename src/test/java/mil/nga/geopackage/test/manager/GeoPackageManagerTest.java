@@ -1,18 +1,39 @@
 package mil.nga.geopackage.test.manager;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.attributes.AttributesColumn;
+import mil.nga.geopackage.attributes.AttributesDao;
+import mil.nga.geopackage.attributes.AttributesRow;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.db.GeoPackageMemoryReplica;
+import mil.nga.geopackage.db.GeoPackageOpenOptions;
+import mil.nga.geopackage.db.GeoPackageOpenProfile;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureResultSet;
 import mil.nga.geopackage.io.GeoPackageIOUtils;
 import mil.nga.geopackage.manager.GeoPackageManager;
 import mil.nga.geopackage.test.BaseTestCase;
 import mil.nga.geopackage.test.TestConstants;
+import mil.nga.geopackage.test.TestSetupTeardown;
 import mil.nga.geopackage.test.TestUtils;
 
 import org.junit.Before;
@@ -271,4 +292,405 @@ public class GeoPackageManagerTest extends BaseTestCase {
 		assertTrue(currentMemory <= 10 * initialMemory);
 	}
 
+	/**
+	 * Test opening a database with pooled read connections
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenReaderPool() throws Exception {
+
+		File testFolder = folder.newFolder();
+		GeoPackage created = TestSetupTeardown.setUpCreate(testFolder, true,
+				false);
+		File dbFile = new File(created.getPath());
+		final List<String> featureTables = created.getFeatureTables();
+		created.close();
+
+		final int readConnections = 3;
+		final GeoPackage geoPackage = GeoPackageManager.open(dbFile,
+				readConnections);
+		try {
+
+			GeoPackageConnectionPool pool = geoPackage.getConnection()
+					.getReaderPool();
+			assertNotNull(pool);
+			assertEquals(readConnections, pool.getMaxConnections());
+
+			final List<Integer> expectedCounts = new ArrayList<>();
+			for (String featureTable : featureTables) {
+				expectedCounts
+						.add(geoPackage.getFeatureDao(featureTable).count());
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			try {
+				List<Future<Void>> futures = new ArrayList<>();
+				for (int i = 0; i < 16; i++) {
+					futures.add(executor.submit(() -> {
+						for (int t = 0; t < featureTables.size(); t++) {
+							FeatureDao dao = geoPackage
+									.getFeatureDao(featureTables.get(t));
+							FeatureResultSet resultSet = dao.queryForAll();
+							int rows = 0;
+							try {
+								while (resultSet.moveToNext()) {
+									resultSet.getRow();
+									rows++;
+								}
+							} finally {
+								resultSet.close();
+							}
+							assertEquals(expectedCounts.get(t).intValue(),
+									rows);
+						}
+						return null;
+					}));
+				}
+				for (Future<Void> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+
+			assertTrue(pool.getConnectionCount() <= readConnections);
+			assertEquals(pool.getConnectionCount(), pool.getIdleCount());
+
+			// Reads within a transaction stay on the writer connection
+			if (!featureTables.isEmpty()) {
+				FeatureDao dao = geoPackage.getFeatureDao(featureTables.get(0));
+				int count = dao.count();
+				dao.beginTransaction();
+				try {
+					dao.deleteAll();
+					assertEquals(0, dao.count());
+
+					// Other threads read committed data from the pool
+					ExecutorService reader = Executors
+							.newSingleThreadExecutor();
+					try {
+						assertEquals(count,
+								reader.submit(() -> dao.count()).get()
+										.intValue());
+					} finally {
+						reader.shutdown();
+					}
+				} finally {
+					dao.failTransaction();
+				}
+				assertEquals(count, dao.count());
+			}
+
+		} finally {
+			geoPackage.close();
+		}
+
+		// Borrows are reentrant per thread with a single read connection
+		final GeoPackage singleReader = GeoPackageManager.open(dbFile, 1);
+		try {
+			GeoPackageConnectionPool pool = singleReader.getConnection()
+					.getReaderPool();
+			for (String featureTable : featureTables) {
+				FeatureDao dao = singleReader.getFeatureDao(featureTable);
+				FeatureResultSet resultSet = dao.queryForAll();
+				try {
+					int count = resultSet.getCount();
+					assertEquals(count, dao.count());
+					assertEquals(0, pool.getIdleCount());
+				} finally {
+					resultSet.close();
+				}
+				assertEquals(1, pool.getIdleCount());
+			}
+		} finally {
+			singleReader.close();
+		}
+	}
+
+	/**
+	 * Test creating and opening a database with open option profiles
+	 * 
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	@Test
+	public void testOpenOptions() throws IOException, SQLException {
+
+		File testFolder = folder.newFolder();
+		File dbFile = new File(testFolder, TestConstants.TEST_DB_FILE_NAME);
+
+		GeoPackageOpenOptions bulkLoad = new GeoPackageOpenOptions(
+				GeoPackageOpenProfile.BULK_LOAD);
+		bulkLoad.setPageSize(8192);
+
+		assertTrue("Database failed to create",
+				GeoPackageManager.create(dbFile, bulkLoad));
+
+		final int rows = 100;
+
+		GeoPackage geoPackage = GeoPackageManager.open(dbFile, bulkLoad);
+		try {
+			assertEquals(8192,
+					((Number) geoPackage.getConnection()
+							.querySingleResult("PRAGMA page_size", null))
+									.intValue());
+			assertEquals("wal", geoPackage.getConnection()
+					.querySingleResult("PRAGMA journal_mode", null));
+			assertEquals("exclusive", geoPackage.getConnection()
+					.querySingleResult("PRAGMA locking_mode", null));
+			assertEquals(0,
+					((Number) geoPackage.getConnection()
+							.querySingleResult("PRAGMA synchronous", null))
+									.intValue());
+
+			List<AttributesColumn> columns = new ArrayList<>();
+			columns.add(AttributesColumn.createColumn("value",
+					GeoPackageDataType.INTEGER));
+			geoPackage.createAttributesTable("bulk", columns);
+			AttributesDao dao = geoPackage.getAttributesDao("bulk");
+			dao.beginTransaction();
+			try {
+				for (int i = 0; i < rows; i++) {
+					AttributesRow row = dao.newRow();
+					row.setValue("value", i);
+					dao.insert(row);
+				}
+			} finally {
+				dao.endTransaction();
+			}
+		} finally {
+			geoPackage.close();
+		}
+
+		geoPackage = GeoPackageManager.open(dbFile,
+				new GeoPackageOpenOptions(GeoPackageOpenProfile.READ_SERVING));
+		try {
+			assertEquals(1,
+					((Number) geoPackage.getConnection()
+							.querySingleResult("PRAGMA query_only", null))
+									.intValue());
+			AttributesDao dao = geoPackage.getAttributesDao("bulk");
+			assertEquals(rows, dao.count());
+			AttributesRow row = dao.newRow();
+			row.setValue("value", rows);
+			try {
+				dao.insert(row);
+				fail("Insert on a query only connection did not fail");
+			} catch (Exception e) {
+				// Expected
+			}
+			assertFalse(dao.count() > rows);
+			try {
+				geoPackage.getContentsDao()
+						.executeRaw("DELETE FROM gpkg_contents");
+				fail("Delete on a query only ORMLite connection did not fail");
+			} catch (Exception e) {
+				// Expected
+			}
+			assertTrue(geoPackage.getContentsDao().countOf() > 0);
+		} finally {
+			geoPackage.close();
+		}
+	}
+
+	/**
+	 * Test opening a published database read only and immutable
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenReadOnly() throws Exception {
+
+		File testFolder = folder.newFolder();
+		GeoPackage created = TestSetupTeardown.setUpCreate(testFolder, true,
+				false);
+		File dbFile = new File(created.getPath());
+		String featureTable = created.getFeatureTables().get(0);
+		int count = created.getFeatureDao(featureTable).count();
+		created.close();
+
+		try {
+			GeoPackageManager.create(new File(testFolder, "readonly"),
+					new GeoPackageOpenOptions(GeoPackageOpenProfile.IMMUTABLE));
+			fail("Read only GeoPackage creation did not fail");
+		} catch (GeoPackageException e) {
+			// Expected
+		}
+
+		GeoPackage geoPackage = GeoPackageManager.openReadOnly("readonly",
+				dbFile, 2);
+		GeoPackage geoPackage2 = GeoPackageManager.openReadOnly(dbFile);
+		try {
+			assertTrue(geoPackage.getConnection().isReadOnly());
+			assertTrue(((Number) geoPackage.getConnection()
+					.querySingleResult("PRAGMA mmap_size", null))
+							.longValue() > 0);
+
+			FeatureDao dao = geoPackage.getFeatureDao(featureTable);
+			FeatureDao dao2 = geoPackage2.getFeatureDao(featureTable);
+			assertEquals(count, dao.count());
+			assertEquals(count, dao2.count());
+			FeatureResultSet resultSet = dao.queryForAll();
+			try {
+				int rows = 0;
+				while (resultSet.moveToNext()) {
+					resultSet.getGeometry();
+					rows++;
+				}
+				assertEquals(count, rows);
+			} finally {
+				resultSet.close();
+			}
+			geoPackage.execSQL("SELECT COUNT(*) FROM " + featureTable);
+
+			try {
+				dao.insert(dao.newRow());
+				fail("Insert on a read only GeoPackage did not fail");
+			} catch (GeoPackageException e) {
+				// Expected
+			}
+			try {
+				dao.deleteAll();
+				fail("Delete on a read only GeoPackage did not fail");
+			} catch (GeoPackageException e) {
+				// Expected
+			}
+			try {
+				geoPackage.execSQL("DELETE FROM " + featureTable);
+				fail("Delete SQL on a read only GeoPackage did not fail");
+			} catch (GeoPackageException e) {
+				// Expected
+			}
+			try {
+				dao.beginTransaction();
+				fail("Transaction on a read only GeoPackage did not fail");
+			} catch (GeoPackageException e) {
+				// Expected
+			}
+			assertEquals(count, dao.count());
+		} finally {
+			geoPackage.close();
+			geoPackage2.close();
+		}
+
+		geoPackage = GeoPackageManager.open(dbFile);
+		try {
+			assertFalse(geoPackage.getConnection().isReadOnly());
+			assertEquals(count, geoPackage.getFeatureDao(featureTable).count());
+		} finally {
+			geoPackage.close();
+		}
+	}
+
+	/**
+	 * Test opening a GeoPackage loaded into memory
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOpenInMemory() throws Exception {
+
+		File testFolder = folder.newFolder();
+		GeoPackage created = TestSetupTeardown.setUpCreate(testFolder, true,
+				false, false);
+		File dbFile = new File(created.getPath());
+		String featureTable = created.getFeatureTables().get(0);
+		int count = created.getFeatureDao(featureTable).count();
+		created.close();
+
+		GeoPackage geoPackage = GeoPackageManager.openInMemory("memory",
+				dbFile);
+		try {
+			GeoPackageMemoryReplica replica = geoPackage.getConnection()
+					.getReplica();
+			assertNotNull(replica);
+			assertFalse(geoPackage.getConnection().isReadOnly());
+			FeatureDao dao = geoPackage.getFeatureDao(featureTable);
+			assertEquals(count, dao.count());
+			FeatureIndexManager indexManager = new FeatureIndexManager(
+					geoPackage, dao);
+			try {
+				assertEquals(count, indexManager.count());
+			} finally {
+				indexManager.close();
+			}
+			dao.deleteAll();
+			assertEquals(0, dao.count());
+
+			File snapshotFile = new File(testFolder, "replica_snapshot.gpkg");
+			geoPackage.snapshotTo(snapshotFile, null);
+			GeoPackage snapshot = GeoPackageManager.open(snapshotFile);
+			try {
+				assertEquals(0, snapshot.getFeatureDao(featureTable).count());
+			} finally {
+				snapshot.close();
+			}
+		} finally {
+			geoPackage.close();
+		}
+
+		geoPackage = GeoPackageManager.openInMemory("refresh", dbFile, 60000);
+		try {
+			assertTrue(geoPackage.getConnection().isReadOnly());
+			GeoPackageMemoryReplica replica = geoPackage.getConnection()
+					.getReplica();
+			FeatureDao dao = geoPackage.getFeatureDao(featureTable);
+			assertEquals(count, dao.count());
+			assertFalse(replica.refresh());
+
+			GeoPackage writer = GeoPackageManager.open(dbFile);
+			try {
+				FeatureDao writerDao = writer.getFeatureDao(featureTable);
+				FeatureResultSet resultSet = writerDao.queryForAll();
+				long id;
+				try {
+					assertTrue(resultSet.moveToNext());
+					id = resultSet.getId();
+				} finally {
+					resultSet.close();
+				}
+				assertEquals(1, writerDao.deleteById(id));
+			} finally {
+				writer.close();
+			}
+			dbFile.setLastModified(replica.getLastModified() + 2000);
+
+			assertTrue(replica.isModified());
+			assertTrue(replica.refresh());
+			assertEquals(1, replica.getRefreshes());
+			assertEquals(count - 1, dao.count());
+
+			// Commits left in the write-ahead log without a checkpoint
+			GeoPackage walWriter = GeoPackageManager.open(dbFile, 2);
+			try {
+				replica.refresh();
+				long refreshes = replica.getRefreshes();
+				assertFalse(replica.isModified());
+				long modified = dbFile.lastModified();
+				FeatureDao writerDao = walWriter.getFeatureDao(featureTable);
+				FeatureResultSet resultSet = writerDao.queryForAll();
+				long id;
+				try {
+					assertTrue(resultSet.moveToNext());
+					id = resultSet.getId();
+				} finally {
+					resultSet.close();
+				}
+				assertEquals(1, writerDao.deleteById(id));
+				assertEquals(modified, dbFile.lastModified());
+
+				assertTrue(replica.isModified());
+				assertTrue(replica.refresh());
+				assertEquals(refreshes + 1, replica.getRefreshes());
+				assertEquals(count - 2, dao.count());
+			} finally {
+				walWriter.close();
+			}
+		} finally {
+			geoPackage.close();
+		}
+
+	}
+
 }
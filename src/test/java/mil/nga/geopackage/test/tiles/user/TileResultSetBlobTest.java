@@ -0,0 +1,88 @@
+package mil.nga.geopackage.test.tiles.user;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileResultSet;
+import mil.nga.geopackage.tiles.user.TileRow;
+
+import org.junit.Test;
+
+/**
+ * Test reading tile data blobs without copying
+ *
+ * @author osbornb
+ */
+public class TileResultSetBlobTest extends CreateGeoPackageTestCase {
+
+	/**
+	 * Test tile data byte buffers, input streams and images
+	 *
+	 * @throws IOException
+	 *             upon error
+	 */
+	@Test
+	public void testTileData() throws IOException {
+
+		int tiles = 0;
+
+		for (String tileTable : geoPackage.getTileTables()) {
+
+			TileDao tileDao = geoPackage.getTileDao(tileTable);
+			TileResultSet resultSet = tileDao.queryForAll();
+			try {
+				while (resultSet.moveToNext()) {
+
+					ByteBuffer buffer = resultSet.getTileDataByteBuffer();
+					TileRow row = resultSet.getRow();
+					byte[] tileData = row.getTileData();
+					if (tileData == null) {
+						TestCase.assertNull(buffer);
+						continue;
+					}
+					tiles++;
+
+					TestCase.assertTrue(buffer.isReadOnly());
+					TestCase.assertEquals(ByteBuffer.wrap(tileData), buffer);
+					TestCase.assertEquals(ByteBuffer.wrap(tileData),
+							row.getTileDataByteBuffer());
+
+					InputStream stream = row.getTileDataInputStream();
+					try {
+						byte[] streamed = new byte[tileData.length];
+						TestCase.assertEquals(tileData.length,
+								stream.read(streamed));
+						TestCase.assertTrue(Arrays.equals(tileData, streamed));
+						TestCase.assertEquals(-1, stream.read());
+					} finally {
+						stream.close();
+					}
+
+					BufferedImage image = resultSet.getTileDataImage();
+					BufferedImage rowImage = row.getTileDataImage();
+					if (rowImage == null) {
+						TestCase.assertNull(image);
+					} else {
+						TestCase.assertEquals(rowImage.getWidth(),
+								image.getWidth());
+						TestCase.assertEquals(rowImage.getHeight(),
+								image.getHeight());
+					}
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+
+		if (!geoPackage.getTileTables().isEmpty()) {
+			TestCase.assertTrue(tiles > 0);
+		}
+	}
+
+}